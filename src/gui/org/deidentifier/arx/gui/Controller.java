@@ -55,6 +55,7 @@ import org.deidentifier.arx.DataType;
 import org.deidentifier.arx.DataType.DataTypeDescription;
 import org.deidentifier.arx.RowSet;
 import org.deidentifier.arx.aggregates.HierarchyBuilder;
+import org.deidentifier.arx.common.ParallelExecution;
 import org.deidentifier.arx.exceptions.RollbackRequiredException;
 import org.deidentifier.arx.gui.model.Model;
 import org.deidentifier.arx.gui.model.ModelAuditTrailEntry;
@@ -1993,6 +1994,7 @@ public class Controller implements IView {
     @Override
     public void update(final ModelEvent event) {
         if (model != null && model.isDebugEnabled()) this.debug.addEvent(event);
+        if (model != null && event.part == ModelPart.MODEL) ParallelExecution.setNumThreads(model.getNumThreads());
         final Map<ModelPart, Set<IView>> dlisteners = getListeners();
         if (dlisteners.get(event.part) != null) {
             for (final IView listener : dlisteners.get(event.part)) {
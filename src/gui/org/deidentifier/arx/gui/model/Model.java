@@ -42,6 +42,7 @@ import org.deidentifier.arx.DataDefinition;
 import org.deidentifier.arx.DataHandle;
 import org.deidentifier.arx.DataSubset;
 import org.deidentifier.arx.aggregates.HierarchyBuilder;
+import org.deidentifier.arx.common.ParallelExecution;
 import org.deidentifier.arx.criteria.Inclusion;
 import org.deidentifier.arx.criteria.PrivacyCriterion;
 import org.deidentifier.arx.gui.resources.Resources;
@@ -121,6 +122,9 @@ public class Model implements Serializable {
     
     /** Threshold. */
     private int                                   maxNodesInViewer                = 700;
+    
+    /** Number of threads, null means one thread per processor. */
+    private Integer                               numThreads                      = null;
 
     /* *****************************************
      * PROJECT METADATA
@@ -811,6 +815,19 @@ public class Model implements Serializable {
         return nodeFilter;
     }
 
+    /**
+     * Returns the number of threads used for loading, analyzing and exporting data.
+     * Defaults to one thread per processor.
+     *
+     * @return
+     */
+    public int getNumThreads() {
+        if (this.numThreads == null) {
+            this.numThreads = Runtime.getRuntime().availableProcessors();
+        }
+        return this.numThreads;
+    }
+
     /**
      * Returns a string representation of the current optimum.
      *
@@ -1392,6 +1409,18 @@ public class Model implements Serializable {
         setModified();
     }
 
+    /**
+     * Sets the number of threads used for loading, analyzing and exporting data.
+     * A value of 1 means that all tasks are executed sequentially.
+     *
+     * @param numThreads
+     */
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+        ParallelExecution.setNumThreads(numThreads);
+        this.setModified();
+    }
+
     /**
      * Sets the current output.
      *
@@ -113,6 +113,10 @@ public class DialogProperties implements IDialog {
             protected Integer getValue() { return model.getMaximalSizeForComplexOperations(); }
             protected void setValue(Object t) { model.setMaximalSizeForComplexOperations((Integer)t); }});
         
+        window.addPreference(new PreferenceInteger(Resources.getMessage("DialogProperties.21"), 1, 1024, Runtime.getRuntime().availableProcessors()) { //$NON-NLS-1$
+            protected Integer getValue() { return model.getNumThreads(); }
+            protected void setValue(Object t) { model.setNumThreads((Integer)t); }});
+        
         window.addPreference(new PreferenceBoolean(Resources.getMessage("PropertyDialog.29"), false) { //$NON-NLS-1$
             protected Boolean getValue() { return model.isDebugEnabled(); }
             protected void setValue(Object t) { model.setDebugEnabled((Boolean)t); }});
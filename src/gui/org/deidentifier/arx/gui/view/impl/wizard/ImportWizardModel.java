@@ -25,6 +25,7 @@ import java.util.Locale;
 
 import org.apache.commons.math3.util.Pair;
 import org.deidentifier.arx.Data;
+import org.deidentifier.arx.DataHandle;
 import org.deidentifier.arx.DataType;
 import org.deidentifier.arx.gui.model.Model;
 import org.deidentifier.arx.gui.resources.Resources;
@@ -128,6 +129,9 @@ public class ImportWizardModel {
      */
     private List<String[]>                previewData;
 
+    /** Handle for the preview data, which caches the results of data type detection. */
+    private DataHandle                    previewHandle;
+
     /** List of potential JDBC tables. */
     private List<String>                  jdbcTables;
 
@@ -260,7 +264,9 @@ public class ImportWizardModel {
             throw new IllegalArgumentException(Resources.getMessage("ImportWizardModel.0"));  //$NON-NLS-1$
         }
 
-        Data data = Data.create(getPreviewData());
+        if (previewHandle == null) {
+            previewHandle = Data.create(getPreviewData()).getHandle();
+        }
         int columnIndex = -1;
         ImportColumn c = column.getColumn();
         if (c instanceof ImportColumnIndexed) {
@@ -269,7 +275,7 @@ public class ImportWizardModel {
             columnIndex = ((ImportColumnJDBC) column.getColumn()).getIndex();
         }
         
-        return data.getHandle().getMatchingDataTypes(columnIndex, locale, 0d);
+        return previewHandle.getMatchingDataTypes(columnIndex, locale, 0d);
     }
 
     /**
@@ -411,6 +417,7 @@ public class ImportWizardModel {
     public void setPreviewData(List<String[]> previewData) {
 
         this.previewData = previewData;
+        this.previewHandle = null;
     }
 
     /**
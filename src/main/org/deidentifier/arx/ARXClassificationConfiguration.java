@@ -0,0 +1,117 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.deidentifier.arx;
+
+import java.io.Serializable;
+
+/**
+ * Base class for configurations of classifiers, which defines the parameters
+ * of the evaluation with k-fold cross validation
+ * @author Fabian Prasser
+ */
+public abstract class ARXClassificationConfiguration implements Serializable {
+
+    /** SVUID */
+    private static final long serialVersionUID = 5936455546637620862L;
+
+    /** Max records */
+    private int     maxRecords;
+    /** Seed */
+    private int     seed          = Integer.MAX_VALUE;
+    /** Folds */
+    private int     numberOfFolds = 10;
+    /** Deterministic */
+    private boolean deterministic = true;
+
+    /**
+     * Constructor
+     * @param maxRecords - The default for the maximal number of records
+     */
+    protected ARXClassificationConfiguration(int maxRecords) {
+        this.maxRecords = maxRecords;
+    }
+
+    /**
+     * @return the maxRecords
+     */
+    public int getMaxRecords() {
+        return maxRecords;
+    }
+
+    /**
+     * @return the numberOfFolds
+     */
+    public int getNumFolds() {
+        return numberOfFolds;
+    }
+
+    /**
+     * @return the seed
+     */
+    public int getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns whether the process should be deterministic
+     * @return
+     */
+    public boolean isDeterministic() {
+        return deterministic;
+    }
+
+    /**
+     * Sets whether the process should be deterministic
+     * @param deterministic
+     * @return
+     */
+    public ARXClassificationConfiguration setDeterministic(boolean deterministic) {
+        this.deterministic = deterministic;
+        return this;
+    }
+
+    /**
+     * @param maxRecords the maxRecords to set
+     */
+    public ARXClassificationConfiguration setMaxRecords(int maxRecords) {
+        if (maxRecords <= 0) {
+            throw new IllegalArgumentException("Must be >0");
+        }
+        this.maxRecords = maxRecords;
+        return this;
+    }
+
+    /**
+     * @param numberOfFolds the numberOfFolds to set
+     */
+    public ARXClassificationConfiguration setNumFolds(int numberOfFolds) {
+        if (numberOfFolds <= 0) {
+            throw new IllegalArgumentException("Must be >0");
+        }
+        this.numberOfFolds = numberOfFolds;
+        return this;
+    }
+
+    /**
+     * Seed for randomization. Set to Integer.MAX_VALUE for randomization.
+     * @param seed the seed to set
+     */
+    public ARXClassificationConfiguration setSeed(int seed) {
+        this.seed = seed;
+        return this;
+    }
+}
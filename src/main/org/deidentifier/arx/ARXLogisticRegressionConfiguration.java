@@ -16,13 +16,14 @@
  */
 package org.deidentifier.arx;
 
-import java.io.Serializable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 
 /**
  * Configuration for logistic regression
  * @author Fabian Prasser
  */
-public class ARXLogisticRegressionConfiguration implements Serializable {
+public class ARXLogisticRegressionConfiguration extends ARXClassificationConfiguration {
 
     /** 
      * Prior function for regularization
@@ -56,14 +57,6 @@ public class ARXLogisticRegressionConfiguration implements Serializable {
     private int           stepOffset    = 10000;
     /** Configuration */
     private int           vectorLength  = 1000;
-    /** Max records */
-    private int           maxRecords    = 100000;
-    /** Seed */
-    private int           seed          = Integer.MAX_VALUE;
-    /** Folds */
-    private int           numberOfFolds = 10;
-    /** Deterministic */
-    private boolean       deterministic = true;
     /** Configuration */
     private PriorFunction prior         = PriorFunction.L1;
 
@@ -71,7 +64,7 @@ public class ARXLogisticRegressionConfiguration implements Serializable {
      * Constructor
      */
     private ARXLogisticRegressionConfiguration(){
-        // Empty by design
+        super(100000);
     }
 
     /**
@@ -102,20 +95,6 @@ public class ARXLogisticRegressionConfiguration implements Serializable {
         return learningRate;
     }
 
-    /**
-     * @return the maxRecords
-     */
-    public int getMaxRecords() {
-        return maxRecords;
-    }
-
-    /**
-     * @return the numberOfFolds
-     */
-    public int getNumFolds() {
-        return numberOfFolds;
-    }
-    
     /**
      * @return the priorFunction
      */
@@ -123,13 +102,6 @@ public class ARXLogisticRegressionConfiguration implements Serializable {
         return prior;
     }
     
-    /**
-     * @return the seed
-     */
-    public int getSeed() {
-        return seed;
-    }
-
     /**
      * @return the stepOffset
      */
@@ -144,14 +116,6 @@ public class ARXLogisticRegressionConfiguration implements Serializable {
         return vectorLength;
     }
 
-    /**
-     * Returns whether the process should be deterministic
-     * @return
-     */
-    public boolean isDeterministic() {
-        return deterministic;
-    }
-
     /**
      * @param alpha the alpha to set
      */
@@ -168,13 +132,9 @@ public class ARXLogisticRegressionConfiguration implements Serializable {
         return this;
     }
 
-    /**
-     * Sets whether the process should be deterministic
-     * @param deterministic
-     * @return
-     */
+    @Override
     public ARXLogisticRegressionConfiguration setDeterministic(boolean deterministic) {
-        this.deterministic = deterministic;
+        super.setDeterministic(deterministic);
         return this;
     }
 
@@ -194,25 +154,15 @@ public class ARXLogisticRegressionConfiguration implements Serializable {
         return this;
     }
 
-    /**
-     * @param maxRecords the maxRecords to set
-     */
+    @Override
     public ARXLogisticRegressionConfiguration setMaxRecords(int maxRecords) {
-        if (maxRecords <= 0) {
-            throw new IllegalArgumentException("Must be >0");
-        }
-        this.maxRecords = maxRecords;
+        super.setMaxRecords(maxRecords);
         return this;
     }
 
-    /**
-     * @param numberOfFolds the numberOfFolds to set
-     */
+    @Override
     public ARXLogisticRegressionConfiguration setNumFolds(int numberOfFolds) {
-        if (numberOfFolds <= 0) {
-            throw new IllegalArgumentException("Must be >0");
-        }
-        this.numberOfFolds = numberOfFolds;
+        super.setNumFolds(numberOfFolds);
         return this;
     }
 
@@ -224,12 +174,9 @@ public class ARXLogisticRegressionConfiguration implements Serializable {
         return this;
     }
 
-    /**
-     * Seed for randomization. Set to Integer.MAX_VALUE for randomization.
-     * @param seed the seed to set
-     */
+    @Override
     public ARXLogisticRegressionConfiguration setSeed(int seed) {
-        this.seed = seed;
+        super.setSeed(seed);
         return this;
     }
 
@@ -251,4 +198,32 @@ public class ARXLogisticRegressionConfiguration implements Serializable {
         this.vectorLength = vectorLength;
         return this;
     }
+
+    /**
+     * Reads the parameters of the evaluation from the fields of this class,
+     * where they have been stored by previous versions.
+     * @param stream
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+
+        // Read fields of this class
+        ObjectInputStream.GetField fields = stream.readFields();
+        this.alpha = fields.get("alpha", 1d);
+        this.decayExponent = fields.get("decayExponent", 0.2d);
+        this.lambda = fields.get("lambda", 0.000001d);
+        this.learningRate = fields.get("learningRate", 1d);
+        this.stepOffset = fields.get("stepOffset", 10000);
+        this.vectorLength = fields.get("vectorLength", 1000);
+        this.prior = (PriorFunction) fields.get("prior", PriorFunction.L1);
+
+        // Backwards compatibility
+        if (fields.getObjectStreamClass().getField("maxRecords") != null) {
+            super.setMaxRecords(fields.get("maxRecords", 100000));
+            super.setSeed(fields.get("seed", Integer.MAX_VALUE));
+            super.setNumFolds(fields.get("numberOfFolds", 10));
+            super.setDeterministic(fields.get("deterministic", true));
+        }
+    }
 }
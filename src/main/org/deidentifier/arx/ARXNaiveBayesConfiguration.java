@@ -0,0 +1,89 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.deidentifier.arx;
+
+/**
+ * Configuration for categorical naive bayes
+ * @author Fabian Prasser
+ */
+public class ARXNaiveBayesConfiguration extends ARXClassificationConfiguration {
+
+    /** SVUID */
+    private static final long serialVersionUID = -2164785240236471385L;
+
+    /**
+     * Returns a new instance
+     * @return
+     */
+    public static ARXNaiveBayesConfiguration create() {
+        return new ARXNaiveBayesConfiguration();
+    }
+
+    /** Additive smoothing */
+    private double smoothing = 1d;
+
+    /**
+     * Constructor. By default, all records are used.
+     */
+    private ARXNaiveBayesConfiguration(){
+        super(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the pseudo count which is added to all counts (Laplace or Lidstone smoothing)
+     * @return the smoothing
+     */
+    public double getSmoothing() {
+        return smoothing;
+    }
+
+    @Override
+    public ARXNaiveBayesConfiguration setDeterministic(boolean deterministic) {
+        super.setDeterministic(deterministic);
+        return this;
+    }
+
+    @Override
+    public ARXNaiveBayesConfiguration setMaxRecords(int maxRecords) {
+        super.setMaxRecords(maxRecords);
+        return this;
+    }
+
+    @Override
+    public ARXNaiveBayesConfiguration setNumFolds(int numberOfFolds) {
+        super.setNumFolds(numberOfFolds);
+        return this;
+    }
+
+    @Override
+    public ARXNaiveBayesConfiguration setSeed(int seed) {
+        super.setSeed(seed);
+        return this;
+    }
+
+    /**
+     * Sets the pseudo count which is added to all counts. 1 results in Laplace smoothing.
+     * @param smoothing the smoothing to set
+     */
+    public ARXNaiveBayesConfiguration setSmoothing(double smoothing) {
+        if (smoothing <= 0d) {
+            throw new IllegalArgumentException("Must be >0");
+        }
+        this.smoothing = smoothing;
+        return this;
+    }
+}
@@ -674,6 +674,12 @@ public class ARXResult {
             
             // Update data types
             output.updateDataTypes(result.optimum.getGeneralization());
+
+            // Mark changed rows
+            output.setRowsChanged(rowset);
+            
+            // Clear cached values and statistics
+            this.registry.resetCaches();
             
             // Mark as optimized
             if (optimized != 0) {
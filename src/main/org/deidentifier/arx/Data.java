@@ -27,8 +27,14 @@ import java.util.List;
 import java.util.NoSuchElementException;
 
 import org.apache.poi.ss.formula.functions.T;
+import org.deidentifier.arx.framework.data.DataMatrix;
+import org.deidentifier.arx.framework.data.Dictionary;
+import org.deidentifier.arx.io.BinaryDataInput;
 import org.deidentifier.arx.io.CSVDataInput;
+import org.deidentifier.arx.io.CSVDataInputMapped;
+import org.deidentifier.arx.io.CSVDataInputParallel;
 import org.deidentifier.arx.io.CSVSyntax;
+import org.deidentifier.arx.io.IImportEncoded;
 import org.deidentifier.arx.io.ImportAdapter;
 import org.deidentifier.arx.io.ImportConfiguration;
 
@@ -117,6 +123,74 @@ public abstract class Data { // NO_UCD
 
     }
 
+    /**
+     * A data object for data that has already been encoded.
+     *
+     * @author Fabian Prasser
+     */
+    static class EncodedData extends Data {
+
+        /** Header */
+        private final String[]   header;
+
+        /** Data */
+        private final DataMatrix data;
+
+        /** Dictionary */
+        private final Dictionary dictionary;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param header
+         * @param data
+         * @param dictionary
+         */
+        private EncodedData(final String[] header, final DataMatrix data, final Dictionary dictionary) {
+            this.header = header;
+            this.data = data;
+            this.dictionary = dictionary;
+            this.setCompactDictionary(dictionary.isCompact());
+        }
+
+        @Override
+        protected DataHandleInput createHandle() {
+            return new DataHandleInput(this, header, data, dictionary);
+        }
+
+        @Override
+        protected Iterator<String[]> iterator() {
+            return new Iterator<String[]>() {
+
+                int index = -1;
+
+                @Override
+                public boolean hasNext() {
+                    return index < data.getNumRows();
+                }
+
+                @Override
+                public String[] next() {
+                    if (index == -1) {
+                        index++;
+                        return header;
+                    }
+                    String[] result = new String[header.length];
+                    for (int column = 0; column < header.length; column++) {
+                        result[column] = dictionary.getValue(column, data.get(index, column));
+                    }
+                    index++;
+                    return result;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("Remove is not supported by this iterator");
+                }
+            };
+        }
+    }
+
     /**
      * A data object for iterators.
      *
@@ -166,6 +240,34 @@ public abstract class Data { // NO_UCD
         return create(adapter);
     }
 
+    /**
+     * Creates a new data object from a file in ARX's binary format, which has been written with
+     * {@link DataHandle#save(org.deidentifier.arx.io.BinaryDataOutput)}. The data definition
+     * stored in the file will be restored.
+     *
+     * @param input The configured input
+     * @return A Data object
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static Data create(final BinaryDataInput input) throws IOException {
+        Data data = create((IImportEncoded) input);
+        data.getDefinition().read(input.getDefinition());
+        return data;
+    }
+
+    /**
+     * Creates a new data object from an input which directly produces encoded data,
+     * such as {@link CSVDataInputParallel} or {@link CSVDataInputMapped}.
+     *
+     * @param input The configured input
+     * @return A Data object
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static Data create(final IImportEncoded input) throws IOException {
+        input.load();
+        return new EncodedData(input.getHeader(), input.getData(), input.getDictionary());
+    }
+
     /**
      * Creates a new data object from a CSV file.
      *
@@ -482,6 +584,9 @@ public abstract class Data { // NO_UCD
     /** The data definition. */
     private DataDefinition  definition = new DataDefinition();
 
+    /** Whether a compact dictionary should be used. */
+    private boolean         compact    = false;
+
     /**
      * Returns the data definition.
      *
@@ -498,13 +603,43 @@ public abstract class Data { // NO_UCD
      */
     public DataHandle getHandle() {
         if (handle == null) {
-            handle = new DataHandleInput(this);
+            handle = createHandle();
         } else {
             handle.update(this);
         }
         return handle;
     }
 
+    /**
+     * Returns whether the values will be stored in a compact dictionary.
+     *
+     * @return
+     */
+    public boolean isCompactDictionary() {
+        return compact;
+    }
+
+    /**
+     * Defines whether the values should be stored in a compact dictionary, which keeps them as
+     * UTF-8 encoded bytes instead of individual strings. This reduces memory consumption
+     * for attributes with a large number of distinct values, e.g. identifiers or timestamps.
+     * Must be called before the handle is created.
+     *
+     * @param compact
+     */
+    public void setCompactDictionary(boolean compact) {
+        this.compact = compact;
+    }
+
+    /**
+     * Creates the handle.
+     *
+     * @return the handle
+     */
+    protected DataHandleInput createHandle() {
+        return new DataHandleInput(this);
+    }
+
     /**
      * Iterator.
      *
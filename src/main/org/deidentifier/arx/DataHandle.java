@@ -23,7 +23,6 @@ import java.io.OutputStream;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
@@ -40,9 +39,14 @@ import org.deidentifier.arx.DataHandleInternal.InterruptHandler;
 import org.deidentifier.arx.DataType.ARXDate;
 import org.deidentifier.arx.DataType.ARXDecimal;
 import org.deidentifier.arx.DataType.ARXInteger;
-import org.deidentifier.arx.DataType.DataTypeDescription;
 import org.deidentifier.arx.aggregates.StatisticsBuilder;
 import org.deidentifier.arx.certificate.elements.ElementData;
+import org.deidentifier.arx.common.GroupifyIncremental;
+import org.deidentifier.arx.framework.data.DataMatrix;
+import org.deidentifier.arx.framework.data.Dictionary;
+import org.deidentifier.arx.framework.data.ParsedDictionary;
+import org.deidentifier.arx.io.BinaryDataInput;
+import org.deidentifier.arx.io.BinaryDataOutput;
 import org.deidentifier.arx.io.CSVDataOutput;
 import org.deidentifier.arx.io.CSVSyntax;
 import org.deidentifier.arx.risk.RiskEstimateBuilder;
@@ -81,6 +85,18 @@ public abstract class DataHandle {
 
     /** The current research subset. */
     protected DataHandle        subset     = null;
+
+    /** Cached results of data type detection, indexed by column and parameters. */
+    private Map<String, List<Pair<DataType<?>, Double>>> matchingDataTypes = new HashMap<String, List<Pair<DataType<?>, Double>>>();
+
+    /** Cached parsed values, indexed by column. */
+    private Map<Integer, ParsedDictionary>               parsedDictionaries = new HashMap<Integer, ParsedDictionary>();
+
+    /** Cached frequencies of codes, indexed by column, suppression, hierarchy and generalization level. */
+    private Map<List<Object>, int[]>                     frequencies        = new HashMap<List<Object>, int[]>();
+
+    /** Cached distinct values in a specific order, indexed by column and parameters of the order. */
+    private Map<List<Object>, String[]>                  orderedValues      = new HashMap<List<Object>, String[]>();
     
     /**
      * Returns the name of the specified column.
@@ -316,25 +332,21 @@ public abstract class DataHandle {
 
         checkRegistry();
         checkColumn(column);
-        double distinct = this.getDistinctValues(column).length;
-        List<Pair<DataType<?>, Double>> result = new ArrayList<Pair<DataType<?>, Double>>();
-        DataTypeDescription<U> description = DataType.list(clazz);
-        if (description.hasFormat()) {
-            for (String format : description.getExampleFormats()) {
-                DataType<U> type = description.newInstance(format, locale);
-                double matching = getNumConformingValues(column, type) / distinct;
-                if (matching >= threshold) {
-                    result.add(new Pair<DataType<?>, Double>(type, matching));
-                }
-            }
-        } else {
-            DataType<U> type = description.newInstance();
-            double matching = getNumConformingValues(column, type) / distinct;
-            if (matching >= threshold) {
-                result.add(new Pair<DataType<?>, Double>(type, matching));
-            }
-        }
-        return result;
+        DataTypeDetector detector = new DataTypeDetector(locale, threshold);
+        return toPairs(detector.detect(this.getDistinctValues(column), clazz));
+    }
+
+    /**
+     * Returns a mapping from data types to the relative number of values that conform to the according type.
+     * All types are evaluated in a single pass over the distinct values of the column. Results are cached
+     * until values of the handle are replaced.
+     *
+     * @param column the column
+     * @param detector the detector to use
+     * @return the matching data types
+     */
+    public List<Pair<DataType<?>, Double>> getMatchingDataTypes(int column, DataTypeDetector detector) {
+        return getMatchingDataTypes(new int[] { column }, detector).get(0);
     }
 
     /**
@@ -370,36 +382,51 @@ public abstract class DataHandle {
      * @return the matching data types
      */
     public List<Pair<DataType<?>, Double>> getMatchingDataTypes(int column, Locale locale, double threshold) {
+        return getMatchingDataTypes(column, new DataTypeDetector(locale, threshold));
+    }
+
+    /**
+     * Returns mappings from data types to the relative number of values that conform to the according type
+     * for multiple columns. Columns which have not been analyzed with the same parameters before are processed
+     * with the detector's number of threads.
+     *
+     * @param columns the columns
+     * @param detector the detector to use
+     * @return the matching data types for each column
+     */
+    public List<List<Pair<DataType<?>, Double>>> getMatchingDataTypes(int[] columns, DataTypeDetector detector) {
 
         checkRegistry();
-        checkColumn(column);
-        List<Pair<DataType<?>, Double>> result = new ArrayList<Pair<DataType<?>, Double>>();
-        result.addAll(getMatchingDataTypes(column, Long.class, locale, threshold));
-        result.addAll(getMatchingDataTypes(column, Date.class, locale, threshold));
-        result.addAll(getMatchingDataTypes(column, Double.class, locale, threshold));
-        result.add(new Pair<DataType<?>, Double>(DataType.STRING, 1.0d));
-        
-        // Sort order
-        final Map<Class<?>, Integer> order = new HashMap<Class<?>, Integer>();
-        order.put(Long.class, 0);
-        order.put(Date.class, 1);
-        order.put(Double.class, 2);
-        order.put(String.class, 3);
-        
-        // Sort
-        Collections.sort(result, new Comparator<Pair<DataType<?>, Double>>() {
-            public int compare(Pair<DataType<?>, Double> o1, Pair<DataType<?>, Double> o2) {
-                
-                // Sort by matching quality
-                int cmp = o1.getSecond().compareTo(o2.getSecond());
-                if (cmp != 0) return -cmp;
-                
-                // Sort by order
-                int order1 = order.get(o1.getFirst().getDescription().getWrappedClass());
-                int order2 = order.get(o2.getFirst().getDescription().getWrappedClass());
-                return Integer.compare(order1, order2);
+        for (int column : columns) {
+            checkColumn(column);
+        }
+
+        // Determine columns to analyze
+        String key = detector.getKey();
+        List<Integer> missing = new ArrayList<Integer>();
+        for (int column : columns) {
+            if (!matchingDataTypes.containsKey(column + ";" + key) && !missing.contains(column)) {
+                missing.add(column);
             }
-        });
+        }
+
+        // Analyze
+        if (!missing.isEmpty()) {
+            String[][] values = new String[missing.size()][];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = this.getDistinctValues(missing.get(i));
+            }
+            List<List<DataTypeDetector.Match>> matches = detector.detect(values);
+            for (int i = 0; i < values.length; i++) {
+                matchingDataTypes.put(missing.get(i) + ";" + key, toPairs(matches.get(i)));
+            }
+        }
+
+        // Collect
+        List<List<Pair<DataType<?>, Double>>> result = new ArrayList<List<Pair<DataType<?>, Double>>>();
+        for (int column : columns) {
+            result.add(new ArrayList<Pair<DataType<?>, Double>>(matchingDataTypes.get(column + ";" + key)));
+        }
         return result;
     }
 
@@ -639,6 +666,39 @@ public abstract class DataHandle {
         return registry.replace(column, original, replacement);
     }
 
+    /**
+     * Writes the data and its definition in ARX's binary format, which can be loaded with
+     * {@link Data#create(BinaryDataInput)} without parsing.
+     *
+     * @param output the output
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void save(final BinaryDataOutput output) throws IOException {
+        checkRegistry();
+
+        // Encode
+        final Iterator<String[]> iterator = iterator();
+        final String[] header = iterator.next();
+        final Dictionary dictionary = new Dictionary(header.length);
+        final List<int[]> rows = new ArrayList<int[]>();
+        while (iterator.hasNext()) {
+            final String[] values = iterator.next();
+            final int[] row = new int[header.length];
+            for (int i = 0; i < header.length; i++) {
+                row[i] = dictionary.register(i, values[i]);
+            }
+            rows.add(row);
+        }
+        dictionary.finalizeAll();
+        final DataMatrix data = new DataMatrix(rows.size(), header.length);
+        for (int row = 0; row < rows.size(); row++) {
+            data.setRow(row, rows.get(row));
+        }
+
+        // Write
+        output.write(header, data, dictionary, getDefinition());
+    }
+
     /**
      * Writes the data to a CSV file.
      *
@@ -916,6 +976,71 @@ public abstract class DataHandle {
      */
     protected abstract String[] getDistinctValues(int column, boolean ignoreSuppression, InterruptHandler handler);
 
+    /**
+     * Returns the rank of each of the given distinct values according to the given data type. Dates and
+     * numbers are parsed only once.
+     *
+     * @param type the type
+     * @param values the values
+     * @return the ranks
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    protected int[] getRanks(final DataType<?> type, final String[] values) {
+
+        // Parse
+        final boolean parse = type instanceof ARXDate || type instanceof ARXDecimal || type instanceof ARXInteger;
+        final Comparable[] parsed = new Comparable[values.length];
+        if (parse) {
+            for (int i = 0; i < values.length; i++) {
+                Object value = type.parse(values[i]);
+                if (value instanceof Double && ((Double) value).doubleValue() == -0.0d) {
+                    value = 0d;
+                }
+                parsed[i] = (Comparable) value;
+            }
+        }
+
+        // Sort
+        Integer[] order = new Integer[values.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Comparator<Integer> comparator = new Comparator<Integer>() {
+            @Override
+            public int compare(Integer index1, Integer index2) {
+                if (!parse) {
+                    try {
+                        return type.compare(values[index1], values[index2]);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                Comparable value1 = parsed[index1];
+                Comparable value2 = parsed[index2];
+                if (value1 == null && value2 == null) {
+                    return 0;
+                } else if (value1 == null) {
+                    return +1;
+                } else if (value2 == null) {
+                    return -1;
+                }
+                return value1.compareTo(value2);
+            }
+        };
+        Arrays.sort(order, comparator);
+
+        // Rank, equal values share a rank
+        int[] ranks = new int[values.length];
+        int rank = 0;
+        for (int i = 0; i < order.length; i++) {
+            if (i > 0 && comparator.compare(order[i - 1], order[i]) != 0) {
+                rank++;
+            }
+            ranks[order[i]] = rank;
+        }
+        return ranks;
+    }
+
     /**
      * Returns the registry associated with this handle.
      *
@@ -959,6 +1084,185 @@ public abstract class DataHandle {
         }
     }
 
+    /**
+     * Returns the data type used for comparing values of the given column, null if the column
+     * does not need to be considered.
+     *
+     * @param column the column
+     * @return the data type
+     */
+    protected DataType<?> internalGetDataType(final int column) {
+        return dataTypes[0][column];
+    }
+
+    /**
+     * Returns the values of the given column, indexed by the codes returned by
+     * {@link #internalGetEncodedValue(int, int, boolean)}.
+     *
+     * @param column the column
+     * @return the values
+     */
+    protected abstract String[] internalGetDictionary(int column);
+
+    /**
+     * Returns the distinct values of the given column, derived from the frequencies of codes.
+     *
+     * @param column the column
+     * @param ignoreSuppression the ignore suppression
+     * @param handler the handler
+     * @return the distinct values
+     */
+    protected String[] internalGetDistinctValues(int column, boolean ignoreSuppression, InterruptHandler handler) {
+        int[] frequencies = internalGetFrequencies(column, ignoreSuppression, handler);
+        String[] dictionary = internalGetDictionary(column);
+        Set<String> values = new HashSet<String>();
+        for (int code = 0; code < frequencies.length; code++) {
+            if (frequencies[code] != 0) {
+                values.add(dictionary[code]);
+            }
+        }
+        handler.checkInterrupt();
+        return values.toArray(new String[values.size()]);
+    }
+
+    /**
+     * Returns the code of the value in the given cell.
+     *
+     * @param row the row
+     * @param column the column
+     * @param ignoreSuppression the ignore suppression
+     * @return the code
+     */
+    protected abstract int internalGetEncodedValue(int row, int column, boolean ignoreSuppression);
+
+    /**
+     * Returns the number of occurrences of each code in the given column. The result is indexed by
+     * code and must not be modified. It is cached for the column, whether suppression is ignored,
+     * the hierarchy of the attribute, which is compared by identity, and its generalization level.
+     * All cached results are discarded when the data changes.
+     *
+     * @param column the column
+     * @param ignoreSuppression the ignore suppression
+     * @param handler the handler
+     * @return the frequencies
+     */
+    protected synchronized int[] internalGetFrequencies(int column, boolean ignoreSuppression, InterruptHandler handler) {
+        
+        // Check
+        checkRegistry();
+        checkColumn(column);
+        
+        // Cached
+        String attribute = getAttributeName(column);
+        DataDefinition definition = getDefinition();
+        List<Object> key = Arrays.<Object> asList(column,
+                                                  ignoreSuppression,
+                                                  definition == null ? null : definition.getHierarchy(attribute),
+                                                  getGeneralization(attribute));
+        int[] result = frequencies.get(key);
+        if (result != null) {
+            return result;
+        }
+        
+        // Count
+        result = new int[internalGetDictionary(column).length];
+        int rows = getNumRows();
+        for (int row = 0; row < rows; row++) {
+            if ((row & 0xFFF) == 0) {
+                handler.checkInterrupt();
+            }
+            result[internalGetEncodedValue(row, column, ignoreSuppression)]++;
+        }
+        frequencies.put(key, result);
+        return result;
+    }
+
+    /**
+     * Groups the records by the values of the given columns.
+     *
+     * @param columns the columns
+     * @param handler the handler
+     * @return the groups
+     */
+    protected GroupifyIncremental internalGetGroupify(int[] columns, InterruptHandler handler) {
+        checkRegistry();
+        return new GroupifyIncremental(new DataHandleInternal(this), columns, 0, handler);
+    }
+
+    /**
+     * Returns cached distinct values of a column in a specific order, null if there are none.
+     *
+     * @param key the column and the parameters of the order
+     * @return the values
+     */
+    protected synchronized String[] internalGetOrderedValues(List<Object> key) {
+        String[] result = orderedValues.get(key);
+        return result == null ? null : result.clone();
+    }
+
+    /**
+     * Returns the values of the given column parsed with the column's data type, indexed by code.
+     * Each distinct value is parsed only once and the result is cached until values are replaced or
+     * the data type is changed.
+     *
+     * @param column the column
+     * @return the parsed values
+     */
+    protected synchronized ParsedDictionary internalGetParsedDictionary(int column) {
+        DataType<?> type = getDataType(getAttributeName(column));
+        ParsedDictionary result = parsedDictionaries.get(column);
+        if (result == null || !result.getType().equals(type)) {
+            result = new ParsedDictionary(type, internalGetDictionary(column));
+            parsedDictionaries.put(column, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a rank for the value of each row in the given range of the given column. Comparing
+     * ranks is equivalent to comparing values with {@link #internalCompare(int, int, int[], boolean)}
+     * in ascending order. Each distinct value is parsed only once and suppressed values are ranked last.
+     *
+     * @param column the column
+     * @param from the first row, inclusive
+     * @param to the last row, exclusive
+     * @return the ranks or null, if the column does not need to be considered
+     */
+    protected int[] internalGetRanks(final int column, final int from, final int to) {
+
+        checkRegistry();
+        DataType<?> type = internalGetDataType(column);
+        if (type == null) {
+            return null;
+        }
+
+        // Collect distinct values
+        Map<String, Integer> codes = new HashMap<String, Integer>();
+        List<String> values = new ArrayList<String>();
+        int[] result = new int[to - from];
+        for (int row = from; row < to; row++) {
+            String value = internalGetValue(row, column, false);
+            if (value == DataType.ANY_VALUE) {
+                result[row - from] = -1;
+                continue;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            result[row - from] = code;
+        }
+
+        // Map codes to ranks
+        int[] ranks = getRanks(type, values.toArray(new String[values.size()]));
+        for (int i = 0; i < result.length; i++) {
+            result[i] = result[i] == -1 ? values.size() : ranks[result[i]];
+        }
+        return result;
+    }
+
     /**
      * Internal representation of get value.
      *
@@ -978,6 +1282,16 @@ public abstract class DataHandle {
      */
     protected abstract boolean internalReplace(int column, String original, String replacement);
 
+    /**
+     * Caches distinct values of a column in a specific order until the data changes.
+     *
+     * @param key the column and the parameters of the order
+     * @param values the values
+     */
+    protected synchronized void internalSetOrderedValues(List<Object> key, String[] values) {
+        orderedValues.put(key, values.clone());
+    }
+
     /**
      * Returns whether the data represented by this handle is anonymous
      * @return
@@ -986,6 +1300,17 @@ public abstract class DataHandle {
         return false;
     }
 
+    /**
+     * Clears cached results of data type detection, cached parsed values, frequencies and ordered values.
+     * Called when values are replaced or the data is recoded.
+     */
+    protected synchronized void resetCaches() {
+        matchingDataTypes.clear();
+        parsedDictionaries.clear();
+        frequencies.clear();
+        orderedValues.clear();
+    }
+
     /**
      * Updates the registry.
      *
@@ -1003,4 +1328,18 @@ public abstract class DataHandle {
     protected void setView(DataHandle handle) {
         subset = handle;
     }
+
+    /**
+     * Converts the results of data type detection.
+     *
+     * @param matches the matches
+     * @return the pairs
+     */
+    private List<Pair<DataType<?>, Double>> toPairs(List<DataTypeDetector.Match> matches) {
+        List<Pair<DataType<?>, Double>> result = new ArrayList<Pair<DataType<?>, Double>>();
+        for (DataTypeDetector.Match match : matches) {
+            result.add(new Pair<DataType<?>, Double>(match.getType(), match.getMatching()));
+        }
+        return result;
+    }
 }
@@ -17,6 +17,7 @@
 
 package org.deidentifier.arx;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
@@ -26,6 +27,8 @@ import org.deidentifier.arx.DataHandleInternal.InterruptHandler;
 import org.deidentifier.arx.aggregates.StatisticsBuilder;
 import org.deidentifier.arx.framework.data.DataMatrix;
 import org.deidentifier.arx.framework.data.Dictionary;
+import org.deidentifier.arx.io.BinaryDataOutput;
+import org.deidentifier.arx.io.ImportAdapter;
 
 /**
  * An implementation of the DataHandle interface for input data.
@@ -62,45 +65,42 @@ public class DataHandleInput extends DataHandle {
         
         // Obtain and check iterator
         Iterator<String[]> iterator = data.iterator();
-        if (!iterator.hasNext()) { 
-            throw new IllegalArgumentException("Data object is empty!"); 
+        try {
+            if (!iterator.hasNext()) { 
+                throw new IllegalArgumentException("Data object is empty!"); 
+            }
+            encode(data, iterator);
+        } finally {
+            
+            // Release resources of adapters, also if reading has been aborted
+            if (iterator instanceof ImportAdapter) {
+                ((ImportAdapter) iterator).close();
+            }
         }
+    }
+
+    /**
+     * Creates a new data handle for data that has already been encoded.
+     *
+     * @param data
+     * @param header
+     * @param matrix
+     * @param dictionary
+     */
+    protected DataHandleInput(final Data data,
+                              final String[] header,
+                              final DataMatrix matrix,
+                              final Dictionary dictionary) {
 
         // Register
         this.setRegistry(new DataRegistry());
         this.getRegistry().updateInput(this);
         this.definition = data.getDefinition().clone();
 
-        // Obtain header
-        String[] columns = iterator.next();
-        super.header = Arrays.copyOf(columns, columns.length);
-
-        // Init dictionary
-        this.dictionary = new Dictionary(header.length);
-
-        // Encode data
-        List<int[]> vals = new ArrayList<int[]>();
-        while (iterator.hasNext()) {
-
-            // Process a tuple
-            String[] strings = iterator.next();
-            int[] tuple = new int[header.length];
-            for (int i = 0; i < header.length; i++) {
-                String value = (i < strings.length) ? strings[i] : DataType.NULL_VALUE;
-                value = (value != null) ? value : DataType.NULL_VALUE;
-                tuple[i] = dictionary.register(i, value);
-            }
-            vals.add(tuple);
-        }
-
-        // Build array
-        this.data = new DataMatrix(vals.size(), header.length);
-        for (int row = 0; row < vals.size(); row++) {
-            this.data.setRow(row, vals.get(row));
-        }
-
-        // finalize dictionary
-        this.dictionary.finalizeAll();
+        // Store
+        super.header = Arrays.copyOf(header, header.length);
+        this.data = matrix;
+        this.dictionary = dictionary;
 
         // Create datatype array
         this.dataTypes = getDataTypeArray();
@@ -182,7 +182,61 @@ public class DataHandleInput extends DataHandle {
             }
         };
     }
+
+    @Override
+    public void save(final BinaryDataOutput output) throws IOException {
+        checkRegistry();
+        output.write(header, data, dictionary, getDefinition());
+    }
     
+    /**
+     * Creates the handle from the given tuples.
+     *
+     * @param data
+     * @param iterator
+     */
+    private void encode(final Data data, final Iterator<String[]> iterator) {
+
+        // Register
+        this.setRegistry(new DataRegistry());
+        this.getRegistry().updateInput(this);
+        this.definition = data.getDefinition().clone();
+
+        // Obtain header
+        String[] columns = iterator.next();
+        super.header = Arrays.copyOf(columns, columns.length);
+
+        // Init dictionary
+        this.dictionary = new Dictionary(header.length, data.isCompactDictionary());
+
+        // Encode data
+        List<int[]> vals = new ArrayList<int[]>();
+        while (iterator.hasNext()) {
+
+            // Process a tuple
+            String[] strings = iterator.next();
+            int[] tuple = new int[header.length];
+            for (int i = 0; i < header.length; i++) {
+                String value = (i < strings.length) ? strings[i] : DataType.NULL_VALUE;
+                value = (value != null) ? value : DataType.NULL_VALUE;
+                tuple[i] = dictionary.register(i, value);
+            }
+            vals.add(tuple);
+        }
+
+        // Build array
+        this.data = new DataMatrix(vals.size(), header.length);
+        for (int row = 0; row < vals.size(); row++) {
+            this.data.setRow(row, vals.get(row));
+        }
+
+        // finalize dictionary
+        this.dictionary.finalizeAll();
+
+        // Create datatype array
+        this.dataTypes = getDataTypeArray();
+    }
+
     /**
      * Swaps two rows.
      *
@@ -235,8 +289,11 @@ public class DataHandleInput extends DataHandle {
         handler.checkInterrupt();
         checkColumn(column);
         handler.checkInterrupt();
-        final String[] dict = dictionary.getMapping()[column];
+        final String[] dict = dictionary.getMapping(column);
         handler.checkInterrupt();
+        if (dictionary.isCompact()) {
+            return dict;
+        }
         final String[] vals = new String[dict.length];
         handler.checkInterrupt();
         System.arraycopy(dict, 0, vals, 0, vals.length);
@@ -252,25 +309,56 @@ public class DataHandleInput extends DataHandle {
         return this.dataGH;
     }
     
+    @Override
+    protected String[] internalGetDictionary(final int column) {
+        String[] result = new String[dictionary.getNumValues(column)];
+        for (int code = 0; code < result.length; code++) {
+            result[code] = dictionary.getValue(column, code);
+        }
+        return result;
+    }
+
+    @Override
+    protected int internalGetEncodedValue(final int row, final int column, final boolean ignoreSuppression) {
+        return data.get(row, column);
+    }
+
+    @Override
+    protected int[] internalGetRanks(final int column, final int from, final int to) {
+
+        // Collect codes which occur in the range
+        int[] codes = new int[dictionary.getNumValues(column)];
+        Arrays.fill(codes, -1);
+        List<String> values = new ArrayList<String>();
+        for (int row = from; row < to; row++) {
+            int code = data.get(row, column);
+            if (codes[code] == -1) {
+                codes[code] = values.size();
+                values.add(dictionary.getValue(column, code));
+            }
+        }
+
+        // Rank codes
+        int[] ranks = getRanks(internalGetDataType(column), values.toArray(new String[values.size()]));
+
+        // Map rows
+        int[] result = new int[to - from];
+        for (int row = from; row < to; row++) {
+            result[row - from] = ranks[codes[data.get(row, column)]];
+        }
+        return result;
+    }
+
     @Override
     protected String internalGetValue(final int row, final int column, final boolean ignoreSuppression) {
-        return dictionary.getMapping()[column][data.get(row, column)];
+        return dictionary.getValue(column, data.get(row, column));
     }
     
     @Override
     protected boolean internalReplace(int column,
                                       String original,
                                       String replacement) {
-
-        String[] values = dictionary.getMapping()[column];
-        boolean found = false;
-        for (int i = 0; i < values.length; i++) {
-            if (values[i].equals(original)) {
-                values[i] = replacement;
-                found = true;
-            }
-        }
-        return found;
+        return dictionary.replace(column, original, replacement);
     }
 
     /**
@@ -17,7 +17,11 @@
 
 package org.deidentifier.arx;
 
+import java.util.List;
+
 import org.deidentifier.arx.aggregates.StatisticsBuilder;
+import org.deidentifier.arx.common.GroupifyIncremental;
+import org.deidentifier.arx.framework.data.ParsedDictionary;
 
 /**
  * Wrapper class that provides information to StatisticsBuilder.
@@ -121,6 +125,15 @@ public class DataHandleInternal {
         return handle.getDefinition();
     }
 
+    /**
+     * Returns the values of the given column, indexed by code
+     * @param column
+     * @return
+     */
+    public String[] getDictionary(int column) {
+        return handle.internalGetDictionary(column);
+    }
+
     /**
      * Delegate
      * @param column
@@ -151,6 +164,40 @@ public class DataHandleInternal {
         return handle.getDistinctValues(column, false, stop);
     }
     
+    /**
+     * Returns the code of the value in the given cell. Codes refer to the values returned
+     * by {@link #getParsedDictionary(int)}.
+     * @param row
+     * @param column
+     * @return
+     */
+    public int getEncodedValue(int row, int column) {
+        return handle.internalGetEncodedValue(row, column, false);
+    }
+
+    /**
+     * Returns the code of the value in the given cell. Codes refer to the values returned
+     * by {@link #getDictionary(int)}.
+     * @param row
+     * @param column
+     * @param ignoreSuppression
+     * @return
+     */
+    public int getEncodedValue(int row, int column, boolean ignoreSuppression) {
+        return handle.internalGetEncodedValue(row, column, ignoreSuppression);
+    }
+
+    /**
+     * Returns the number of occurrences of each code in the given column. Results are
+     * cached by the handle and must not be modified.
+     * @param column
+     * @param stop
+     * @return
+     */
+    public int[] getFrequencies(int column, InterruptHandler stop) {
+        return handle.internalGetFrequencies(column, false, stop);
+    }
+
     /**
      * Method
      * @param attribute
@@ -160,6 +207,17 @@ public class DataHandleInternal {
         return handle.getGeneralization(attribute);
     }
 
+    /**
+     * Groups the records by the values of the given columns. Results may be cached by the
+     * handle and must not be modified.
+     * @param columns
+     * @param stop
+     * @return
+     */
+    public GroupifyIncremental getGroupify(int[] columns, InterruptHandler stop) {
+        return handle.internalGetGroupify(columns, stop);
+    }
+
     /**
      * Returns the underlying handle. This should rarely be used.
      * @return
@@ -183,6 +241,25 @@ public class DataHandleInternal {
     public int getNumRows() {   
         return handle.getNumRows();
     }
+
+    /**
+     * Returns cached distinct values of a column in a specific order, null if there are none
+     * @param key
+     * @return
+     */
+    public String[] getOrderedValues(List<Object> key) {
+        return handle.internalGetOrderedValues(key);
+    }
+
+    /**
+     * Returns the values of the given column, parsed with the column's data type and
+     * indexed by code. Results are cached by the handle.
+     * @param column
+     * @return
+     */
+    public ParsedDictionary getParsedDictionary(int column) {
+        return handle.internalGetParsedDictionary(column);
+    }
   
     public StatisticsBuilder getStatisticsBuilder() {
         return this.handle.getStatistics();
@@ -261,4 +338,13 @@ public class DataHandleInternal {
             return this.handle instanceof DataHandleOutput;
         }
     }
+
+    /**
+     * Caches distinct values of a column in a specific order until the data changes
+     * @param key
+     * @param values
+     */
+    public void setOrderedValues(List<Object> key, String[] values) {
+        handle.internalSetOrderedValues(key, values);
+    }
 }
@@ -17,24 +17,31 @@
 
 package org.deidentifier.arx;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
-import java.util.HashSet;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.Set;
 
 import org.deidentifier.arx.ARXLattice.ARXNode;
 import org.deidentifier.arx.ARXLattice.Anonymity;
 import org.deidentifier.arx.DataHandleInternal.InterruptHandler;
 import org.deidentifier.arx.aggregates.StatisticsBuilder;
+import org.deidentifier.arx.common.GroupifyIncremental;
 import org.deidentifier.arx.framework.data.Data;
 import org.deidentifier.arx.framework.data.DataManager;
 import org.deidentifier.arx.framework.data.DataManager.AttributeTypeInternal;
 import org.deidentifier.arx.framework.data.DataMatrix;
 import org.deidentifier.arx.framework.data.Dictionary;
+import org.deidentifier.arx.io.ArrowDataOutput;
+import org.deidentifier.arx.io.CSVDataOutputEncoded;
+import org.deidentifier.arx.io.CSVSyntax;
+import org.deidentifier.arx.io.IExportEncoded;
+import org.deidentifier.arx.io.JDBCDataOutput;
 
 /**
  * An implementation of the class DataHandle for output data.
@@ -125,6 +132,15 @@ public class DataHandleOutput extends DataHandle {
     /** Flag determining whether this buffer is anonymous */
     private boolean      anonymous = false;
 
+    /** The version of the data, incremented whenever records are changed */
+    private int          version   = 0;
+
+    /** The version in which each record has been changed last, null if none has been changed */
+    private int[]        versions  = null;
+
+    /** Cached groups of records */
+    private GroupifyIncremental groupify = null;
+
     /**
      * Instantiates a new handle.
      * 
@@ -221,6 +237,34 @@ public class DataHandleOutput extends DataHandle {
         }
     }
 
+    /**
+     * Returns the indices of all records which have been changed after the given version, e.g. by
+     * local recoding. This can be used to maintain derived data incrementally.
+     *
+     * @param version the version
+     * @return the rows, in ascending order
+     */
+    public int[] getChangedRows(int version) {
+        checkRegistry();
+        if (versions == null || version >= this.version) {
+            return new int[0];
+        }
+        int count = 0;
+        for (int row = 0; row < versions.length; row++) {
+            if (versions[row] > version) {
+                count++;
+            }
+        }
+        int[] result = new int[count];
+        count = 0;
+        for (int row = 0; row < versions.length; row++) {
+            if (versions[row] > version) {
+                result[count++] = row;
+            }
+        }
+        return result;
+    }
+
     @Override
     public int getGeneralization(final String attribute) {
         checkRegistry();
@@ -273,6 +317,15 @@ public class DataHandleOutput extends DataHandle {
         return internalGetValue(row, col, false);
     }
 
+    /**
+     * Returns the version of the data. The version is incremented whenever records are changed.
+     *
+     * @return the version
+     */
+    public int getVersion() {
+        return this.version;
+    }
+
     @Override
     public boolean isOptimized() {
         return this.optimized;
@@ -293,6 +346,60 @@ public class DataHandleOutput extends DataHandle {
     public boolean replace(int column, String original, String replacement) {
         throw new UnsupportedOperationException("This operation is only supported by handles for data input");
     }
+
+    /**
+     * Writes the data in the Apache Arrow IPC format. Each column is written as a dictionary-encoded
+     * vector, which is created from the encoded representation of the data directly.
+     *
+     * @param output the output
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void save(final ArrowDataOutput output) throws IOException {
+        checkRegistry();
+        output.write(getEncodedView());
+    }
+
+    /**
+     * Writes the data into a database table. Values are taken from the encoded
+     * representation of the data directly.
+     *
+     * @param output the output
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void save(final JDBCDataOutput output) throws IOException {
+        checkRegistry();
+        output.write(getEncodedView());
+    }
+
+    /**
+     * Writes the data to a CSV file. In contrast to {@link #save(File, CSVSyntax)}, each distinct
+     * value is escaped and encoded only once, and rows are rendered from the encoded data directly.
+     *
+     * @param file the file
+     * @param charset the charset
+     * @param config the syntax
+     * @param threads the number of threads used for rendering rows
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void save(final File file, final Charset charset, final CSVSyntax config, final int threads) throws IOException {
+        checkRegistry();
+        new CSVDataOutputEncoded(file, charset, config, threads).write(getEncodedView());
+    }
+
+    /**
+     * Writes the data to a CSV file. In contrast to {@link #save(OutputStream, CSVSyntax)}, each distinct
+     * value is escaped and encoded only once, and rows are rendered from the encoded data directly.
+     *
+     * @param out the output stream
+     * @param charset the charset
+     * @param config the syntax
+     * @param threads the number of threads used for rendering rows
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void save(final OutputStream out, final Charset charset, final CSVSyntax config, final int threads) throws IOException {
+        checkRegistry();
+        new CSVDataOutputEncoded(out, charset, config, threads).write(getEncodedView());
+    }
     
     /**
      * Internal method: writes some data into the output stream
@@ -336,6 +443,46 @@ public class DataHandleOutput extends DataHandle {
         return converted;
     }
     
+    /**
+     * Returns an encoded view on the data, in which suppressed values are represented
+     * by an additional code per column
+     * 
+     * @return
+     */
+    private IExportEncoded getEncodedView() {
+
+        // Prepare
+        final int columns = header.length;
+        final String[][] values = new String[columns][];
+        for (int column = 0; column < columns; column++) {
+            values[column] = internalGetDictionary(column);
+        }
+        final int rows = getNumRows();
+
+        // Create view
+        return new IExportEncoded() {
+            @Override
+            public int getCode(int row, int column) {
+                return internalGetEncodedValue(row, column, false);
+            }
+
+            @Override
+            public String[] getHeader() {
+                return header;
+            }
+
+            @Override
+            public int getNumRows() {
+                return rows;
+            }
+
+            @Override
+            public String[] getValues(int column) {
+                return values[column];
+            }
+        };
+    }
+    
     /**
      * Initialization method
      * @param result
@@ -443,6 +590,8 @@ public class DataHandleOutput extends DataHandle {
         definition = null;
         header = null;
         node = null;
+        versions = null;
+        groupify = null;
     }
     
     @Override
@@ -508,17 +657,8 @@ public class DataHandleOutput extends DataHandle {
     @Override
     protected String[] getDistinctValues(final int col, final boolean ignoreSuppression, InterruptHandler handler) {
         
-        // Check
-        checkRegistry();
-        checkColumn(col);
-        
-        final Set<String> vals = new HashSet<String>();
-        for (int i = 0; i < getNumRows(); i++) {
-            handler.checkInterrupt();
-            vals.add(internalGetValue(i, col, ignoreSuppression));
-        }
-        handler.checkInterrupt();
-        return vals.toArray(new String[vals.size()]);
+        // Count codes
+        return internalGetDistinctValues(col, ignoreSuppression, handler);
     }
         
     /**
@@ -594,6 +734,76 @@ public class DataHandleOutput extends DataHandle {
         return 0;
     }
     
+    @Override
+    protected DataType<?> internalGetDataType(final int column) {
+        final int key = column * 2;
+        final int attributeType = inverseMap[key];
+
+        // Identifying attributes are removed from output data
+        if (attributeType == AttributeTypeInternal.IDENTIFYING) {
+            return null;
+        }
+        return dataTypes[attributeType][inverseMap[key + 1]];
+    }
+
+    /**
+     * Returns the values of the given column. Suppressed values are represented by an
+     * additional code, which is mapped to {@link DataType#ANY_VALUE}.
+     * 
+     * @param column the column
+     * @return the values
+     */
+    @Override
+    protected String[] internalGetDictionary(final int column) {
+        final int type = inverseMap[column * 2];
+        if (type == AttributeTypeInternal.IDENTIFYING) {
+            return new String[] { DataType.ANY_VALUE };
+        }
+        final int index = inverseMap[column * 2 + 1];
+        final Dictionary dictionary = inverseDictionaries[type];
+        final int size = dictionary.getNumValues(index);
+        final String[] result = new String[size + 1];
+        for (int code = 0; code < size; code++) {
+            result[code] = dictionary.getValue(index, code);
+        }
+        result[size] = DataType.ANY_VALUE;
+        return result;
+    }
+
+    @Override
+    protected int internalGetEncodedValue(final int row, final int column, final boolean ignoreSuppression) {
+        final int key = column * 2;
+        final int type = inverseMap[key];
+        if (type == AttributeTypeInternal.IDENTIFYING) {
+            return 0;
+        }
+        final int index = inverseMap[key + 1];
+        if (!ignoreSuppression && (suppressedAttributeTypes & (1 << type)) != 0 &&
+            ((outputGeneralized.getArray().get(row, 0) & Data.OUTLIER_MASK) != 0)) {
+            return inverseDictionaries[type].getNumValues(index);
+        }
+        return inverseData[type].get(row, index) & Data.REMOVE_OUTLIER_MASK;
+    }
+
+    /**
+     * Groups the records by the values of the given columns. The groups are cached and,
+     * when records have been changed, updated for the changed records only.
+     *
+     * @param columns the columns
+     * @param handler the handler
+     * @return the groups
+     */
+    @Override
+    protected synchronized GroupifyIncremental internalGetGroupify(int[] columns, InterruptHandler handler) {
+        checkRegistry();
+        DataHandleInternal handle = new DataHandleInternal(this);
+        if (groupify == null || !Arrays.equals(groupify.getColumns(), columns) ||
+            (groupify.getVersion() != version && !groupify.update(handle, getChangedRows(groupify.getVersion()), version, handler))) {
+            groupify = new GroupifyIncremental(handle, columns.clone(), version, handler);
+        }
+        return groupify;
+    }
+
     /**
      * Gets the value internal.
      * 
@@ -622,8 +832,7 @@ public class DataHandleOutput extends DataHandle {
             }
             
             final int value = data.get(row, index) & Data.REMOVE_OUTLIER_MASK;
-            final String[][] dictionary = inverseDictionaries[type].getMapping();
-            return dictionary[index][value];
+            return inverseDictionaries[type].getValue(index, value);
         }
     }
     
@@ -647,22 +856,12 @@ public class DataHandleOutput extends DataHandle {
         final int key = column * 2;
         int type = inverseMap[key];
         if (type >= inverseDictionaries.length) return false;
-        String[][] dictionary = inverseDictionaries[type].getMapping();
+        Dictionary dictionary = inverseDictionaries[type];
         int index = inverseMap[key + 1];
-        if (index >= dictionary.length) return false;
-        String[] values = dictionary[index];
+        if (index >= dictionary.getNumDimensions()) return false;
         
         // Replace
-        boolean found = false;
-        for (int i = 0; i < values.length; i++) {
-            if (values[i].equals(original)) {
-                values[i] = replacement;
-                found = true;
-            }
-        }
-        
-        // Return
-        return found;
+        return dictionary.replace(index, original, replacement);
     }
     
     /**
@@ -680,6 +879,18 @@ public class DataHandleOutput extends DataHandle {
         if (outputMicroaggregated.getArray().getNumRows() != 0) {
             outputMicroaggregated.getArray().swap(row1, row2);
         }
+
+        // Swap versions
+        if (versions != null) {
+            int version = versions[row1];
+            versions[row1] = versions[row2];
+            versions[row2] = version;
+        }
+
+        // Swap groups
+        if (groupify != null) {
+            groupify.swap(row1, row2);
+        }
     }
     
 
@@ -696,6 +907,23 @@ public class DataHandleOutput extends DataHandle {
     protected void setOptimized(boolean optimized) {
         this.optimized = true;
     }
+
+    /**
+     * Marks the given rows as changed and increments the version of the data
+     *
+     * @param rows the rows
+     */
+    protected synchronized void setRowsChanged(RowSet rows) {
+        if (versions == null) {
+            versions = new int[getNumRows()];
+        }
+        version++;
+        for (int row = 0; row < versions.length; row++) {
+            if (rows.contains(row)) {
+                versions[row] = version;
+            }
+        }
+    }
     
 
     /**
@@ -16,12 +16,11 @@
  */
 package org.deidentifier.arx;
 
-import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Set;
 
 import org.deidentifier.arx.DataHandleInternal.InterruptHandler;
 import org.deidentifier.arx.aggregates.StatisticsBuilder;
+import org.deidentifier.arx.framework.data.ParsedDictionary;
 
 
 /**
@@ -177,17 +176,8 @@ public class DataHandleSubset extends DataHandle {
     @Override
     protected String[] getDistinctValues(int column, boolean ignoreSuppression, InterruptHandler handler) {
 
-        // Check
-        checkRegistry();
-        checkColumn(column);
-
-        final Set<String> vals = new HashSet<String>();
-        for (int i = 0; i < getNumRows(); i++) {
-            handler.checkInterrupt();
-            vals.add(internalGetValue(i, column, ignoreSuppression));
-        }
-        handler.checkInterrupt();
-        return vals.toArray(new String[vals.size()]);
+        // Count codes
+        return internalGetDistinctValues(column, ignoreSuppression, handler);
     }
 
     /**
@@ -204,6 +194,26 @@ public class DataHandleSubset extends DataHandle {
         return source.internalCompare(this.subset.getArray()[row1], this.subset.getArray()[row2], columns, ascending);
     }
     
+    @Override
+    protected DataType<?> internalGetDataType(int column) {
+        return source.internalGetDataType(column);
+    }
+
+    @Override
+    protected String[] internalGetDictionary(int column) {
+        return source.internalGetDictionary(column);
+    }
+
+    @Override
+    protected int internalGetEncodedValue(int row, int column, boolean ignoreSuppression) {
+        return source.internalGetEncodedValue(this.subset.getArray()[row], column, ignoreSuppression);
+    }
+
+    @Override
+    protected ParsedDictionary internalGetParsedDictionary(int column) {
+        return source.internalGetParsedDictionary(column);
+    }
+
     @Override
     protected String internalGetValue(int row, int col, boolean ignoreSuppression) {
         return source.internalGetValue(this.subset.getArray()[row], col, ignoreSuppression);
@@ -17,14 +17,18 @@
 
 package org.deidentifier.arx;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
 
 import org.deidentifier.arx.ARXLattice.ARXNode;
+import org.deidentifier.arx.common.ParallelExecution;
 
-import cern.colt.GenericSorting;
+import cern.colt.Sorting;
 import cern.colt.Swapper;
 import cern.colt.function.IntComparator;
 
@@ -35,6 +39,9 @@ import cern.colt.function.IntComparator;
  */
 class DataRegistry {
 
+    /** Minimal number of rows for sorting in parallel. */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
     /** The input handle, if any. */
     private DataHandleInput input;
     
@@ -67,6 +74,9 @@ class DataRegistry {
         if (!output.isEmpty()) {
             replaced |= output.values().iterator().next().internalReplace(column, original, replacement);
         }
+        if (replaced) {
+            resetCaches();
+        }
         return replaced;
     }
     
@@ -99,6 +109,72 @@ class DataRegistry {
         return subset;
     }
     
+    /**
+     * Stable sort of the given array with the given comparator. Large arrays are sorted in parallel.
+     *
+     * @param array
+     * @param comparator
+     */
+    private void sort(final int[] array, final IntComparator comparator) {
+
+        // Sequential
+        int threads = ParallelExecution.getNumThreads();
+        if (array.length < PARALLEL_THRESHOLD || threads <= 1) {
+            Sorting.mergeSort(array, 0, array.length, comparator);
+            return;
+        }
+
+        // Sort runs in parallel
+        int[] bounds = new int[threads + 1];
+        for (int i = 0; i <= threads; i++) {
+            bounds[i] = (int) ((long) array.length * i / threads);
+        }
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < threads; i++) {
+            final int start = bounds[i];
+            final int end = bounds[i + 1];
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    Sorting.mergeSort(array, start, end, comparator);
+                    return null;
+                }
+            });
+        }
+        ParallelExecution.execute(tasks);
+
+        // Merge adjacent runs, preferring the left run for stability
+        int[] source = array;
+        int[] target = new int[array.length];
+        while (bounds.length > 2) {
+            int[] merged = new int[(bounds.length - 1 + 1) / 2 + 1];
+            int runs = 0;
+            for (int i = 0; i < bounds.length - 1; i += 2) {
+                int start = bounds[i];
+                int middle = bounds[i + 1];
+                int end = i + 2 < bounds.length ? bounds[i + 2] : middle;
+                int left = start;
+                int right = middle;
+                for (int index = start; index < end; index++) {
+                    if (right >= end || (left < middle && comparator.compare(source[left], source[right]) <= 0)) {
+                        target[index] = source[left++];
+                    } else {
+                        target[index] = source[right++];
+                    }
+                }
+                merged[runs++] = start;
+            }
+            merged[runs] = array.length;
+            bounds = merged;
+            int[] temp = source;
+            source = target;
+            target = temp;
+        }
+        if (source != array) {
+            System.arraycopy(source, 0, array, 0, array.length);
+        }
+    }
+
     /**
      * Sort.
      *
@@ -116,15 +192,8 @@ class DataRegistry {
                          final boolean ascending,
                          final int... columns) {
 
-        final DataHandle outer = handle;
         final DataHandleSubset subset = getSubset();
         
-        final IntComparator c = new IntComparator() {
-            @Override
-            public int compare(final int arg0, final int arg1) {
-                return outer.internalCompare(arg0, arg1, columns, ascending);
-            }
-        };
         final Swapper s = new Swapper() {
             @Override
             public void swap(final int arg0, final int arg1) {
@@ -135,13 +204,81 @@ class DataRegistry {
             }
         };
         
-        GenericSorting.mergeSort(from, to, c, s);
+        sortByRanks(handle, s, from, to, ascending, columns);
         
         if (subset != null){
             subset.internalRebuild();
         }
     }
 
+    /**
+     * Sorts the given range of rows by comparing precomputed ranks instead of values. The resulting
+     * permutation is applied with at most one call to the swapper per row. The order is stable.
+     *
+     * @param handle
+     * @param swapper
+     * @param from
+     * @param to
+     * @param ascending
+     * @param columns
+     */
+    private void sortByRanks(final DataHandle handle,
+                             final Swapper swapper,
+                             final int from,
+                             final int to,
+                             final boolean ascending,
+                             final int... columns) {
+
+        // Prepare keys
+        List<int[]> list = new ArrayList<int[]>();
+        for (int column : columns) {
+            int[] ranks = handle.internalGetRanks(column, from, to);
+            if (ranks != null) {
+                list.add(ranks);
+            }
+        }
+        final int[][] keys = list.toArray(new int[list.size()][]);
+        final IntComparator comparator = new IntComparator() {
+            @Override
+            public int compare(final int arg0, final int arg1) {
+                for (int[] key : keys) {
+                    int cmp = Integer.compare(key[arg0], key[arg1]);
+                    if (cmp != 0) {
+                        return ascending ? cmp : -cmp;
+                    }
+                }
+                return 0;
+            }
+        };
+
+        // Sort row indices
+        int[] order = new int[to - from];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        sort(order, comparator);
+
+        // Apply permutation
+        int[] position = new int[order.length];
+        int[] row = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            position[i] = i;
+            row[i] = i;
+        }
+        for (int i = 0; i < order.length; i++) {
+            int target = order[i];
+            int current = position[target];
+            if (current != i) {
+                swapper.swap(from + i, from + current);
+                int displaced = row[i];
+                row[current] = displaced;
+                position[displaced] = current;
+                row[i] = target;
+                position[target] = i;
+            }
+        }
+    }
+
     /**
      * Sort.
      *
@@ -160,12 +297,6 @@ class DataRegistry {
                               final int... columns) {
 
         final DataHandleSubset outer = handle;
-        final IntComparator c = new IntComparator() {
-            @Override
-            public int compare(final int arg0, final int arg1) {
-                return outer.internalCompare(arg0, arg1, columns, ascending);
-            }
-        };
         final Swapper s = new Swapper() {
             @Override
             public void swap(final int arg0, final int arg1) {
@@ -176,7 +307,7 @@ class DataRegistry {
         };
         
         // No need to swap and rebuild the subset views
-        GenericSorting.mergeSort(from, to, c, s);
+        sortByRanks(handle, s, from, to, ascending, columns);
     }
     
     /**
@@ -323,6 +454,22 @@ class DataRegistry {
         }
     }
     
+    /**
+     * Clears the caches of all handles. Called when values are replaced or the data is recoded.
+     */
+    protected void resetCaches() {
+        input.resetCaches();
+        if (inputSubset != null) {
+            inputSubset.resetCaches();
+        }
+        for (DataHandleOutput handle : output.values()) {
+            handle.resetCaches();
+        }
+        for (DataHandleSubset handle : outputSubset.values()) {
+            handle.resetCaches();
+        }
+    }
+    
     /**
      * Removes the association to all handles, but the input handle.
      */
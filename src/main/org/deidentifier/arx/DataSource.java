@@ -332,6 +332,45 @@ public class DataSource { // NO_UCD
         }
     }
     
+    /**
+     * Sets the number of rows fetched from the database at once. Only supported by JDBC sources.
+     *
+     * @param fetchSize
+     */
+    public void setFetchSize(int fetchSize) {
+        if (!(config instanceof ImportConfigurationJDBC)) {
+            throw new UnsupportedOperationException("This operation is only supported by JDBC sources");
+        }
+        ((ImportConfigurationJDBC) config).setFetchSize(fetchSize);
+    }
+    
+    /**
+     * Splits the table into the given number of ranges of values of the given numeric column,
+     * which will be read concurrently. Only supported by JDBC sources.
+     *
+     * @param column
+     * @param partitions
+     */
+    public void setPartitioning(String column, int partitions) {
+        if (!(config instanceof ImportConfigurationJDBC)) {
+            throw new UnsupportedOperationException("This operation is only supported by JDBC sources");
+        }
+        ((ImportConfigurationJDBC) config).setPartitioning(column, partitions);
+    }
+
+    /**
+     * Sets whether XLSX files should be read with a streaming parser, which does not create an
+     * in-memory model of the workbook. Only supported by Excel sources.
+     *
+     * @param streaming
+     */
+    public void setStreaming(boolean streaming) {
+        if (!(config instanceof ImportConfigurationExcel)) {
+            throw new UnsupportedOperationException("This operation is only supported by Excel sources");
+        }
+        ((ImportConfigurationExcel) config).setStreaming(streaming);
+    }
+
     /**
      * Returns the configuration.
      *
@@ -0,0 +1,459 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.deidentifier.arx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import org.apache.commons.math3.distribution.NormalDistribution;
+import org.deidentifier.arx.DataType.DataTypeDescription;
+import org.deidentifier.arx.common.ParallelExecution;
+
+/**
+ * This class detects the data types matching the values of columns. All candidate types and formats
+ * are evaluated within a single pass over the values, and candidates are dropped as soon as they can
+ * no longer reach the threshold. Optionally, only a random sample of the values is evaluated, in which
+ * case a confidence interval for the relative number of matching values is reported. Multiple columns
+ * can be processed in parallel.
+ *
+ * @author Fabian Prasser
+ */
+public class DataTypeDetector {
+
+    /**
+     * A data type together with the relative number of values matching it.
+     *
+     * @author Fabian Prasser
+     */
+    public static class Match {
+
+        /** The type */
+        private final DataType<?> type;
+        /** The relative number of matching values */
+        private final double      matching;
+        /** Lower bound of the confidence interval */
+        private final double      lower;
+        /** Upper bound of the confidence interval */
+        private final double      upper;
+
+        /**
+         * Creates a new instance
+         * @param type
+         * @param matching
+         * @param lower
+         * @param upper
+         */
+        private Match(DataType<?> type, double matching, double lower, double upper) {
+            this.type = type;
+            this.matching = matching;
+            this.lower = lower;
+            this.upper = upper;
+        }
+
+        /**
+         * Returns the lower bound of the confidence interval. Equals the matching if all values have been evaluated.
+         * @return
+         */
+        public double getLower() {
+            return lower;
+        }
+
+        /**
+         * Returns the relative number of matching values
+         * @return
+         */
+        public double getMatching() {
+            return matching;
+        }
+
+        /**
+         * Returns the data type
+         * @return
+         */
+        public DataType<?> getType() {
+            return type;
+        }
+
+        /**
+         * Returns the upper bound of the confidence interval. Equals the matching if all values have been evaluated.
+         * @return
+         */
+        public double getUpper() {
+            return upper;
+        }
+    }
+
+    /** The classes evaluated, in the order in which they are preferred */
+    private static final Class<?>[] CLASSES    = { Long.class, Date.class, Double.class, String.class };
+
+    /** The locale */
+    private Locale                  locale     = Locale.getDefault();
+    /** Relative minimal number of values that must match to include a data type in the results */
+    private double                  threshold  = 0.8d;
+    /** The maximal number of values evaluated per column, 0 means all */
+    private int                     sampleSize = 0;
+    /** The confidence level for sampling */
+    private double                  confidence = 0.95d;
+    /** The number of threads */
+    private int                     threads    = ParallelExecution.getNumThreads();
+    /** The seed for sampling */
+    private long                    seed       = 0xDECAFBADL;
+
+    /**
+     * Creates a new instance using the default locale and a threshold of 80%
+     */
+    public DataTypeDetector() {
+        // Empty by design
+    }
+
+    /**
+     * Creates a new instance
+     * @param locale
+     * @param threshold
+     */
+    public DataTypeDetector(Locale locale, double threshold) {
+        this.locale = locale;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Returns the types matching the given values, sorted by the relative number of matching values.
+     * The string data type is always included.
+     *
+     * @param values
+     * @return
+     */
+    public List<Match> detect(String[] values) {
+        List<Match> result = detect(values, CLASSES);
+        Collections.sort(result, new Comparator<Match>() {
+            public int compare(Match o1, Match o2) {
+
+                // Sort by matching quality
+                int cmp = Double.compare(o1.matching, o2.matching);
+                if (cmp != 0) return -cmp;
+
+                // Sort by order
+                return Integer.compare(getOrder(o1.type), getOrder(o2.type));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns the types of the given wrapped class matching the given values, in the order of the example formats
+     * @param values
+     * @param clazz
+     * @return
+     */
+    public <U> List<Match> detect(String[] values, Class<U> clazz) {
+        return detect(values, new Class<?>[] { clazz });
+    }
+
+    /**
+     * Returns the types matching the values of each of the given columns. Columns are processed with
+     * the configured number of threads.
+     *
+     * @param values
+     * @return
+     */
+    public List<List<Match>> detect(final String[][] values) {
+
+        // Prepare
+        List<Callable<List<Match>>> tasks = new ArrayList<Callable<List<Match>>>();
+        for (final String[] column : values) {
+            tasks.add(new Callable<List<Match>>() {
+                @Override
+                public List<Match> call() throws Exception {
+                    return detect(column);
+                }
+            });
+        }
+
+        // Execute
+        return ParallelExecution.execute(tasks, threads);
+    }
+
+    /**
+     * Returns the confidence level used for sampling
+     * @return
+     */
+    public double getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * Returns the locale
+     * @return
+     */
+    public Locale getLocale() {
+        return locale;
+    }
+
+    /**
+     * Returns the number of threads
+     * @return
+     */
+    public int getNumThreads() {
+        return threads;
+    }
+
+    /**
+     * Returns the maximal number of values evaluated per column, 0 means all
+     * @return
+     */
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * Returns the seed used for sampling
+     * @return
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the relative minimal number of values that must match to include a data type in the results
+     * @return
+     */
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Sets the confidence level used for sampling
+     * @param confidence
+     * @return
+     */
+    public DataTypeDetector setConfidence(double confidence) {
+        if (confidence <= 0d || confidence >= 1d) {
+            throw new IllegalArgumentException("Confidence level must be in ]0, 1[");
+        }
+        this.confidence = confidence;
+        return this;
+    }
+
+    /**
+     * Sets the locale
+     * @param locale
+     * @return
+     */
+    public DataTypeDetector setLocale(Locale locale) {
+        this.locale = locale;
+        return this;
+    }
+
+    /**
+     * Sets the number of threads. The default is the number of threads configured
+     * for {@link ParallelExecution}.
+     * @param threads
+     * @return
+     */
+    public DataTypeDetector setNumThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive");
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Sets the maximal number of values evaluated per column, 0 means all
+     * @param sampleSize
+     * @return
+     */
+    public DataTypeDetector setSampleSize(int sampleSize) {
+        if (sampleSize < 0) {
+            throw new IllegalArgumentException("Sample size must not be negative");
+        }
+        this.sampleSize = sampleSize;
+        return this;
+    }
+
+    /**
+     * Sets the seed used for sampling
+     * @param seed
+     * @return
+     */
+    public DataTypeDetector setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Sets the relative minimal number of values that must match to include a data type in the results
+     * @param threshold
+     * @return
+     */
+    public DataTypeDetector setThreshold(double threshold) {
+        this.threshold = threshold;
+        return this;
+    }
+
+    /**
+     * Returns a key identifying all parameters which influence the result
+     * @return
+     */
+    String getKey() {
+        return locale + ";" + threshold + ";" + sampleSize + ";" + confidence + ";" + seed;
+    }
+
+    /**
+     * Evaluates all types of the given classes in one pass
+     * @param values
+     * @param classes
+     * @return
+     */
+    private List<Match> detect(String[] values, Class<?>[] classes) {
+
+        // Candidates
+        List<DataType<?>> candidates = getCandidates(classes);
+        int size = candidates.size();
+
+        // Sample
+        String[] sample = getSample(values);
+        int n = sample.length;
+
+        // Evaluate
+        int[] failures = new int[size];
+        int[] active = new int[size];
+        int numActive = 0;
+        for (int i = 0; i < size; i++) {
+            if (!(candidates.get(i) instanceof DataType.ARXString)) {
+                active[numActive++] = i;
+            }
+        }
+        for (int i = 0; i < n && numActive > 0; i++) {
+            String value = sample[i];
+            for (int j = 0; j < numActive;) {
+                int candidate = active[j];
+                if (!candidates.get(candidate).isValid(value) &&
+                    (double) (n - ++failures[candidate]) / (double) n < threshold) {
+                    active[j] = active[--numActive];
+                } else {
+                    j++;
+                }
+            }
+        }
+
+        // Collect
+        double z = n < values.length ? new NormalDistribution().inverseCumulativeProbability(1d - (1d - confidence) / 2d) : 0d;
+        List<Match> result = new ArrayList<Match>();
+        for (int i = 0; i < size; i++) {
+            DataType<?> type = candidates.get(i);
+            if (type instanceof DataType.ARXString) {
+                result.add(new Match(type, 1d, 1d, 1d));
+                continue;
+            }
+            double matching = (double) (n - failures[i]) / (double) n;
+            if (matching >= threshold) {
+                if (n < values.length) {
+                    result.add(getMatch(type, matching, n, values.length, z));
+                } else {
+                    result.add(new Match(type, matching, matching, matching));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates the candidate types for the given classes
+     * @param classes
+     * @return
+     */
+    private List<DataType<?>> getCandidates(Class<?>[] classes) {
+        List<DataType<?>> result = new ArrayList<DataType<?>>();
+        for (Class<?> clazz : classes) {
+            if (clazz == String.class) {
+                result.add(DataType.STRING);
+                continue;
+            }
+            DataTypeDescription<?> description = DataType.list(clazz);
+            if (description.hasFormat()) {
+                for (String format : description.getExampleFormats()) {
+                    result.add(description.newInstance(format, locale));
+                }
+            } else {
+                result.add(description.newInstance());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a match with a Wilson score interval. Sampling without replacement is accounted for by
+     * applying the finite population correction to the sample size.
+     * @param type
+     * @param matching
+     * @param n
+     * @param population
+     * @param z
+     * @return
+     */
+    private Match getMatch(DataType<?> type, double matching, int n, int population, double z) {
+        double size = (double) n * (double) (population - 1) / (double) (population - n);
+        double z2 = z * z;
+        double denominator = 1d + z2 / size;
+        double center = (matching + z2 / (2d * size)) / denominator;
+        double width = z * Math.sqrt(matching * (1d - matching) / size + z2 / (4d * size * size)) / denominator;
+        return new Match(type, matching, Math.max(0d, center - width), Math.min(1d, center + width));
+    }
+
+    /**
+     * Returns the position of the type's class in the order of preference
+     * @param type
+     * @return
+     */
+    private int getOrder(DataType<?> type) {
+        Class<?> clazz = type.getDescription().getWrappedClass();
+        for (int i = 0; i < CLASSES.length; i++) {
+            if (CLASSES[i] == clazz) {
+                return i;
+            }
+        }
+        return CLASSES.length;
+    }
+
+    /**
+     * Draws a random sample of the values without replacement, if required
+     * @param values
+     * @return
+     */
+    private String[] getSample(String[] values) {
+        if (sampleSize == 0 || sampleSize >= values.length) {
+            return values;
+        }
+        String[] sample = values.clone();
+        Random random = new Random(seed);
+        for (int i = 0; i < sampleSize; i++) {
+            int j = i + random.nextInt(sample.length - i);
+            String temp = sample[i];
+            sample[i] = sample[j];
+            sample[j] = temp;
+        }
+        return Arrays.copyOf(sample, sampleSize);
+    }
+}
@@ -19,19 +19,20 @@ package org.deidentifier.arx.aggregates;
 
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
-import org.apache.commons.math3.stat.descriptive.moment.GeometricMean;
+import org.deidentifier.arx.ARXClassificationConfiguration;
 import org.deidentifier.arx.ARXConfiguration;
-import org.deidentifier.arx.ARXLogisticRegressionConfiguration;
 import org.deidentifier.arx.DataHandle;
 import org.deidentifier.arx.DataHandleInternal;
 import org.deidentifier.arx.DataHandleInternal.InterruptHandler;
@@ -40,13 +41,18 @@ import org.deidentifier.arx.DataType;
 import org.deidentifier.arx.DataType.ARXString;
 import org.deidentifier.arx.DataType.DataTypeWithRatioScale;
 import org.deidentifier.arx.aggregates.StatisticsContingencyTable.Entry;
+import org.deidentifier.arx.aggregates.StatisticsSummary.StatisticsSummaryNumeric;
 import org.deidentifier.arx.aggregates.StatisticsSummary.StatisticsSummaryOrdinal;
-import org.deidentifier.arx.common.Groupify;
-import org.deidentifier.arx.common.Groupify.Group;
-import org.deidentifier.arx.common.TupleWrapper;
+import org.deidentifier.arx.aggregates.quality.QualityModelType;
+import org.deidentifier.arx.common.GroupifyIncremental;
+import org.deidentifier.arx.common.ParallelExecution;
 import org.deidentifier.arx.common.WrappedBoolean;
 import org.deidentifier.arx.common.WrappedInteger;
 import org.deidentifier.arx.exceptions.ComputationInterruptedException;
+import org.deidentifier.arx.framework.data.ParsedDictionary;
+
+import com.carrotsearch.hppc.LongDoubleOpenHashMap;
+import com.carrotsearch.hppc.LongIntOpenHashMap;
 
 import cern.colt.GenericSorting;
 import cern.colt.Swapper;
@@ -59,6 +65,9 @@ import cern.colt.function.IntComparator;
  */
 public class StatisticsBuilder {
 
+    /** Number of rows from which on data is processed in parallel */
+    private static final int        PARALLEL_THRESHOLD = 1 << 16;
+
     /** The handle. */
     private DataHandleInternal      handle;
 
@@ -83,7 +92,7 @@ public class StatisticsBuilder {
      * @param config - The configuration
      * @throws ParseException
      */
-    public StatisticsClassification getClassificationPerformance(String clazz, ARXLogisticRegressionConfiguration config) throws ParseException {
+    public StatisticsClassification getClassificationPerformance(String clazz, ARXClassificationConfiguration config) throws ParseException {
         return getClassificationPerformance(new String[] {}, clazz, config);
     }
     
@@ -96,7 +105,7 @@ public class StatisticsBuilder {
      */
     public StatisticsClassification getClassificationPerformance(String[] features,
                                                                  String clazz,
-                                                                 ARXLogisticRegressionConfiguration config) throws ParseException {
+                                                                 ARXClassificationConfiguration config) throws ParseException {
     
         // Reset stop flag
         interrupt.value = false;
@@ -244,10 +253,9 @@ public class StatisticsBuilder {
             values2 = table.values2;
         }
         
-        // Create entry set
-        final Map<Entry, Double> entries = new HashMap<Entry, Double>();
+        // Create sparse grid, keyed by both indexes
+        LongDoubleOpenHashMap cells = new LongDoubleOpenHashMap();
         Iterator<Entry> iter = table.iterator;
-        double max = 0d;
         while (iter.hasNext()) {
             checkInterrupt();
             Entry old = iter.next();
@@ -255,50 +263,25 @@ public class StatisticsBuilder {
             int index2 = (int) Math.round((double) old.value2 * factor2);
             index1 = index1 < size1 ? index1 : size1 - 1;
             index2 = index2 < size2 ? index2 : size2 - 1;
-            Entry entry = new Entry(index1, index2);
-            Double previous = entries.get(entry);
-            double value = previous != null ? previous + old.frequency : old.frequency;
-            max = Math.max(value, max);
-            entries.put(entry, value);
+            cells.addTo(((long) index1 << 32) | index2, old.frequency);
         }
         
-        // Create iterator
-        final Iterator<Entry> internal = entries.keySet().iterator();
-        final Iterator<Entry> iterator = new Iterator<Entry>() {
-            
-            private Map<Entry, Double> _entries  = entries;
-            private Iterator<Entry>    _internal = internal;
-            
-            @Override
-            public boolean hasNext() {
-                
-                if (_internal == null) return false;
-                boolean result = _internal.hasNext();
-                
-                // Try to release resources as early as possible
-                if (!result) {
-                    _internal = null;
-                    _entries = null;
-                }
-                return result;
-            }
-            
-            @Override
-            public Entry next() {
-                if (_internal == null) return null;
-                Entry e = _internal.next();
-                e.frequency = _entries.get(e);
-                return e;
-            }
-            
-            @Override
-            public void remove() {
-                throw new UnsupportedOperationException();
+        // Extract
+        final long[] keys = new long[cells.size()];
+        final double[] frequencies = new double[cells.size()];
+        double max = 0d;
+        int size = 0;
+        for (int i = 0; i < cells.allocated.length; i++) {
+            if (cells.allocated[i]) {
+                keys[size] = cells.keys[i];
+                frequencies[size] = cells.values[i];
+                max = Math.max(max, frequencies[size]);
+                size++;
             }
-        };
+        }
         
         // Result result
-        return new StatisticsContingencyTable(values1, values2, table.count, max, iterator);
+        return new StatisticsContingencyTable(values1, values2, table.count, max, getContingencyTableIterator(keys, frequencies, size));
     }
     
     /**
@@ -315,78 +298,87 @@ public class StatisticsBuilder {
                                                           String[][] hierarchy1,
                                                           int column2,
                                                           String[][] hierarchy2) {
+        return getContingencyTable(column1, hierarchy1, column2, hierarchy2, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Returns a contingency table for the given columns, which only contains the given number of most
+     * frequent cells. The order for string data items is derived from the provided hierarchies. Indexes
+     * and frequencies of the cells refer to the complete table.
+     * 
+     * @param column1 The first column
+     * @param hierarchy1 The hierarchy for the first column, may be null
+     * @param column2 The second column
+     * @param hierarchy2 The hierarchy for the second column, may be null
+     * @param limit The maximal number of cells
+     * @return
+     */
+    public StatisticsContingencyTable getContingencyTable(int column1,
+                                                          String[][] hierarchy1,
+                                                          int column2,
+                                                          String[][] hierarchy2,
+                                                          int limit) {
         
         // Reset stop flag
         interrupt.value = false;
         
+        // Check
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be > 0");
+        }
+        
         // Init
         String[] values1 = getDistinctValuesOrdered(column1, hierarchy1);
         String[] values2 = getDistinctValuesOrdered(column2, hierarchy2);
         
-        // Create maps of indexes
-        Map<String, Integer> indexes1 = new HashMap<String, Integer>();
-        for (int i = 0; i < values1.length; i++) {
-            checkInterrupt();
-            indexes1.put(values1[i], i);
-        }
-        Map<String, Integer> indexes2 = new HashMap<String, Integer>();
-        for (int i = 0; i < values2.length; i++) {
-            checkInterrupt();
-            indexes2.put(values2[i], i);
+        // Count cells
+        LongIntOpenHashMap cells = getContingencyCells(column1, values1, column2, values2);
+        
+        // Extract
+        final long[] keys = new long[cells.size()];
+        final int[] counts = new int[cells.size()];
+        int max = 0;
+        int size = 0;
+        for (int i = 0; i < cells.allocated.length; i++) {
+            if (cells.allocated[i]) {
+                keys[size] = cells.keys[i];
+                counts[size] = cells.values[i];
+                max = Math.max(max, counts[size]);
+                size++;
+            }
         }
         
-        // Create entry set
-        int max = Integer.MIN_VALUE;
-        final Map<Entry, Integer> entries = new HashMap<Entry, Integer>();
-        for (int row = 0; row < handle.getNumRows(); row++) {
+        // Select most frequent cells
+        if (size > limit) {
             checkInterrupt();
-            int index1 = indexes1.get(handle.getValue(row, column1));
-            int index2 = indexes2.get(handle.getValue(row, column2));
-            Entry entry = new Entry(index1, index2);
-            Integer previous = entries.get(entry);
-            int value = previous != null ? previous + 1 : 1;
-            max = Math.max(max, value);
-            entries.put(entry, value);
+            GenericSorting.quickSort(0, size, new IntComparator() {
+                @Override
+                public int compare(int arg0, int arg1) {
+                    return counts[arg1] < counts[arg0] ? -1 : (counts[arg1] == counts[arg0] ? 0 : 1);
+                }
+            }, new Swapper() {
+                @Override
+                public void swap(int arg0, int arg1) {
+                    long key = keys[arg0];
+                    keys[arg0] = keys[arg1];
+                    keys[arg1] = key;
+                    int count = counts[arg0];
+                    counts[arg0] = counts[arg1];
+                    counts[arg1] = count;
+                }
+            });
+            size = limit;
         }
         
-        // Create iterator
-        final int count = handle.getNumRows();
-        final Iterator<Entry> internal = entries.keySet().iterator();
-        final Iterator<Entry> iterator = new Iterator<Entry>() {
-            
-            private Map<Entry, Integer> _entries  = entries;
-            private Iterator<Entry>     _internal = internal;
-            
-            @Override
-            public boolean hasNext() {
-                
-                if (_internal == null) return false;
-                boolean result = _internal.hasNext();
-                
-                // Try to release resources as early as possible
-                if (!result) {
-                    _internal = null;
-                    _entries = null;
-                }
-                return result;
-            }
-            
-            @Override
-            public Entry next() {
-                if (_internal == null) return null;
-                Entry e = _internal.next();
-                e.frequency = (double) _entries.get(e) / (double) count;
-                return e;
-            }
-            
-            @Override
-            public void remove() {
-                throw new UnsupportedOperationException();
-            }
-        };
+        // Convert
+        int count = handle.getNumRows();
+        double[] frequencies = new double[size];
+        for (int i = 0; i < size; i++) {
+            frequencies[i] = (double) counts[i] / (double) count;
+        }
         
         // Result result
-        return new StatisticsContingencyTable(values1, values2, count, (double) max / (double) count, iterator);
+        return new StatisticsContingencyTable(values1, values2, count, (double) max / (double) count, getContingencyTableIterator(keys, frequencies, size));
     }
     
     /**
@@ -442,12 +434,21 @@ public class StatisticsBuilder {
         // Reset stop flag
         interrupt.value = false;
         
-        // Obtain list and data type
-        final String[] list = getDistinctValues(column);
+        // Obtain data type
         final String attribute = handle.getAttributeName(column);
         final DataType<?> datatype = handle.getDataType(attribute);
         final int level = handle.getGeneralization(attribute);
         
+        // Check cache
+        List<Object> key = Arrays.<Object> asList(column, hierarchy, datatype, handle.getBaseDataType(attribute), level, handle.isOptimized());
+        String[] cached = handle.getOrderedValues(key);
+        if (cached != null) {
+            return cached;
+        }
+        
+        // Obtain list
+        final String[] list = getDistinctValues(column);
+        
         // Sort by data type
         if (hierarchy == null || level == 0) {
             sort(list, datatype);
@@ -503,6 +504,7 @@ public class StatisticsBuilder {
         }
         
         // Done
+        handle.setOrderedValues(key, list);
         return list;
     }
     
@@ -526,17 +528,13 @@ public class StatisticsBuilder {
             }
         }
 
-        // Calculate equivalence classes
-        int capacity = handle.getNumRows() / 10;
-        capacity = capacity > 10 ? capacity : 10;
-        Groupify<TupleWrapper> map = new Groupify<TupleWrapper>(capacity);
-        int numRows = handle.getNumRows();
-        for (int row = 0; row < numRows; row++) {
-
-            TupleWrapper tuple = new TupleWrapper(handle, indices, row, false);
-            map.add(tuple);
-            checkInterrupt();
-        }
+        // Calculate equivalence classes from codes, which are maintained by the handle
+        GroupifyIncremental map = handle.getGroupify(indices, new InterruptHandler() {
+            @Override
+            public void checkInterrupt() {
+                StatisticsBuilder.this.checkInterrupt();
+            }
+        });
 
         // Now compute the following values
         double averageEquivalenceClassSize = 0d;
@@ -546,35 +544,36 @@ public class StatisticsBuilder {
         int minimalEquivalenceClassSize = Integer.MAX_VALUE;
         int minimalEquivalenceClassSizeIncludingOutliers = Integer.MAX_VALUE;
         int numberOfEquivalenceClasses = 0;
-        int numberOfEquivalenceClassesIncludingOutliers = map.size();
+        int numberOfEquivalenceClassesIncludingOutliers = map.getNumberOfClasses();
         int numberOfTuples = 0;
         int numberOfOutlyingTuples = 0;
          
         // Let's do it
         boolean containsOutliers = false;
-        Group<TupleWrapper> element = map.first();
-        while (element != null) {
+        for (int group = 0; group < map.size(); group++) {
             
             checkInterrupt();
-            maximalEquivalenceClassSizeIncludingOutliers = Math.max(element.getCount(), maximalEquivalenceClassSizeIncludingOutliers);
-            minimalEquivalenceClassSizeIncludingOutliers = Math.min(element.getCount(), minimalEquivalenceClassSizeIncludingOutliers);
-            averageEquivalenceClassSizeIncludingOutliers += element.getCount();
-            numberOfTuples += element.getCount();
+            int count = map.getCount(group);
+            if (count == 0) {
+                continue;
+            }
+            maximalEquivalenceClassSizeIncludingOutliers = Math.max(count, maximalEquivalenceClassSizeIncludingOutliers);
+            minimalEquivalenceClassSizeIncludingOutliers = Math.min(count, minimalEquivalenceClassSizeIncludingOutliers);
+            averageEquivalenceClassSizeIncludingOutliers += count;
+            numberOfTuples += count;
             
-            if (!element.getElement().isOutlier()) {
+            if (!map.isOutlier(group)) {
                 
-                maximalEquivalenceClassSize = Math.max(element.getCount(), maximalEquivalenceClassSize);
-                minimalEquivalenceClassSize = Math.min(element.getCount(), minimalEquivalenceClassSize);
-                averageEquivalenceClassSize += element.getCount();
+                maximalEquivalenceClassSize = Math.max(count, maximalEquivalenceClassSize);
+                minimalEquivalenceClassSize = Math.min(count, minimalEquivalenceClassSize);
+                averageEquivalenceClassSize += count;
                 
             } else {
                 
                 containsOutliers = true;
                 // All suppressed records will collapse into a single group, so we can use the "=" assignment operator here
-                numberOfOutlyingTuples = element.getCount();
+                numberOfOutlyingTuples = count;
             }
-            
-            element = element.next();
         }
         
         numberOfEquivalenceClasses = numberOfEquivalenceClassesIncludingOutliers;
@@ -654,11 +653,18 @@ public class StatisticsBuilder {
             indexes.put(values[i], i);
         }
         
-        // Count frequencies
-        for (int row = 0; row < handle.getNumRows(); row++) {
-            checkInterrupt();
-            String value = handle.getValue(row, column);
-            frequencies[indexes.get(value)]++;
+        // Count frequencies of codes and map them to values
+        int[] counts = handle.getFrequencies(column, new InterruptHandler() {
+            @Override
+            public void checkInterrupt() {
+                StatisticsBuilder.this.checkInterrupt();
+            }
+        });
+        String[] dictionary = handle.getDictionary(column);
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] != 0) {
+                frequencies[indexes.get(dictionary[code])] += counts[code];
+            }
         }
         
         // Divide by count
@@ -693,6 +699,19 @@ public class StatisticsBuilder {
         return getQualityStatistics(this.handle.getHandle());
     }
 
+    /**
+     * Returns data quality according to the given models. Measures for models which
+     * have not been selected are not available.
+     * 
+     * @param models
+     * @return
+     */
+    public StatisticsQuality getQualityStatistics(Set<QualityModelType> models) {
+        
+        // Build and return
+        return getQualityStatistics(this.handle.getHandle(), models);
+    }
+
     /**
      * Returns data quality according to various models. This is a special variant of 
      * the method supporting arbitrary user-defined outputs.
@@ -701,6 +720,19 @@ public class StatisticsBuilder {
      * @return
      */
     public StatisticsQuality getQualityStatistics(DataHandle output) {
+        return getQualityStatistics(output, EnumSet.allOf(QualityModelType.class));
+    }
+
+    /**
+     * Returns data quality according to the given models. This is a special variant of 
+     * the method supporting arbitrary user-defined outputs. Measures for models which
+     * have not been selected are not available.
+     * 
+     * @param output
+     * @param models
+     * @return
+     */
+    public StatisticsQuality getQualityStatistics(DataHandle output, Set<QualityModelType> models) {
 
         // Reset stop flag
         interrupt.value = false;
@@ -717,7 +749,8 @@ public class StatisticsBuilder {
         }
 
         // Build and return
-        return new StatisticsQuality(input.getHandle(), output, config, interrupt, progress);
+        DataHandleInternal encoded = output == this.handle.getHandle() ? this.handle : output.getStatistics().handle;
+        return new StatisticsQuality(input, encoded, config, interrupt, progress, models);
     }
     
     /**
@@ -727,18 +760,20 @@ public class StatisticsBuilder {
      * @return
      */
     @SuppressWarnings({ "unchecked", "rawtypes" })
-    public <T> Map<String, StatisticsSummary<?>> getSummaryStatistics(boolean listwiseDeletion) {
+    public <T> Map<String, StatisticsSummary<?>> getSummaryStatistics(final boolean listwiseDeletion) {
 
         // Reset stop flag
         interrupt.value = false;
         
-        Map<String, DescriptiveStatistics> statistics = new HashMap<String, DescriptiveStatistics>();
-        Map<String, StatisticsSummaryOrdinal> ordinal = new HashMap<String, StatisticsSummaryOrdinal>();
-        Map<String, DataScale> scales = new HashMap<String, DataScale>();
-        Map<String, GeometricMean> geomean = new HashMap<String, GeometricMean>();
+        final int columns = handle.getNumColumns();
+        final Map<String, StatisticsSummaryOrdinal> ordinal = new HashMap<String, StatisticsSummaryOrdinal>();
+        final Map<String, DataScale> scales = new HashMap<String, DataScale>();
+        final ParsedDictionary[] parsed = new ParsedDictionary[columns];
+        final boolean[][] ignore = new boolean[columns][];
+        final boolean[][] missing = new boolean[columns][];
         
         // Detect scales
-        for (int col = 0; col < handle.getNumColumns(); col++) {
+        for (int col = 0; col < columns; col++) {
             
             // Meta
             String attribute = handle.getAttributeName(col);
@@ -755,60 +790,79 @@ public class StatisticsBuilder {
                 }
             }
             
+            // Codes of values that are not analyzed
+            parsed[col] = handle.getParsedDictionary(col);
+            ignore[col] = new boolean[parsed[col].getSize()];
+            missing[col] = new boolean[parsed[col].getSize()];
+            for (int code = 0; code < parsed[col].getSize(); code++) {
+                String value = parsed[col].getString(code);
+                missing[col][code] = DataType.isNull(value);
+                ignore[col][code] = missing[col][code] || DataType.isAny(value);
+            }
+            
             // Store
             scales.put(attribute, scale);
-            statistics.put(attribute, new DescriptiveStatistics());
-            geomean.put(attribute, new GeometricMean());
             ordinal.put(attribute, getSummaryStatisticsOrdinal(handle.getGeneralization(attribute),
                                                                handle.getDataType(attribute),
                                                                handle.getBaseDataType(attribute),
                                                                getHierarchy(col, true)));
         }
         
-        // Compute summary statistics
-        for (int row = 0; row < handle.getNumRows(); row++) {
-            
-            // Check, if we should include this row
-            boolean include = true;
-            if (listwiseDeletion) {
-                for (int col = 0; col < handle.getNumColumns(); col++) {
-                    if (handle.isOutlier(row) || DataType.isNull(handle.getValue(row, col))) {
-                        include = false;
-                        break;
-                    }
-                }
-            }
-            
-            // Check
-            checkInterrupt();
-            
-            // If yes, add
-            if (include) {
-                
-                // For each column
-                for (int col = 0; col < handle.getNumColumns(); col++) {
+        // Count the frequencies of codes and compute moments, one column per task
+        final int[][] frequencies = new int[columns][];
+        final StatisticsSummaryNumeric[] numeric = new StatisticsSummaryNumeric[columns];
+        
+        // Rows excluded by list-wise deletion
+        final long[] excluded = listwiseDeletion ? getSummaryStatisticsExcludedRows(missing) : null;
+        
+        // Prepare
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int col = 0; col < columns; col++) {
+            final int column = col;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
                     
-                    // Meta
-                    String value = handle.getValue(row, col);
-                    String attribute = handle.getAttributeName(col);
-                    DataType<?> type = handle.getDataType(attribute);
+                    // Count
+                    int rows = handle.getNumRows();
+                    int[] counts = new int[parsed[column].getSize()];
+                    for (int row = 0; row < rows; row++) {
+                        if ((row & 0xFFFF) == 0) {
+                            checkInterrupt();
+                        }
+                        if (excluded == null || (excluded[row >>> 6] & (1L << row)) == 0) {
+                            counts[handle.getEncodedValue(row, column)]++;
+                        }
+                    }
+                    for (int code = 0; code < counts.length; code++) {
+                        if (ignore[column][code]) {
+                            counts[code] = 0;
+                        }
+                    }
+                    frequencies[column] = counts;
                     
-                    // Analyze
-                    if (!DataType.isAny(value) && !DataType.isNull(value)) {
-                        ordinal.get(attribute).addValue(value);
-                        if (type instanceof DataTypeWithRatioScale) {
-                            double doubleValue = ((DataTypeWithRatioScale) type).toDouble(type.parse(value));
-                            statistics.get(attribute).addValue(doubleValue);
-                            geomean.get(attribute).increment(doubleValue + 1d);
+                    // Moments
+                    StatisticsSummaryNumeric stats = new StatisticsSummaryNumeric(counts.length);
+                    if (parsed[column].getType() instanceof DataTypeWithRatioScale) {
+                        for (int code = 0; code < counts.length; code++) {
+                            if (counts[code] != 0) {
+                                stats.addValue(parsed[column].getDouble(code), counts[code]);
+                            }
                         }
                     }
+                    stats.analyze();
+                    numeric[column] = stats;
+                    return null;
                 }
-            }
+            });
         }
         
+        // Execute
+        ParallelExecution.execute(tasks);
+        
         // Convert
         Map<String, StatisticsSummary<?>> result = new HashMap<String, StatisticsSummary<?>>();
-        for (int col = 0; col < handle.getNumColumns(); col++) {
+        for (int col = 0; col < columns; col++) {
             
             // Check
             checkInterrupt();
@@ -817,6 +871,11 @@ public class StatisticsBuilder {
             String attribute = handle.getAttributeName(col);
             DataScale scale = scales.get(attribute);
             DataType<T> type = (DataType<T>) handle.getDataType(attribute);
+            for (int code = 0; code < frequencies[col].length; code++) {
+                if (frequencies[col][code] != 0) {
+                    ordinal.get(attribute).addValue(parsed[col].getString(code), frequencies[col][code]);
+                }
+            }
             ordinal.get(attribute).analyze();
             if (scale == DataScale.NOMINAL) {
                 StatisticsSummaryOrdinal stats = ordinal.get(attribute);
@@ -840,10 +899,9 @@ public class StatisticsBuilder {
                                                                type.parse(stats.getMax())));
             } else if (scale == DataScale.INTERVAL) {
                 StatisticsSummaryOrdinal stats = ordinal.get(attribute);
-                DescriptiveStatistics stats2 = statistics.get(attribute);
+                StatisticsSummaryNumeric stats2 = numeric[col];
                 boolean isPeriod = type.getDescription().getWrappedClass() == Date.class;
                 
-                // TODO: Something is wrong with commons math's kurtosis
                 double kurtosis = stats2.getKurtosis();
                 kurtosis = kurtosis < 0d ? Double.NaN : kurtosis;
                 double range = stats2.getMax() - stats2.getMin();
@@ -880,10 +938,8 @@ public class StatisticsBuilder {
                                                                kurtosis));
             } else if (scale == DataScale.RATIO) {
                 StatisticsSummaryOrdinal stats = ordinal.get(attribute);
-                DescriptiveStatistics stats2 = statistics.get(attribute);
-                GeometricMean geo = geomean.get(attribute);
+                StatisticsSummaryNumeric stats2 = numeric[col];
                 
-                // TODO: Something is wrong with commons math's kurtosis
                 double kurtosis = stats2.getKurtosis();
                 kurtosis = kurtosis < 0d ? Double.NaN : kurtosis;
                 double range = stats2.getMax() - stats2.getMin();
@@ -918,8 +974,8 @@ public class StatisticsBuilder {
                                                                toString(type, kurtosis, false, false),
                                                                toValue(type, kurtosis),
                                                                kurtosis,
-                                                               toString(type, geo.getResult() - 1d, false, false),
-                                                               toValue(type, geo.getResult() - 1d),
+                                                               toString(type, stats2.getShiftedGeometricMean(), false, false),
+                                                               toValue(type, stats2.getShiftedGeometricMean()),
                                                                stats2.getGeometricMean()));
             }
         }
@@ -936,6 +992,175 @@ public class StatisticsBuilder {
         }
     }
     
+    /**
+     * Counts the cells of a contingency table. Pairs of codes are counted first and remapped to
+     * the indexes of the given values once per distinct pair afterwards. Keys of the resulting
+     * map contain the index of the first value in the upper and the index of the second value
+     * in the lower 32 bits.
+     * 
+     * @param column1
+     * @param values1
+     * @param column2
+     * @param values2
+     * @return
+     */
+    private LongIntOpenHashMap getContingencyCells(int column1, String[] values1, int column2, String[] values2) {
+        
+        // Map codes to indexes
+        int[] indexes1 = getContingencyIndexes(column1, values1);
+        int[] indexes2 = getContingencyIndexes(column2, values2);
+        
+        // Count pairs of codes
+        LongIntOpenHashMap codes = getContingencyCodes(column1, column2);
+        
+        // Remap, merging codes which represent the same value
+        LongIntOpenHashMap cells = new LongIntOpenHashMap(codes.size());
+        for (int i = 0; i < codes.allocated.length; i++) {
+            if (codes.allocated[i]) {
+                long key = codes.keys[i];
+                int index1 = indexes1[(int) (key >>> 32)];
+                int index2 = indexes2[(int) key];
+                cells.addTo(((long) index1 << 32) | index2, codes.values[i]);
+            }
+        }
+        return cells;
+    }
+    
+    /**
+     * Counts pairs of codes from the given columns. Large data is partitioned into ranges of rows,
+     * which are counted in parallel and merged afterwards.
+     * 
+     * @param column1
+     * @param column2
+     * @return
+     */
+    private LongIntOpenHashMap getContingencyCodes(final int column1, final int column2) {
+        
+        // Sequential
+        final int rows = handle.getNumRows();
+        int ranges = ParallelExecution.getNumThreads();
+        if (rows < PARALLEL_THRESHOLD || ranges <= 1) {
+            return getContingencyCodes(column1, column2, 0, rows);
+        }
+        
+        // Parallel
+        List<Callable<LongIntOpenHashMap>> tasks = new ArrayList<Callable<LongIntOpenHashMap>>();
+        for (int i = 0; i < ranges; i++) {
+            final int start = (int) ((long) rows * i / ranges);
+            final int end = (int) ((long) rows * (i + 1) / ranges);
+            tasks.add(new Callable<LongIntOpenHashMap>() {
+                @Override
+                public LongIntOpenHashMap call() throws Exception {
+                    return getContingencyCodes(column1, column2, start, end);
+                }
+            });
+        }
+        List<LongIntOpenHashMap> partials = ParallelExecution.execute(tasks);
+        
+        // Merge
+        LongIntOpenHashMap result = partials.get(0);
+        for (int i = 1; i < partials.size(); i++) {
+            LongIntOpenHashMap partial = partials.get(i);
+            for (int j = 0; j < partial.allocated.length; j++) {
+                if (partial.allocated[j]) {
+                    result.addTo(partial.keys[j], partial.values[j]);
+                }
+            }
+            checkInterrupt();
+        }
+        return result;
+    }
+    
+    /**
+     * Counts pairs of codes from the given columns in the given range of rows
+     * 
+     * @param column1
+     * @param column2
+     * @param from
+     * @param to
+     * @return
+     */
+    private LongIntOpenHashMap getContingencyCodes(int column1, int column2, int from, int to) {
+        LongIntOpenHashMap codes = new LongIntOpenHashMap();
+        for (int row = from; row < to; row++) {
+            if (((row - from) & 0xFFF) == 0) {
+                checkInterrupt();
+            }
+            long code1 = handle.getEncodedValue(row, column1);
+            long code2 = handle.getEncodedValue(row, column2);
+            codes.addTo((code1 << 32) | code2, 1);
+        }
+        return codes;
+    }
+    
+    /**
+     * Maps the codes of the given column to the indexes of the according values
+     * 
+     * @param column
+     * @param values
+     * @return
+     */
+    private int[] getContingencyIndexes(int column, String[] values) {
+        Map<String, Integer> indexes = new HashMap<String, Integer>();
+        for (int i = 0; i < values.length; i++) {
+            checkInterrupt();
+            indexes.put(values[i], i);
+        }
+        ParsedDictionary dictionary = handle.getParsedDictionary(column);
+        int[] result = new int[dictionary.getSize()];
+        for (int code = 0; code < result.length; code++) {
+            Integer index = indexes.get(dictionary.getString(code));
+            result[code] = index != null ? index : -1;
+        }
+        return result;
+    }
+    
+    /**
+     * Returns an iterator over the given cells of a contingency table, which releases the cells
+     * as soon as it has been consumed.
+     * 
+     * @param keys
+     * @param frequencies
+     * @param size
+     * @return
+     */
+    private Iterator<Entry> getContingencyTableIterator(final long[] keys, final double[] frequencies, final int size) {
+        return new Iterator<Entry>() {
+            
+            private long[]   _keys        = keys;
+            private double[] _frequencies = frequencies;
+            private int      _index       = 0;
+            
+            @Override
+            public boolean hasNext() {
+                
+                if (_keys == null) return false;
+                boolean result = _index < size;
+                
+                // Try to release resources as early as possible
+                if (!result) {
+                    _keys = null;
+                    _frequencies = null;
+                }
+                return result;
+            }
+            
+            @Override
+            public Entry next() {
+                if (_keys == null) return null;
+                long key = _keys[_index];
+                Entry e = new Entry((int) (key >>> 32), (int) key);
+                e.frequency = _frequencies[_index++];
+                return e;
+            }
+            
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+    
     /**
      * Returns the appropriate hierarchy, if any.
      *
@@ -994,6 +1219,52 @@ public class StatisticsBuilder {
         return result;
     }
     
+    /**
+     * Returns a bitmap of rows which are removed by list-wise deletion, i.e. outliers and
+     * rows containing a missing value in at least one column. Ranges of blocks of 64 rows are
+     * processed in parallel.
+     * 
+     * @param missing Codes of missing values per column
+     * @return
+     */
+    private long[] getSummaryStatisticsExcludedRows(final boolean[][] missing) {
+
+        // Prepare
+        final int rows = handle.getNumRows();
+        final long[] excluded = new long[(rows + 63) >>> 6];
+        int ranges = ParallelExecution.getNumThreads();
+        
+        // Prepare
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < ranges; i++) {
+            final int start = (int) ((long) excluded.length * i / ranges);
+            final int end = (int) ((long) excluded.length * (i + 1) / ranges);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int block = start; block < end; block++) {
+                        checkInterrupt();
+                        int last = Math.min(rows, (block + 1) << 6);
+                        for (int row = block << 6; row < last; row++) {
+                            boolean exclude = handle.isOutlier(row);
+                            for (int col = 0; !exclude && col < missing.length; col++) {
+                                exclude = missing[col][handle.getEncodedValue(row, col)];
+                            }
+                            if (exclude) {
+                                excluded[block] |= 1L << row;
+                            }
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        
+        // Execute
+        ParallelExecution.execute(tasks);
+        return excluded;
+    }
+
     /**
      * Returns a summary statistics object for the given attribute
      * @param generalization
@@ -1230,4 +1501,4 @@ public class StatisticsBuilder {
     void interrupt() {
         this.interrupt.value = true;
     }
-}
+}
@@ -19,11 +19,13 @@ package org.deidentifier.arx.aggregates;
 
 import java.text.ParseException;
 import java.util.Map;
+import java.util.Set;
 
-import org.deidentifier.arx.ARXLogisticRegressionConfiguration;
+import org.deidentifier.arx.ARXClassificationConfiguration;
 import org.deidentifier.arx.AttributeType.Hierarchy;
 import org.deidentifier.arx.DataHandle;
 import org.deidentifier.arx.DataHandleInternal;
+import org.deidentifier.arx.aggregates.quality.QualityModelType;
 import org.deidentifier.arx.exceptions.ComputationInterruptedException;
 
 
@@ -55,7 +57,7 @@ public class StatisticsBuilderInterruptible { // NO_UCD
      * @throws ParseException
      */
     public StatisticsClassification getClassificationPerformance(String clazz,
-                                                                 ARXLogisticRegressionConfiguration config) throws InterruptedException {
+                                                                 ARXClassificationConfiguration config) throws InterruptedException {
         try {
             return builder.getClassificationPerformance(clazz, config);
         } catch (Exception e) {
@@ -76,7 +78,7 @@ public class StatisticsBuilderInterruptible { // NO_UCD
      */
     public StatisticsClassification getClassificationPerformance(String[] features,
                                                                  String clazz,
-                                                                 ARXLogisticRegressionConfiguration config) throws InterruptedException {
+                                                                 ARXClassificationConfiguration config) throws InterruptedException {
         try {
             return builder.getClassificationPerformance(features, clazz, config);
         } catch (Exception e) {
@@ -155,6 +157,42 @@ public class StatisticsBuilderInterruptible { // NO_UCD
         }
     }
 
+    /**
+     * Returns a contingency table for the given columns, which only contains the
+     * given number of most frequent cells. The order for string data items is
+     * derived from the provided hierarchies
+     *
+     * @param column1 The first column
+     * @param hierarchy1 The hierarchy for the first column, may be null
+     * @param column2 The second column
+     * @param hierarchy2 The hierarchy for the second column, may be null
+     * @param limit The maximal number of cells
+     * @return
+     * @throws InterruptedException
+     */
+    public StatisticsContingencyTable
+            getContingencyTable(int column1,
+                                Hierarchy hierarchy1,
+                                int column2,
+                                Hierarchy hierarchy2,
+                                int limit) throws InterruptedException {
+
+        try {
+            return builder.getContingencyTable(column1,
+                                               hierarchy1 == null ? null : hierarchy1.getHierarchy(),
+                                               column2,
+                                               hierarchy2 == null ? null : hierarchy2.getHierarchy(),
+                                               limit);
+        } catch (Exception e) {
+            if (e instanceof ComputationInterruptedException) {
+                throw new InterruptedException("Interrupted");
+            } else {
+                throw new InterruptedException("Interrupted by exception: " +
+                                               e.getMessage());
+            }
+        }
+    }
+
     /**
      * Returns a contingency table for the given columns. This method assumes
      * that the order of string data items will be derived from the
@@ -512,6 +550,46 @@ public class StatisticsBuilderInterruptible { // NO_UCD
         }
     }
 
+    /**
+     * Returns data quality according to the given models. This is a special variant of 
+     * the method supporting arbitrary user-defined outputs. Measures for models which
+     * have not been selected are not available.
+     * 
+     * @param output
+     * @param models
+     * @return
+     */
+    public StatisticsQuality getQualityStatistics(DataHandle output, Set<QualityModelType> models) throws InterruptedException {
+        try {
+            return builder.getQualityStatistics(output, models);
+        } catch (Exception e) {
+            if (e instanceof ComputationInterruptedException) {
+                throw new InterruptedException("Interrupted");
+            } else {
+                throw new InterruptedException("Interrupted by exception: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns data quality according to the given models. Measures for models which
+     * have not been selected are not available.
+     * 
+     * @param models
+     * @return
+     */
+    public StatisticsQuality getQualityStatistics(Set<QualityModelType> models) throws InterruptedException {
+        try {
+            return builder.getQualityStatistics(models);
+        } catch (Exception e) {
+            if (e instanceof ComputationInterruptedException) {
+                throw new InterruptedException("Interrupted");
+            } else {
+                throw new InterruptedException("Interrupted by exception: " + e.getMessage());
+            }
+        }
+    }
+
     /**
      * Returns summary statistics for all attributes. 
      * 
@@ -18,17 +18,24 @@ package org.deidentifier.arx.aggregates;
 
 import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.deidentifier.arx.ARXClassificationConfiguration;
 import org.deidentifier.arx.ARXLogisticRegressionConfiguration;
+import org.deidentifier.arx.ARXNaiveBayesConfiguration;
 import org.deidentifier.arx.DataHandleInternal;
 import org.deidentifier.arx.aggregates.classification.ClassificationDataSpecification;
 import org.deidentifier.arx.aggregates.classification.ClassificationMethod;
 import org.deidentifier.arx.aggregates.classification.ClassificationResult;
 import org.deidentifier.arx.aggregates.classification.MultiClassLogisticRegression;
+import org.deidentifier.arx.aggregates.classification.MultiClassLogisticRegressionEncoder;
+import org.deidentifier.arx.aggregates.classification.MultiClassNaiveBayes;
 import org.deidentifier.arx.aggregates.classification.MultiClassZeroR;
+import org.deidentifier.arx.common.ParallelExecution;
 import org.deidentifier.arx.common.WrappedBoolean;
 import org.deidentifier.arx.common.WrappedInteger;
 import org.deidentifier.arx.exceptions.ComputationInterruptedException;
@@ -125,6 +132,40 @@ public class StatisticsClassification {
         }
     }
 
+    /**
+     * The results of evaluating classifiers on the records of one fold
+     * 
+     * @author Fabian Prasser
+     */
+    private static class Evaluation {
+
+        /** Whether the classifiers have been trained */
+        private boolean         trained = false;
+        /** Errors of the classifier */
+        private final double[]  errors;
+        /** Whether the classifier has been correct */
+        private final boolean[] correct;
+        /** Confidences of the classifier */
+        private final double[]  confidences;
+        /** Errors of ZeroR, may be null */
+        private final double[]  zeroRErrors;
+        /** Whether ZeroR has been correct, may be null */
+        private final boolean[] zeroRCorrect;
+
+        /**
+         * Creates a new instance
+         * @param size
+         * @param zeroR
+         */
+        private Evaluation(int size, boolean zeroR) {
+            this.errors = new double[size];
+            this.correct = new boolean[size];
+            this.confidences = new double[size];
+            this.zeroRErrors = zeroR ? new double[size] : null;
+            this.zeroRCorrect = zeroR ? new boolean[size] : null;
+        }
+    }
+
     /** Accuracy */
     private double                accuracy;
     /** Average error */
@@ -163,11 +204,11 @@ public class StatisticsClassification {
      * @param progress 
      * @throws ParseException 
      */
-    StatisticsClassification(DataHandleInternal inputHandle,
-                             DataHandleInternal outputHandle,
+    StatisticsClassification(final DataHandleInternal inputHandle,
+                             final DataHandleInternal outputHandle,
                              String[] features,
                              String clazz,
-                             ARXLogisticRegressionConfiguration config,
+                             final ARXClassificationConfiguration config,
                              WrappedBoolean interrupt,
                              WrappedInteger progress) throws ParseException {
 
@@ -193,100 +234,127 @@ public class StatisticsClassification {
         }
         
         // TODO: Feature is not used. Continuous variables are treated as categorical.
-        ClassificationDataSpecification specification = new ClassificationDataSpecification(inputHandle, 
-                                                                                            outputHandle, 
-                                                                                            features,
-                                                                                            clazz,
-                                                                                            interrupt);
+        final ClassificationDataSpecification specification = new ClassificationDataSpecification(inputHandle, 
+                                                                                                  outputHandle, 
+                                                                                                  features,
+                                                                                                  clazz,
+                                                                                                  interrupt);
         
         // Train and evaluate
         int k = inputHandle.getNumRows() > config.getNumFolds() ? config.getNumFolds() : inputHandle.getNumRows();
-        List<List<Integer>> folds = getFolds(inputHandle.getNumRows(), k);
+        final int[][] folds = getFolds(inputHandle.getNumRows(), k);
+        final boolean output = inputHandle != outputHandle;
 
-        // Track
-        int classifications = 0;
-        double total = 100d / ((double)inputHandle.getNumRows() * (double)folds.size());
-        double done = 0d;
-        
-        // For each fold as a validation set
-        for (int evaluationFold = 0; evaluationFold < folds.size(); evaluationFold++) {
-            
-            // Create classifiers
-            ClassificationMethod inputLR = new MultiClassLogisticRegression(specification, config);
-            ClassificationMethod inputZR = new MultiClassZeroR(specification);
-            ClassificationMethod outputLR = null;
-            if (inputHandle != outputHandle) {
-                outputLR = new MultiClassLogisticRegression(specification, config);
-            }
-            
-            // Try
-            try {
-                
-                // Train with all training sets
-                boolean trained = false;
-                for (int trainingFold = 0; trainingFold < folds.size(); trainingFold++) {
-                    if (trainingFold != evaluationFold) {                        
-                        for (int index : folds.get(trainingFold)) {
-                            checkInterrupt();
-                            inputLR.train(inputHandle, outputHandle, index);
-                            inputZR.train(inputHandle, outputHandle, index);
-                            if (outputLR != null && !outputHandle.isOutlier(index)) {
-                                outputLR.train(outputHandle, outputHandle, index);
-                            }
-                            trained = true;
-                            this.progress.value = (int)((++done) * total);
-                        }
+        // Track training and validation. Naive bayes counts each record once for training.
+        double units = (double)inputHandle.getNumRows() * (double)folds.length;
+        if (config instanceof ARXNaiveBayesConfiguration) {
+            units = 2d * (double)inputHandle.getNumRows();
+        }
+        final double total = 100d / (units * (output ? 2d : 1d));
+        final AtomicInteger done = new AtomicInteger();
+
+        // Prepare data which is shared between the classifiers of all folds
+        final MultiClassLogisticRegressionEncoder inputEncoder;
+        final MultiClassLogisticRegressionEncoder outputEncoder;
+        final MultiClassNaiveBayes[] inputModels;
+        final MultiClassNaiveBayes[] outputModels;
+        if (config instanceof ARXLogisticRegressionConfiguration) {
+
+            // Encode the values of all features once
+            ARXLogisticRegressionConfiguration _config = (ARXLogisticRegressionConfiguration)config;
+            inputEncoder = new MultiClassLogisticRegressionEncoder(specification, _config, inputHandle, interrupt);
+            outputEncoder = !output ? null : new MultiClassLogisticRegressionEncoder(specification, _config, outputHandle, interrupt);
+            inputModels = null;
+            outputModels = null;
+
+        } else if (config instanceof ARXNaiveBayesConfiguration) {
+
+            // Train a model on each fold. Models for training sets are obtained by merging.
+            final ARXNaiveBayesConfiguration _config = (ARXNaiveBayesConfiguration)config;
+            List<Callable<MultiClassNaiveBayes>> tasks = new ArrayList<Callable<MultiClassNaiveBayes>>();
+            for (final int[] fold : folds) {
+                tasks.add(new Callable<MultiClassNaiveBayes>() {
+                    @Override
+                    public MultiClassNaiveBayes call() throws Exception {
+                        return getModel(specification, _config, inputHandle, outputHandle, true, fold, done, total);
                     }
+                });
+                if (output) {
+                    tasks.add(new Callable<MultiClassNaiveBayes>() {
+                        @Override
+                        public MultiClassNaiveBayes call() throws Exception {
+                            return getModel(specification, _config, outputHandle, outputHandle, false, fold, done, total);
+                        }
+                    });
                 }
-                
-                // Close
-                inputLR.close();
-                inputZR.close();
-                if (outputLR != null) {
-                    outputLR.close();
+            }
+            List<MultiClassNaiveBayes> models = ParallelExecution.execute(tasks);
+            inputEncoder = null;
+            outputEncoder = null;
+            inputModels = new MultiClassNaiveBayes[folds.length];
+            outputModels = !output ? null : new MultiClassNaiveBayes[folds.length];
+            int index = 0;
+            for (int fold = 0; fold < folds.length; fold++) {
+                inputModels[fold] = models.get(index++);
+                if (output) {
+                    outputModels[fold] = models.get(index++);
                 }
-                
-                // Now validate
-                for (int index : folds.get(evaluationFold)) {
-                    
-                    // Check
-                    checkInterrupt();
-                    
-                    // If trained
-                    if (trained) {
-                        
-                        // Classify
-                        ClassificationResult resultInputLR = inputLR.classify(inputHandle, index);
-                        ClassificationResult resultInputZR = inputZR.classify(inputHandle, index);
-                        ClassificationResult resultOutputLR = outputLR == null ? null : outputLR.classify(outputHandle, index);
-                        classifications++;
-                        
-                        // Correct result
-                        String actualValue = outputHandle.getValue(index, specification.classIndex, true);
-                        
-                        // Maintain data about inputZR
-                        this.zeroRAverageError += resultInputZR.error(actualValue);
-                        this.zeroRAccuracy += resultInputZR.correct(actualValue) ? 1d : 0d;
-
-                        // Maintain data about inputLR
-                        boolean correct = resultInputLR.correct(actualValue);
-                        this.originalAverageError += resultInputLR.error(actualValue);
-                        this.originalAccuracy += correct ? 1d : 0d;
-                        this.originalMatrix.add(resultInputLR.confidence(), correct);
-
-                        // Maintain data about outputLR                        
-                        if (resultOutputLR != null) {
-                            correct = resultOutputLR.correct(actualValue);
-                            this.averageError += resultOutputLR.error(actualValue);
-                            this.accuracy += correct ? 1d : 0d;
-                            this.matrix.add(resultOutputLR.confidence(), correct);
-                        }
+            }
+
+        } else {
+            throw new IllegalArgumentException("Unknown type of classifier");
+        }
+
+        // Evaluate classifiers trained on the input and output for each fold
+        List<Callable<Evaluation>> tasks = new ArrayList<Callable<Evaluation>>();
+        for (int fold = 0; fold < folds.length; fold++) {
+            final int evaluationFold = fold;
+            tasks.add(new Callable<Evaluation>() {
+                @Override
+                public Evaluation call() throws Exception {
+                    return evaluate(specification, config, inputEncoder, inputModels, inputHandle, outputHandle, true, folds, evaluationFold, done, total);
+                }
+            });
+            if (output) {
+                tasks.add(new Callable<Evaluation>() {
+                    @Override
+                    public Evaluation call() throws Exception {
+                        return evaluate(specification, config, outputEncoder, outputModels, outputHandle, outputHandle, false, folds, evaluationFold, done, total);
                     }
-                    
-                    this.progress.value = (int)((++done) * total);
+                });
+            }
+        }
+        List<Evaluation> evaluations = ParallelExecution.execute(tasks);
+
+        // Collect results in the order of folds and records
+        int classifications = 0;
+        int index = 0;
+        for (int fold = 0; fold < folds.length; fold++) {
+            Evaluation inputEvaluation = evaluations.get(index++);
+            Evaluation outputEvaluation = output ? evaluations.get(index++) : null;
+            if (!inputEvaluation.trained) {
+                continue;
+            }
+            for (int i = 0; i < folds[fold].length; i++) {
+                
+                // Count
+                classifications++;
+
+                // Maintain data about inputZR
+                this.zeroRAverageError += inputEvaluation.zeroRErrors[i];
+                this.zeroRAccuracy += inputEvaluation.zeroRCorrect[i] ? 1d : 0d;
+
+                // Maintain data about inputLR
+                this.originalAverageError += inputEvaluation.errors[i];
+                this.originalAccuracy += inputEvaluation.correct[i] ? 1d : 0d;
+                this.originalMatrix.add(inputEvaluation.confidences[i], inputEvaluation.correct[i]);
+
+                // Maintain data about outputLR
+                if (outputEvaluation != null) {
+                    this.averageError += outputEvaluation.errors[i];
+                    this.accuracy += outputEvaluation.correct[i] ? 1d : 0d;
+                    this.matrix.add(outputEvaluation.confidences[i], outputEvaluation.correct[i]);
                 }
-            } catch (Exception e) {
-                throw new RuntimeException(e);
             }
         }
         
@@ -316,8 +384,8 @@ public class StatisticsClassification {
     }
 
     /**
-     * Returns the resulting accuracy. Obtained by training a
-     * Logistic Regression classifier on the output (or input) dataset.
+     * Returns the resulting accuracy. Obtained by training the configured
+     * classifier, e.g. Logistic Regression, on the output (or input) dataset.
      * 
      * @return
      */
@@ -352,8 +420,8 @@ public class StatisticsClassification {
     }
     
     /**
-     * Returns the maximal accuracy. Obtained by training a
-     * Logistic Regression classifier on the input dataset.
+     * Returns the maximal accuracy. Obtained by training the configured
+     * classifier, e.g. Logistic Regression, on the input dataset.
      * 
      * @return
      */
@@ -372,7 +440,7 @@ public class StatisticsClassification {
     }
 
     /**
-     * Returns a precision/recall matrix for LogisticRegression on input
+     * Returns a precision/recall matrix for the classifier on input
      * @return
      */
     public PrecisionRecallMatrix getOriginalPrecisionRecall() {
@@ -434,47 +502,189 @@ public class StatisticsClassification {
         }
     }
     
+    /**
+     * Trains classifiers on all folds but the given one and evaluates them on the given fold.
+     * Classifiers are created for each call, which means that calls can be performed in parallel.
+     * @param specification
+     * @param config
+     * @param encoder - The encoder for logistic regression, may be null
+     * @param models - The naive bayes models trained on each fold, may be null
+     * @param features - The handle to train with
+     * @param outputHandle - The output handle
+     * @param input - Whether the classifiers are trained on the input
+     * @param folds
+     * @param evaluationFold
+     * @param done
+     * @param total
+     * @return
+     */
+    private Evaluation evaluate(ClassificationDataSpecification specification,
+                                ARXClassificationConfiguration config,
+                                MultiClassLogisticRegressionEncoder encoder,
+                                MultiClassNaiveBayes[] models,
+                                DataHandleInternal features,
+                                DataHandleInternal outputHandle,
+                                boolean input,
+                                int[][] folds,
+                                int evaluationFold,
+                                AtomicInteger done,
+                                double total) {
+
+        // Create classifiers
+        ClassificationMethod classifier;
+        Evaluation result = new Evaluation(folds[evaluationFold].length, input);
+        if (models != null) {
+            MultiClassNaiveBayes model = new MultiClassNaiveBayes(specification, (ARXNaiveBayesConfiguration)config);
+            for (int fold = 0; fold < models.length; fold++) {
+                if (fold != evaluationFold) {
+                    model.merge(models[fold]);
+                }
+            }
+            classifier = model;
+            
+            // Results are only used if the input has been trained. The output is
+            // evaluated even if all of its training records are outliers.
+            result.trained = !input || model.isTrained();
+        } else {
+            classifier = new MultiClassLogisticRegression(specification, (ARXLogisticRegressionConfiguration)config, encoder);
+        }
+        ClassificationMethod zr = input ? new MultiClassZeroR(specification) : null;
+        
+        // Try
+        try {
+            
+            // Train with all training sets. Naive bayes models have been merged from the models
+            // of the folds, which have been tracked when they were trained.
+            for (int trainingFold = 0; (models == null || zr != null) && trainingFold < folds.length; trainingFold++) {
+                if (trainingFold != evaluationFold) {
+                    for (int index : folds[trainingFold]) {
+                        checkInterrupt();
+                        if (zr != null) {
+                            zr.train(features, outputHandle, index);
+                        }
+                        if (models == null) {
+                            if (input || !outputHandle.isOutlier(index)) {
+                                classifier.train(features, outputHandle, index);
+                            }
+                            result.trained = true;
+                            this.progress.value = (int)(done.incrementAndGet() * total);
+                        }
+                    }
+                }
+            }
+            
+            // Close
+            classifier.close();
+            if (zr != null) {
+                zr.close();
+            }
+            
+            // Now validate
+            int[] fold = folds[evaluationFold];
+            for (int i = 0; i < fold.length; i++) {
+                
+                // Check
+                checkInterrupt();
+                int index = fold[i];
+                
+                // If trained
+                if (result.trained) {
+                    
+                    // Correct result
+                    String actualValue = outputHandle.getValue(index, specification.classIndex, true);
+                    
+                    // Classify
+                    ClassificationResult resultClassifier = classifier.classify(features, index);
+                    result.errors[i] = resultClassifier.error(actualValue);
+                    result.correct[i] = resultClassifier.correct(actualValue);
+                    result.confidences[i] = resultClassifier.confidence();
+                    if (zr != null) {
+                        ClassificationResult resultZR = zr.classify(features, index);
+                        result.zeroRErrors[i] = resultZR.error(actualValue);
+                        result.zeroRCorrect[i] = resultZR.correct(actualValue);
+                    }
+                }
+                
+                this.progress.value = (int)(done.incrementAndGet() * total);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        
+        // Return
+        return result;
+    }
+    
     /**
      * Creates the folds
      * @param length
      * @param k
-     * @param random
      * @return
      */
-    private List<List<Integer>> getFolds(int length, int k) {
+    private int[][] getFolds(int length, int k) {
         
         // Prepare indexes
-        List<Integer> rows = new ArrayList<>();
+        int[] rows = new int[length];
         for (int row = 0; row < length; row++) {
-            rows.add(row);
+            rows[row] = row;
+        }
+        
+        // Shuffle, in the same manner as Collections.shuffle()
+        for (int i = length; i > 1; i--) {
+            int j = random.nextInt(i);
+            int temp = rows[i - 1];
+            rows[i - 1] = rows[j];
+            rows[j] = temp;
         }
-        Collections.shuffle(rows, random);
         
         // Create folds
-        List<List<Integer>> folds = new ArrayList<>();
-        int size = rows.size() / k;
+        int[][] folds = new int[k][];
+        int size = length / k;
         size = size > 1 ? size : 1;
         for (int i = 0; i < k; i++) {
             // For each fold
             int min = i * size;
             int max = (i + 1) * size;
             if (i == k - 1) {
-                max = rows.size();
+                max = length;
             }
 
             // Collect rows
-            List<Integer> fold = new ArrayList<>();
-            for (int j = min; j < max; j++) {
-                fold.add(rows.get(j));
-            }
-
-            // Store
-            folds.add(fold);
+            folds[i] = Arrays.copyOfRange(rows, min, max);
         }
 
-        // Free
-        rows.clear();
-        rows = null;
+        // Return
         return folds;
     }
-}
\ No newline at end of file
+
+    /**
+     * Trains a naive bayes model on the given fold
+     * @param specification
+     * @param config
+     * @param features - The handle to train with
+     * @param outputHandle - The output handle
+     * @param input - Whether the model is trained on the input
+     * @param fold
+     * @param done
+     * @param total
+     * @return
+     */
+    private MultiClassNaiveBayes getModel(ClassificationDataSpecification specification,
+                                          ARXNaiveBayesConfiguration config,
+                                          DataHandleInternal features,
+                                          DataHandleInternal outputHandle,
+                                          boolean input,
+                                          int[] fold,
+                                          AtomicInteger done,
+                                          double total) {
+        MultiClassNaiveBayes model = new MultiClassNaiveBayes(specification, config);
+        for (int index : fold) {
+            checkInterrupt();
+            if (input || !outputHandle.isOutlier(index)) {
+                model.train(features, outputHandle, index);
+            }
+            this.progress.value = (int)(done.incrementAndGet() * total);
+        }
+        return model;
+    }
+}
@@ -26,6 +26,8 @@ import java.util.Set;
 
 import org.deidentifier.arx.ARXConfiguration;
 import org.deidentifier.arx.DataHandle;
+import org.deidentifier.arx.DataHandleInternal;
+import org.deidentifier.arx.DataHandleInternal.InterruptHandler;
 import org.deidentifier.arx.DataType;
 import org.deidentifier.arx.aggregates.quality.QualityConfiguration;
 import org.deidentifier.arx.aggregates.quality.QualityDomainShare;
@@ -33,17 +35,12 @@ import org.deidentifier.arx.aggregates.quality.QualityDomainShareRaw;
 import org.deidentifier.arx.aggregates.quality.QualityDomainShareRedaction;
 import org.deidentifier.arx.aggregates.quality.QualityMeasureColumnOriented;
 import org.deidentifier.arx.aggregates.quality.QualityMeasureRowOriented;
-import org.deidentifier.arx.aggregates.quality.QualityModelColumnOrientedLoss;
 import org.deidentifier.arx.aggregates.quality.QualityModelColumnOrientedMSE;
 import org.deidentifier.arx.aggregates.quality.QualityModelColumnOrientedNonUniformEntropy;
-import org.deidentifier.arx.aggregates.quality.QualityModelColumnOrientedPrecision;
-import org.deidentifier.arx.aggregates.quality.QualityModelRowOrientedAECS;
-import org.deidentifier.arx.aggregates.quality.QualityModelRowOrientedAmbiguity;
-import org.deidentifier.arx.aggregates.quality.QualityModelRowOrientedDiscernibility;
-import org.deidentifier.arx.aggregates.quality.QualityModelRowOrientedKLDivergence;
+import org.deidentifier.arx.aggregates.quality.QualityModelFused;
 import org.deidentifier.arx.aggregates.quality.QualityModelRowOrientedSSE;
-import org.deidentifier.arx.common.Groupify;
-import org.deidentifier.arx.common.TupleWrapper;
+import org.deidentifier.arx.aggregates.quality.QualityModelType;
+import org.deidentifier.arx.common.GroupifyIncremental;
 import org.deidentifier.arx.common.WrappedBoolean;
 import org.deidentifier.arx.common.WrappedInteger;
 import org.deidentifier.arx.exceptions.ComputationInterruptedException;
@@ -94,12 +91,14 @@ public class StatisticsQuality {
      * @param config
      * @param stop
      * @param progress
+     * @param models
      */
-    StatisticsQuality(DataHandle input,
-                      DataHandle output,
+    StatisticsQuality(DataHandleInternal input,
+                      DataHandleInternal output,
                       ARXConfiguration config,
                       WrappedBoolean stop,
-                      WrappedInteger progress) {
+                      WrappedInteger progress,
+                      Set<QualityModelType> models) {
      
         // State
         this.stop = stop;
@@ -110,23 +109,23 @@ public class StatisticsQuality {
         // TODO: Do something with ARXConfiguration here.
         
         // Extract quasi-identifiers
-        int[] indices = getIndicesOfQuasiIdentifiers(input);
+        int[] indices = getIndicesOfQuasiIdentifiers(input.getHandle());
         
         // Basic measures
-        this.attributes = getAttributes(output, indices);
-        this.datatypes = getDataTypes(output, indices);
+        this.attributes = getAttributes(output.getHandle(), indices);
+        this.datatypes = getDataTypes(output.getHandle(), indices);
         this.progress.value = 2;
         this.missings = getMissings(output, indices);
         this.progress.value = 4;
 
         // Special case: we are checking the input dataset
-        if (input == output) {
+        if (input.getHandle() == output.getHandle()) {
             
             // Column oriented
-            this.loss = new QualityMeasureColumnOriented(input, indices);
-            this.entropy = new QualityMeasureColumnOriented(input, indices);
-            this.precision = new QualityMeasureColumnOriented(input, indices);
-            this.mse = new QualityMeasureColumnOriented(input, indices);
+            this.loss = new QualityMeasureColumnOriented(input.getHandle(), indices);
+            this.entropy = new QualityMeasureColumnOriented(input.getHandle(), indices);
+            this.precision = new QualityMeasureColumnOriented(input.getHandle(), indices);
+            this.mse = new QualityMeasureColumnOriented(input.getHandle(), indices);
 
             // Row oriented
             this.aecs = new QualityMeasureRowOriented(0d, 0d, 1d);
@@ -141,201 +140,116 @@ public class StatisticsQuality {
         }
         
         // Pre-computed frequently needed data
-        Groupify<TupleWrapper> groupedInput = this.getGroupify(input, indices);
-        this.progress.value = 6;
-        Groupify<TupleWrapper> groupedOutput = this.getGroupify(output, indices);
-        this.progress.value = 8;
-        String[][][] hierarchies = getHierarchies(input, indices, configuration);
-        QualityDomainShare[] shares = getDomainShares(input, indices, hierarchies, configuration);
+        String[][][] hierarchies = getHierarchies(input.getHandle(), indices, configuration);
+        QualityDomainShare[] shares = getDomainShares(input.getHandle(), indices, hierarchies, configuration);
 
         this.progress.value = 10;
         
-        // Build
-        int workload = 10;
+        // Build all models which are based on scans of the data in a single pass
+        int workload = 43;
         try {
-            
-            this.loss = new QualityModelColumnOrientedLoss(stop,
-                                                           progress,
-                                                           workload,
-                                                           input,
-                                                           output,
-                                                           groupedInput,
-                                                           groupedOutput,
-                                                           hierarchies,
-                                                           shares,
-                                                           indices,
-                                                           configuration).evaluate();
+            QualityModelFused fused = new QualityModelFused(stop,
+                                                            progress,
+                                                            workload,
+                                                            input,
+                                                            output,
+                                                            hierarchies,
+                                                            shares,
+                                                            indices,
+                                                            configuration,
+                                                            models).evaluate();
             this.checkInterrupt();
+            this.loss = fused.getLoss();
+            this.precision = fused.getPrecision();
+            this.aecs = fused.getAECS();
+            this.ambiguity = fused.getAmbiguity();
+            this.discernibility = fused.getDiscernibility();
+            this.kldivergence = fused.getKLDivergence();
         } catch (Exception e) {
             // Fail silently
             this.loss = new QualityMeasureColumnOriented();
+            this.precision = new QualityMeasureColumnOriented();
+            this.aecs = new QualityMeasureRowOriented();
+            this.ambiguity = new QualityMeasureRowOriented();
+            this.discernibility = new QualityMeasureRowOriented();
+            this.kldivergence = new QualityMeasureRowOriented();
             this.progress.value += workload;
         }
         
         // Build
         workload = 25;
-        try {
-            this.entropy = new QualityModelColumnOrientedNonUniformEntropy(stop,
-                                                                           progress,
-                                                                           workload,
-                                                                           input,
-                                                                           output,
-                                                                           groupedInput,
-                                                                           groupedOutput,
-                                                                           hierarchies,
-                                                                           shares,
-                                                                           indices,
-                                                                           configuration).evaluate();
-            this.checkInterrupt();
-        } catch (Exception e) {
-            // Fail silently
+        if (models.contains(QualityModelType.NON_UNIFORM_ENTROPY)) {
+            try {
+                this.entropy = new QualityModelColumnOrientedNonUniformEntropy(stop,
+                                                                               progress,
+                                                                               workload,
+                                                                               input.getHandle(),
+                                                                               output.getHandle(),
+                                                                               null,
+                                                                               null,
+                                                                               hierarchies,
+                                                                               shares,
+                                                                               indices,
+                                                                               configuration).evaluate();
+                this.checkInterrupt();
+            } catch (Exception e) {
+                // Fail silently
+                this.entropy = new QualityMeasureColumnOriented();
+                this.progress.value += workload;
+            }
+        } else {
             this.entropy = new QualityMeasureColumnOriented();
             this.progress.value += workload;
         }
-
-        // Build
-        workload = 10;
-        try {
-            this.precision = new QualityModelColumnOrientedPrecision(stop,
-                                                                     progress,
-                                                                     workload,
-                                                                     input,
-                                                                     output,
-                                                                     groupedInput,
-                                                                     groupedOutput,
-                                                                     hierarchies,
-                                                                     shares,
-                                                                     indices,
-                                                                     configuration).evaluate();
-            this.checkInterrupt();
-        } catch (Exception e) {
-            // Fail silently
-            this.precision = new QualityMeasureColumnOriented();
-            this.progress.value += workload;
-        }
-
+        
         // Build
         workload = 10;
-        try {
-            this.mse = new QualityModelColumnOrientedMSE(stop,
-                                                         progress,
-                                                         workload,
-                                                         input,
-                                                         output,
-                                                         groupedInput,
-                                                         groupedOutput,
-                                                         hierarchies,
-                                                         shares,
-                                                         indices,
-                                                         configuration).evaluate();
-            this.checkInterrupt();
-        } catch (Exception e) {
-            // Fail silently
+        if (models.contains(QualityModelType.MSE)) {
+            try {
+                this.mse = new QualityModelColumnOrientedMSE(stop,
+                                                             progress,
+                                                             workload,
+                                                             input.getHandle(),
+                                                             output.getHandle(),
+                                                             null,
+                                                             null,
+                                                             hierarchies,
+                                                             shares,
+                                                             indices,
+                                                             configuration).evaluate();
+                this.checkInterrupt();
+            } catch (Exception e) {
+                // Fail silently
+                this.mse = new QualityMeasureColumnOriented();
+                this.progress.value += workload;
+            }
+        } else {
             this.mse = new QualityMeasureColumnOriented();
             this.progress.value += workload;
         }
-
-        // Build
-        workload = 1;
-        try {
-            this.aecs = new QualityModelRowOrientedAECS(stop,
-                                                        progress,
-                                                        workload,
-                                                        input,
-                                                        output,
-                                                        groupedInput,
-                                                        groupedOutput,
-                                                        hierarchies,
-                                                        shares,
-                                                        indices,
-                                                        configuration).evaluate();
-            this.checkInterrupt();
-        } catch (Exception e) {
-            // Fail silently
-            this.aecs = new QualityMeasureRowOriented();
-            this.progress.value += workload;
-        }
-
-        // Build
-        workload = 10;
-        try {
-            this.ambiguity = new QualityModelRowOrientedAmbiguity(stop,
-                                                                  progress,
-                                                                  workload,
-                                                                  input,
-                                                                  output,
-                                                                  groupedInput,
-                                                                  groupedOutput,
-                                                                  hierarchies,
-                                                                  shares,
-                                                                  indices,
-                                                                  configuration).evaluate();
-            this.checkInterrupt();
-        } catch (Exception e) {
-            // Fail silently
-            this.ambiguity = new QualityMeasureRowOriented();
-            this.progress.value += workload;
-        }
         
-        // Build
-        workload = 2;
-        try {
-            this.discernibility = new QualityModelRowOrientedDiscernibility(stop,
-                                                                            progress,
-                                                                            workload,
-                                                                            input,
-                                                                            output,
-                                                                            groupedInput,
-                                                                            groupedOutput,
-                                                                            hierarchies,
-                                                                            shares,
-                                                                            indices,
-                                                                            configuration).evaluate();
-            this.checkInterrupt();
-        } catch (Exception e) {
-            // Fail silently
-            this.discernibility = new QualityMeasureRowOriented();
-            this.progress.value += workload;
-        }
-
-        // Build
-        workload = 10;
-        try {
-            this.kldivergence = new QualityModelRowOrientedKLDivergence(stop,
-                                                                        progress,
-                                                                        workload,
-                                                                        input,
-                                                                        output,
-                                                                        groupedInput,
-                                                                        groupedOutput,
-                                                                        hierarchies,
-                                                                        shares,
-                                                                        indices,
-                                                                        configuration).evaluate();
-            this.checkInterrupt();
-        } catch (Exception e) {
-            // Fail silently
-            this.kldivergence = new QualityMeasureRowOriented();
-            this.progress.value += workload;
-        }
-
         // Build
         workload = 12;
-        try {
-            this.sse = new QualityModelRowOrientedSSE(stop,
-                                                      progress,
-                                                      workload,
-                                                      input,
-                                                      output,
-                                                      groupedInput,
-                                                      groupedOutput,
-                                                      hierarchies,
-                                                      shares,
-                                                      indices,
-                                                      configuration).evaluate();
-            this.checkInterrupt();
-        } catch (Exception e) {
-            // Fail silently
+        if (models.contains(QualityModelType.SSE)) {
+            try {
+                this.sse = new QualityModelRowOrientedSSE(stop,
+                                                          progress,
+                                                          workload,
+                                                          input.getHandle(),
+                                                          output.getHandle(),
+                                                          null,
+                                                          null,
+                                                          hierarchies,
+                                                          shares,
+                                                          indices,
+                                                          configuration).evaluate();
+                this.checkInterrupt();
+            } catch (Exception e) {
+                // Fail silently
+                this.sse = new QualityMeasureRowOriented();
+                this.progress.value += workload;
+            }
+        } else {
             this.sse = new QualityMeasureRowOriented();
             this.progress.value += workload;
         }
@@ -561,29 +475,6 @@ public class StatisticsQuality {
         return shares;
     }
 
-    /**
-     * Returns a groupified version of the dataset
-     * 
-     * @param handle
-     * @param indices
-     * @return
-     */
-    private Groupify<TupleWrapper> getGroupify(DataHandle handle, int[] indices) {
-        
-        // Prepare
-        int capacity = handle.getNumRows() / 10;
-        capacity = capacity > 10 ? capacity : 10;
-        Groupify<TupleWrapper> groupify = new Groupify<TupleWrapper>(capacity);
-        int numRows = handle.getNumRows();
-        for (int row = 0; row < numRows; row++) {
-            TupleWrapper tuple = new TupleWrapper(handle, indices, row);
-            groupify.add(tuple);
-            checkInterrupt();
-        }
-        
-        return groupify;
-    }
-
     /**
      * Returns hierarchies, creates trivial hierarchies if no hierarchy is found.
      * Adds an additional level, if there is no root node
@@ -678,7 +569,7 @@ public class StatisticsQuality {
      * @param indices
      * @return
      */
-    private QualityMeasureColumnOriented getMissings(DataHandle output, int[] indices) {
+    private QualityMeasureColumnOriented getMissings(DataHandleInternal output, int[] indices) {
         
         // Prepare
         double[] minimum = new double[indices.length];
@@ -687,6 +578,14 @@ public class StatisticsQuality {
         Arrays.fill(minimum, 0d);
         Arrays.fill(maximum, 1d);
         
+        // Groups of records
+        GroupifyIncremental groupify = indices.length == 0 ? null : output.getGroupify(indices, new InterruptHandler() {
+            @Override
+            public void checkInterrupt() {
+                StatisticsQuality.this.checkInterrupt();
+            }
+        });
+        
         // Calculate
         for (int i = 0; i < indices.length; i++) {
 
@@ -700,32 +599,37 @@ public class StatisticsQuality {
             }
             String ROOT_VALUE = (roots.size() == 1) ? roots.iterator().next() : null;
             
+            // Determine codes of missings
+            String[] values = output.getDictionary(column);
+            boolean[] missing = new boolean[values.length];
+            for (int code = 0; code < values.length; code++) {
+                String value = values[code];
+                missing[code] = value.equals(DataType.ANY_VALUE) ||
+                                value.equals(DataType.NULL_VALUE) ||
+                                value.equals(ROOT_VALUE);
+            }
+            
             // Search for missings
             double missings = 0d;
-            for (int row = 0; row < output.getNumRows(); row++) {
+            for (int group = 0; group < groupify.size(); group++) {
                 
-                // Suppressed record
-                if (output.isOutlier(row)) {
-                    missings += 1d; 
-                } else {
-                    
-                    // Suppressed value
-                    String value = output.getValue(row, column);
-                    if (value.equals(DataType.ANY_VALUE) ||
-                        value.equals(DataType.NULL_VALUE) ||
-                        value.equals(ROOT_VALUE)) {
-                        missings += 1d;
-                    }
+                // Suppressed records or values
+                int outliers = groupify.getNumberOfOutliers(group);
+                missings += outliers;
+                if (missing[groupify.getCode(group, i)]) {
+                    missings += groupify.getCount(group) - outliers; 
                 }
                 
                 // Check
-                checkInterrupt();
+                if ((group & 0xFFF) == 0) {
+                    checkInterrupt();
+                }
             } 
             missings /= (double)output.getNumRows();
             result[i] = 1d - missings;
         }
 
         // Return
-        return new QualityMeasureColumnOriented(output, indices, minimum, result, maximum);
+        return new QualityMeasureColumnOriented(output.getHandle(), indices, minimum, result, maximum);
     }
-}
+}
@@ -18,11 +18,12 @@ package org.deidentifier.arx.aggregates;
 
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 import org.deidentifier.arx.DataScale;
 import org.deidentifier.arx.DataType;
@@ -35,6 +36,202 @@ import org.deidentifier.arx.DataType.DataTypeWithRatioScale;
  */
 public class StatisticsSummary<T> {
     
+    /**
+     * Moments of variables with interval or ratio scale. Measures are added as pairs of distinct
+     * values and frequencies, which requires memory linear in the number of distinct values only.
+     * @author Fabian Prasser
+     *
+     */
+    static final class StatisticsSummaryNumeric {
+
+        /** Var */
+        private double[] values;
+        /** Var */
+        private int[]    frequencies;
+        /** Var */
+        private int      size;
+        /** Var */
+        private double   mean;
+        /** Var */
+        private double   variance;
+        /** Var */
+        private double   populationVariance;
+        /** Var */
+        private double   min;
+        /** Var */
+        private double   max;
+        /** Var */
+        private double   kurtosis;
+        /** Var */
+        private double   geometricMean;
+        /** Var */
+        private double   shiftedGeometricMean;
+
+        /**
+         * Constructor
+         * @param capacity Expected number of distinct values
+         */
+        StatisticsSummaryNumeric(int capacity) {
+            this.values = new double[Math.max(capacity, 1)];
+            this.frequencies = new int[Math.max(capacity, 1)];
+        }
+
+        /**
+         * Adds a value with the given frequency
+         * @param value
+         * @param frequency
+         */
+        public void addValue(double value, int frequency) {
+            if (frequency <= 0) {
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            values[size] = value;
+            frequencies[size] = frequency;
+            size++;
+        }
+
+        /**
+         * Returns the geometric mean
+         * @return
+         */
+        public double getGeometricMean() {
+            return geometricMean;
+        }
+
+        /**
+         * Returns the bias-corrected kurtosis
+         * @return
+         */
+        public double getKurtosis() {
+            return kurtosis;
+        }
+
+        /**
+         * Returns the maximum
+         * @return
+         */
+        public double getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the arithmetic mean
+         * @return
+         */
+        public double getMean() {
+            return mean;
+        }
+
+        /**
+         * Returns the minimum
+         * @return
+         */
+        public double getMin() {
+            return min;
+        }
+
+        /**
+         * Returns the population variance
+         * @return
+         */
+        public double getPopulationVariance() {
+            return populationVariance;
+        }
+
+        /**
+         * Returns the geometric mean of all values incremented by one, decremented by one.
+         * This is also defined for data containing zeros.
+         * @return
+         */
+        public double getShiftedGeometricMean() {
+            return shiftedGeometricMean;
+        }
+
+        /**
+         * Returns the sample variance
+         * @return
+         */
+        public double getVariance() {
+            return variance;
+        }
+
+        /**
+         * Analyzes the data
+         */
+        void analyze() {
+
+            // Count
+            double n = 0d;
+            double sum = 0d;
+            double sumOfLogs = 0d;
+            double sumOfShiftedLogs = 0d;
+            min = Double.NaN;
+            max = Double.NaN;
+            for (int i = 0; i < size; i++) {
+                double value = values[i];
+                double frequency = frequencies[i];
+                n += frequency;
+                sum += value * frequency;
+                sumOfLogs += Math.log(value) * frequency;
+                sumOfShiftedLogs += Math.log(value + 1d) * frequency;
+                min = i == 0 || value < min ? value : min;
+                max = i == 0 || value > max ? value : max;
+            }
+            if (n == 0d) {
+                mean = Double.NaN;
+                variance = Double.NaN;
+                populationVariance = Double.NaN;
+                kurtosis = Double.NaN;
+                geometricMean = Double.NaN;
+                shiftedGeometricMean = Double.NaN;
+                return;
+            }
+
+            // Mean, corrected for rounding errors
+            mean = sum / n;
+            double correction = 0d;
+            for (int i = 0; i < size; i++) {
+                correction += (values[i] - mean) * frequencies[i];
+            }
+            mean += correction / n;
+
+            // Central moments
+            double deviation = 0d;
+            double moment2 = 0d;
+            double moment4 = 0d;
+            for (int i = 0; i < size; i++) {
+                double delta = values[i] - mean;
+                double delta2 = delta * delta;
+                deviation += delta * frequencies[i];
+                moment2 += delta2 * frequencies[i];
+                moment4 += delta2 * delta2 * frequencies[i];
+            }
+            moment2 -= deviation * deviation / n;
+            variance = n == 1d ? 0d : moment2 / (n - 1d);
+            populationVariance = moment2 / n;
+
+            // Kurtosis
+            if (n > 3d) {
+                double coefficient = (n * (n + 1d)) / ((n - 1d) * (n - 2d) * (n - 3d));
+                double term = (3d * (n - 1d) * (n - 1d)) / ((n - 2d) * (n - 3d));
+                kurtosis = coefficient * moment4 / (variance * variance) - term;
+            } else {
+                kurtosis = Double.NaN;
+            }
+
+            // Geometric means
+            geometricMean = Math.exp(sumOfLogs / n);
+            shiftedGeometricMean = Math.exp(sumOfShiftedLogs / n) - 1d;
+            
+            // Clear
+            size = 0;
+        }
+    }
+
     /**
      * Summary statistics for variables with ordinal scale
      * @author Fabian Prasser
@@ -45,7 +242,7 @@ public class StatisticsSummary<T> {
         /** Var */
         private final Comparator<String> comparator;
         /** Var */
-        private final List<String>       values = new ArrayList<String>();
+        private final Map<String, int[]> frequencies = new LinkedHashMap<String, int[]>();
         /** Var */
         private String                   mode;
         /** Var */
@@ -93,7 +290,21 @@ public class StatisticsSummary<T> {
          * @param value
          */
         public void addValue(String value) {
-            this.values.add(value);
+            this.addValue(value, 1);
+        }
+        
+        /**
+         * Adds a value with the given frequency
+         * @param value
+         * @param frequency
+         */
+        public void addValue(String value, int frequency) {
+            int[] count = this.frequencies.get(value);
+            if (count == null) {
+                count = new int[1];
+                this.frequencies.put(value, count);
+            }
+            count[0] += frequency;
         }
         
         /**
@@ -145,27 +356,36 @@ public class StatisticsSummary<T> {
         }
         
         /**
-         * Returns the index of the next element that does not equal the element at the given index
+         * Returns the value at the given index of the sorted list of all measures
+         * @param values Sorted distinct values
          * @param index
-         * @param values
          * @return
          */
-        private int moveWhileEqual(int index, List<String> values) {
-            String element = values.get(index);
-            // We can do == because of dictionary compression
-            while (index < values.size() && values.get(index) == element) { 
-                index++;
+        private String getValue(List<String> values, long index) {
+            long offset = 0;
+            for (String value : values) {
+                offset += frequencies.get(value)[0];
+                if (index < offset) {
+                    return value;
+                }
             }
-            return index;
+            throw new IndexOutOfBoundsException("Index: " + index);
         }
 
         /**
-         * Analyzes the data
+         * Analyzes the data. Only distinct values are sorted, measures are represented by their frequencies.
          */
         <T> void analyze() {
+            
+            // Sort distinct values
+            List<String> values = new ArrayList<String>(frequencies.keySet());
             Collections.sort(values, comparator);
+            long size = 0;
+            for (int[] count : frequencies.values()) {
+                size += count[0];
+            }
             
-            if (values.size() == 0) {
+            if (size == 0) {
                 min = DataType.NULL_VALUE;
                 max = DataType.NULL_VALUE;
                 mode = DataType.NULL_VALUE;
@@ -177,50 +397,42 @@ public class StatisticsSummary<T> {
                 // Determine simple things
                 min = values.get(0);
                 max = values.get(values.size() - 1);
-                if (values.size() % 2 == 1) {
-                    median = values.get(values.size() / 2);
+                if (size % 2 == 1) {
+                    median = getValue(values, size / 2);
                 } else if (type != null && type instanceof DataTypeWithRatioScale<?>) {
                     @SuppressWarnings("unchecked")
                     DataType<T> dType = (DataType<T>)type;
                     @SuppressWarnings("unchecked")
                     DataTypeWithRatioScale<T> rType = (DataTypeWithRatioScale<T>)dType;
-                    double median1 = rType.toDouble(dType.parse(values.get(values.size() / 2 - 1)));
-                    double median2 = rType.toDouble(dType.parse(values.get(values.size() / 2)));
+                    double median1 = rType.toDouble(dType.parse(getValue(values, size / 2 - 1)));
+                    double median2 = rType.toDouble(dType.parse(getValue(values, size / 2)));
                     median = dType.format(rType.fromDouble((median1 + median2) / 2d));
                 } else {
-                    String median1 = values.get(values.size() / 2 - 1);
-                    String median2 = values.get(values.size() / 2);
+                    String median1 = getValue(values, size / 2 - 1);
+                    String median2 = getValue(values, size / 2);
                     if (median1 == median2) {
                         median = median1;
                     } else {
                         median = DataType.NULL_VALUE;
                     }
                 }
-                numberOfMeasures = values.size();
-                
-                // determine distinct number of measures
-                Set<String> distinct = new HashSet<String>();
-                distinct.addAll(values);
-                distinctNumberOfValues = distinct.size();
-                distinct.clear();
+                numberOfMeasures = (int) size;
+                distinctNumberOfValues = values.size();
                 
                 // Determine mode
                 int count = 0;
-                int index = 0;
                 mode = values.get(0);
-                while (index < values.size()) {
-                    int nIndex = moveWhileEqual(index, values);
-                    int nCount = nIndex - index;
+                for (String value : values) {
+                    int nCount = frequencies.get(value)[0];
                     if (nCount > count) {
-                        mode = values.get(index);
+                        mode = value;
                         count = nCount;
                     }
-                    index = nIndex;
                 }
             }
             
             // Clear
-            values.clear();
+            frequencies.clear();
         }
     }
 
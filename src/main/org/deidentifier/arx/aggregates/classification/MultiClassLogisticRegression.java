@@ -22,10 +22,8 @@ import org.apache.mahout.classifier.sgd.L2;
 import org.apache.mahout.classifier.sgd.OnlineLogisticRegression;
 import org.apache.mahout.classifier.sgd.PriorFunction;
 import org.apache.mahout.classifier.sgd.UniformPrior;
-import org.apache.mahout.math.DenseVector;
+import org.apache.mahout.math.SequentialAccessSparseVector;
 import org.apache.mahout.math.Vector;
-import org.apache.mahout.vectorizer.encoders.ConstantValueEncoder;
-import org.apache.mahout.vectorizer.encoders.StaticWordValueEncoder;
 import org.deidentifier.arx.ARXLogisticRegressionConfiguration;
 import org.deidentifier.arx.DataHandleInternal;
 
@@ -36,15 +34,23 @@ import org.deidentifier.arx.DataHandleInternal;
 public class MultiClassLogisticRegression implements ClassificationMethod {
 
     /** Config */
-    private final ARXLogisticRegressionConfiguration config;
-    /** Encoder */
-    private final ConstantValueEncoder               interceptEncoder;
+    private final ARXLogisticRegressionConfiguration  config;
+    /** Encoder for the handle which has been used last, may be null */
+    private MultiClassLogisticRegressionEncoder       encoder;
+    /** Indexes of the entries of the current record */
+    private int[]                                     indexes = new int[0];
     /** Instance */
-    private final OnlineLogisticRegression           lr;
+    private final OnlineLogisticRegression            lr;
+    /** Shared encoder, may be null */
+    private final MultiClassLogisticRegressionEncoder sharedEncoder;
+    /** Number of entries of the current record */
+    private int                                       size    = 0;
     /** Specification */
-    private final ClassificationDataSpecification    specification;
-    /** Encoder */
-    private final StaticWordValueEncoder             wordEncoder;
+    private final ClassificationDataSpecification     specification;
+    /** The vector which is reused for all records */
+    private final SequentialAccessSparseVector        vector;
+    /** Weights of the entries of the current record */
+    private double[]                                  weights = new double[0];
 
     /**
      * Creates a new instance
@@ -53,10 +59,24 @@ public class MultiClassLogisticRegression implements ClassificationMethod {
      */
     public MultiClassLogisticRegression(ClassificationDataSpecification specification,
                                         ARXLogisticRegressionConfiguration config) {
+        this(specification, config, null);
+    }
+
+    /**
+     * Creates a new instance, which uses the given encoder for all records of the
+     * according handle
+     * @param specification
+     * @param config
+     * @param sharedEncoder
+     */
+    public MultiClassLogisticRegression(ClassificationDataSpecification specification,
+                                        ARXLogisticRegressionConfiguration config,
+                                        MultiClassLogisticRegressionEncoder sharedEncoder) {
 
         // Store
         this.config = config;
         this.specification = specification;
+        this.sharedEncoder = sharedEncoder;
         
         // Prepare classifier
         PriorFunction prior = null;
@@ -85,9 +105,8 @@ public class MultiClassLogisticRegression implements ClassificationMethod {
         this.lr.stepOffset(config.getStepOffset());
         this.lr.decayExponent(config.getDecayExponent());    
         
-        // Prepare encoders
-        this.interceptEncoder = new ConstantValueEncoder("intercept");
-        this.wordEncoder = new StaticWordValueEncoder("feature");
+        // Prepare vector
+        this.vector = new SequentialAccessSparseVector(config.getVectorLength());
         
         // Configure
         this.lr.learningRate(1);
@@ -130,27 +149,32 @@ public class MultiClassLogisticRegression implements ClassificationMethod {
      */
     private Vector encodeFeatures(DataHandleInternal handle, int row) {
 
-        // Prepare
-        DenseVector vector = new DenseVector(config.getVectorLength());
-        interceptEncoder.addToVector("1", vector);
-        
-        // Special case where there are no features
-        if (specification.featureIndices.length == 0) {
-            wordEncoder.addToVector("Feature:1", 1, vector);
-            return vector;
+        // Obtain encoder
+        MultiClassLogisticRegressionEncoder encoder = this.sharedEncoder;
+        if (encoder == null || !encoder.isEncoded(handle)) {
+            if (this.encoder == null || !this.encoder.isEncoded(handle)) {
+                this.encoder = new MultiClassLogisticRegressionEncoder(specification, config, handle);
+            }
+            encoder = this.encoder;
         }
-        
-        // TODO: Consider difference between continuous and categorical
-        
-        // For each attribute
-        for (int index : specification.featureIndices) {
-            
-            // Obtain data
-            String name = "Attribute-"+index;
-            String value = handle.getValue(row, index, true);
-            wordEncoder.addToVector(name + ":" + value, 1, vector);
+
+        // Clear entries of the previous record, starting with the last one
+        for (int i = size - 1; i >= 0; i--) {
+            vector.setQuick(indexes[i], 0d);
         }
-        
+
+        // Prepare buffers
+        if (indexes.length < encoder.getMaxEntries()) {
+            indexes = new int[encoder.getMaxEntries()];
+            weights = new double[encoder.getMaxEntries()];
+        }
+
+        // Encode, entries are sorted and thus appended
+        size = encoder.encode(row, indexes, weights);
+        for (int i = 0; i < size; i++) {
+            vector.setQuick(indexes[i], weights[i]);
+        }
+
         // Return
         return vector;
     }
@@ -0,0 +1,245 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.aggregates.classification;
+
+import org.apache.mahout.math.RandomAccessSparseVector;
+import org.apache.mahout.math.Vector;
+import org.apache.mahout.math.Vector.Element;
+import org.apache.mahout.vectorizer.encoders.ConstantValueEncoder;
+import org.apache.mahout.vectorizer.encoders.StaticWordValueEncoder;
+import org.deidentifier.arx.ARXLogisticRegressionConfiguration;
+import org.deidentifier.arx.DataHandleInternal;
+import org.deidentifier.arx.common.WrappedBoolean;
+import org.deidentifier.arx.exceptions.ComputationInterruptedException;
+
+/**
+ * Encodes the features of the records of a handle for logistic regression. Values are hashed
+ * into a vector of the configured length. As the values of each feature are taken from the
+ * dictionary of the according column, the hashed entries are computed once for each code in
+ * the dictionaries and stored as index/weight pairs. The features of a record are then encoded
+ * by looking up the entries of its codes, without creating strings or vectors. Instances are
+ * immutable and can be shared between multiple classifiers and threads. They must not be used
+ * after the dictionaries of the handle have been modified.
+ *
+ * @author Fabian Prasser
+ */
+public class MultiClassLogisticRegressionEncoder {
+
+    /** The handle */
+    private final DataHandleInternal handle;
+    /** The columns of the features */
+    private final int[]              columns;
+    /** Indexes of the entries which are present in all records */
+    private final int[]              constantIndexes;
+    /** Weights of the entries which are present in all records */
+    private final double[]           constantWeights;
+    /** Offsets of the entries of each code, indexed by feature */
+    private final int[][]            offsets;
+    /** Indexes of the entries of all codes, indexed by feature */
+    private final int[][]            indexes;
+    /** Weights of the entries of all codes, indexed by feature */
+    private final double[][]         weights;
+    /** The maximal number of entries of a record */
+    private final int                maxEntries;
+
+    /**
+     * Creates a new instance for the given handle
+     * @param specification
+     * @param config
+     * @param handle
+     */
+    public MultiClassLogisticRegressionEncoder(ClassificationDataSpecification specification,
+                                               ARXLogisticRegressionConfiguration config,
+                                               DataHandleInternal handle) {
+        this(specification, config, handle, new WrappedBoolean());
+    }
+
+    /**
+     * Creates a new instance for the given handle
+     * @param specification
+     * @param config
+     * @param handle
+     * @param interrupt
+     */
+    public MultiClassLogisticRegressionEncoder(ClassificationDataSpecification specification,
+                                               ARXLogisticRegressionConfiguration config,
+                                               DataHandleInternal handle,
+                                               WrappedBoolean interrupt) {
+
+        // Prepare
+        ConstantValueEncoder interceptEncoder = new ConstantValueEncoder("intercept");
+        StaticWordValueEncoder wordEncoder = new StaticWordValueEncoder("feature");
+        int length = config.getVectorLength();
+        this.handle = handle;
+        this.columns = specification.featureIndices;
+        this.offsets = new int[columns.length][];
+        this.indexes = new int[columns.length][];
+        this.weights = new double[columns.length][];
+
+        // Entries which are present in all records
+        Vector vector = new RandomAccessSparseVector(length);
+        interceptEncoder.addToVector("1", vector);
+
+        // Special case where there are no features
+        if (columns.length == 0) {
+            wordEncoder.addToVector("Feature:1", 1, vector);
+        }
+        this.constantIndexes = new int[vector.getNumNonZeroElements()];
+        this.constantWeights = new double[constantIndexes.length];
+        getEntries(vector, constantIndexes, constantWeights, 0);
+
+        // TODO: Consider difference between continuous and categorical
+
+        // For each attribute
+        for (int i = 0; i < columns.length; i++) {
+
+            // Check
+            if (interrupt.value) {
+                throw new ComputationInterruptedException("Interrupted");
+            }
+
+            // Encode each value
+            String name = "Attribute-" + columns[i];
+            String[] dictionary = handle.getDictionary(columns[i]);
+            Vector[] vectors = new Vector[dictionary.length];
+            int[] offsets = new int[dictionary.length + 1];
+            int entries = 0;
+            for (int code = 0; code < dictionary.length; code++) {
+                vectors[code] = new RandomAccessSparseVector(length);
+                wordEncoder.addToVector(name + ":" + dictionary[code], 1, vectors[code]);
+                offsets[code] = entries;
+                entries += vectors[code].getNumNonZeroElements();
+            }
+            offsets[dictionary.length] = entries;
+
+            // Store entries
+            int[] indexes = new int[entries];
+            double[] weights = new double[entries];
+            for (int code = 0; code < dictionary.length; code++) {
+                getEntries(vectors[code], indexes, weights, offsets[code]);
+            }
+            this.offsets[i] = offsets;
+            this.indexes[i] = indexes;
+            this.weights[i] = weights;
+        }
+
+        // Maximal number of entries per record
+        int entries = constantIndexes.length;
+        for (int i = 0; i < columns.length; i++) {
+            int maxEntriesPerCode = 0;
+            for (int code = 0; code < offsets[i].length - 1; code++) {
+                maxEntriesPerCode = Math.max(maxEntriesPerCode, offsets[i][code + 1] - offsets[i][code]);
+            }
+            entries += maxEntriesPerCode;
+        }
+        this.maxEntries = entries;
+    }
+
+    /**
+     * Encodes the features of the given record as index/weight pairs. Pairs are sorted by index
+     * and entries with equal indexes are summed up in the order of the features.
+     * @param row
+     * @param indexes - Must provide space for {@link #getMaxEntries()} entries
+     * @param weights - Must provide space for {@link #getMaxEntries()} entries
+     * @return The number of entries
+     */
+    int encode(int row, int[] indexes, double[] weights) {
+
+        // Constant entries
+        int size = 0;
+        for (int i = 0; i < constantIndexes.length; i++) {
+            size = add(indexes, weights, size, constantIndexes[i], constantWeights[i]);
+        }
+
+        // For each attribute
+        for (int i = 0; i < columns.length; i++) {
+            int code = handle.getEncodedValue(row, columns[i], true);
+            int[] _indexes = this.indexes[i];
+            double[] _weights = this.weights[i];
+            for (int j = offsets[i][code]; j < offsets[i][code + 1]; j++) {
+                size = add(indexes, weights, size, _indexes[j], _weights[j]);
+            }
+        }
+
+        // Return
+        return size;
+    }
+
+    /**
+     * Returns the maximal number of entries of a record
+     * @return
+     */
+    int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Returns whether this instance encodes the records of the given handle
+     * @param handle
+     * @return
+     */
+    boolean isEncoded(DataHandleInternal handle) {
+        return this.handle == handle;
+    }
+
+    /**
+     * Adds an entry to the given sorted entries
+     * @param indexes
+     * @param weights
+     * @param size
+     * @param index
+     * @param weight
+     * @return The new number of entries
+     */
+    private int add(int[] indexes, double[] weights, int size, int index, double weight) {
+
+        // Find position
+        int position = size;
+        while (position > 0 && indexes[position - 1] > index) {
+            position--;
+        }
+
+        // Sum up
+        if (position > 0 && indexes[position - 1] == index) {
+            weights[position - 1] += weight;
+            return size;
+        }
+
+        // Insert
+        System.arraycopy(indexes, position, indexes, position + 1, size - position);
+        System.arraycopy(weights, position, weights, position + 1, size - position);
+        indexes[position] = index;
+        weights[position] = weight;
+        return size + 1;
+    }
+
+    /**
+     * Stores the non-zero entries of the vector
+     * @param vector
+     * @param indexes
+     * @param weights
+     * @param offset
+     */
+    private void getEntries(Vector vector, int[] indexes, double[] weights, int offset) {
+        for (Element element : vector.nonZeroes()) {
+            indexes[offset] = element.index();
+            weights[offset] = element.get();
+            offset++;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.aggregates.classification;
+
+import org.deidentifier.arx.ARXNaiveBayesConfiguration;
+import org.deidentifier.arx.DataHandleInternal;
+
+import com.carrotsearch.hppc.ObjectIntOpenHashMap;
+
+/**
+ * Implements a categorical naive bayes classifier. Training only counts the co-occurrences of the
+ * codes of features and classes, which means that a model can be trained with a single pass over
+ * the data. Models which have been trained on disjoint sets of records of the same handles, e.g.
+ * in parallel, can be merged. Probabilities are estimated with additive smoothing.
+ *
+ * @author Fabian Prasser
+ */
+public class MultiClassNaiveBayes implements ClassificationMethod {
+
+    /** The number of records of each class */
+    private final int[]                           classCounts;
+    /** Maps the codes of the class attribute to classes, -1 if unknown */
+    private int[]                                 classes;
+    /** The handle providing the class attribute */
+    private DataHandleInternal                    clazz;
+    /** Codes of features of a foreign handle mapped to codes of the features handle, indexed by feature */
+    private int[][]                               codes;
+    /** Config */
+    private final ARXNaiveBayesConfiguration      config;
+    /** Counts of codes per class, indexed by feature and code * number of classes + class */
+    private int[][]                               counts;
+    /** The handle providing the features */
+    private DataHandleInternal                    features;
+    /** The foreign handle for which codes have been mapped */
+    private DataHandleInternal                    foreign;
+    /** Logarithms of the prior probabilities of classes, null if not computed */
+    private double[]                              priors;
+    /** Logarithms of the conditional probabilities, indexed like the counts, null if not computed */
+    private double[][]                            probabilities;
+    /** Specification */
+    private final ClassificationDataSpecification specification;
+
+    /**
+     * Creates a new instance
+     * @param specification
+     * @param config
+     */
+    public MultiClassNaiveBayes(ClassificationDataSpecification specification,
+                                ARXNaiveBayesConfiguration config) {
+        this.specification = specification;
+        this.config = config;
+        this.classCounts = new int[specification.classMap.size()];
+    }
+
+    @Override
+    public ClassificationResult classify(DataHandleInternal features, int row) {
+
+        // Prepare
+        if (priors == null) {
+            computeProbabilities();
+        }
+        int[] columns = specification.featureIndices;
+        int numClasses = classCounts.length;
+        double[] result = priors.clone();
+
+        // For each attribute
+        for (int i = 0; i < columns.length; i++) {
+            int code = getCode(features, row, i);
+            double[] _probabilities = probabilities[i];
+            if (code >= 0) {
+                int offset = code * numClasses;
+                for (int c = 0; c < numClasses; c++) {
+                    result[c] += _probabilities[offset + c];
+                }
+            } else {
+                // Unknown value
+                double smoothing = Math.log(config.getSmoothing());
+                for (int c = 0; c < numClasses; c++) {
+                    result[c] += smoothing - getLogDenominator(i, c);
+                }
+            }
+        }
+
+        // Normalize
+        double max = Double.NEGATIVE_INFINITY;
+        for (int c = 0; c < numClasses; c++) {
+            max = Math.max(max, result[c]);
+        }
+        double sum = 0d;
+        for (int c = 0; c < numClasses; c++) {
+            result[c] = Math.exp(result[c] - max);
+            sum += result[c];
+        }
+        for (int c = 0; c < numClasses; c++) {
+            result[c] /= sum;
+        }
+
+        // Return
+        return new MultiClassNaiveBayesClassificationResult(result, specification.classMap);
+    }
+
+    @Override
+    public void close() {
+        // Nothing to do
+    }
+
+    /**
+     * Returns whether the model has counted at least one record
+     * @return
+     */
+    public boolean isTrained() {
+        for (int count : classCounts) {
+            if (count > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the counts of the given model, which must have been trained on the same handles
+     * @param other
+     */
+    public void merge(MultiClassNaiveBayes other) {
+
+        // Nothing to merge
+        if (other.counts == null) {
+            return;
+        }
+
+        // Check
+        if (this.counts == null) {
+            initialize(other.features, other.clazz);
+        } else if (this.features != other.features || this.clazz != other.clazz) {
+            throw new IllegalArgumentException("Models must be trained on the same data");
+        }
+
+        // Merge
+        for (int c = 0; c < classCounts.length; c++) {
+            classCounts[c] += other.classCounts[c];
+        }
+        for (int i = 0; i < counts.length; i++) {
+            int[] _counts = counts[i];
+            int[] _other = other.counts[i];
+            for (int j = 0; j < _counts.length; j++) {
+                _counts[j] += _other[j];
+            }
+        }
+        priors = null;
+        probabilities = null;
+    }
+
+    @Override
+    public void train(DataHandleInternal features, DataHandleInternal clazz, int row) {
+
+        // Check
+        if (this.counts == null) {
+            initialize(features, clazz);
+        } else if (this.features != features || this.clazz != clazz) {
+            throw new IllegalArgumentException("Model must be trained on the same data");
+        }
+
+        // Class
+        int value = classes[clazz.getEncodedValue(row, specification.classIndex, true)];
+        if (value == -1) {
+            return;
+        }
+        classCounts[value]++;
+
+        // Features
+        int[] columns = specification.featureIndices;
+        int numClasses = classCounts.length;
+        for (int i = 0; i < columns.length; i++) {
+            counts[i][features.getEncodedValue(row, columns[i], true) * numClasses + value]++;
+        }
+        priors = null;
+        probabilities = null;
+    }
+
+    /**
+     * Computes the logarithms of all probabilities
+     */
+    private void computeProbabilities() {
+
+        // Prepare
+        int numClasses = classCounts.length;
+        double smoothing = config.getSmoothing();
+        int total = 0;
+        for (int c = 0; c < numClasses; c++) {
+            total += classCounts[c];
+        }
+
+        // Priors
+        priors = new double[numClasses];
+        for (int c = 0; c < numClasses; c++) {
+            priors[c] = Math.log(classCounts[c] + smoothing) - Math.log(total + smoothing * numClasses);
+        }
+
+        // Conditional probabilities
+        int[] columns = specification.featureIndices;
+        probabilities = new double[columns.length][];
+        for (int i = 0; counts != null && i < columns.length; i++) {
+            int[] _counts = counts[i];
+            double[] _probabilities = new double[_counts.length];
+            double[] denominators = new double[numClasses];
+            for (int c = 0; c < numClasses; c++) {
+                denominators[c] = getLogDenominator(i, c);
+            }
+            for (int j = 0; j < _counts.length; j++) {
+                _probabilities[j] = Math.log(_counts[j] + smoothing) - denominators[j % numClasses];
+            }
+            probabilities[i] = _probabilities;
+        }
+    }
+
+    /**
+     * Returns the code of the given feature of the given record, mapped to the codes of the handle
+     * which has been used for training. Returns -1, if the value has not been seen.
+     * @param handle
+     * @param row
+     * @param index
+     * @return
+     */
+    private int getCode(DataHandleInternal handle, int row, int index) {
+
+        // Not trained
+        if (counts == null) {
+            return -1;
+        }
+
+        // Same handle
+        int code = handle.getEncodedValue(row, specification.featureIndices[index], true);
+        if (handle == features) {
+            return code;
+        }
+
+        // Map codes of another handle by their values
+        if (handle != foreign) {
+            int[] columns = specification.featureIndices;
+            codes = new int[columns.length][];
+            for (int i = 0; i < columns.length; i++) {
+                ObjectIntOpenHashMap<String> map = new ObjectIntOpenHashMap<String>();
+                String[] dictionary = features.getDictionary(columns[i]);
+                for (int j = dictionary.length - 1; j >= 0; j--) {
+                    map.put(dictionary[j], j);
+                }
+                dictionary = handle.getDictionary(columns[i]);
+                codes[i] = new int[dictionary.length];
+                for (int j = 0; j < dictionary.length; j++) {
+                    codes[i][j] = map.containsKey(dictionary[j]) ? map.lget() : -1;
+                }
+            }
+            foreign = handle;
+        }
+        return codes[index][code];
+    }
+
+    /**
+     * Returns the logarithm of the denominator of the conditional probabilities for the given
+     * feature and class
+     * @param index
+     * @param clazz
+     * @return
+     */
+    private double getLogDenominator(int index, int clazz) {
+        int values = counts == null ? 1 : counts[index].length / classCounts.length;
+        return Math.log(classCounts[clazz] + config.getSmoothing() * values);
+    }
+
+    /**
+     * Initializes the model for the given handles
+     * @param features
+     * @param clazz
+     */
+    private void initialize(DataHandleInternal features, DataHandleInternal clazz) {
+
+        // Store
+        this.features = features;
+        this.clazz = clazz;
+
+        // Map codes of the class attribute
+        String[] dictionary = clazz.getDictionary(specification.classIndex);
+        this.classes = new int[dictionary.length];
+        for (int code = 0; code < dictionary.length; code++) {
+            Integer value = specification.classMap.get(dictionary[code]);
+            classes[code] = value == null ? -1 : value;
+        }
+
+        // Prepare counts
+        int[] columns = specification.featureIndices;
+        this.counts = new int[columns.length][];
+        for (int i = 0; i < columns.length; i++) {
+            counts[i] = new int[features.getDictionary(columns[i]).length * classCounts.length];
+        }
+    }
+}
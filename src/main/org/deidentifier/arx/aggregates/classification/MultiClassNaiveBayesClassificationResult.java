@@ -0,0 +1,72 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.aggregates.classification;
+
+import java.util.Map;
+
+/**
+ * A classification result
+ *
+ * @author Fabian Prasser
+ */
+public class MultiClassNaiveBayesClassificationResult implements ClassificationResult {
+
+    /** Field*/
+    private final Map<String, Integer> map;
+    /** Field*/
+    private final double[]             probabilities;
+    /** Field*/
+    private final int                  index;
+
+    /**
+     * Creates a new instance
+     * @param probabilities
+     * @param map
+     */
+    MultiClassNaiveBayesClassificationResult(double[] probabilities, Map<String, Integer> map) {
+        this.map = map;
+        this.probabilities = probabilities;
+        int index = 0;
+        for (int i = 1; i < probabilities.length; i++) {
+            if (probabilities[i] > probabilities[index]) {
+                index = i;
+            }
+        }
+        this.index = index;
+    }
+
+    @Override
+    public double confidence() {
+        return probabilities[index];
+    }
+
+    @Override
+    public boolean correct(String clazz) {
+        return index == map.get(clazz).intValue();
+    }
+
+    @Override
+    public double error(String clazz) {
+        return 1d - probabilities[map.get(clazz)];
+    }
+
+    @Override
+    public int index() {
+        return index;
+    }
+}
@@ -17,6 +17,8 @@
 package org.deidentifier.arx.aggregates.quality;
 
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.deidentifier.arx.DataType;
 import org.deidentifier.arx.DataType.ARXDate;
@@ -51,6 +53,9 @@ class QualityConfigurationValueParser<T> {
     /** Data type*/
     private final DataTypeWithRatioScale<T> type;
 
+    /** Values which have already been converted */
+    private final Map<String, Double>       cache = new HashMap<String, Double>();
+
     /**
      * Creates a new instance
      * @param type
@@ -80,10 +85,15 @@ class QualityConfigurationValueParser<T> {
             return 0d;
         }
         
-        // Parse
-        Double result = type.toDouble(type.parse(value));
-        
-        // Silently fall back to 0 for NULL values
-        return result != null ? result : 0d;
+        // Parse each distinct value only once
+        Double result = cache.get(value);
+        if (result == null) {
+            result = type.toDouble(type.parse(value));
+            
+            // Silently fall back to 0 for NULL values
+            result = result != null ? result : 0d;
+            cache.put(value, result);
+        }
+        return result;
     }
 }
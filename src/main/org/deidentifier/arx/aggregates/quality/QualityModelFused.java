@@ -0,0 +1,770 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.deidentifier.arx.aggregates.quality;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.deidentifier.arx.DataHandleInternal;
+import org.deidentifier.arx.DataHandleInternal.InterruptHandler;
+import org.deidentifier.arx.common.GroupifyIncremental;
+import org.deidentifier.arx.common.ParallelExecution;
+import org.deidentifier.arx.common.WrappedBoolean;
+import org.deidentifier.arx.common.WrappedInteger;
+
+/**
+ * Fused evaluation of all quality models which are based on scans of the input and the output.
+ * Rows are processed on dictionary codes, with shares, precisions and suppression flags precomputed
+ * once per code. Models which decompose into contributions of rows are evaluated from the groups of
+ * rows with equal values, which are maintained by the output handle when rows change. Only
+ * KL-Divergence requires a pass over all rows, in which ranges of rows are processed in parallel.
+ * Supports the models for which {@link QualityModelType#isFused()} returns true.
+ *
+ * @author Fabian Prasser
+ */
+public class QualityModelFused extends QualityModel<QualityModelFused> {
+
+    /**
+     * Partial results for a range of rows
+     *
+     * @author Fabian Prasser
+     */
+    private static class Accumulator {
+
+        /** Loss */
+        private final double[] loss;
+
+        /** Precision */
+        private final double[] precision;
+
+        /** Ambiguity */
+        private double         ambiguity;
+
+        /** Failure */
+        private boolean        ambiguityFailed;
+
+        /** KL-Divergence of the input */
+        private double         kldivergenceMinimum;
+
+        /** KL-Divergence of the output */
+        private double         kldivergence;
+
+        /** Failure */
+        private boolean        kldivergenceFailed;
+
+        /**
+         * Creates a new instance
+         * @param columns
+         */
+        private Accumulator(int columns) {
+            this.loss = new double[columns];
+            this.precision = new double[columns];
+        }
+
+        /**
+         * Adds the given partial results
+         * @param other
+         */
+        private void add(Accumulator other) {
+            for (int i = 0; i < loss.length; i++) {
+                this.loss[i] += other.loss[i];
+                this.precision[i] += other.precision[i];
+            }
+            this.ambiguity += other.ambiguity;
+            this.ambiguityFailed |= other.ambiguityFailed;
+            this.kldivergenceMinimum += other.kldivergenceMinimum;
+            this.kldivergence += other.kldivergence;
+            this.kldivergenceFailed |= other.kldivergenceFailed;
+        }
+    }
+
+    /** Minimal number of rows for parallel processing */
+    private static final int            PARALLEL_THRESHOLD = 1 << 16;
+
+    /** Encoded input */
+    private final DataHandleInternal    encodedInput;
+
+    /** Encoded output */
+    private final DataHandleInternal    encodedOutput;
+
+    /** Models */
+    private final Set<QualityModelType> models;
+
+    /** Result */
+    private QualityMeasureColumnOriented loss               = new QualityMeasureColumnOriented();
+
+    /** Result */
+    private QualityMeasureColumnOriented precision          = new QualityMeasureColumnOriented();
+
+    /** Result */
+    private QualityMeasureRowOriented    aecs               = new QualityMeasureRowOriented();
+
+    /** Result */
+    private QualityMeasureRowOriented    ambiguity          = new QualityMeasureRowOriented();
+
+    /** Result */
+    private QualityMeasureRowOriented    discernibility     = new QualityMeasureRowOriented();
+
+    /** Result */
+    private QualityMeasureRowOriented    kldivergence       = new QualityMeasureRowOriented();
+
+    /** Values of the input, indexed by column and code */
+    private String[][]                  inputValues;
+
+    /** Values of the output, indexed by column and code */
+    private String[][]                  outputValues;
+
+    /** Shares of the values of the input, indexed by column and code */
+    private double[][]                  inputShares;
+
+    /** Shares of the values of the output, indexed by column and code */
+    private double[][]                  outputShares;
+
+    /** Suppression of the values of the input, indexed by column and code */
+    private boolean[][]                 inputSuppressed;
+
+    /** Suppression of the values of the output, indexed by column and code */
+    private boolean[][]                 outputSuppressed;
+
+    /** Precisions of the values of the output, indexed by column and code */
+    private double[][]                  precisions;
+
+    /** Sizes of the domains, NaN if not available */
+    private double[]                    domainSizes;
+
+    /** Groups of the input */
+    private GroupifyIncremental         inputGroupify;
+
+    /** Groups of the output */
+    private GroupifyIncremental         outputGroupify;
+
+    /**
+     * Creates a new instance
+     *
+     * @param interrupt
+     * @param progress
+     * @param totalWorkload
+     * @param input
+     * @param output
+     * @param hierarchies
+     * @param shares
+     * @param indices
+     * @param config
+     * @param models
+     */
+    public QualityModelFused(WrappedBoolean interrupt,
+                             WrappedInteger progress,
+                             int totalWorkload,
+                             DataHandleInternal input,
+                             DataHandleInternal output,
+                             String[][][] hierarchies,
+                             QualityDomainShare[] shares,
+                             int[] indices,
+                             QualityConfiguration config,
+                             Set<QualityModelType> models) {
+        super(interrupt,
+              progress,
+              totalWorkload,
+              input.getHandle(),
+              output.getHandle(),
+              null,
+              null,
+              hierarchies,
+              shares,
+              indices,
+              config);
+        this.encodedInput = input;
+        this.encodedOutput = output;
+        this.models = models;
+    }
+
+    /**
+     * Evaluates all requested models which are supported. Results are available via the getters,
+     * which return empty measures for models which have not been requested.
+     */
+    @Override
+    public QualityModelFused evaluate() {
+
+        // Prepare
+        int rows = encodedOutput.getNumRows();
+        int threads = ParallelExecution.getNumThreads();
+        int ranges = rows < PARALLEL_THRESHOLD || threads <= 1 ? 1 : threads;
+        boolean kldivergence = models.contains(QualityModelType.KL_DIVERGENCE);
+        setSteps(kldivergence ? ranges + 2 : 2);
+
+        // Lookup tables and groups
+        prepare();
+        setStepPerformed();
+
+        // Groups
+        Accumulator accumulator = getAccumulator();
+        setStepPerformed();
+
+        // Single pass
+        if (kldivergence) {
+            accumulator.add(getAccumulator(ranges));
+        }
+
+        // Collect
+        if (models.contains(QualityModelType.LOSS)) {
+            this.loss = computeLoss(accumulator);
+        }
+        if (models.contains(QualityModelType.PRECISION)) {
+            this.precision = computePrecision(accumulator);
+        }
+        if (models.contains(QualityModelType.AECS)) {
+            this.aecs = computeAECS();
+        }
+        if (models.contains(QualityModelType.AMBIGUITY)) {
+            this.ambiguity = computeAmbiguity(accumulator);
+        }
+        if (models.contains(QualityModelType.DISCERNIBILITY)) {
+            this.discernibility = computeDiscernibility();
+        }
+        if (models.contains(QualityModelType.KL_DIVERGENCE)) {
+            this.kldivergence = computeKLDivergence(accumulator);
+        }
+
+        // Progress
+        setStepsDone();
+
+        // Return
+        return this;
+    }
+
+    /**
+     * Returns the result of the AECS model
+     * @return
+     */
+    public QualityMeasureRowOriented getAECS() {
+        return aecs;
+    }
+
+    /**
+     * Returns the result of the Ambiguity model
+     * @return
+     */
+    public QualityMeasureRowOriented getAmbiguity() {
+        return ambiguity;
+    }
+
+    /**
+     * Returns the result of the Discernibility model
+     * @return
+     */
+    public QualityMeasureRowOriented getDiscernibility() {
+        return discernibility;
+    }
+
+    /**
+     * Returns the result of the KL-Divergence model
+     * @return
+     */
+    public QualityMeasureRowOriented getKLDivergence() {
+        return kldivergence;
+    }
+
+    /**
+     * Returns the result of the Loss model
+     * @return
+     */
+    public QualityMeasureColumnOriented getLoss() {
+        return loss;
+    }
+
+    /**
+     * Returns the result of the Precision model
+     * @return
+     */
+    public QualityMeasureColumnOriented getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Returns the average class size
+     *
+     * @return
+     */
+    private QualityMeasureRowOriented computeAECS() {
+        double rows = encodedOutput.getNumRows();
+        if (rows == 0d) {
+            return new QualityMeasureRowOriented();
+        }
+        return new QualityMeasureRowOriented(rows / (double) inputGroupify.getNumberOfClasses(),
+                                             rows / (double) outputGroupify.getNumberOfClasses(),
+                                             rows);
+    }
+
+    /**
+     * Returns the ambiguity
+     *
+     * @param accumulator
+     * @return
+     */
+    private QualityMeasureRowOriented computeAmbiguity(Accumulator accumulator) {
+        if (accumulator.ambiguityFailed) {
+            return new QualityMeasureRowOriented(Double.NaN, Double.NaN, Double.NaN);
+        }
+        double rows = encodedOutput.getNumRows();
+        double max = 1d;
+        for (double domainSize : domainSizes) {
+            max *= domainSize;
+        }
+        return new QualityMeasureRowOriented(rows, accumulator.ambiguity, rows * max);
+    }
+
+    /**
+     * Returns the discernibility
+     *
+     * @return
+     */
+    private QualityMeasureRowOriented computeDiscernibility() {
+        double rows = encodedOutput.getNumRows();
+        if (rows == 0d) {
+            return new QualityMeasureRowOriented();
+        }
+        double min = getDiscernibility(inputValues, inputGroupify, rows);
+        double result = getDiscernibility(outputValues, outputGroupify, rows);
+        return new QualityMeasureRowOriented(min, result, rows * rows);
+    }
+
+    /**
+     * Returns the KL-Divergence
+     *
+     * @param accumulator
+     * @return
+     */
+    private QualityMeasureRowOriented computeKLDivergence(Accumulator accumulator) {
+        double max = 1d;
+        for (double domainSize : domainSizes) {
+            max *= domainSize;
+        }
+        if (accumulator.kldivergenceFailed || Double.isNaN(max)) {
+            return new QualityMeasureRowOriented();
+        }
+        double rows = encodedOutput.getNumRows();
+        return new QualityMeasureRowOriented(accumulator.kldivergenceMinimum,
+                                             accumulator.kldivergence,
+                                             rows * log2(max));
+    }
+
+    /**
+     * Returns the loss
+     *
+     * @param accumulator
+     * @return
+     */
+    private QualityMeasureColumnOriented computeLoss(Accumulator accumulator) {
+        int[] indices = getIndices();
+        double rows = encodedOutput.getNumRows();
+        double[] result = new double[indices.length];
+        double[] min = new double[indices.length];
+        double[] max = new double[indices.length];
+        for (int i = 0; i < result.length; i++) {
+            if (Double.isNaN(domainSizes[i])) {
+                return new QualityMeasureColumnOriented();
+            }
+            result[i] = accumulator.loss[i] / rows;
+            min[i] = domainSizes[i] == 0d ? 0d : 1d / domainSizes[i];
+            max[i] = 1d;
+        }
+        return new QualityMeasureColumnOriented(getOutput(), indices, min, result, max);
+    }
+
+    /**
+     * Returns the precision
+     *
+     * @param accumulator
+     * @return
+     */
+    private QualityMeasureColumnOriented computePrecision(Accumulator accumulator) {
+        int[] indices = getIndices();
+        double rows = encodedOutput.getNumRows();
+        double[] result = new double[indices.length];
+        double[] min = new double[indices.length];
+        double[] max = new double[indices.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = accumulator.precision[i] / rows;
+            min[i] = 0d;
+            max[i] = 1d;
+        }
+        return new QualityMeasureColumnOriented(getOutput(), indices, min, result, max);
+    }
+
+    /**
+     * Processes all groups of the output for the models which decompose into contributions of rows
+     *
+     * @return
+     */
+    private Accumulator getAccumulator() {
+
+        // Prepare
+        int[] indices = getIndices();
+        boolean loss = models.contains(QualityModelType.LOSS);
+        boolean precision = models.contains(QualityModelType.PRECISION);
+        boolean ambiguity = models.contains(QualityModelType.AMBIGUITY);
+        int[] codes = new int[indices.length];
+        Accumulator result = new Accumulator(indices.length);
+
+        // For each group
+        for (int group = 0; group < outputGroupify.size(); group++) {
+
+            // Check
+            if ((group & 0xFFF) == 0) {
+                checkInterrupt();
+            }
+            int count = outputGroupify.getCount(group);
+            if (count == 0) {
+                continue;
+            }
+
+            // Encode
+            for (int i = 0; i < indices.length; i++) {
+                codes[i] = outputGroupify.getCode(group, i);
+            }
+            int outliers = outputGroupify.getNumberOfOutliers(group);
+            int regular = count - outliers;
+
+            // Loss and precision, outliers are suppressed
+            if (loss || precision) {
+                boolean suppressed = isSuppressed(outputValues, codes);
+                for (int i = 0; i < indices.length; i++) {
+                    if (loss) {
+                        result.loss[i] += outliers;
+                        if (regular != 0) {
+                            result.loss[i] += suppressed ? regular : regular * outputShares[i][codes[i]];
+                        }
+                    }
+                    if (precision) {
+                        result.precision[i] += outliers;
+                        if (regular != 0) {
+                            result.precision[i] += suppressed ? regular : regular * precisions[i][codes[i]];
+                        }
+                    }
+                }
+            }
+
+            // Ambiguity
+            if (ambiguity) {
+                double value = 1d;
+                for (int i = 0; i < indices.length; i++) {
+                    value *= outputShares[i][codes[i]] * domainSizes[i];
+                }
+                result.ambiguity += count * value;
+                result.ambiguityFailed |= Double.isNaN(value);
+            }
+        }
+
+        // Return
+        return result;
+    }
+
+    /**
+     * Processes all rows in the given number of ranges for KL-Divergence
+     *
+     * @param ranges
+     * @return
+     */
+    private Accumulator getAccumulator(int ranges) {
+
+        // Sequential
+        final int rows = encodedOutput.getNumRows();
+        if (ranges == 1) {
+            Accumulator result = getAccumulator(0, rows);
+            setStepPerformed();
+            return result;
+        }
+
+        // Parallel
+        List<Callable<Accumulator>> tasks = new ArrayList<Callable<Accumulator>>();
+        for (int i = 0; i < ranges; i++) {
+            final int start = (int) ((long) rows * i / ranges);
+            final int end = (int) ((long) rows * (i + 1) / ranges);
+            tasks.add(new Callable<Accumulator>() {
+                @Override
+                public Accumulator call() throws Exception {
+                    return getAccumulator(start, end);
+                }
+            });
+        }
+        List<Accumulator> accumulators = ParallelExecution.execute(tasks);
+
+        // Merge
+        Accumulator result = accumulators.get(0);
+        setStepPerformed();
+        for (int i = 1; i < accumulators.size(); i++) {
+            result.add(accumulators.get(i));
+            setStepPerformed();
+        }
+        return result;
+    }
+
+    /**
+     * Processes the given range of rows for KL-Divergence
+     *
+     * @param from
+     * @param to
+     * @return
+     */
+    private Accumulator getAccumulator(int from, int to) {
+
+        // Prepare
+        int[] indices = getIndices();
+        double rows = encodedOutput.getNumRows();
+        int[] codes = new int[indices.length];
+        Accumulator result = new Accumulator(indices.length);
+
+        // For each row
+        for (int row = from; row < to; row++) {
+
+            // Check
+            if (((row - from) & 0xFFF) == 0) {
+                checkInterrupt();
+            }
+
+            // Encode
+            for (int i = 0; i < indices.length; i++) {
+                codes[i] = encodedOutput.getEncodedValue(row, indices[i]);
+            }
+            boolean outlier = encodedOutput.isOutlier(row);
+
+            // KL-Divergence
+            boolean inputOutlier = encodedInput.isOutlier(row);
+            double inputArea = 1d;
+            double outputArea = 1d;
+            for (int i = 0; i < indices.length; i++) {
+                int code = encodedInput.getEncodedValue(row, indices[i]);
+                double inputShare = inputOutlier || inputSuppressed[i][code] ? 1d : inputShares[i][code];
+                double outputShare = outlier || outputSuppressed[i][codes[i]] ? 1d : outputShares[i][codes[i]];
+                result.kldivergenceFailed |= Double.isNaN(inputShare) || Double.isNaN(outputShare);
+                inputArea *= inputShare * domainSizes[i];
+                outputArea *= outputShare * domainSizes[i];
+            }
+            double inputFrequency = (double) inputGroupify.getCount(inputGroupify.getGroup(row)) / rows;
+            double outputFrequency = (double) outputGroupify.getCount(outputGroupify.getGroup(row)) / rows;
+            result.kldivergenceMinimum += getKLDivergence(inputFrequency, inputFrequency, inputArea);
+            result.kldivergence += getKLDivergence(inputFrequency, outputFrequency, outputArea);
+        }
+
+        // Return
+        return result;
+    }
+
+    /**
+     * Returns the discernibility of the given groups
+     *
+     * @param values
+     * @param groupify
+     * @param rows
+     * @return
+     */
+    private double getDiscernibility(String[][] values, GroupifyIncremental groupify, double rows) {
+        int[] indices = getIndices();
+        int[] codes = new int[indices.length];
+        double result = 0d;
+        for (int group = 0; group < groupify.size(); group++) {
+            double count = groupify.getCount(group);
+            if (count == 0d) {
+                continue;
+            }
+            for (int i = 0; i < indices.length; i++) {
+                codes[i] = groupify.getCode(group, i);
+            }
+            result += groupify.isOutlier(group) || isSuppressed(values, codes) ? count * rows : count * count;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the groups of the rows of the given handle
+     *
+     * @param handle
+     * @return
+     */
+    private GroupifyIncremental getGroupify(DataHandleInternal handle) {
+        return handle.getGroupify(getIndices(), new InterruptHandler() {
+            @Override
+            public void checkInterrupt() {
+                QualityModelFused.this.checkInterrupt();
+            }
+        });
+    }
+
+    /**
+     * Returns the KL-Divergence of a row
+     *
+     * @param inputFrequency
+     * @param outputFrequency
+     * @param area
+     * @return
+     */
+    private double getKLDivergence(double inputFrequency, double outputFrequency, double area) {
+        if (area > outputFrequency / inputFrequency) {
+            double log = log2(inputFrequency / (outputFrequency / area));
+            log = log < 0d ? 0d : log; // Fix subtle rounding issues
+            return inputFrequency * log;
+        }
+        return 0d;
+    }
+
+    /**
+     * Returns the precision of each value of the given column, NaN if not available
+     *
+     * @param index
+     * @param values
+     * @return
+     */
+    private double[] getPrecisions(int index, String[] values) {
+
+        // Prepare
+        double[] result = new double[values.length];
+
+        try {
+
+            // Calculate precision
+            String[][] hierarchy = getHierarchies()[index];
+            Map<String, Double> precision = new HashMap<String, Double>();
+            for (int col = 0; col < hierarchy[0].length; col++) {
+                for (int row = 0; row < hierarchy.length; row++) {
+                    String value = hierarchy[row][col];
+                    if (!precision.containsKey(value)) {
+                        precision.put(value, (double) col / ((double) hierarchy[0].length - 1d));
+                    }
+                }
+            }
+
+            // Map codes
+            for (int code = 0; code < values.length; code++) {
+                Double value = precision.get(values[code]);
+                result[code] = value != null ? value : 1d;
+            }
+
+        } catch (Exception e) {
+
+            // Drop silently
+            Arrays.fill(result, Double.NaN);
+        }
+
+        // Return
+        return result;
+    }
+
+    /**
+     * Returns the share of each value of the given column, NaN if not available
+     *
+     * @param index
+     * @param values
+     * @return
+     */
+    private double[] getShares(int index, String[] values) {
+        QualityDomainShare share = getDomainShares()[index];
+        double[] result = new double[values.length];
+        for (int code = 0; code < values.length; code++) {
+            try {
+                result[code] = share.getShare(values[code], 0);
+            } catch (Exception e) {
+                // Silently catch exceptions
+                result[code] = Double.NaN;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether each value of the given column is suppressed
+     *
+     * @param column
+     * @param values
+     * @return
+     */
+    private boolean[] getSuppressed(int column, String[] values) {
+        boolean[] result = new boolean[values.length];
+        for (int code = 0; code < values.length; code++) {
+            result[code] = isSuppressed(column, values[code]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether all values of a record are equal, which indicates suppression
+     *
+     * @param values
+     * @param codes
+     * @return
+     */
+    private boolean isSuppressed(String[][] values, int[] codes) {
+        for (int i = 1; i < codes.length; i++) {
+            if (!values[i - 1][codes[i - 1]].equals(values[i][codes[i]])) { return false; }
+        }
+        return true;
+    }
+
+    /**
+     * Prepares lookup tables and groups for the requested models
+     */
+    private void prepare() {
+
+        // Prepare
+        int[] indices = getIndices();
+        QualityDomainShare[] shares = getDomainShares();
+        boolean loss = models.contains(QualityModelType.LOSS);
+        boolean precision = models.contains(QualityModelType.PRECISION);
+        boolean ambiguity = models.contains(QualityModelType.AMBIGUITY);
+        boolean kldivergence = models.contains(QualityModelType.KL_DIVERGENCE);
+        boolean grouped = kldivergence || models.contains(QualityModelType.AECS) ||
+                          models.contains(QualityModelType.DISCERNIBILITY);
+
+        // Lookup tables
+        this.inputValues = new String[indices.length][];
+        this.outputValues = new String[indices.length][];
+        this.inputShares = new double[indices.length][];
+        this.outputShares = new double[indices.length][];
+        this.inputSuppressed = new boolean[indices.length][];
+        this.outputSuppressed = new boolean[indices.length][];
+        this.precisions = new double[indices.length][];
+        this.domainSizes = new double[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            int column = indices[i];
+            inputValues[i] = encodedInput.getDictionary(column);
+            outputValues[i] = encodedOutput.getDictionary(column);
+            domainSizes[i] = shares[i] != null ? shares[i].getDomainSize() : Double.NaN;
+            if (loss || ambiguity || kldivergence) {
+                outputShares[i] = getShares(i, outputValues[i]);
+            }
+            if (precision) {
+                precisions[i] = getPrecisions(i, outputValues[i]);
+            }
+            if (kldivergence) {
+                inputShares[i] = getShares(i, inputValues[i]);
+                inputSuppressed[i] = getSuppressed(column, inputValues[i]);
+                outputSuppressed[i] = getSuppressed(column, outputValues[i]);
+            }
+            checkInterrupt();
+        }
+
+        // Groups
+        this.outputGroupify = getGroupify(encodedOutput);
+        if (grouped) {
+            this.inputGroupify = getGroupify(encodedInput);
+        }
+    }
+}
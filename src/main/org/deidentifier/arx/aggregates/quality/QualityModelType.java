@@ -0,0 +1,71 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.deidentifier.arx.aggregates.quality;
+
+/**
+ * The quality models which are supported
+ *
+ * @author Fabian Prasser
+ */
+public enum QualityModelType {
+
+    /** Loss, column-oriented */
+    LOSS,
+
+    /** Non-uniform entropy, column-oriented */
+    NON_UNIFORM_ENTROPY,
+
+    /** Precision, column-oriented */
+    PRECISION,
+
+    /** Mean squared error, column-oriented */
+    MSE,
+
+    /** Average equivalence class size, row-oriented */
+    AECS,
+
+    /** Ambiguity, row-oriented */
+    AMBIGUITY,
+
+    /** Discernibility, row-oriented */
+    DISCERNIBILITY,
+
+    /** KL-Divergence, row-oriented */
+    KL_DIVERGENCE,
+
+    /** Sum of squared errors, row-oriented */
+    SSE;
+
+    /**
+     * Returns whether this model is evaluated by {@link QualityModelFused}
+     *
+     * @return
+     */
+    public boolean isFused() {
+        switch (this) {
+        case LOSS:
+        case PRECISION:
+        case AECS:
+        case AMBIGUITY:
+        case DISCERNIBILITY:
+        case KL_DIVERGENCE:
+            return true;
+        default:
+            return false;
+        }
+    }
+}
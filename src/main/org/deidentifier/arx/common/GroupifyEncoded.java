@@ -0,0 +1,251 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.deidentifier.arx.common;
+
+import java.util.Arrays;
+
+import org.deidentifier.arx.DataHandleInternal;
+
+import com.carrotsearch.hppc.LongIntOpenHashMap;
+import com.carrotsearch.hppc.ObjectIntOpenHashMap;
+
+/**
+ * A groupify operator for encoded records. Codes of a record are combined into a single primitive
+ * key in a mixed radix representation. If the combined domain of the codes does not fit into a long,
+ * prefixes of the key are replaced by dense identifiers, which are bounded by the capacity, i.e.
+ * the number of records which are added. Groups are numbered in the order in which they have been
+ * created.
+ *
+ * @author Fabian Prasser
+ */
+public class GroupifyEncoded {
+
+    /** The sizes of the domains of the codes */
+    private final int[]                radixes;
+
+    /** The maximal number of dense identifiers per prefix */
+    private final int                  capacity;
+
+    /** Whether the prefix of the key must be replaced by a dense identifier before the code */
+    private final boolean[]            compress;
+
+    /** Dense identifiers of prefixes */
+    private final LongIntOpenHashMap[] prefixes;
+
+    /** The groups */
+    private final LongIntOpenHashMap   groups;
+
+    /** The sizes of the groups */
+    private int[]                      counts;
+
+    /** The first record of each group */
+    private int[]                      representatives;
+
+    /**
+     * Creates a new instance
+     *
+     * @param radixes The sizes of the domains of the codes
+     * @param capacity The maximal number of records which will be added, including records which
+     *                 are added again after they have been removed
+     */
+    public GroupifyEncoded(int[] radixes, int capacity) {
+
+        // Prepare
+        this.radixes = radixes;
+        this.capacity = Math.max(capacity, 1);
+        this.compress = new boolean[radixes.length];
+        int segments = 0;
+        long range = 1;
+        for (int i = 0; i < radixes.length; i++) {
+            long radix = Math.max(radixes[i], 1);
+            if (range > Long.MAX_VALUE / radix) {
+                this.compress[i] = true;
+                range = this.capacity;
+                segments++;
+            }
+            range *= radix;
+        }
+        this.prefixes = new LongIntOpenHashMap[segments];
+        for (int i = 0; i < segments; i++) {
+            this.prefixes[i] = new LongIntOpenHashMap();
+        }
+        this.groups = new LongIntOpenHashMap();
+        this.counts = new int[16];
+        this.representatives = new int[16];
+    }
+
+    /**
+     * Creates a new instance for the given columns of the given handle. Codes which represent
+     * the same value are treated as equal. Each record may be added once.
+     *
+     * @param handle
+     * @param columns
+     * @param canonical Returns the canonical code of each code, indexed by column
+     * @return
+     */
+    public static GroupifyEncoded create(DataHandleInternal handle, int[] columns, int[][] canonical) {
+        return create(handle, columns, canonical, handle.getNumRows());
+    }
+
+    /**
+     * Creates a new instance for the given columns of the given handle. Codes which represent
+     * the same value are treated as equal.
+     *
+     * @param handle
+     * @param columns
+     * @param canonical Returns the canonical code of each code, indexed by column
+     * @param capacity The maximal number of records which will be added
+     * @return
+     */
+    public static GroupifyEncoded create(DataHandleInternal handle, int[] columns, int[][] canonical, int capacity) {
+        int[] radixes = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            String[] dictionary = handle.getDictionary(columns[i]);
+            canonical[i] = getCanonicalCodes(dictionary);
+            radixes[i] = dictionary.length;
+        }
+        return new GroupifyEncoded(radixes, capacity);
+    }
+
+    /**
+     * Adds a record
+     *
+     * @param codes The codes of the record
+     * @param record The index of the record
+     * @return The index of the group
+     */
+    public int add(int[] codes, int record) {
+        return add(codes, record, 1);
+    }
+
+    /**
+     * Adds records with equal codes, e.g. when merging groups which have been built in parallel
+     *
+     * @param codes The codes of the records
+     * @param record The index of the first record
+     * @param count The number of records
+     * @return The index of the group
+     */
+    public int add(int[] codes, int record, int count) {
+
+        // Build key
+        long key = 0;
+        int segment = 0;
+        for (int i = 0; i < codes.length; i++) {
+            if (compress[i]) {
+                key = getIdentifier(prefixes[segment++], key);
+            }
+            key = key * radixes[i] + codes[i];
+        }
+
+        // Find or create group
+        int group;
+        if (groups.containsKey(key)) {
+            group = groups.lget();
+        } else {
+            group = groups.size();
+            groups.put(key, group);
+            if (group == counts.length) {
+                counts = Arrays.copyOf(counts, group * 2);
+                representatives = Arrays.copyOf(representatives, group * 2);
+            }
+        }
+        if (counts[group] == 0) {
+            representatives[group] = record;
+        }
+        counts[group] += count;
+        return group;
+    }
+
+    /**
+     * Returns the size of the given group
+     *
+     * @param group
+     * @return
+     */
+    public int getCount(int group) {
+        return counts[group];
+    }
+
+    /**
+     * Returns the index of the first record of the given group
+     *
+     * @param group
+     * @return
+     */
+    public int getRepresentative(int group) {
+        return representatives[group];
+    }
+
+    /**
+     * Removes a record from the given group. Groups are retained, even if they become empty.
+     * The representative of a group is undefined, if it has been removed.
+     *
+     * @param group
+     */
+    public void remove(int group) {
+        counts[group]--;
+    }
+
+    /**
+     * Returns the number of groups
+     *
+     * @return
+     */
+    public int size() {
+        return groups.size();
+    }
+
+    /**
+     * Maps each code to the smallest code representing the same value
+     *
+     * @param dictionary
+     * @return
+     */
+    public static int[] getCanonicalCodes(String[] dictionary) {
+        ObjectIntOpenHashMap<String> codes = new ObjectIntOpenHashMap<String>(dictionary.length);
+        int[] result = new int[dictionary.length];
+        for (int code = 0; code < dictionary.length; code++) {
+            if (codes.containsKey(dictionary[code])) {
+                result[code] = codes.lget();
+            } else {
+                codes.put(dictionary[code], code);
+                result[code] = code;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a dense identifier for the given key
+     *
+     * @param identifiers
+     * @param key
+     * @return
+     */
+    private int getIdentifier(LongIntOpenHashMap identifiers, long key) {
+        if (identifiers.containsKey(key)) {
+            return identifiers.lget();
+        }
+        int identifier = identifiers.size();
+        if (identifier == capacity) {
+            throw new IllegalStateException("Capacity exceeded");
+        }
+        identifiers.put(key, identifier);
+        return identifier;
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.deidentifier.arx.common;
+
+import java.util.Arrays;
+
+import org.deidentifier.arx.DataHandleInternal;
+import org.deidentifier.arx.DataHandleInternal.InterruptHandler;
+
+/**
+ * Groups the records of a handle by the codes of a set of columns and maintains the groups when
+ * records change. When a record changes, it is removed from its old group and added to its new
+ * group. Groups are never removed, but they may become empty. The sizes, codes and numbers of
+ * outliers of all groups are available without scanning the records.
+ *
+ * @author Fabian Prasser
+ */
+public class GroupifyIncremental {
+
+    /** The columns */
+    private final int[]           columns;
+
+    /** Canonical codes, indexed by column */
+    private final int[][]         canonical;
+
+    /** The groups */
+    private final GroupifyEncoded groupify;
+
+    /** The group of each record */
+    private final int[]           groups;
+
+    /** Bitmap of records which are outliers */
+    private final long[]          outlierRecords;
+
+    /** The canonical codes of each group, one block per group */
+    private int[]                 codes;
+
+    /** The number of outliers in each group */
+    private int[]                 outliers;
+
+    /** The first record of each group, -1 if unknown */
+    private int[]                 representatives;
+
+    /** Whether there are groups with unknown representatives */
+    private boolean               unknown;
+
+    /** The number of non-empty groups */
+    private int                   classes;
+
+    /** The version of the data */
+    private int                   version;
+
+    /**
+     * Creates a new instance
+     *
+     * @param handle
+     * @param columns
+     * @param version The version of the data
+     * @param stop
+     */
+    public GroupifyIncremental(DataHandleInternal handle, int[] columns, int version, InterruptHandler stop) {
+
+        // Prepare
+        int rows = handle.getNumRows();
+        this.columns = columns;
+        this.canonical = new int[columns.length][];
+        this.groups = new int[rows];
+        this.outlierRecords = new long[(rows + 63) >>> 6];
+        this.codes = new int[16 * columns.length];
+        this.outliers = new int[16];
+        this.representatives = new int[16];
+        this.version = version;
+
+        // Records are added again when they change, which is not bounded by the number of rows
+        this.groupify = GroupifyEncoded.create(handle, columns, canonical, Integer.MAX_VALUE);
+
+        // Add all records
+        int[] buffer = new int[columns.length];
+        for (int row = 0; row < rows; row++) {
+            if ((row & 0xFFF) == 0) {
+                stop.checkInterrupt();
+            }
+            add(handle, row, buffer);
+        }
+    }
+
+    /**
+     * Returns the canonical code of the given group in the column with the given index. Canonical
+     * codes can be used to look up values in the dictionary of the according column.
+     *
+     * @param group
+     * @param index
+     * @return
+     */
+    public int getCode(int group, int index) {
+        return codes[group * columns.length + index];
+    }
+
+    /**
+     * Returns the columns
+     *
+     * @return
+     */
+    public int[] getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the size of the given group
+     *
+     * @param group
+     * @return
+     */
+    public int getCount(int group) {
+        return groupify.getCount(group);
+    }
+
+    /**
+     * Returns the group of the given record
+     *
+     * @param row
+     * @return
+     */
+    public int getGroup(int row) {
+        return groups[row];
+    }
+
+    /**
+     * Returns the number of non-empty groups
+     *
+     * @return
+     */
+    public int getNumberOfClasses() {
+        return classes;
+    }
+
+    /**
+     * Returns the number of outliers in the given group
+     *
+     * @param group
+     * @return
+     */
+    public int getNumberOfOutliers(int group) {
+        return outliers[group];
+    }
+
+    /**
+     * Returns the version of the data which is represented
+     *
+     * @return
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns whether the first record of the given group is an outlier
+     *
+     * @param group
+     * @return
+     */
+    public boolean isOutlier(int group) {
+        if (outliers[group] == 0) {
+            return false;
+        } else if (outliers[group] == getCount(group)) {
+            return true;
+        }
+        return isOutlierRecord(getRepresentative(group));
+    }
+
+    /**
+     * Returns the number of groups, including empty groups
+     *
+     * @return
+     */
+    public int size() {
+        return groupify.size();
+    }
+
+    /**
+     * Swaps two records
+     *
+     * @param row1
+     * @param row2
+     */
+    public void swap(int row1, int row2) {
+        int group = groups[row1];
+        groups[row1] = groups[row2];
+        groups[row2] = group;
+        representatives[groups[row1]] = -1;
+        representatives[groups[row2]] = -1;
+        unknown = true;
+        boolean outlier1 = isOutlierRecord(row1);
+        boolean outlier2 = isOutlierRecord(row2);
+        setOutlierRecord(row1, outlier2);
+        setOutlierRecord(row2, outlier1);
+    }
+
+    /**
+     * Updates the groups after the given records have changed. Fails, if the values represented by
+     * the codes have changed, in which case the groups must be rebuilt.
+     *
+     * @param handle
+     * @param rows The records which have changed
+     * @param version The new version of the data
+     * @param stop
+     * @return Whether the groups have been updated
+     */
+    public boolean update(DataHandleInternal handle, int[] rows, int version, InterruptHandler stop) {
+
+        // Check dictionaries
+        for (int i = 0; i < columns.length; i++) {
+            if (!Arrays.equals(canonical[i], GroupifyEncoded.getCanonicalCodes(handle.getDictionary(columns[i])))) {
+                return false;
+            }
+        }
+
+        // Move records
+        int[] buffer = new int[columns.length];
+        for (int i = 0; i < rows.length; i++) {
+            if ((i & 0xFFF) == 0) {
+                stop.checkInterrupt();
+            }
+            int row = rows[i];
+            int group = groups[row];
+            groupify.remove(group);
+            if (representatives[group] == row) {
+                representatives[group] = -1;
+                unknown = true;
+            }
+            if (isOutlierRecord(row)) {
+                outliers[group]--;
+            }
+            if (groupify.getCount(group) == 0) {
+                classes--;
+            }
+            add(handle, row, buffer);
+        }
+
+        // Done
+        this.version = version;
+        return true;
+    }
+
+    /**
+     * Adds a record
+     *
+     * @param handle
+     * @param row
+     * @param buffer
+     */
+    private void add(DataHandleInternal handle, int row, int[] buffer) {
+
+        // Find group
+        for (int i = 0; i < columns.length; i++) {
+            buffer[i] = canonical[i][handle.getEncodedValue(row, columns[i])];
+        }
+        int size = groupify.size();
+        int group = groupify.add(buffer, row);
+
+        // New group
+        if (group == size) {
+            if (group == outliers.length) {
+                outliers = Arrays.copyOf(outliers, group * 2);
+                representatives = Arrays.copyOf(representatives, group * 2);
+                codes = Arrays.copyOf(codes, group * 2 * columns.length);
+            }
+            System.arraycopy(buffer, 0, codes, group * columns.length, columns.length);
+        }
+
+        // Update
+        if (groupify.getCount(group) == 1) {
+            representatives[group] = row;
+            classes++;
+        } else if (row < representatives[group]) {
+            representatives[group] = row;
+        }
+        boolean outlier = handle.isOutlier(row);
+        if (outlier) {
+            outliers[group]++;
+        }
+        setOutlierRecord(row, outlier);
+        groups[row] = group;
+    }
+
+    /**
+     * Returns the first record of the given group. Unknown representatives are determined with
+     * a single scan over all records.
+     *
+     * @param group
+     * @return
+     */
+    private synchronized int getRepresentative(int group) {
+        if (unknown) {
+            for (int row = 0; row < groups.length; row++) {
+                if (representatives[groups[row]] == -1) {
+                    representatives[groups[row]] = row;
+                }
+            }
+            unknown = false;
+        }
+        return representatives[group];
+    }
+
+    /**
+     * Returns whether the given record has been an outlier when it has been added
+     *
+     * @param row
+     * @return
+     */
+    private boolean isOutlierRecord(int row) {
+        return (outlierRecords[row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * Marks the given record as an outlier or not
+     *
+     * @param row
+     * @param outlier
+     */
+    private void setOutlierRecord(int row, boolean outlier) {
+        if (outlier) {
+            outlierRecords[row >>> 6] |= 1L << row;
+        } else {
+            outlierRecords[row >>> 6] &= ~(1L << row);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.deidentifier.arx.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Executes tasks with a pool of daemon threads, which is shared by all parts of ARX.
+ * By default, tasks are executed sequentially by the calling thread. The number of
+ * threads can be configured globally or per call. Tasks which are executed as part of
+ * a parallel execution are never parallelized further, which prevents nested
+ * parallelism from oversubscribing the processors.
+ *
+ * @author Fabian Prasser
+ */
+public class ParallelExecution {
+
+    /** Marks threads which are executing tasks in parallel */
+    private static final ThreadLocal<Boolean> WORKER  = new ThreadLocal<Boolean>();
+
+    /** The shared pool, created on demand */
+    private static ExecutorService            pool    = null;
+
+    /** The number of threads used by default */
+    private static volatile int               threads = 1;
+
+    /**
+     * Executes the given tasks with the configured number of threads.
+     * Checked exceptions are wrapped into runtime exceptions.
+     *
+     * @param tasks
+     * @return The results in the order of the tasks
+     */
+    public static <T> List<T> execute(List<? extends Callable<T>> tasks) {
+        return execute(tasks, threads);
+    }
+
+    /**
+     * Executes the given tasks with the given number of threads, including the calling
+     * thread. Checked exceptions are wrapped into runtime exceptions.
+     *
+     * @param tasks
+     * @param threads
+     * @return The results in the order of the tasks
+     */
+    public static <T> List<T> execute(final List<? extends Callable<T>> tasks, int threads) {
+
+        // Check
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive");
+        }
+
+        // Sequential
+        threads = Math.min(threads, tasks.size());
+        if (threads <= 1 || isWorker()) {
+            List<T> results = new ArrayList<T>(tasks.size());
+            for (Callable<T> task : tasks) {
+                try {
+                    results.add(task.call());
+                } catch (Exception e) {
+                    throw wrap(e);
+                }
+            }
+            return results;
+        }
+
+        // Parallel: all threads fetch the next task until done or failed
+        final Object[] results = new Object[tasks.size()];
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                Boolean previous = WORKER.get();
+                WORKER.set(Boolean.TRUE);
+                try {
+                    for (int i = next.getAndIncrement(); i < results.length && error.get() == null; i = next.getAndIncrement()) {
+                        results[i] = tasks.get(i).call();
+                    }
+                } catch (Throwable t) {
+                    error.compareAndSet(null, t);
+                } finally {
+                    WORKER.set(previous);
+                }
+            }
+        };
+
+        // Execute
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        try {
+            for (int i = 1; i < threads; i++) {
+                futures.add(getPool().submit(worker));
+            }
+            worker.run();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            error.compareAndSet(null, e.getCause());
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        // Error
+        if (error.get() != null) {
+            throw wrap(error.get());
+        }
+
+        // Return
+        List<T> list = new ArrayList<T>(results.length);
+        for (Object result : results) {
+            @SuppressWarnings("unchecked")
+            T _result = (T) result;
+            list.add(_result);
+        }
+        return list;
+    }
+
+    /**
+     * Waits for the given future and returns its result. Exceptions thrown by the task
+     * are rethrown, checked exceptions are wrapped into runtime exceptions.
+     *
+     * @param future
+     * @return
+     */
+    public static <T> T get(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw wrap(e.getCause());
+        }
+    }
+
+    /**
+     * Returns the number of threads used by default
+     * @return
+     */
+    public static int getNumThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of threads used by default. The default is 1, which means that
+     * all tasks are executed sequentially by the calling thread.
+     *
+     * @param threads
+     */
+    public static void setNumThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive");
+        }
+        ParallelExecution.threads = threads;
+    }
+
+    /**
+     * Submits a task to the shared pool. This is meant for tasks that must run
+     * concurrently to the calling thread, e.g. for producing data which is consumed
+     * by the calling thread. The number of such tasks is controlled by the caller.
+     *
+     * @param task
+     * @return
+     */
+    public static <T> Future<T> submit(final Callable<T> task) {
+        return getPool().submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                WORKER.set(Boolean.TRUE);
+                try {
+                    return task.call();
+                } finally {
+                    WORKER.remove();
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the shared pool
+     * @return
+     */
+    private static synchronized ExecutorService getPool() {
+        if (pool == null) {
+            pool = Executors.newCachedThreadPool(new ThreadFactory() {
+                /** Number of threads created */
+                private final AtomicInteger count = new AtomicInteger();
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "ARX worker " + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return pool;
+    }
+
+    /**
+     * Returns whether the current thread is executing a task in parallel
+     * @return
+     */
+    private static boolean isWorker() {
+        return WORKER.get() != null && WORKER.get();
+    }
+
+    /**
+     * Rethrows unchecked exceptions and wraps checked exceptions
+     * @param throwable
+     * @return
+     */
+    private static RuntimeException wrap(Throwable throwable) {
+        if (throwable instanceof RuntimeException) {
+            return (RuntimeException) throwable;
+        } else if (throwable instanceof Error) {
+            throw (Error) throwable;
+        } else {
+            return new RuntimeException(throwable);
+        }
+    }
+}
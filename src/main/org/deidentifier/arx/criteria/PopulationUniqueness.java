@@ -23,6 +23,7 @@ import org.deidentifier.arx.ARXSolverConfiguration;
 import org.deidentifier.arx.certificate.elements.ElementData;
 import org.deidentifier.arx.framework.check.groupify.HashGroupifyDistribution;
 import org.deidentifier.arx.framework.data.DataManager;
+import org.deidentifier.arx.risk.PopulationUniquenessCache;
 import org.deidentifier.arx.risk.RiskModelPopulationUniqueness;
 import org.deidentifier.arx.risk.RiskModelPopulationUniqueness.PopulationUniquenessModel;
 
@@ -34,16 +35,19 @@ import org.deidentifier.arx.risk.RiskModelPopulationUniqueness.PopulationUniquen
 public class PopulationUniqueness extends RiskBasedCriterion { // NO_UCD
 
     /** SVUID */
-    private static final long         serialVersionUID = 618039085843721351L;
+    private static final long                   serialVersionUID = 618039085843721351L;
 
     /** The statistical model */
-    private PopulationUniquenessModel statisticalModel;
+    private PopulationUniquenessModel           statisticalModel;
 
     /** The population model */
-    private ARXPopulationModel        populationModel;
+    private ARXPopulationModel                  populationModel;
 
     /** The solver config */
-    private ARXSolverConfiguration    solverConfig;
+    private ARXSolverConfiguration              solverConfig;
+
+    /** Estimates for histograms which have already been analyzed */
+    private transient PopulationUniquenessCache cache;
 
     /**
      * Creates a new instance of this criterion. Uses Dankar's method for estimating population uniqueness.
@@ -144,6 +148,9 @@ public class PopulationUniqueness extends RiskBasedCriterion { // NO_UCD
         if (this.populationModel != null) {
             this.populationModel.makeBackwardsCompatible(manager.getDataGeneralized().getDataLength());
         }
+
+        // Transformations often result in equal histograms
+        this.cache = new PopulationUniquenessCache();
     }
 
     @Override
@@ -177,7 +184,8 @@ public class PopulationUniqueness extends RiskBasedCriterion { // NO_UCD
 
         RiskModelPopulationUniqueness riskModel = new RiskModelPopulationUniqueness(this.populationModel,
                                                                                     distribution.getHistogram(),
-                                                                                    solverConfig);
+                                                                                    solverConfig,
+                                                                                    cache);
         
         double populationUniques = 0d;
         if (this.statisticalModel == PopulationUniquenessModel.DANKAR) {
@@ -99,6 +99,9 @@ public class NodeChecker {
     /** Header of the microaggregated data subset */
     private final String[]                        microaggregationHeader;
 
+    /** Whether microaggregated values are stored in a compact dictionary */
+    private final boolean                         microaggregationCompact;
+
     /** The current hash groupify. */
     private HashGroupify                          currentGroupify;
 
@@ -151,6 +154,7 @@ public class NodeChecker {
         this.microaggregationNumAttributes = manager.getMicroaggregationNumAttributes();
         this.microaggregationMap = manager.getMicroaggregationMap();
         this.microaggregationHeader = manager.getMicroaggregationHeader();
+        this.microaggregationCompact = manager.getDataAnalyzed().getDictionary().isCompact();
         this.solutionSpace = solutionSpace;
         this.minimalClassSizeRequired = config.getMinimalGroupSize() != Integer.MAX_VALUE;
         
@@ -194,13 +198,15 @@ public class NodeChecker {
 
     
     /**
-     * Applies the given transformation and returns the dataset
+     * Applies the given transformation and returns the dataset. Microaggregated values are
+     * stored in a compact dictionary if the input data uses compact dictionaries, as the
+     * aggregates are only resolved value by value when the output is accessed.
      * @param transformation
      * @return
      */
     public TransformedData applyTransformation(final Transformation transformation) {
         return applyTransformation(transformation,
-                                   new Dictionary(microaggregationNumAttributes));
+                                   new Dictionary(microaggregationNumAttributes, microaggregationCompact));
     }
         
     /**
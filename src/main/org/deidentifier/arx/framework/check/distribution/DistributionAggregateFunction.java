@@ -25,6 +25,7 @@ import java.util.List;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.deidentifier.arx.DataType;
 import org.deidentifier.arx.DataType.DataTypeWithRatioScale;
+import org.deidentifier.arx.framework.data.ParsedDictionary;
 
 import cern.colt.GenericSorting;
 import cern.colt.Swapper;
@@ -101,6 +102,7 @@ public abstract class DistributionAggregateFunction implements Serializable {
                                                                                                                  this.minimum,
                                                                                                                  this.maximum);
             if (dictionary != null) {
+                result.parsed = parsed;
                 result.initialize(dictionary, type, hierarchy);
             }
             return result;
@@ -180,6 +182,7 @@ public abstract class DistributionAggregateFunction implements Serializable {
         public DistributionAggregateFunctionGeneralization clone() {
             DistributionAggregateFunctionGeneralization result = new DistributionAggregateFunctionGeneralization(this.ignoreMissingData);
             if (dictionary != null) {
+                result.parsed = parsed;
                 result.initialize(dictionary, type, hierarchy);
             }
             return result;
@@ -297,6 +300,7 @@ public abstract class DistributionAggregateFunction implements Serializable {
                                                                                                                this.minimum,
                                                                                                                this.maximum);
             if (dictionary != null) {
+                result.parsed = parsed;
                 result.initialize(dictionary, type, hierarchy);
             }
             return result;
@@ -356,7 +360,7 @@ public abstract class DistributionAggregateFunction implements Serializable {
             for (int i = 0; i < buckets.length; i += 2) {
                 int value = buckets[i];
                 if (value != -1) {
-                    T valT = type.parse(dictionary[value]);
+                    T valT = parsed.getValue(value);
                     if (minT == null || type.compare(valT, minT) < 0 ) {
                         minT = valT;
                     }
@@ -376,6 +380,7 @@ public abstract class DistributionAggregateFunction implements Serializable {
         public DistributionAggregateFunctionInterval clone() {
             DistributionAggregateFunctionInterval result = new DistributionAggregateFunctionInterval(this.ignoreMissingData);
             if (dictionary != null) {
+                result.parsed = parsed;
                 result.initialize(dictionary, type, hierarchy);
             }
             return result;
@@ -444,7 +449,7 @@ public abstract class DistributionAggregateFunction implements Serializable {
                 int value = buckets[i];
                 if (value != -1) {
                     int frequency = buckets[i + 1];
-                    values.add(type.parse(dictionary[value]));
+                    values.add(parsed.<T>getValue(value));
                     frequencies.add(frequency);
                 }
             }
@@ -502,6 +507,7 @@ public abstract class DistributionAggregateFunction implements Serializable {
                                                                                                  this.minimum,
                                                                                                  this.maximum);
             if (dictionary != null) {
+                result.parsed = parsed;
                 result.initialize(dictionary, type, hierarchy);
             }
             return result;
@@ -517,7 +523,7 @@ public abstract class DistributionAggregateFunction implements Serializable {
             @SuppressWarnings("unchecked")
             DataTypeWithRatioScale<T> rType = (DataTypeWithRatioScale<T>) this.type;
             DoubleArrayList list = new DoubleArrayList();
-            Iterator<Double> it = DistributionIterator.createIteratorDouble(distribution, dictionary, rType);
+            Iterator<Double> it = DistributionIterator.createIteratorDouble(distribution, parsed);
             while (it.hasNext()) {
                 Double value = it.next();
                 value = value == null ? (ignoreMissingData ? null : 0d) : value;
@@ -623,6 +629,7 @@ public abstract class DistributionAggregateFunction implements Serializable {
                                                                                                  this.minimum,
                                                                                                  this.maximum);
             if (dictionary != null) {
+                result.parsed = parsed;
                 result.initialize(dictionary, type, hierarchy);
             }
             return result;
@@ -638,7 +645,7 @@ public abstract class DistributionAggregateFunction implements Serializable {
             @SuppressWarnings("unchecked")
             DataTypeWithRatioScale<T> rType = (DataTypeWithRatioScale<T>) this.type;
             DoubleArrayList list = new DoubleArrayList();
-            Iterator<Double> it = DistributionIterator.createIteratorDouble(distribution, dictionary, rType);
+            Iterator<Double> it = DistributionIterator.createIteratorDouble(distribution, parsed);
             while (it.hasNext()) {
                 Double value = it.next();
                 value = value == null ? (ignoreMissingData ? null : 0d) : value;
@@ -655,7 +662,7 @@ public abstract class DistributionAggregateFunction implements Serializable {
             
             // Compute error
             return getNMSE(minimum, maximum, Arrays.copyOf(list.elements(), list.size()), 
-                                             rType.toDouble(rType.parse(dictionary[mode])));
+                                             rType.toDouble(parsed.<T>getValue(mode)));
         }
 
         @Override
@@ -690,18 +697,20 @@ public abstract class DistributionAggregateFunction implements Serializable {
     }
 
     /** SVUID. */
-    private static final long       serialVersionUID = 331877806010996154L;
+    private static final long            serialVersionUID = 331877806010996154L;
 
     /** Whether or not null values should be ignored */
-    protected boolean               ignoreMissingData;
+    protected boolean                    ignoreMissingData;
     /** Stores whether this is a type-preserving function */
-    private final boolean           typePreserving;
+    private final boolean                typePreserving;
     /** Dictionary */
-    protected transient String[]    dictionary;
+    protected transient String[]         dictionary;
     /** Type */
-    protected transient DataType<?> type;
+    protected transient DataType<?>      type;
     /** Hierarchy */
-    protected transient int[][]     hierarchy;
+    protected transient int[][]          hierarchy;
+    /** Parsed values of the dictionary */
+    protected transient ParsedDictionary parsed;
 
     /**
      * Instantiates a new function.
@@ -766,6 +775,9 @@ public abstract class DistributionAggregateFunction implements Serializable {
         this.dictionary = dictionary;
         this.type = type;
         this.hierarchy = hierarchy;
+        if (this.parsed == null || !this.parsed.isBasedOn(type, dictionary)) {
+            this.parsed = new ParsedDictionary(type, dictionary);
+        }
     }
     
     /**
@@ -787,7 +799,7 @@ public abstract class DistributionAggregateFunction implements Serializable {
                            Distribution distribution,
                            DataTypeWithRatioScale<T> type,
                            double offset) {
-        Iterator<Double> it = DistributionIterator.createIteratorDouble(distribution, dictionary, type);
+        Iterator<Double> it = DistributionIterator.createIteratorDouble(distribution, parsed);
         while (it.hasNext()) {
             Double value = it.next();
             value = value == null ? (ignoreMissingData ? null : 0d) : value;
@@ -806,8 +818,8 @@ public abstract class DistributionAggregateFunction implements Serializable {
     protected <T> double[] getMinMax(String[] dictionary, DataTypeWithRatioScale<T> type) {
         T min = null;
         T max = null;
-        for (String string : dictionary) {
-            T value = type.parse(string);
+        for (int code = 0; code < dictionary.length; code++) {
+            T value = parsed.getValue(code);
             if (!ignoreMissingData || value != null) {
                 min = min == null || type.compare(min, value) > 0 ? value : min;
                 max = max == null || type.compare(max, value) < 0 ? value : max;
@@ -163,8 +163,8 @@ public class DataManager {
 
         // Init dictionary
         final Dictionary dictionaryGeneralized = new Dictionary(attributesGeneralized.size());
-        final Dictionary dictionaryAnalyzed = new Dictionary(attributesSensitive.size() + attributesMicroaggregated.size());
-        final Dictionary dictionaryStatic = new Dictionary(attributesInsensitive.size());
+        final Dictionary dictionaryAnalyzed = new Dictionary(attributesSensitive.size() + attributesMicroaggregated.size(), dictionary.isCompact());
+        final Dictionary dictionaryStatic = new Dictionary(attributesInsensitive.size(), dictionary.isCompact());
 
         // Init maps for reordering the output
         final int[] mapGeneralized = new int[dictionaryGeneralized.getNumDimensions()];
@@ -373,9 +373,9 @@ public class DataManager {
                 final int dictionaryIndex = map[idx + 1] - microaggregationStartIndex;
                 final String name = header[i];
                 if (definition.getMicroAggregationFunction(name) != null) {
-                    microaggregationDomainSizes[dictionaryIndex] = dictionaryAnalyzed.getMapping()[dictionaryIndex + microaggregationStartIndex].length;
+                    microaggregationDomainSizes[dictionaryIndex] = dictionaryAnalyzed.getNumValues(dictionaryIndex + microaggregationStartIndex);
                     microaggregationFunctions[dictionaryIndex] = functions.get(name);
-                    microaggregationFunctions[dictionaryIndex].initialize(dictionaryAnalyzed.getMapping()[dictionaryIndex + microaggregationStartIndex],
+                    microaggregationFunctions[dictionaryIndex].initialize(dictionaryAnalyzed.getMapping(dictionaryIndex + microaggregationStartIndex),
                                                                           definition.getDataType(name),
                                                                           hierarchiesMA.get(name));
                 } else {
@@ -534,7 +534,7 @@ public class DataManager {
         
         // Prepare
         int index = indexesSensitive.get(attribute);
-        int distinctValues = dataAnalyzed.getDictionary().getMapping()[index].length;
+        int distinctValues = dataAnalyzed.getDictionary().getNumValues(index);
         
         // Calculate and return
         return getDistribution(dataAnalyzed.getArray(), index, distinctValues);
@@ -563,12 +563,12 @@ public class DataManager {
                 } else if (builder != null && (builder instanceof HierarchyBuilderIntervalBased)) {
                     this.shares[i] = new DomainShareInterval<>((HierarchyBuilderIntervalBased<?>)builder,
                                                            hierarchiesGeneralized[i].getArray(),
-                                                           dataGeneralized.getDictionary().getMapping()[i]);
+                                                           dataGeneralized.getDictionary().getMapping(i));
                     
                 // Create fallback-shares for materialized hierarchies
                 } else {
                     this.shares[i] = new DomainShareMaterialized(hierarchy, 
-                                                            dataGeneralized.getDictionary().getMapping()[i],
+                                                            dataGeneralized.getDictionary().getMapping(i),
                                                             hierarchiesGeneralized[i].getArray());
                 }
             }
@@ -693,7 +693,7 @@ public class DataManager {
         }
         
         // Prepare
-        final String[] dictionary = dataAnalyzed.getDictionary().getMapping()[indexesSensitive.get(attribute)];
+        final String[] dictionary = dataAnalyzed.getDictionary().getMapping(indexesSensitive.get(attribute));
         final DataType<?> type = this.dataTypesSensitive.get(attribute);
         
         // Init
@@ -811,7 +811,7 @@ public class DataManager {
         }
 
         // Build nodes
-        int offset = dataAnalyzed.getDictionary().getMapping()[index].length;
+        int offset = dataAnalyzed.getDictionary().getNumValues(index);
         for (int i = 0; i < hierarchy[0].length; i++) {
             for (int j = 0; j < hierarchy.length; j++) {
                 final int nodeID = hierarchy[j][i] + i * offset;
@@ -88,6 +88,16 @@ public class DataMatrix implements Serializable {
         System.arraycopy(sourceMatrix.array, sourceOffset, this.array, thisOffset, columns);
     }
 
+    /**
+     * Copies consecutive rows from the given row-major array into this matrix
+     * @param row
+     * @param data
+     * @param numRows
+     */
+    public void copyFrom(int row, int[] data, int numRows) {
+        System.arraycopy(data, 0, this.array, row * columns, numRows * columns);
+    }
+
     /**
      * Compares two rows for equality
      * @param row1
@@ -255,6 +265,19 @@ public class DataMatrix implements Serializable {
         this.array[row * columns + column] = value;
     }
 
+    /**
+     * Sets the data for one column
+     * @param column
+     * @param data
+     */
+    public void setColumn(int column, int[] data) {
+        int offset = column;
+        for (int i = 0; i < rows; i++) {
+            this.array[offset] = data[i];
+            offset += columns;
+        }
+    }
+
     /**
      * Sets the row index for data access
      * @param row
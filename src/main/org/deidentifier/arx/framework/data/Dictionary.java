@@ -22,7 +22,9 @@ import java.io.Serializable;
 import com.carrotsearch.hppc.ObjectIntOpenHashMap;
 
 /**
- * A dictionary mapping integers to strings for different dimensions.
+ * A dictionary mapping integers to strings for different dimensions. Compact dictionaries
+ * store their values in a {@link StringArena} per dimension instead of maintaining
+ * hash maps and arrays of strings.
  * 
  * @author Fabian Prasser
  * @author Florian Kohlmayer
@@ -38,27 +40,56 @@ public class Dictionary implements Serializable {
     /** Map used when building the dictionary. */
     private transient ObjectIntOpenHashMap<String>[] maps;
 
+    /** Arenas used by compact dictionaries, null otherwise. */
+    private final StringArena[]                      arenas;
+
     /**
      * Instantiates a new dictionary.
      * 
      * @param dimensions
      *            the dimensions
      */
-    @SuppressWarnings("unchecked")
     public Dictionary(final int dimensions) {
-        maps = new ObjectIntOpenHashMap[dimensions];
+        this(dimensions, false);
+    }
+
+    /**
+     * Instantiates a new dictionary.
+     * 
+     * @param dimensions
+     *            the dimensions
+     * @param compact
+     *            whether values should be stored as UTF-8 bytes in an arena
+     */
+    @SuppressWarnings("unchecked")
+    public Dictionary(final int dimensions, final boolean compact) {
         mapping = new String[dimensions][];
-        for (int i = 0; i < dimensions; i++) {
-            maps[i] = new ObjectIntOpenHashMap<String>();
+        if (compact) {
+            arenas = new StringArena[dimensions];
+            for (int i = 0; i < dimensions; i++) {
+                arenas[i] = new StringArena();
+            }
+        } else {
+            arenas = null;
+            maps = new ObjectIntOpenHashMap[dimensions];
+            for (int i = 0; i < dimensions; i++) {
+                maps[i] = new ObjectIntOpenHashMap<String>();
+            }
         }
     }
 
     /**
-     * Definalizes the dictionary
+     * Definalizes the dictionary. This is a no-op for compact dictionaries,
+     * as their index is retained when finalizing.
      */
     @SuppressWarnings("unchecked")
     public void definalizeAll() {
         
+        // Nothing to do
+        if (arenas != null) {
+            return;
+        }
+        
         // Re-instantiate maps
         maps = new ObjectIntOpenHashMap[mapping.length];
         for (int i = 0; i < maps.length; i++) {
@@ -84,6 +115,9 @@ public class Dictionary implements Serializable {
      * Finalizes all dimensions.
      */
     public void finalizeAll() {
+        if (arenas != null) {
+            return;
+        }
         for (int i = 0; i < maps.length; i++) {
             mapping[i] = new String[maps[i].size()];
             final Object[] keys = maps[i].keys;
@@ -100,14 +134,49 @@ public class Dictionary implements Serializable {
     }
 
     /**
-     * Returns the mapping array.
+     * Returns the arena for the given dimension, null if this dictionary is not compact.
+     *
+     * @param dimension
+     * @return
+     */
+    public StringArena getArena(final int dimension) {
+        return arenas == null ? null : arenas[dimension];
+    }
+
+    /**
+     * Returns the mapping array. For compact dictionaries, all values are materialized
+     * on each call and changes to the returned arrays are not reflected in the dictionary.
+     * Use {@link #getValue(int, int)} to resolve individual values.
      *
      * @return
      */
     public String[][] getMapping() {
+        if (arenas != null) {
+            String[][] result = new String[arenas.length][];
+            for (int i = 0; i < arenas.length; i++) {
+                result[i] = arenas[i].getAll();
+            }
+            return result;
+        }
         return mapping;
     }
 
+    /**
+     * Returns the mapping array for the given dimension. For compact dictionaries,
+     * all values are materialized on each call and changes to the returned array are
+     * not reflected in the dictionary. Use {@link #getValue(int, int)} to resolve
+     * individual values.
+     *
+     * @param dimension
+     * @return
+     */
+    public String[] getMapping(final int dimension) {
+        if (arenas != null) {
+            return arenas[dimension].getAll();
+        }
+        return mapping[dimension];
+    }
+
     /**
      * Returns the number of dimensions in the dictionary.
      *
@@ -125,9 +194,48 @@ public class Dictionary implements Serializable {
      * @return
      */
     public int getNumUniqueUnfinalizedValues(final int dimension) {
+        if (arenas != null) {
+            return arenas[dimension].size();
+        }
         return maps[dimension].size();
     }
 
+    /**
+     * Returns the number of values in the given dimension of the finalized dictionary.
+     *
+     * @param dimension
+     * @return
+     */
+    public int getNumValues(final int dimension) {
+        if (arenas != null) {
+            return arenas[dimension].size();
+        }
+        return mapping[dimension].length;
+    }
+
+    /**
+     * Returns the value with the given code from the finalized dictionary.
+     *
+     * @param dimension
+     * @param code
+     * @return
+     */
+    public String getValue(final int dimension, final int code) {
+        if (arenas != null) {
+            return arenas[dimension].get(code);
+        }
+        return mapping[dimension][code];
+    }
+
+    /**
+     * Returns whether this dictionary stores its values in arenas.
+     *
+     * @return
+     */
+    public boolean isCompact() {
+        return arenas != null;
+    }
+
     /**
      * Returns the registered value if present, null otherwise.
      *
@@ -136,6 +244,10 @@ public class Dictionary implements Serializable {
      * @return
      */
     public Integer probe(final int dimension, final String string) {
+        if (arenas != null) {
+            int code = arenas[dimension].probe(string);
+            return code != -1 ? code : null;
+        }
         if (maps[dimension].containsKey(string)) {
             return maps[dimension].lget();
         } else {
@@ -155,6 +267,11 @@ public class Dictionary implements Serializable {
      */
     public int register(final int dimension, final String string) {
 
+        // Compact
+        if (arenas != null) {
+            return arenas[dimension].register(string);
+        }
+
         // Prepare
         ObjectIntOpenHashMap<String> map = maps[dimension];
         int size = map.size();
@@ -167,6 +284,26 @@ public class Dictionary implements Serializable {
         }
     }
 
+    /**
+     * Registers a value from the given dimension of another, finalized dictionary.
+     * Compact dictionaries exchange the value without materializing it.
+     *
+     * @param dimension
+     * @param dictionary
+     * @param sourceDimension
+     * @param code
+     * @return the code in this dictionary
+     */
+    public int register(final int dimension,
+                        final Dictionary dictionary,
+                        final int sourceDimension,
+                        final int code) {
+        if (arenas != null && dictionary.arenas != null) {
+            return arenas[dimension].register(dictionary.arenas[sourceDimension], code);
+        }
+        return register(dimension, dictionary.getValue(sourceDimension, code));
+    }
+
     /**
      * Merges this dictionary with another dictionary.
      *
@@ -177,9 +314,51 @@ public class Dictionary implements Serializable {
     public void registerAll(final int targetDimension,
                             final Dictionary dictionary,
                             final int sourceDimension) {
-        final String[] vals = dictionary.mapping[sourceDimension];
-        for (int id = 0; id < vals.length; id++) {
-            maps[targetDimension].put(vals[id], id);
+        
+        // Copy arena
+        if (arenas != null && dictionary.arenas != null && arenas[targetDimension].size() == 0) {
+            arenas[targetDimension] = dictionary.arenas[sourceDimension].copy();
+            return;
+        }
+        
+        // Register individually
+        final int size = dictionary.getNumValues(sourceDimension);
+        for (int id = 0; id < size; id++) {
+            final String value = dictionary.getValue(sourceDimension, id);
+            if (arenas != null) {
+                if (arenas[targetDimension].register(value) != id) {
+                    throw new IllegalStateException("Dictionary contains duplicate values");
+                }
+            } else {
+                maps[targetDimension].put(value, id);
+            }
+        }
+    }
+
+    /**
+     * Replaces all occurrences of a value in the given dimension of the finalized dictionary.
+     *
+     * @param dimension
+     * @param original
+     * @param replacement
+     * @return Whether the value has been found
+     */
+    public boolean replace(final int dimension, final String original, final String replacement) {
+        
+        // Compact
+        if (arenas != null) {
+            return arenas[dimension].replace(original, replacement);
+        }
+        
+        // Replace
+        String[] values = mapping[dimension];
+        boolean found = false;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i].equals(original)) {
+                values[i] = replacement;
+                found = true;
+            }
         }
+        return found;
     }
 }
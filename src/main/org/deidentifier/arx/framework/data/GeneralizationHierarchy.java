@@ -109,7 +109,7 @@ public class GeneralizationHierarchy {
         String[] header = manager.getDataGeneralized().getHeader();
         for (int i=0; i<header.length; i++) {
             if (header[i].equals(attribute)) {
-                dictionary = manager.getDataGeneralized().getDictionary().getMapping()[i];
+                dictionary = manager.getDataGeneralized().getDictionary().getMapping(i);
             }
         }
         
@@ -0,0 +1,209 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.framework.data;
+
+import java.util.Date;
+
+import org.deidentifier.arx.DataType;
+import org.deidentifier.arx.DataType.ARXDate;
+import org.deidentifier.arx.DataType.ARXInteger;
+import org.deidentifier.arx.DataType.DataTypeWithRatioScale;
+
+/**
+ * The values of one dimension of a dictionary, parsed with a given data type. Each value is parsed
+ * exactly once. Values are indexed by their code and are, where applicable, also available as primitive
+ * doubles and longs. Codes of values which could not be parsed are marked in a bitmap, as are codes of
+ * null values.
+ *
+ * @author Fabian Prasser
+ */
+public class ParsedDictionary {
+
+    /** The data type */
+    private final DataType<?> type;
+
+    /** The original values */
+    private final String[]    strings;
+
+    /** The parsed values */
+    private final Object[]    values;
+
+    /** The values as doubles, if the type has a ratio scale */
+    private final double[]    doubles;
+
+    /** The values as longs, if the type represents integers or dates */
+    private final long[]      longs;
+
+    /** Bitmap of codes with values that have been parsed into non-null values */
+    private final long[]      valid;
+
+    /** Bitmap of codes with values that represent null */
+    private final long[]      missing;
+
+    /**
+     * Creates a new instance
+     *
+     * @param type
+     * @param strings
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public ParsedDictionary(DataType<?> type, String[] strings) {
+
+        // Prepare
+        int size = strings.length;
+        this.type = type;
+        this.strings = strings;
+        this.values = new Object[size];
+        this.doubles = type instanceof DataTypeWithRatioScale ? new double[size] : null;
+        this.longs = type instanceof ARXInteger || type instanceof ARXDate ? new long[size] : null;
+        this.valid = new long[(size + 63) >>> 6];
+        this.missing = new long[(size + 63) >>> 6];
+
+        // Parse
+        for (int code = 0; code < size; code++) {
+            Object value;
+            try {
+                value = type.parse(strings[code]);
+            } catch (Exception e) {
+                continue;
+            }
+            if (value == null) {
+                missing[code >>> 6] |= 1L << code;
+                continue;
+            }
+            valid[code >>> 6] |= 1L << code;
+            values[code] = value;
+            if (doubles != null) {
+                doubles[code] = ((DataTypeWithRatioScale) type).toDouble(value);
+            }
+            if (longs != null) {
+                longs[code] = value instanceof Date ? ((Date) value).getTime() : (Long) value;
+            }
+        }
+    }
+
+    /**
+     * Returns the value with the given code as a double. Only supported for types with a ratio scale.
+     *
+     * @param code
+     * @return
+     * @throws IllegalArgumentException if the value is null or could not be parsed
+     */
+    public double getDouble(int code) {
+        check(code);
+        return doubles[code];
+    }
+
+    /**
+     * Returns the value with the given code as a long. Only supported for integers and dates.
+     *
+     * @param code
+     * @return
+     * @throws IllegalArgumentException if the value is null or could not be parsed
+     */
+    public long getLong(int code) {
+        check(code);
+        return longs[code];
+    }
+
+    /**
+     * Returns the number of values
+     *
+     * @return
+     */
+    public int getSize() {
+        return strings.length;
+    }
+
+    /**
+     * Returns the original value with the given code
+     *
+     * @param code
+     * @return
+     */
+    public String getString(int code) {
+        return strings[code];
+    }
+
+    /**
+     * Returns the data type
+     *
+     * @return
+     */
+    public DataType<?> getType() {
+        return type;
+    }
+
+    /**
+     * Returns the parsed value with the given code, null for null values
+     *
+     * @param code
+     * @return
+     * @throws IllegalArgumentException if the value could not be parsed
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getValue(int code) {
+        if (isNull(code)) {
+            return null;
+        }
+        check(code);
+        return (T) values[code];
+    }
+
+    /**
+     * Returns whether this instance has been created for the given type and values
+     *
+     * @param type
+     * @param strings
+     * @return
+     */
+    public boolean isBasedOn(DataType<?> type, String[] strings) {
+        return this.type == type && this.strings == strings;
+    }
+
+    /**
+     * Returns whether the value with the given code represents null
+     *
+     * @param code
+     * @return
+     */
+    public boolean isNull(int code) {
+        return (missing[code >>> 6] & (1L << code)) != 0;
+    }
+
+    /**
+     * Returns whether the value with the given code has been parsed into a non-null value
+     *
+     * @param code
+     * @return
+     */
+    public boolean isValid(int code) {
+        return (valid[code >>> 6] & (1L << code)) != 0;
+    }
+
+    /**
+     * Checks whether the given code refers to a valid value
+     *
+     * @param code
+     */
+    private void check(int code) {
+        if (!isValid(code)) {
+            throw new IllegalArgumentException("Invalid value: " + strings[code]);
+        }
+    }
+}
@@ -0,0 +1,469 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.framework.data;
+
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.deidentifier.arx.framework.check.groupify.HashTableUtil;
+
+/**
+ * A compact, append-only store for the values of one dimension of a dictionary.
+ * Values are kept as UTF-8 encoded bytes in large chunks and are indexed by an
+ * open-addressing hash table over int codes. Strings are only materialized on request.
+ *
+ * @author Fabian Prasser
+ */
+public class StringArena implements Serializable {
+
+    /** SVUID */
+    private static final long    serialVersionUID = -3826475640235120934L;
+
+    /** Charset */
+    public static final Charset  UTF8             = Charset.forName("UTF-8");
+
+    /** Size of the first chunk */
+    private static final int     CHUNK_SIZE_MIN   = 1 << 10;
+
+    /** Maximal size of a chunk. Larger values get a chunk of their own. */
+    private static final int     CHUNK_SIZE_MAX   = 1 << 20;
+
+    /** Load factor */
+    private static final float   LOAD_FACTOR      = 0.75f;
+
+    /**
+     * Computes the hash code of a byte sequence
+     *
+     * @param bytes
+     * @param offset
+     * @param length
+     * @return
+     */
+    public static int hashCode(final byte[] bytes, final int offset, final int length) {
+        int hash = 0x9747b28c ^ length;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    /** The chunks */
+    private byte[][]             chunks;
+
+    /** The number of chunks in use */
+    private int                  numChunks;
+
+    /** The number of bytes used in the current chunk */
+    private int                  chunkOffset;
+
+    /** Address of each value: chunk index in the upper, offset in the lower 32 bits */
+    private long[]               addresses;
+
+    /** Length of each value in bytes */
+    private int[]                lengths;
+
+    /** Hash code of each value */
+    private int[]                hashes;
+
+    /** The number of values */
+    private int                  size;
+
+    /** Hash index over codes. Contains code + 1, or 0 for empty slots */
+    private int[]                index;
+
+    /** Threshold for rehashing */
+    private int                  threshold;
+
+    /**
+     * Creates a new instance
+     */
+    public StringArena() {
+        this(16);
+    }
+
+    /**
+     * Creates a new instance
+     * @param capacity Expected number of values
+     */
+    public StringArena(int capacity) {
+        capacity = Math.max(capacity, 16);
+        this.chunks = new byte[4][];
+        this.numChunks = 0;
+        this.chunkOffset = 0;
+        this.addresses = new long[capacity];
+        this.lengths = new int[capacity];
+        this.hashes = new int[capacity];
+        this.size = 0;
+        this.index = new int[HashTableUtil.calculateCapacity((int) (capacity / LOAD_FACTOR) + 1)];
+        this.threshold = HashTableUtil.calculateThreshold(index.length, LOAD_FACTOR);
+    }
+
+    /**
+     * Clone constructor. Chunks that are full are shared, because they will never be written again.
+     * @param other
+     */
+    private StringArena(StringArena other) {
+        this.chunks = Arrays.copyOf(other.chunks, other.chunks.length);
+        if (other.numChunks > 0) {
+            int last = other.numChunks - 1;
+            this.chunks[last] = Arrays.copyOf(other.chunks[last], other.chunks[last].length);
+        }
+        this.numChunks = other.numChunks;
+        this.chunkOffset = other.chunkOffset;
+        this.addresses = Arrays.copyOf(other.addresses, other.addresses.length);
+        this.lengths = Arrays.copyOf(other.lengths, other.lengths.length);
+        this.hashes = Arrays.copyOf(other.hashes, other.hashes.length);
+        this.size = other.size;
+        this.index = Arrays.copyOf(other.index, other.index.length);
+        this.threshold = other.threshold;
+    }
+
+    /**
+     * Returns a copy of this arena, which may be modified independently
+     */
+    public StringArena copy() {
+        return new StringArena(this);
+    }
+
+    /**
+     * Returns whether the value with the given code equals the given bytes
+     *
+     * @param code
+     * @param bytes
+     * @param offset
+     * @param length
+     * @return
+     */
+    public boolean equals(final int code, final byte[] bytes, final int offset, final int length) {
+        if (lengths[code] != length) {
+            return false;
+        }
+        final long address = addresses[code];
+        final byte[] chunk = chunks[(int) (address >>> 32)];
+        final int start = (int) address;
+        for (int i = 0; i < length; i++) {
+            if (chunk[start + i] != bytes[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Materializes the value with the given code
+     *
+     * @param code
+     * @return
+     */
+    public String get(final int code) {
+        final long address = addresses[code];
+        return new String(chunks[(int) (address >>> 32)], (int) address, lengths[code], UTF8);
+    }
+
+    /**
+     * Returns the UTF-8 encoded bytes of the value with the given code
+     *
+     * @param code
+     * @return
+     */
+    public byte[] getBytes(final int code) {
+        final long address = addresses[code];
+        final int start = (int) address;
+        return Arrays.copyOfRange(chunks[(int) (address >>> 32)], start, start + lengths[code]);
+    }
+
+    /**
+     * Returns the hash code of the value with the given code
+     *
+     * @param code
+     * @return
+     */
+    public int getHashCode(final int code) {
+        return hashes[code];
+    }
+
+    /**
+     * Returns the length in bytes of the value with the given code
+     *
+     * @param code
+     * @return
+     */
+    public int getLength(final int code) {
+        return lengths[code];
+    }
+
+    /**
+     * Materializes all values
+     *
+     * @return
+     */
+    public String[] getAll() {
+        String[] result = new String[size];
+        for (int code = 0; code < size; code++) {
+            result[code] = get(code);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the code of the given value, -1 if it is not contained
+     *
+     * @param bytes
+     * @param offset
+     * @param length
+     * @return
+     */
+    public int probe(final byte[] bytes, final int offset, final int length) {
+        return probe(bytes, offset, length, hashCode(bytes, offset, length));
+    }
+
+    /**
+     * Returns the code of the given value, -1 if it is not contained
+     *
+     * @param bytes
+     * @param offset
+     * @param length
+     * @param hash
+     * @return
+     */
+    public int probe(final byte[] bytes, final int offset, final int length, final int hash) {
+        final int mask = index.length - 1;
+        int slot = hash & mask;
+        while (true) {
+            final int entry = index[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            final int code = entry - 1;
+            if (hashes[code] == hash && equals(code, bytes, offset, length)) {
+                return code;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Returns the code of the given value, -1 if it is not contained
+     *
+     * @param value
+     * @return
+     */
+    public int probe(final String value) {
+        final byte[] bytes = value.getBytes(UTF8);
+        return probe(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Registers the given value and returns its code
+     *
+     * @param bytes
+     * @param offset
+     * @param length
+     * @return
+     */
+    public int register(final byte[] bytes, final int offset, final int length) {
+        return register(bytes, offset, length, hashCode(bytes, offset, length));
+    }
+
+    /**
+     * Registers the given value with a precomputed hash code and returns its code
+     *
+     * @param bytes
+     * @param offset
+     * @param length
+     * @param hash
+     * @return
+     */
+    public int register(final byte[] bytes, final int offset, final int length, final int hash) {
+
+        // Probe
+        final int mask = index.length - 1;
+        int slot = hash & mask;
+        while (true) {
+            final int entry = index[slot];
+            if (entry == 0) {
+                break;
+            }
+            final int code = entry - 1;
+            if (hashes[code] == hash && equals(code, bytes, offset, length)) {
+                return code;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        // Append
+        final int code = append(bytes, offset, length, hash);
+        index[slot] = code + 1;
+        if (size > threshold) {
+            rehash();
+        }
+        return code;
+    }
+
+    /**
+     * Registers a value from another arena and returns its code
+     *
+     * @param arena
+     * @param code
+     * @return
+     */
+    public int register(final StringArena arena, final int code) {
+        final long address = arena.addresses[code];
+        return register(arena.chunks[(int) (address >>> 32)], (int) address, arena.lengths[code], arena.hashes[code]);
+    }
+
+    /**
+     * Registers the given value and returns its code
+     *
+     * @param value
+     * @return
+     */
+    public int register(final String value) {
+        final byte[] bytes = value.getBytes(UTF8);
+        return register(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Replaces all occurrences of the given value
+     *
+     * @param original
+     * @param replacement
+     * @return Whether the value has been found
+     */
+    public boolean replace(final String original, final String replacement) {
+
+        // Find
+        final byte[] bytes = original.getBytes(UTF8);
+        final int hash = hashCode(bytes, 0, bytes.length);
+        final byte[] replacementBytes = replacement.getBytes(UTF8);
+        final int replacementHash = hashCode(replacementBytes, 0, replacementBytes.length);
+        boolean found = false;
+
+        // Values may occur more than once, if they have been replaced before
+        for (int code = 0; code < size; code++) {
+            if (hashes[code] == hash && equals(code, bytes, 0, bytes.length)) {
+                long address = store(replacementBytes, 0, replacementBytes.length);
+                addresses[code] = address;
+                lengths[code] = replacementBytes.length;
+                hashes[code] = replacementHash;
+                found = true;
+            }
+        }
+
+        // Rebuild index
+        if (found) {
+            Arrays.fill(index, 0);
+            for (int code = 0; code < size; code++) {
+                insert(code);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the number of values
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Appends a value without updating the index
+     *
+     * @param bytes
+     * @param offset
+     * @param length
+     * @param hash
+     * @return the code
+     */
+    private int append(final byte[] bytes, final int offset, final int length, final int hash) {
+        if (size == addresses.length) {
+            int capacity = addresses.length + (addresses.length >> 1) + 1;
+            addresses = Arrays.copyOf(addresses, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+        }
+        final int code = size++;
+        addresses[code] = store(bytes, offset, length);
+        lengths[code] = length;
+        hashes[code] = hash;
+        return code;
+    }
+
+    /**
+     * Inserts the given code into the index
+     *
+     * @param code
+     */
+    private void insert(final int code) {
+        final int mask = index.length - 1;
+        int slot = hashes[code] & mask;
+        while (index[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        index[slot] = code + 1;
+    }
+
+    /**
+     * Doubles the size of the index
+     */
+    private void rehash() {
+        index = new int[index.length << 1];
+        threshold = HashTableUtil.calculateThreshold(index.length, LOAD_FACTOR);
+        for (int code = 0; code < size; code++) {
+            insert(code);
+        }
+    }
+
+    /**
+     * Copies the given bytes into the arena and returns the address
+     *
+     * @param bytes
+     * @param offset
+     * @param length
+     * @return
+     */
+    private long store(final byte[] bytes, final int offset, final int length) {
+
+        // Allocate new chunk, if required
+        if (numChunks == 0 || chunkOffset + length > chunks[numChunks - 1].length) {
+            int chunkSize = numChunks == 0 ? CHUNK_SIZE_MIN : Math.min(chunks[numChunks - 1].length << 1, CHUNK_SIZE_MAX);
+            chunkSize = Math.max(chunkSize, length);
+            if (numChunks == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunks.length << 1);
+            }
+            chunks[numChunks++] = new byte[chunkSize];
+            chunkOffset = 0;
+        }
+
+        // Copy
+        final int chunk = numChunks - 1;
+        final int start = chunkOffset;
+        System.arraycopy(bytes, offset, chunks[chunk], start, length);
+        chunkOffset += length;
+        return ((long) chunk << 32) | (start & 0xffffffffL);
+    }
+}
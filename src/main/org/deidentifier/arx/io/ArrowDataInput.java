@@ -0,0 +1,599 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+
+import org.deidentifier.arx.DataType;
+import org.deidentifier.arx.framework.data.DataMatrix;
+import org.deidentifier.arx.framework.data.Dictionary;
+import org.deidentifier.arx.framework.data.StringArena;
+
+import com.carrotsearch.hppc.IntArrayList;
+
+/**
+ * Loads data in the Apache Arrow IPC format. Both the file and the streaming format are
+ * supported. Columns must be flat and may contain strings, integers, floating point numbers
+ * or booleans. For dictionary-encoded columns, each entry of a dictionary is registered once
+ * and the indices are translated into codes directly, which means that values are never
+ * materialized per cell. Null values are imported as {@link DataType#NULL_VALUE}.
+ *
+ * @author Fabian Prasser
+ * @see <a href="https://arrow.apache.org/docs/format/Columnar.html">Arrow Columnar Format</a>
+ */
+public class ArrowDataInput implements IImportEncoded {
+
+    /**
+     * Type of a column
+     *
+     * @author Fabian Prasser
+     */
+    private static class Type {
+
+        /** Type of values */
+        private byte    type;
+
+        /** Bit width of integers */
+        private int     bitWidth;
+
+        /** Whether integers are signed */
+        private boolean signed;
+
+        /** Precision of floating point numbers */
+        private short   precision;
+
+        /**
+         * Returns the number of buffers used by a vector of this type
+         * @return
+         */
+        private int getNumBuffers() {
+            return (type == ArrowIPC.TYPE_UTF8 || type == ArrowIPC.TYPE_LARGE_UTF8) ? 3 : 2;
+        }
+    }
+
+    /** The file */
+    private final File            file;
+
+    /** Whether a compact dictionary should be used */
+    private boolean               compact = false;
+
+    /** Result */
+    private String[]              header;
+
+    /** Result */
+    private DataMatrix            data;
+
+    /** Result */
+    private Dictionary            dictionary;
+
+    /** Types of the columns */
+    private Type[]                types;
+
+    /** Types of the indices of dictionary-encoded columns, null for other columns */
+    private Type[]                indexTypes;
+
+    /** Dictionary ids of the columns, -1 for columns which are not dictionary-encoded */
+    private long[]                ids;
+
+    /** Translation from entries of dictionaries to codes, per column */
+    private IntArrayList[]        translations;
+
+    /** Index of byte slices, if the dictionary is not compact */
+    private StringArena[]         index;
+
+    /** Translation from the index to the dictionary, if the dictionary is not compact */
+    private IntArrayList[]        indexTranslations;
+
+    /** Code of the null value per column */
+    private int[]                 nulls;
+
+    /** Buffer for values */
+    private byte[]                bytes;
+
+    /**
+     * Creates a new instance
+     *
+     * @param file
+     */
+    public ArrowDataInput(final File file) {
+        this.file = file;
+    }
+
+    /**
+     * Creates a new instance
+     *
+     * @param path
+     */
+    public ArrowDataInput(final String path) {
+        this(new File(path));
+    }
+
+    @Override
+    public DataMatrix getData() {
+        return data;
+    }
+
+    @Override
+    public Dictionary getDictionary() {
+        return dictionary;
+    }
+
+    @Override
+    public String[] getHeader() {
+        return header;
+    }
+
+    /**
+     * Returns whether a compact dictionary will be used
+     * @return
+     */
+    public boolean isCompactDictionary() {
+        return compact;
+    }
+
+    @Override
+    public void load() throws IOException {
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        FileChannel channel = raf.getChannel();
+        this.bytes = new byte[1024];
+
+        try {
+
+            // Detect format
+            long size = channel.size();
+            long position = 0;
+            long end = size;
+            ByteBuffer magic = read(channel, 0, Math.min(size, ArrowIPC.MAGIC.length));
+            if (Arrays.equals(magic.array(), ArrowIPC.MAGIC)) {
+                position = ArrowIPC.ALIGNMENT;
+                end = size - ArrowIPC.MAGIC.length - 4;
+                end -= read(channel, end, 4).getInt(0);
+            }
+
+            // For each message
+            IntArrayList codes = new IntArrayList();
+            int rows = 0;
+            while (position + 4 <= end) {
+
+                // Size of metadata, with or without continuation marker
+                int length = read(channel, position, 4).getInt(0);
+                position += 4;
+                if (length == ArrowIPC.CONTINUATION) {
+                    length = read(channel, position, 4).getInt(0);
+                    position += 4;
+                }
+                if (length == 0) {
+                    break;
+                }
+
+                // Metadata and body
+                ArrowIPC.Table message = ArrowIPC.Table.getRoot(read(channel, position, length));
+                position += length;
+                long bodyLength = message.getLong(ArrowIPC.MESSAGE_BODY_LENGTH, 0);
+                ByteBuffer body = channel.map(MapMode.READ_ONLY, position, bodyLength).order(ByteOrder.LITTLE_ENDIAN);
+                position += bodyLength;
+
+                // Process
+                ArrowIPC.Table content = message.getTable(ArrowIPC.MESSAGE_HEADER);
+                switch (message.getByte(ArrowIPC.MESSAGE_HEADER_TYPE, (byte) 0)) {
+                case ArrowIPC.HEADER_SCHEMA:
+                    readSchema(content);
+                    break;
+                case ArrowIPC.HEADER_DICTIONARY_BATCH:
+                    checkSchema();
+                    readDictionary(content, body);
+                    break;
+                case ArrowIPC.HEADER_RECORD_BATCH:
+                    checkSchema();
+                    rows += readBatch(content, body, codes);
+                    break;
+                default:
+                    throw new IOException("Unsupported type of message");
+                }
+            }
+
+            // Build result
+            checkSchema();
+            dictionary.finalizeAll();
+            data = new DataMatrix(rows, header.length);
+            data.copyFrom(0, codes.buffer, rows);
+
+        } finally {
+            channel.close();
+            raf.close();
+            bytes = null;
+            types = null;
+            indexTypes = null;
+            ids = null;
+            translations = null;
+            index = null;
+            indexTranslations = null;
+            nulls = null;
+        }
+    }
+
+    /**
+     * Sets whether a compact dictionary should be used
+     * @param compact
+     */
+    public void setCompactDictionary(boolean compact) {
+        this.compact = compact;
+    }
+
+    /**
+     * Makes sure that the schema has been read
+     * @throws IOException
+     */
+    private void checkSchema() throws IOException {
+        if (header == null) {
+            throw new IOException("Missing schema");
+        }
+    }
+
+    /**
+     * Returns whether the given element is valid
+     * @param body
+     * @param validity Offset and length of the validity buffer
+     * @param nullCount
+     * @param element
+     * @return
+     */
+    private boolean isValid(ByteBuffer body, long[] validity, long nullCount, int element) {
+        if (nullCount == 0 || validity[1] == 0) {
+            return true;
+        }
+        return (body.get((int) validity[0] + (element >>> 3)) & (1 << (element & 7))) != 0;
+    }
+
+    /**
+     * Looks up the given value. Strings are only created for values that have not been seen before.
+     * @param column
+     * @param length
+     * @return
+     */
+    private int lookup(int column, int length) {
+
+        // Compact: the dictionary itself is indexed by bytes
+        if (compact) {
+            return dictionary.getArena(column).register(bytes, 0, length);
+        }
+
+        // Probe index
+        StringArena arena = index[column];
+        int hash = StringArena.hashCode(bytes, 0, length);
+        int code = arena.probe(bytes, 0, length, hash);
+        if (code != -1) {
+            return indexTranslations[column].get(code);
+        }
+        arena.register(bytes, 0, length, hash);
+        int result = dictionary.register(column, new String(bytes, 0, length, StringArena.UTF8));
+        indexTranslations[column].add(result);
+        return result;
+    }
+
+    /**
+     * Looks up the null value
+     * @param column
+     * @return
+     */
+    private int lookupNull(int column) {
+        if (nulls[column] == -1) {
+            nulls[column] = dictionary.register(column, DataType.NULL_VALUE);
+        }
+        return nulls[column];
+    }
+
+    /**
+     * Reads the given range of the channel
+     * @param channel
+     * @param position
+     * @param length
+     * @return
+     * @throws IOException
+     */
+    private ByteBuffer read(FileChannel channel, long position, long length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Reads a record batch
+     * @param batch
+     * @param body
+     * @param codes
+     * @return the number of rows
+     * @throws IOException
+     */
+    private int readBatch(ArrowIPC.Table batch, ByteBuffer body, IntArrayList codes) throws IOException {
+
+        // Check
+        if (batch.getTable(ArrowIPC.BATCH_COMPRESSION) != null) {
+            throw new IOException("Compressed record batches are not supported");
+        }
+        long length = batch.getLong(ArrowIPC.BATCH_LENGTH, 0);
+        if (length * header.length > Integer.MAX_VALUE) {
+            throw new IOException("Record batch is too large");
+        }
+        int rows = (int) length;
+        int columns = header.length;
+        int[] block = new int[rows * columns];
+
+        // For each column
+        int buffer = 0;
+        for (int column = 0; column < columns; column++) {
+            long nullCount = batch.getStructLong(ArrowIPC.BATCH_NODES, column, 16, 8);
+            long[][] buffers = new long[ids[column] != -1 ? 2 : types[column].getNumBuffers()][];
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = new long[] { batch.getStructLong(ArrowIPC.BATCH_BUFFERS, buffer, 16, 0),
+                                          batch.getStructLong(ArrowIPC.BATCH_BUFFERS, buffer, 16, 8) };
+                buffer++;
+            }
+
+            // Dictionary-encoded
+            if (ids[column] != -1) {
+                IntArrayList translation = translations[column];
+                for (int row = 0; row < rows; row++) {
+                    int code;
+                    if (!isValid(body, buffers[0], nullCount, row)) {
+                        code = lookupNull(column);
+                    } else {
+                        long entry = readInteger(body, buffers[1], indexTypes[column], row);
+                        if (entry < 0 || entry >= translation.size()) {
+                            throw new IOException("Invalid index into dictionary");
+                        }
+                        code = translation.get((int) entry);
+                    }
+                    block[row * columns + column] = code;
+                }
+
+            // Plain
+            } else {
+                for (int row = 0; row < rows; row++) {
+                    block[row * columns + column] = readValue(body, buffers, nullCount, types[column], column, row);
+                }
+            }
+        }
+
+        // Append
+        codes.add(block, 0, block.length);
+        return rows;
+    }
+
+    /**
+     * Reads a dictionary batch
+     * @param batch
+     * @param body
+     * @throws IOException
+     */
+    private void readDictionary(ArrowIPC.Table batch, ByteBuffer body) throws IOException {
+
+        // Prepare
+        long id = batch.getLong(ArrowIPC.DICTIONARY_BATCH_ID, 0);
+        boolean delta = batch.getBoolean(ArrowIPC.DICTIONARY_BATCH_DELTA, false);
+        ArrowIPC.Table data = batch.getTable(ArrowIPC.DICTIONARY_BATCH_DATA);
+        if (data.getTable(ArrowIPC.BATCH_COMPRESSION) != null) {
+            throw new IOException("Compressed dictionary batches are not supported");
+        }
+        int length = (int) data.getLong(ArrowIPC.BATCH_LENGTH, 0);
+        long nullCount = data.getStructLong(ArrowIPC.BATCH_NODES, 0, 16, 8);
+
+        // Register entries for all columns using the dictionary
+        for (int column = 0; column < header.length; column++) {
+            if (ids[column] == id) {
+                long[][] buffers = new long[types[column].getNumBuffers()][];
+                for (int i = 0; i < buffers.length; i++) {
+                    buffers[i] = new long[] { data.getStructLong(ArrowIPC.BATCH_BUFFERS, i, 16, 0),
+                                              data.getStructLong(ArrowIPC.BATCH_BUFFERS, i, 16, 8) };
+                }
+                IntArrayList translation = translations[column];
+                if (!delta) {
+                    translation.clear();
+                }
+                for (int entry = 0; entry < length; entry++) {
+                    translation.add(readValue(body, buffers, nullCount, types[column], column, entry));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads an integer
+     * @param body
+     * @param values Offset and length of the buffer
+     * @param type
+     * @param element
+     * @return
+     */
+    private long readInteger(ByteBuffer body, long[] values, Type type, int element) {
+        int offset = (int) values[0];
+        switch (type.bitWidth) {
+        case 8:
+            byte b = body.get(offset + element);
+            return type.signed ? b : b & 0xffL;
+        case 16:
+            short s = body.getShort(offset + element * 2);
+            return type.signed ? s : s & 0xffffL;
+        case 32:
+            int i = body.getInt(offset + element * 4);
+            return type.signed ? i : i & 0xffffffffL;
+        default:
+            return body.getLong(offset + element * 8);
+        }
+    }
+
+    /**
+     * Reads the schema
+     * @param schema
+     * @throws IOException
+     */
+    private void readSchema(ArrowIPC.Table schema) throws IOException {
+
+        // Check
+        if (header != null) {
+            throw new IOException("Duplicate schema");
+        }
+        if (schema.getShort(ArrowIPC.SCHEMA_ENDIANNESS, (short) 0) != 0) {
+            throw new IOException("Only little-endian data is supported");
+        }
+
+        // Prepare
+        int columns = schema.getVectorLength(ArrowIPC.SCHEMA_FIELDS);
+        header = new String[columns];
+        types = new Type[columns];
+        indexTypes = new Type[columns];
+        ids = new long[columns];
+        translations = new IntArrayList[columns];
+        nulls = new int[columns];
+        Arrays.fill(nulls, -1);
+        dictionary = new Dictionary(columns, compact);
+        if (!compact) {
+            index = new StringArena[columns];
+            indexTranslations = new IntArrayList[columns];
+        }
+
+        // For each field
+        for (int column = 0; column < columns; column++) {
+            ArrowIPC.Table field = schema.getTable(ArrowIPC.SCHEMA_FIELDS, column);
+            byte[] name = field.getString(ArrowIPC.FIELD_NAME);
+            header[column] = name == null ? "" : new String(name, StringArena.UTF8);
+            if (field.getVectorLength(ArrowIPC.FIELD_CHILDREN) != 0) {
+                throw new IOException("Nested type of column '" + header[column] + "' is not supported");
+            }
+            types[column] = readType(field.getByte(ArrowIPC.FIELD_TYPE_TYPE, (byte) 0), field.getTable(ArrowIPC.FIELD_TYPE), header[column]);
+            ArrowIPC.Table encoding = field.getTable(ArrowIPC.FIELD_DICTIONARY);
+            if (encoding != null) {
+                ids[column] = encoding.getLong(ArrowIPC.DICTIONARY_ID, 0);
+                indexTypes[column] = readType(ArrowIPC.TYPE_INT, encoding.getTable(ArrowIPC.DICTIONARY_INDEX_TYPE), header[column]);
+                translations[column] = new IntArrayList();
+            } else {
+                ids[column] = -1;
+            }
+            if (!compact) {
+                index[column] = new StringArena();
+                indexTranslations[column] = new IntArrayList();
+            }
+        }
+    }
+
+    /**
+     * Reads a type
+     * @param id
+     * @param table
+     * @param column
+     * @return
+     * @throws IOException
+     */
+    private Type readType(byte id, ArrowIPC.Table table, String column) throws IOException {
+        Type type = new Type();
+        type.type = id;
+        switch (id) {
+        case ArrowIPC.TYPE_INT:
+            type.bitWidth = table == null ? 32 : table.getInt(ArrowIPC.INT_BIT_WIDTH, 32);
+            type.signed = table == null ? true : table.getBoolean(ArrowIPC.INT_IS_SIGNED, false);
+            if (type.bitWidth != 8 && type.bitWidth != 16 && type.bitWidth != 32 && type.bitWidth != 64) {
+                throw new IOException("Unsupported bit width of column '" + column + "'");
+            }
+            return type;
+        case ArrowIPC.TYPE_FLOATING_POINT:
+            type.precision = table.getShort(ArrowIPC.FLOATING_POINT_PRECISION, (short) 0);
+            if (type.precision != 1 && type.precision != 2) {
+                throw new IOException("Unsupported precision of column '" + column + "'");
+            }
+            return type;
+        case ArrowIPC.TYPE_UTF8:
+        case ArrowIPC.TYPE_LARGE_UTF8:
+        case ArrowIPC.TYPE_BOOL:
+            return type;
+        default:
+            throw new IOException("Unsupported type of column '" + column + "'");
+        }
+    }
+
+    /**
+     * Reads a value and returns its code
+     * @param body
+     * @param buffers
+     * @param nullCount
+     * @param type
+     * @param column
+     * @param element
+     * @return
+     */
+    private int readValue(ByteBuffer body, long[][] buffers, long nullCount, Type type, int column, int element) {
+
+        // Null
+        if (!isValid(body, buffers[0], nullCount, element)) {
+            return lookupNull(column);
+        }
+
+        // Strings
+        String value;
+        switch (type.type) {
+        case ArrowIPC.TYPE_UTF8:
+        case ArrowIPC.TYPE_LARGE_UTF8:
+            int offsets = (int) buffers[1][0];
+            long start, end;
+            if (type.type == ArrowIPC.TYPE_UTF8) {
+                start = body.getInt(offsets + element * 4);
+                end = body.getInt(offsets + element * 4 + 4);
+            } else {
+                start = body.getLong(offsets + element * 8);
+                end = body.getLong(offsets + element * 8 + 8);
+            }
+            int length = (int) (end - start);
+            if (length > bytes.length) {
+                bytes = new byte[Math.max(length, bytes.length << 1)];
+            }
+            int position = (int) (buffers[2][0] + start);
+            for (int i = 0; i < length; i++) {
+                bytes[i] = body.get(position + i);
+            }
+            return lookup(column, length);
+
+        // Other types
+        case ArrowIPC.TYPE_INT:
+            long integer = readInteger(body, buffers[1], type, element);
+            value = (!type.signed && type.bitWidth == 64 && integer < 0) ? BigInteger.valueOf(integer).add(BigInteger.ONE.shiftLeft(64)).toString()
+                                                                          : String.valueOf(integer);
+            break;
+        case ArrowIPC.TYPE_FLOATING_POINT:
+            value = type.precision == 1 ? String.valueOf(body.getFloat((int) buffers[1][0] + element * 4))
+                                        : String.valueOf(body.getDouble((int) buffers[1][0] + element * 8));
+            break;
+        default:
+            value = String.valueOf((body.get((int) buffers[1][0] + (element >>> 3)) & (1 << (element & 7))) != 0);
+            break;
+        }
+        return dictionary.register(column, value);
+    }
+}
@@ -0,0 +1,426 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.io;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.deidentifier.arx.framework.data.StringArena;
+
+import com.carrotsearch.hppc.LongArrayList;
+
+/**
+ * Writes dictionary-encoded data in the Apache Arrow IPC format. Each column is written as a
+ * dictionary-encoded vector of UTF-8 strings with 32-bit indices. The dictionary of a column is
+ * its table of values, which is written once, and the indices are the codes of the encoded data,
+ * which means that values are never rendered per cell. Both the file and the streaming format
+ * are supported.
+ *
+ * @author Fabian Prasser
+ * @see <a href="https://arrow.apache.org/docs/format/Columnar.html">Arrow Columnar Format</a>
+ */
+public class ArrowDataOutput {
+
+    /**
+     * Variants of the format
+     *
+     * @author Fabian Prasser
+     */
+    public static enum Format {
+
+        /** Random-access file format */
+        FILE,
+
+        /** Streaming format */
+        STREAM
+    }
+
+    /** Default number of rows per record batch */
+    public static final int    DEFAULT_BATCH_SIZE = 65536;
+
+    /** The file, if any */
+    private final File         file;
+
+    /** The stream, if any */
+    private final OutputStream stream;
+
+    /** The variant of the format */
+    private final Format       format;
+
+    /** Number of rows per record batch */
+    private int                batchSize          = DEFAULT_BATCH_SIZE;
+
+    /** The output, while writing */
+    private OutputStream       out;
+
+    /** Number of bytes written */
+    private long               position;
+
+    /**
+     * Creates a new instance, which writes the file format
+     *
+     * @param file
+     */
+    public ArrowDataOutput(final File file) {
+        this(file, Format.FILE);
+    }
+
+    /**
+     * Creates a new instance
+     *
+     * @param file
+     * @param format
+     */
+    public ArrowDataOutput(final File file, final Format format) {
+        this.file = file;
+        this.stream = null;
+        this.format = format;
+    }
+
+    /**
+     * Creates a new instance, which writes the streaming format. The stream will not be closed.
+     *
+     * @param stream
+     */
+    public ArrowDataOutput(final OutputStream stream) {
+        this(stream, Format.STREAM);
+    }
+
+    /**
+     * Creates a new instance. The stream will not be closed.
+     *
+     * @param stream
+     * @param format
+     */
+    public ArrowDataOutput(final OutputStream stream, final Format format) {
+        this.file = null;
+        this.stream = stream;
+        this.format = format;
+    }
+
+    /**
+     * Returns the number of rows per record batch
+     * @return
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Returns the variant of the format
+     * @return
+     */
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * Sets the number of rows per record batch
+     * @param batchSize
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Writes the given data
+     *
+     * @param data
+     * @throws IOException
+     */
+    public void write(final IExportEncoded data) throws IOException {
+
+        this.out = new BufferedOutputStream(file != null ? new FileOutputStream(file) : stream);
+        this.position = 0;
+        try {
+
+            // Prepare
+            String[] header = data.getHeader();
+            LongArrayList dictionaries = new LongArrayList();
+            LongArrayList batches = new LongArrayList();
+            if (format == Format.FILE) {
+                write(ArrowIPC.MAGIC, ArrowIPC.MAGIC.length);
+                write(new byte[ArrowIPC.ALIGNMENT - ArrowIPC.MAGIC.length], ArrowIPC.ALIGNMENT - ArrowIPC.MAGIC.length);
+            }
+
+            // Schema
+            ArrowIPC.Builder builder = new ArrowIPC.Builder();
+            writeMessage(builder, ArrowIPC.HEADER_SCHEMA, createSchema(builder, header), null);
+
+            // Dictionaries
+            for (int column = 0; column < header.length; column++) {
+                dictionaries.add(writeDictionary(column, data.getValues(column)));
+            }
+
+            // Record batches
+            int rows = data.getNumRows();
+            for (int offset = 0; offset < rows; offset += batchSize) {
+                batches.add(writeBatch(data, offset, Math.min(rows, offset + batchSize)));
+            }
+
+            // End of stream
+            writeInt(ArrowIPC.CONTINUATION);
+            writeInt(0);
+
+            // Footer
+            if (format == Format.FILE) {
+                builder = new ArrowIPC.Builder();
+                int schema = createSchema(builder, header);
+                int dictionaryBlocks = builder.addBlocks(dictionaries.toArray());
+                int batchBlocks = builder.addBlocks(batches.toArray());
+                builder.startTable(4);
+                builder.putField(ArrowIPC.FOOTER_VERSION, ArrowIPC.VERSION);
+                builder.putOffsetField(ArrowIPC.FOOTER_SCHEMA, schema);
+                builder.putOffsetField(ArrowIPC.FOOTER_DICTIONARIES, dictionaryBlocks);
+                builder.putOffsetField(ArrowIPC.FOOTER_RECORD_BATCHES, batchBlocks);
+                byte[] footer = builder.finish(builder.endTable());
+                write(footer, footer.length);
+                writeInt(footer.length);
+                write(ArrowIPC.MAGIC, ArrowIPC.MAGIC.length);
+            }
+
+        } finally {
+            if (file != null) {
+                out.close();
+            } else {
+                out.flush();
+            }
+            out = null;
+        }
+    }
+
+    /**
+     * Creates a record batch
+     * @param builder
+     * @param length
+     * @param nodes
+     * @param buffers
+     * @return
+     */
+    private int createBatch(ArrowIPC.Builder builder, long length, long[] nodes, long[] buffers) {
+        int nodeVector = builder.addStructs(nodes);
+        int bufferVector = builder.addStructs(buffers);
+        builder.startTable(3);
+        builder.putField(ArrowIPC.BATCH_LENGTH, length);
+        builder.putOffsetField(ArrowIPC.BATCH_NODES, nodeVector);
+        builder.putOffsetField(ArrowIPC.BATCH_BUFFERS, bufferVector);
+        return builder.endTable();
+    }
+
+    /**
+     * Creates the schema
+     * @param builder
+     * @param header
+     * @return
+     */
+    private int createSchema(ArrowIPC.Builder builder, String[] header) {
+
+        // Fields
+        int[] fields = new int[header.length];
+        for (int column = 0; column < header.length; column++) {
+
+            // Type of values
+            int name = builder.addString(header[column].getBytes(StringArena.UTF8));
+            builder.startTable(0);
+            int type = builder.endTable();
+
+            // Type of indices
+            builder.startTable(2);
+            builder.putField(ArrowIPC.INT_BIT_WIDTH, 32);
+            builder.putField(ArrowIPC.INT_IS_SIGNED, true);
+            int indexType = builder.endTable();
+
+            // Dictionary
+            builder.startTable(2);
+            builder.putField(ArrowIPC.DICTIONARY_ID, (long) column);
+            builder.putOffsetField(ArrowIPC.DICTIONARY_INDEX_TYPE, indexType);
+            int dictionary = builder.endTable();
+
+            // Field
+            int children = builder.addTables(new int[0]);
+            builder.startTable(6);
+            builder.putOffsetField(ArrowIPC.FIELD_NAME, name);
+            builder.putField(ArrowIPC.FIELD_NULLABLE, false);
+            builder.putField(ArrowIPC.FIELD_TYPE_TYPE, ArrowIPC.TYPE_UTF8);
+            builder.putOffsetField(ArrowIPC.FIELD_TYPE, type);
+            builder.putOffsetField(ArrowIPC.FIELD_DICTIONARY, dictionary);
+            builder.putOffsetField(ArrowIPC.FIELD_CHILDREN, children);
+            fields[column] = builder.endTable();
+        }
+
+        // Schema
+        int vector = builder.addTables(fields);
+        builder.startTable(2);
+        builder.putField(ArrowIPC.SCHEMA_ENDIANNESS, (short) 0);
+        builder.putOffsetField(ArrowIPC.SCHEMA_FIELDS, vector);
+        return builder.endTable();
+    }
+
+    /**
+     * Writes bytes
+     * @param bytes
+     * @param length
+     * @throws IOException
+     */
+    private void write(byte[] bytes, int length) throws IOException {
+        out.write(bytes, 0, length);
+        position += length;
+    }
+
+    /**
+     * Writes a record batch with the given range of rows
+     * @param data
+     * @param from
+     * @param to
+     * @return the block
+     * @throws IOException
+     */
+    private long[] writeBatch(IExportEncoded data, int from, int to) throws IOException {
+
+        // Layout
+        int columns = data.getHeader().length;
+        int length = to - from;
+        long size = ArrowIPC.align((long) length * 4L);
+        long[] nodes = new long[columns * 2];
+        long[] buffers = new long[columns * 4];
+        for (int column = 0; column < columns; column++) {
+            nodes[column * 2] = length;
+            buffers[column * 4] = column * size;
+            buffers[column * 4 + 2] = column * size;
+            buffers[column * 4 + 3] = (long) length * 4L;
+        }
+        if (size * columns > Integer.MAX_VALUE) {
+            throw new IOException("Record batch is too large");
+        }
+
+        // Body
+        ByteBuffer body = ByteBuffer.allocate((int) (size * columns)).order(ByteOrder.LITTLE_ENDIAN);
+        for (int column = 0; column < columns; column++) {
+            body.position((int) (column * size));
+            for (int row = from; row < to; row++) {
+                body.putInt(data.getCode(row, column));
+            }
+        }
+
+        // Write
+        ArrowIPC.Builder builder = new ArrowIPC.Builder();
+        int batch = createBatch(builder, length, nodes, buffers);
+        return writeMessage(builder, ArrowIPC.HEADER_RECORD_BATCH, batch, body);
+    }
+
+    /**
+     * Writes a dictionary batch
+     * @param column
+     * @param values
+     * @return the block
+     * @throws IOException
+     */
+    private long[] writeDictionary(int column, String[] values) throws IOException {
+
+        // Encode
+        byte[][] bytes = new byte[values.length][];
+        long length = 0;
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = values[i].getBytes(StringArena.UTF8);
+            length += bytes[i].length;
+        }
+        long offsetsSize = (values.length + 1) * 4L;
+        long dataOffset = ArrowIPC.align(offsetsSize);
+        long size = ArrowIPC.align(dataOffset + length);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Dictionary is too large");
+        }
+
+        // Body
+        ByteBuffer body = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        int offset = 0;
+        body.putInt(offset);
+        for (byte[] value : bytes) {
+            offset += value.length;
+            body.putInt(offset);
+        }
+        body.position((int) dataOffset);
+        for (byte[] value : bytes) {
+            body.put(value);
+        }
+
+        // Write
+        ArrowIPC.Builder builder = new ArrowIPC.Builder();
+        int batch = createBatch(builder, values.length, new long[] { values.length, 0 },
+                                new long[] { 0, 0, 0, offsetsSize, dataOffset, length });
+        builder.startTable(3);
+        builder.putField(ArrowIPC.DICTIONARY_BATCH_ID, (long) column);
+        builder.putOffsetField(ArrowIPC.DICTIONARY_BATCH_DATA, batch);
+        builder.putField(ArrowIPC.DICTIONARY_BATCH_DELTA, false);
+        return writeMessage(builder, ArrowIPC.HEADER_DICTIONARY_BATCH, builder.endTable(), body);
+    }
+
+    /**
+     * Writes an int in little-endian byte order
+     * @param value
+     * @throws IOException
+     */
+    private void writeInt(int value) throws IOException {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+        position += 4;
+    }
+
+    /**
+     * Writes an encapsulated message
+     * @param builder
+     * @param type
+     * @param header
+     * @param body
+     * @return the block, consisting of the offset, the length of the metadata and the length of the body
+     * @throws IOException
+     */
+    private long[] writeMessage(ArrowIPC.Builder builder, byte type, int header, ByteBuffer body) throws IOException {
+
+        // Metadata
+        long bodyLength = body == null ? 0 : body.capacity();
+        builder.startTable(4);
+        builder.putField(ArrowIPC.MESSAGE_VERSION, ArrowIPC.VERSION);
+        builder.putField(ArrowIPC.MESSAGE_HEADER_TYPE, type);
+        builder.putOffsetField(ArrowIPC.MESSAGE_HEADER, header);
+        builder.putField(ArrowIPC.MESSAGE_BODY_LENGTH, bodyLength);
+        byte[] metadata = builder.finish(builder.endTable());
+        int padded = (int) ArrowIPC.align(8 + metadata.length) - 8;
+
+        // Write
+        long offset = position;
+        writeInt(ArrowIPC.CONTINUATION);
+        writeInt(padded);
+        write(metadata, metadata.length);
+        write(new byte[padded - metadata.length], padded - metadata.length);
+        if (body != null) {
+            write(body.array(), body.capacity());
+        }
+        return new long[] { offset, 8 + padded, bodyLength };
+    }
+}
@@ -0,0 +1,626 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Constants and low-level encoding of the Apache Arrow IPC format. Messages are described with
+ * FlatBuffers, for which this class provides a minimal builder and reader, covering the subset of
+ * the Arrow schema that is needed for exchanging flat tables.
+ *
+ * @author Fabian Prasser
+ * @see <a href="https://arrow.apache.org/docs/format/Columnar.html">Arrow Columnar Format</a>
+ */
+final class ArrowIPC {
+
+    /**
+     * Builds FlatBuffers from back to front, as specified by the format. Objects referenced by a
+     * table must be created before the table is started.
+     *
+     * @author Fabian Prasser
+     */
+    static class Builder {
+
+        /** Buffer, used from back to front */
+        private byte[] buffer   = new byte[1024];
+
+        /** Index of the first byte that is used */
+        private int    space    = buffer.length;
+
+        /** Largest alignment used */
+        private int    minalign = 1;
+
+        /** Offsets of the fields of the current table */
+        private int[]  vtable;
+
+        /** Offset at which the current table starts */
+        private int    start;
+
+        /**
+         * Creates a vector of blocks, i.e. structs consisting of a long, an int and a long
+         * @param blocks Triples of values
+         * @return offset
+         */
+        int addBlocks(long[] blocks) {
+            int count = blocks.length / 3;
+            prep(4, count * 24);
+            prep(8, count * 24);
+            for (int i = count - 1; i >= 0; i--) {
+                putLong(blocks[i * 3 + 2]);
+                putInt(0);
+                putInt((int) blocks[i * 3 + 1]);
+                putLong(blocks[i * 3]);
+            }
+            putInt(count);
+            return offset();
+        }
+
+        /**
+         * Creates a string
+         * @param value
+         * @return offset
+         */
+        int addString(byte[] value) {
+            prep(4, value.length + 1);
+            buffer[--space] = 0;
+            space -= value.length;
+            System.arraycopy(value, 0, buffer, space, value.length);
+            putInt(value.length);
+            return offset();
+        }
+
+        /**
+         * Creates a vector of structs, consisting of pairs of longs
+         * @param values Pairs of values
+         * @return offset
+         */
+        int addStructs(long[] values) {
+            int count = values.length / 2;
+            prep(4, count * 16);
+            prep(8, count * 16);
+            for (int i = values.length - 1; i >= 0; i--) {
+                putLong(values[i]);
+            }
+            putInt(count);
+            return offset();
+        }
+
+        /**
+         * Creates a vector of tables
+         * @param offsets
+         * @return offset
+         */
+        int addTables(int[] offsets) {
+            prep(4, offsets.length * 4);
+            for (int i = offsets.length - 1; i >= 0; i--) {
+                addOffset(offsets[i]);
+            }
+            putInt(offsets.length);
+            return offset();
+        }
+
+        /**
+         * Ends the current table
+         * @return offset
+         */
+        int endTable() {
+            prep(4, 0);
+            putInt(0);
+            int location = offset();
+            int size = vtable.length;
+            while (size > 0 && vtable[size - 1] == 0) {
+                size--;
+            }
+            for (int i = size - 1; i >= 0; i--) {
+                putShort(vtable[i] != 0 ? location - vtable[i] : 0);
+            }
+            putShort(location - start);
+            putShort((size + 2) * 2);
+            int position = buffer.length - location;
+            int value = offset() - location;
+            buffer[position] = (byte) value;
+            buffer[position + 1] = (byte) (value >>> 8);
+            buffer[position + 2] = (byte) (value >>> 16);
+            buffer[position + 3] = (byte) (value >>> 24);
+            vtable = null;
+            return location;
+        }
+
+        /**
+         * Finishes the buffer with the given root table
+         * @param root
+         * @return the buffer
+         */
+        byte[] finish(int root) {
+            prep(minalign, 4);
+            addOffset(root);
+            return Arrays.copyOfRange(buffer, space, buffer.length);
+        }
+
+        /**
+         * Adds a field
+         * @param field
+         * @param value
+         */
+        void putField(int field, boolean value) {
+            putField(field, (byte) (value ? 1 : 0));
+        }
+
+        /**
+         * Adds a field
+         * @param field
+         * @param value
+         */
+        void putField(int field, byte value) {
+            prep(1, 0);
+            ensure(1);
+            buffer[--space] = value;
+            vtable[field] = offset();
+        }
+
+        /**
+         * Adds a field
+         * @param field
+         * @param value
+         */
+        void putField(int field, int value) {
+            prep(4, 0);
+            putInt(value);
+            vtable[field] = offset();
+        }
+
+        /**
+         * Adds a field
+         * @param field
+         * @param value
+         */
+        void putField(int field, long value) {
+            prep(8, 0);
+            putLong(value);
+            vtable[field] = offset();
+        }
+
+        /**
+         * Adds a field
+         * @param field
+         * @param value
+         */
+        void putField(int field, short value) {
+            prep(2, 0);
+            putShort(value);
+            vtable[field] = offset();
+        }
+
+        /**
+         * Adds a field referencing another object
+         * @param field
+         * @param offset
+         */
+        void putOffsetField(int field, int offset) {
+            addOffset(offset);
+            vtable[field] = offset();
+        }
+
+        /**
+         * Starts a table
+         * @param fields
+         */
+        void startTable(int fields) {
+            vtable = new int[fields];
+            start = offset();
+        }
+
+        /**
+         * Adds a reference
+         * @param offset
+         */
+        private void addOffset(int offset) {
+            prep(4, 0);
+            putInt(offset() - offset + 4);
+        }
+
+        /**
+         * Makes sure that the given number of bytes can be written
+         * @param size
+         */
+        private void ensure(int size) {
+            while (space < size) {
+                int length = buffer.length;
+                byte[] grown = new byte[length << 1];
+                System.arraycopy(buffer, 0, grown, length, length);
+                space += length;
+                buffer = grown;
+            }
+        }
+
+        /**
+         * Returns the current offset from the end of the buffer
+         * @return
+         */
+        private int offset() {
+            return buffer.length - space;
+        }
+
+        /**
+         * Pads the buffer, such that a value of the given size will be aligned after writing the given number of bytes
+         * @param size
+         * @param additional
+         */
+        private void prep(int size, int additional) {
+            minalign = Math.max(minalign, size);
+            int padding = (~(offset() + additional) + 1) & (size - 1);
+            ensure(padding + size + additional);
+            for (int i = 0; i < padding; i++) {
+                buffer[--space] = 0;
+            }
+        }
+
+        /**
+         * Writes a value
+         * @param value
+         */
+        private void putInt(int value) {
+            ensure(4);
+            space -= 4;
+            buffer[space] = (byte) value;
+            buffer[space + 1] = (byte) (value >>> 8);
+            buffer[space + 2] = (byte) (value >>> 16);
+            buffer[space + 3] = (byte) (value >>> 24);
+        }
+
+        /**
+         * Writes a value
+         * @param value
+         */
+        private void putLong(long value) {
+            putInt((int) (value >>> 32));
+            putInt((int) value);
+        }
+
+        /**
+         * Writes a value
+         * @param value
+         */
+        private void putShort(int value) {
+            ensure(2);
+            space -= 2;
+            buffer[space] = (byte) value;
+            buffer[space + 1] = (byte) (value >>> 8);
+        }
+    }
+
+    /**
+     * Provides access to a table in a FlatBuffer
+     *
+     * @author Fabian Prasser
+     */
+    static class Table {
+
+        /**
+         * Returns the root table of the given buffer
+         * @param buffer
+         * @return
+         */
+        static Table getRoot(ByteBuffer buffer) {
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return new Table(buffer, buffer.getInt(0));
+        }
+
+        /** Buffer */
+        private final ByteBuffer buffer;
+
+        /** Position of the table */
+        private final int        position;
+
+        /**
+         * Creates a new instance
+         * @param buffer
+         * @param position
+         */
+        private Table(ByteBuffer buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        /**
+         * Returns a field
+         * @param field
+         * @param defaultValue
+         * @return
+         */
+        boolean getBoolean(int field, boolean defaultValue) {
+            int offset = getOffset(field);
+            return offset == 0 ? defaultValue : buffer.get(position + offset) != 0;
+        }
+
+        /**
+         * Returns a field
+         * @param field
+         * @param defaultValue
+         * @return
+         */
+        byte getByte(int field, byte defaultValue) {
+            int offset = getOffset(field);
+            return offset == 0 ? defaultValue : buffer.get(position + offset);
+        }
+
+        /**
+         * Returns a field
+         * @param field
+         * @param defaultValue
+         * @return
+         */
+        int getInt(int field, int defaultValue) {
+            int offset = getOffset(field);
+            return offset == 0 ? defaultValue : buffer.getInt(position + offset);
+        }
+
+        /**
+         * Returns a field
+         * @param field
+         * @param defaultValue
+         * @return
+         */
+        long getLong(int field, long defaultValue) {
+            int offset = getOffset(field);
+            return offset == 0 ? defaultValue : buffer.getLong(position + offset);
+        }
+
+        /**
+         * Returns a field
+         * @param field
+         * @param defaultValue
+         * @return
+         */
+        short getShort(int field, short defaultValue) {
+            int offset = getOffset(field);
+            return offset == 0 ? defaultValue : buffer.getShort(position + offset);
+        }
+
+        /**
+         * Returns a string field
+         * @param field
+         * @return
+         */
+        byte[] getString(int field) {
+            int offset = getOffset(field);
+            if (offset == 0) {
+                return null;
+            }
+            int location = position + offset;
+            location += buffer.getInt(location);
+            byte[] result = new byte[buffer.getInt(location)];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = buffer.get(location + 4 + i);
+            }
+            return result;
+        }
+
+        /**
+         * Returns the long at the given index of a vector of structs
+         * @param field
+         * @param index
+         * @param size Size of a struct in bytes
+         * @param offset Offset of the member in bytes
+         * @return
+         */
+        long getStructLong(int field, int index, int size, int offset) {
+            return buffer.getLong(getVectorStart(field) + index * size + offset);
+        }
+
+        /**
+         * Returns a table field
+         * @param field
+         * @return
+         */
+        Table getTable(int field) {
+            int offset = getOffset(field);
+            if (offset == 0) {
+                return null;
+            }
+            int location = position + offset;
+            return new Table(buffer, location + buffer.getInt(location));
+        }
+
+        /**
+         * Returns the table at the given index of a vector of tables
+         * @param field
+         * @param index
+         * @return
+         */
+        Table getTable(int field, int index) {
+            int location = getVectorStart(field) + index * 4;
+            return new Table(buffer, location + buffer.getInt(location));
+        }
+
+        /**
+         * Returns the length of a vector field
+         * @param field
+         * @return
+         */
+        int getVectorLength(int field) {
+            int offset = getOffset(field);
+            if (offset == 0) {
+                return 0;
+            }
+            int location = position + offset;
+            return buffer.getInt(location + buffer.getInt(location));
+        }
+
+        /**
+         * Returns the offset of the given field within the table, 0 if it is not present
+         * @param field
+         * @return
+         */
+        private int getOffset(int field) {
+            int vtable = position - buffer.getInt(position);
+            int size = buffer.getShort(vtable) & 0xffff;
+            int entry = 4 + field * 2;
+            return entry < size ? buffer.getShort(vtable + entry) & 0xffff : 0;
+        }
+
+        /**
+         * Returns the position of the first element of a vector field
+         * @param field
+         * @return
+         */
+        private int getVectorStart(int field) {
+            int location = position + getOffset(field);
+            return location + buffer.getInt(location) + 4;
+        }
+    }
+
+    /** Magic bytes of the file format */
+    static final byte[] MAGIC                    = new byte[] { 'A', 'R', 'R', 'O', 'W', '1' };
+
+    /** Marks the beginning of a message */
+    static final int    CONTINUATION             = 0xFFFFFFFF;
+
+    /** Version of the metadata (V5) */
+    static final short  VERSION                  = 4;
+
+    /** Alignment of messages and buffers */
+    static final int    ALIGNMENT                = 8;
+
+    /** Message type */
+    static final byte   HEADER_SCHEMA            = 1;
+
+    /** Message type */
+    static final byte   HEADER_DICTIONARY_BATCH  = 2;
+
+    /** Message type */
+    static final byte   HEADER_RECORD_BATCH      = 3;
+
+    /** Data type */
+    static final byte   TYPE_INT                 = 2;
+
+    /** Data type */
+    static final byte   TYPE_FLOATING_POINT      = 3;
+
+    /** Data type */
+    static final byte   TYPE_UTF8                = 5;
+
+    /** Data type */
+    static final byte   TYPE_BOOL                = 6;
+
+    /** Data type */
+    static final byte   TYPE_LARGE_UTF8          = 20;
+
+    /** Field of table Message */
+    static final int    MESSAGE_VERSION          = 0;
+
+    /** Field of table Message */
+    static final int    MESSAGE_HEADER_TYPE      = 1;
+
+    /** Field of table Message */
+    static final int    MESSAGE_HEADER           = 2;
+
+    /** Field of table Message */
+    static final int    MESSAGE_BODY_LENGTH      = 3;
+
+    /** Field of table Schema */
+    static final int    SCHEMA_ENDIANNESS        = 0;
+
+    /** Field of table Schema */
+    static final int    SCHEMA_FIELDS            = 1;
+
+    /** Field of table Field */
+    static final int    FIELD_NAME               = 0;
+
+    /** Field of table Field */
+    static final int    FIELD_NULLABLE           = 1;
+
+    /** Field of table Field */
+    static final int    FIELD_TYPE_TYPE          = 2;
+
+    /** Field of table Field */
+    static final int    FIELD_TYPE               = 3;
+
+    /** Field of table Field */
+    static final int    FIELD_DICTIONARY         = 4;
+
+    /** Field of table Field */
+    static final int    FIELD_CHILDREN           = 5;
+
+    /** Field of table Int */
+    static final int    INT_BIT_WIDTH            = 0;
+
+    /** Field of table Int */
+    static final int    INT_IS_SIGNED            = 1;
+
+    /** Field of table FloatingPoint */
+    static final int    FLOATING_POINT_PRECISION = 0;
+
+    /** Field of table DictionaryEncoding */
+    static final int    DICTIONARY_ID            = 0;
+
+    /** Field of table DictionaryEncoding */
+    static final int    DICTIONARY_INDEX_TYPE    = 1;
+
+    /** Field of table RecordBatch */
+    static final int    BATCH_LENGTH             = 0;
+
+    /** Field of table RecordBatch */
+    static final int    BATCH_NODES              = 1;
+
+    /** Field of table RecordBatch */
+    static final int    BATCH_BUFFERS            = 2;
+
+    /** Field of table RecordBatch */
+    static final int    BATCH_COMPRESSION        = 3;
+
+    /** Field of table DictionaryBatch */
+    static final int    DICTIONARY_BATCH_ID      = 0;
+
+    /** Field of table DictionaryBatch */
+    static final int    DICTIONARY_BATCH_DATA    = 1;
+
+    /** Field of table DictionaryBatch */
+    static final int    DICTIONARY_BATCH_DELTA   = 2;
+
+    /** Field of table Footer */
+    static final int    FOOTER_VERSION           = 0;
+
+    /** Field of table Footer */
+    static final int    FOOTER_SCHEMA            = 1;
+
+    /** Field of table Footer */
+    static final int    FOOTER_DICTIONARIES      = 2;
+
+    /** Field of table Footer */
+    static final int    FOOTER_RECORD_BATCHES    = 3;
+
+    /**
+     * Aligns the given size
+     * @param size
+     * @return
+     */
+    static long align(long size) {
+        return (size + ALIGNMENT - 1) & ~(ALIGNMENT - 1);
+    }
+
+    /**
+     * No instantiation
+     */
+    private ArrowIPC() {
+        // Empty by design
+    }
+}
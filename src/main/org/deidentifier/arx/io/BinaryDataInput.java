@@ -0,0 +1,321 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.io;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import org.deidentifier.arx.AttributeType;
+import org.deidentifier.arx.AttributeType.Hierarchy;
+import org.deidentifier.arx.AttributeType.MicroAggregationFunction;
+import org.deidentifier.arx.DataDefinition;
+import org.deidentifier.arx.DataType;
+import org.deidentifier.arx.aggregates.HierarchyBuilder;
+import org.deidentifier.arx.framework.data.DataMatrix;
+import org.deidentifier.arx.framework.data.Dictionary;
+import org.deidentifier.arx.framework.data.StringArena;
+
+/**
+ * Loads data that has been written with {@link BinaryDataOutput}. The columns are
+ * memory-mapped and copied into the data matrix as a whole, the dictionary is
+ * restored without parsing any values.
+ *
+ * @author Fabian Prasser
+ */
+public class BinaryDataInput implements IImportEncoded {
+
+    /** The file */
+    private final File     file;
+
+    /** Whether a compact dictionary should be used */
+    private boolean        compact = false;
+
+    /** Result */
+    private String[]       header;
+
+    /** Result */
+    private DataMatrix     data;
+
+    /** Result */
+    private Dictionary     dictionary;
+
+    /** Result */
+    private DataDefinition definition;
+
+    /** Buffer for reading values */
+    private byte[]         buffer  = new byte[1024];
+
+    /**
+     * Creates a new instance
+     *
+     * @param file
+     */
+    public BinaryDataInput(final File file) {
+        this.file = file;
+    }
+
+    /**
+     * Creates a new instance
+     *
+     * @param path
+     */
+    public BinaryDataInput(final String path) {
+        this(new File(path));
+    }
+
+    @Override
+    public DataMatrix getData() {
+        return data;
+    }
+
+    /**
+     * Returns the data definition. Only available after loading.
+     *
+     * @return
+     */
+    public DataDefinition getDefinition() {
+        return definition;
+    }
+
+    @Override
+    public Dictionary getDictionary() {
+        return dictionary;
+    }
+
+    @Override
+    public String[] getHeader() {
+        return header;
+    }
+
+    /**
+     * Returns whether a compact dictionary will be used
+     * @return
+     */
+    public boolean isCompactDictionary() {
+        return compact;
+    }
+
+    @Override
+    public void load() throws IOException {
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        FileChannel channel = raf.getChannel();
+        try {
+
+            // Header
+            ByteBuffer fixed = ByteBuffer.allocate(BinaryDataOutput.HEADER_SIZE);
+            while (fixed.hasRemaining()) {
+                if (channel.read(fixed) < 0) {
+                    throw new IOException("Invalid file format");
+                }
+            }
+            fixed.flip();
+            if (fixed.getInt() != BinaryDataOutput.MAGIC) {
+                throw new IOException("Invalid file format");
+            }
+            if (fixed.getInt() != BinaryDataOutput.VERSION) {
+                throw new IOException("Unsupported version of file format");
+            }
+            int rows = fixed.getInt();
+            int columns = fixed.getInt();
+
+            // Columns
+            this.data = new DataMatrix(rows, columns);
+            int[] values = new int[rows];
+            long position = BinaryDataOutput.HEADER_SIZE;
+            long size = (long) rows * 4L;
+            for (int column = 0; column < columns; column++) {
+                IntBuffer mapped = channel.map(MapMode.READ_ONLY, position, size).asIntBuffer();
+                mapped.get(values);
+                data.setColumn(column, values);
+                position += size;
+            }
+
+            // Metadata
+            channel.position(position);
+            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            this.header = new String[columns];
+            for (int column = 0; column < columns; column++) {
+                header[column] = in.readUTF();
+            }
+            int[][] codes = new int[columns][];
+            this.dictionary = readDictionary(in, columns, codes);
+
+            // Map codes of duplicate values
+            for (int column = 0; column < columns; column++) {
+                if (codes[column] != null) {
+                    int[] _codes = codes[column];
+                    for (int row = 0; row < rows; row++) {
+                        data.set(row, column, _codes[data.get(row, column)]);
+                    }
+                }
+            }
+            this.definition = new DataDefinition();
+            for (int column = 0; column < columns; column++) {
+                readDefinition(in, header[column]);
+            }
+
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        } finally {
+            channel.close();
+            raf.close();
+            buffer = null;
+        }
+    }
+
+    /**
+     * Sets whether a compact dictionary should be used
+     * @param compact
+     */
+    public void setCompactDictionary(boolean compact) {
+        this.compact = compact;
+    }
+
+    /**
+     * Reads a length-prefixed value into the buffer
+     * @param in
+     * @return the length
+     * @throws IOException
+     */
+    private int read(ObjectInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length > buffer.length) {
+            buffer = new byte[Math.max(length, buffer.length << 1)];
+        }
+        in.readFully(buffer, 0, length);
+        return length;
+    }
+
+    /**
+     * Reads the definition of an attribute
+     * @param in
+     * @param attribute
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    private void readDefinition(ObjectInputStream in, String attribute) throws IOException, ClassNotFoundException {
+
+        // Attribute type
+        boolean typeIsHierarchy = in.readBoolean();
+        AttributeType type = (AttributeType) in.readObject();
+        if (type != null) {
+            definition.setAttributeType(attribute, type);
+        }
+
+        // Further properties
+        definition.setDataType(attribute, (DataType<?>) in.readObject());
+        MicroAggregationFunction function = (MicroAggregationFunction) in.readObject();
+        if (function != null) {
+            definition.setMicroAggregationFunction(attribute, function);
+        }
+        HierarchyBuilder<?> builder = (HierarchyBuilder<?>) in.readObject();
+        if (builder != null) {
+            definition.setHierarchy(attribute, builder);
+        }
+        if (in.readBoolean()) {
+            definition.setMinimumGeneralization(attribute, in.readInt());
+        }
+        if (in.readBoolean()) {
+            definition.setMaximumGeneralization(attribute, in.readInt());
+        }
+
+        // Hierarchy
+        if (in.readBoolean()) {
+            Hierarchy hierarchy = Hierarchy.create(readHierarchy(in));
+            if (typeIsHierarchy) {
+                definition.setAttributeType(attribute, hierarchy);
+            } else {
+                definition.setHierarchy(attribute, hierarchy);
+            }
+        }
+    }
+
+    /**
+     * Reads the dictionary. Codes are positional and values may occur more than once,
+     * if they have been replaced before saving. Each value is registered once with the
+     * code of its first occurrence. For columns containing duplicates, the mapping from
+     * positions to registered codes is stored in the given array, null otherwise.
+     * @param in
+     * @param columns
+     * @param codes
+     * @return
+     * @throws IOException
+     */
+    private Dictionary readDictionary(ObjectInputStream in, int columns, int[][] codes) throws IOException {
+        Dictionary dictionary = new Dictionary(columns, compact);
+        for (int column = 0; column < columns; column++) {
+            int size = in.readInt();
+            StringArena arena = compact ? dictionary.getArena(column) : null;
+            int[] _codes = null;
+            for (int code = 0; code < size; code++) {
+                int length = read(in);
+                int registered = arena != null ? arena.register(buffer, 0, length)
+                                               : dictionary.register(column, new String(buffer, 0, length, StringArena.UTF8));
+                
+                // Duplicate: keep the first code
+                if (registered != code && _codes == null) {
+                    _codes = new int[size];
+                    for (int i = 0; i < code; i++) {
+                        _codes[i] = i;
+                    }
+                }
+                if (_codes != null) {
+                    _codes[code] = registered;
+                }
+            }
+            codes[column] = _codes;
+        }
+        dictionary.finalizeAll();
+        return dictionary;
+    }
+
+    /**
+     * Reads an encoded hierarchy
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    private String[][] readHierarchy(ObjectInputStream in) throws IOException {
+
+        // Values
+        String[] values = new String[in.readInt()];
+        for (int code = 0; code < values.length; code++) {
+            int length = read(in);
+            values[code] = new String(buffer, 0, length, StringArena.UTF8);
+        }
+
+        // Codes
+        String[][] hierarchy = new String[in.readInt()][];
+        for (int row = 0; row < hierarchy.length; row++) {
+            hierarchy[row] = new String[in.readInt()];
+            for (int level = 0; level < hierarchy[row].length; level++) {
+                hierarchy[row][level] = values[in.readInt()];
+            }
+        }
+        return hierarchy;
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.io;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.deidentifier.arx.AttributeType;
+import org.deidentifier.arx.AttributeType.Hierarchy;
+import org.deidentifier.arx.DataDefinition;
+import org.deidentifier.arx.framework.data.DataMatrix;
+import org.deidentifier.arx.framework.data.Dictionary;
+import org.deidentifier.arx.framework.data.StringArena;
+
+/**
+ * Writes dictionary-encoded data and its definition in a binary, column-oriented format,
+ * which can be loaded with {@link BinaryDataInput} without parsing or re-encoding.<br>
+ * <br>
+ * The file starts with a fixed-size header, followed by the codes of each column as
+ * big-endian integers, one column after the other. The remainder of the file contains
+ * the attribute names, the dictionary and the data definition, in which hierarchies
+ * are stored as encoded arrays.
+ *
+ * @author Fabian Prasser
+ */
+public class BinaryDataOutput {
+
+    /** Magic number */
+    static final int         MAGIC       = 0x41525842;
+
+    /** Version of the format */
+    static final int         VERSION     = 1;
+
+    /** Size of the fixed header in bytes */
+    static final int         HEADER_SIZE = 16;
+
+    /** Size of the write buffer */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The file */
+    private final File       file;
+
+    /**
+     * Creates a new instance
+     *
+     * @param file
+     */
+    public BinaryDataOutput(final File file) {
+        this.file = file;
+    }
+
+    /**
+     * Creates a new instance
+     *
+     * @param path
+     */
+    public BinaryDataOutput(final String path) {
+        this(new File(path));
+    }
+
+    /**
+     * Writes the given data
+     *
+     * @param header
+     * @param data
+     * @param dictionary
+     * @param definition
+     * @throws IOException
+     */
+    public void write(final String[] header,
+                      final DataMatrix data,
+                      final Dictionary dictionary,
+                      final DataDefinition definition) throws IOException {
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        FileChannel channel = raf.getChannel();
+        try {
+
+            // Header
+            raf.setLength(0);
+            int rows = data.getNumRows();
+            int columns = data.getNumColumns();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(rows);
+            buffer.putInt(columns);
+
+            // Columns
+            for (int column = 0; column < columns; column++) {
+                for (int row = 0; row < rows; row++) {
+                    if (!buffer.hasRemaining()) {
+                        flush(channel, buffer);
+                    }
+                    buffer.putInt(data.get(row, column));
+                }
+            }
+            flush(channel, buffer);
+
+            // Metadata
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            for (int column = 0; column < columns; column++) {
+                out.writeUTF(header[column]);
+            }
+            writeDictionary(out, dictionary, columns);
+            for (int column = 0; column < columns; column++) {
+                writeDefinition(out, definition, header[column]);
+            }
+            out.flush();
+
+        } finally {
+            channel.close();
+            raf.close();
+        }
+    }
+
+    /**
+     * Writes the buffer to the channel
+     * @param channel
+     * @param buffer
+     * @throws IOException
+     */
+    private void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes a string as length-prefixed UTF-8 bytes
+     * @param out
+     * @param value
+     * @throws IOException
+     */
+    private void write(ObjectOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StringArena.UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Writes the definition of an attribute
+     * @param out
+     * @param definition
+     * @param attribute
+     * @throws IOException
+     */
+    private void writeDefinition(ObjectOutputStream out, DataDefinition definition, String attribute) throws IOException {
+
+        // Attribute type, which might be the hierarchy itself
+        AttributeType type = definition.getAttributeType(attribute);
+        out.writeBoolean(type instanceof Hierarchy);
+        out.writeObject(type instanceof Hierarchy ? null : type);
+
+        // Further properties
+        out.writeObject(definition.getDataType(attribute));
+        out.writeObject(definition.getMicroAggregationFunction(attribute));
+        out.writeObject(definition.getHierarchyBuilder(attribute));
+
+        // Generalization limits, only defined for quasi-identifiers
+        boolean qi = definition.getQuasiIdentifyingAttributes().contains(attribute);
+        boolean min = qi && definition.isMinimumGeneralizationAvailable(attribute);
+        boolean max = qi && definition.isMaximumGeneralizationAvailable(attribute);
+        out.writeBoolean(min);
+        if (min) {
+            out.writeInt(definition.getMinimumGeneralization(attribute));
+        }
+        out.writeBoolean(max);
+        if (max) {
+            out.writeInt(definition.getMaximumGeneralization(attribute));
+        }
+
+        // Hierarchy
+        String[][] hierarchy = definition.getHierarchy(attribute);
+        out.writeBoolean(hierarchy != null);
+        if (hierarchy != null) {
+            writeHierarchy(out, hierarchy);
+        }
+    }
+
+    /**
+     * Writes the dictionary
+     * @param out
+     * @param dictionary
+     * @param columns
+     * @throws IOException
+     */
+    private void writeDictionary(ObjectOutputStream out, Dictionary dictionary, int columns) throws IOException {
+        for (int column = 0; column < columns; column++) {
+            int size = dictionary.getNumValues(column);
+            out.writeInt(size);
+            for (int code = 0; code < size; code++) {
+                write(out, dictionary.getValue(column, code));
+            }
+        }
+    }
+
+    /**
+     * Writes a hierarchy as a table of distinct values and an array of codes
+     * @param out
+     * @param hierarchy
+     * @throws IOException
+     */
+    private void writeHierarchy(ObjectOutputStream out, String[][] hierarchy) throws IOException {
+
+        // Encode
+        Map<String, Integer> codes = new HashMap<String, Integer>();
+        String[] values = new String[16];
+        int[][] encoded = new int[hierarchy.length][];
+        for (int row = 0; row < hierarchy.length; row++) {
+            encoded[row] = new int[hierarchy[row].length];
+            for (int level = 0; level < hierarchy[row].length; level++) {
+                String value = hierarchy[row][level];
+                Integer code = codes.get(value);
+                if (code == null) {
+                    code = codes.size();
+                    codes.put(value, code);
+                    if (code == values.length) {
+                        values = Arrays.copyOf(values, values.length << 1);
+                    }
+                    values[code] = value;
+                }
+                encoded[row][level] = code;
+            }
+        }
+
+        // Write values
+        out.writeInt(codes.size());
+        for (int code = 0; code < codes.size(); code++) {
+            write(out, values[code]);
+        }
+
+        // Write codes
+        out.writeInt(encoded.length);
+        for (int[] row : encoded) {
+            out.writeInt(row.length);
+            for (int code : row) {
+                out.writeInt(code);
+            }
+        }
+    }
+}
@@ -450,7 +450,7 @@ public class CSVDataInput {
      * @param linebreak the linebreak
      * @return the csv parser settings
      */
-    private CsvParserSettings createSettings(final char delimiter, final char quote, final char escape, final char[] linebreak) {
+    static CsvParserSettings createSettings(final char delimiter, final char quote, final char escape, final char[] linebreak) {
         CsvFormat format = new CsvFormat();
         format.setDelimiter(delimiter);
         format.setQuote(quote);
@@ -0,0 +1,564 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.deidentifier.arx.ARXListener;
+import org.deidentifier.arx.DataType;
+import org.deidentifier.arx.framework.data.DataMatrix;
+import org.deidentifier.arx.framework.data.Dictionary;
+import org.deidentifier.arx.framework.data.StringArena;
+
+import com.carrotsearch.hppc.IntArrayList;
+
+/**
+ * This class implements a reader for UTF-8 or ASCII encoded CSV files, which maps the file into memory
+ * and tokenizes it directly on bytes. Fields are looked up in the dictionary as byte slices, which means
+ * that strings are only allocated for values that have not been seen before. With a compact dictionary,
+ * no strings are allocated at all. As with the default reader, leading and trailing whitespace
+ * of unquoted values is ignored and empty lines are skipped. The records are counted in advance with
+ * a lightweight scan, which allows to write codes into a data matrix of the final size directly.
+ *
+ * @author Fabian Prasser
+ */
+public class CSVDataInputMapped implements IImportEncoded {
+
+    /** Maximal size of a mapped segment */
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    /** Bytes up to this value are considered whitespace */
+    private static final int  WHITESPACE   = ' ';
+
+    /** Scanner state */
+    private static final int  FIELD_START   = 0;
+    /** Scanner state */
+    private static final int  UNQUOTED      = 1;
+    /** Scanner state */
+    private static final int  QUOTED        = 2;
+    /** Scanner state */
+    private static final int  QUOTED_QUOTE  = 3;
+    /** Scanner state */
+    private static final int  QUOTED_ESCAPE = 4;
+
+    /** The file */
+    private final File        file;
+
+    /** The delimiter */
+    private final byte        delimiter;
+
+    /** The quote */
+    private final byte        quote;
+
+    /** The escape */
+    private final byte        escape;
+
+    /** The last character of the linebreak */
+    private final byte        newline;
+
+    /** Whether a compact dictionary should be used */
+    private boolean           compact  = false;
+
+    /** Listener */
+    private ARXListener       listener = null;
+
+    /** Result */
+    private String[]          header;
+
+    /** Result */
+    private DataMatrix        data;
+
+    /** Result */
+    private Dictionary        dictionary;
+
+    /** Bytes of the fields of the current record */
+    private byte[]            bytes;
+
+    /** Number of bytes in the current record */
+    private int               length;
+
+    /** Start offset of each field of the current record */
+    private int[]             starts;
+
+    /** End offset of each field of the current record */
+    private int[]             ends;
+
+    /** Whether the first field of the current record was quoted */
+    private boolean           quoted;
+
+    /** Number of fields in the current record */
+    private int               fields;
+
+    /** Index of byte slices, if the dictionary is not compact */
+    private StringArena[]     index;
+
+    /** Translation from the index to the dictionary, if the dictionary is not compact */
+    private IntArrayList[]    translation;
+
+    /** Code of the null value per column */
+    private int[]             nulls;
+
+    /**
+     * Creates a new instance
+     *
+     * @param file
+     * @param charset
+     * @param syntax
+     */
+    public CSVDataInputMapped(final File file, final Charset charset, final CSVSyntax syntax) {
+
+        // Check
+        if (!charset.name().equals("UTF-8") && !charset.name().equals("US-ASCII")) {
+            throw new IllegalArgumentException("Only UTF-8 and ASCII encoded files are supported");
+        }
+        char[] linebreak = syntax.getLinebreak();
+        char[] syntaxElements = new char[] { syntax.getDelimiter(), syntax.getQuote(), syntax.getEscape(), linebreak[linebreak.length - 1] };
+        for (char c : syntaxElements) {
+            if (c > 127) {
+                throw new IllegalArgumentException("Syntax elements must be ASCII characters");
+            }
+        }
+
+        // Store
+        this.file = file;
+        this.delimiter = (byte) syntax.getDelimiter();
+        this.quote = (byte) syntax.getQuote();
+        this.escape = (byte) syntax.getEscape();
+        this.newline = (byte) linebreak[linebreak.length - 1];
+    }
+
+    @Override
+    public DataMatrix getData() {
+        return data;
+    }
+
+    @Override
+    public Dictionary getDictionary() {
+        return dictionary;
+    }
+
+    @Override
+    public String[] getHeader() {
+        return header;
+    }
+
+    /**
+     * Returns whether a compact dictionary will be used
+     * @return
+     */
+    public boolean isCompactDictionary() {
+        return compact;
+    }
+
+    @Override
+    public void load() throws IOException {
+
+        // Prepare
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        FileChannel channel = raf.getChannel();
+        this.bytes = new byte[1024];
+        this.starts = new int[16];
+        this.ends = new int[16];
+
+        try {
+
+            // Count records
+            long size = channel.size();
+            int records = count(channel, size);
+            progress(0.1d);
+
+            // Map first segment
+            long offset = 0;
+            MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, Math.min(SEGMENT_SIZE, size));
+            IntArrayList overflow = new IntArrayList();
+            int rows = 0;
+
+            // For each record
+            long position = 0;
+            while (position < size) {
+
+                // Tokenize
+                int start = (int) (position - offset);
+                int end = tokenize(buffer, start, offset + buffer.limit() == size);
+
+                // Record crosses the end of the segment: remap, starting with the record
+                if (end == -1) {
+                    if (start == 0) {
+                        throw new IOException("Record at offset " + position + " exceeds the maximal size of a segment");
+                    }
+                    offset = position;
+                    buffer = channel.map(MapMode.READ_ONLY, offset, Math.min(SEGMENT_SIZE, size - offset));
+                    progress(0.1d + 0.9d * (double) offset / (double) size);
+                    continue;
+                }
+                position = offset + end;
+
+                // Skip empty lines
+                if (fields == 1 && ends[0] == starts[0] && !quoted) {
+                    continue;
+                }
+
+                // Header
+                if (header == null) {
+                    header = new String[fields];
+                    for (int i = 0; i < fields; i++) {
+                        header[i] = new String(bytes, starts[i], ends[i] - starts[i], StringArena.UTF8);
+                    }
+                    init(header.length);
+                    data = new DataMatrix(records, header.length);
+                    continue;
+                }
+
+                // Encode, records beyond the counted number are buffered
+                for (int column = 0; column < header.length; column++) {
+                    int code = column < fields ? lookup(column) : lookupNull(column);
+                    if (rows < records) {
+                        data.set(rows, column, code);
+                    } else {
+                        overflow.add(code);
+                    }
+                }
+                rows++;
+            }
+
+            // Check
+            if (header == null) {
+                throw new IllegalArgumentException("Data object is empty!");
+            }
+
+            // Build result. The matrix only needs to be resized, if the scan was not correct
+            dictionary.finalizeAll();
+            if (rows != records) {
+                DataMatrix matrix = new DataMatrix(rows, header.length);
+                for (int row = 0; row < Math.min(rows, records); row++) {
+                    matrix.copyFrom(row, data, row);
+                }
+                if (rows > records) {
+                    matrix.copyFrom(records, overflow.buffer, rows - records);
+                }
+                data = matrix;
+            }
+            progress(1d);
+
+        } finally {
+            channel.close();
+            raf.close();
+            bytes = null;
+            starts = null;
+            ends = null;
+            index = null;
+            translation = null;
+            nulls = null;
+        }
+    }
+
+    /**
+     * Sets whether a compact dictionary should be used
+     * @param compact
+     */
+    public void setCompactDictionary(boolean compact) {
+        this.compact = compact;
+    }
+
+    /**
+     * Sets a listener, which will be informed about the progress
+     * @param listener
+     */
+    public void setListener(ARXListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Appends a byte to the current record
+     * @param b
+     */
+    private void append(byte b) {
+        if (length == bytes.length) {
+            bytes = Arrays.copyOf(bytes, bytes.length << 1);
+        }
+        bytes[length++] = b;
+    }
+
+    /**
+     * Counts the records of the file, excluding the header. Records are separated with the rules applied
+     * by {@link #tokenize(MappedByteBuffer, int, boolean)}, and records consisting of a single unquoted
+     * field, which is empty or contains nothing but whitespace, are skipped.
+     *
+     * @param channel
+     * @param size
+     * @return
+     * @throws IOException
+     */
+    private int count(FileChannel channel, long size) throws IOException {
+
+        int records = 0;
+        int state = FIELD_START;
+        boolean content = false;
+        boolean header = true;
+        for (long offset = 0; offset < size; offset += SEGMENT_SIZE) {
+            MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, offset, Math.min(SEGMENT_SIZE, size - offset));
+            int limit = buffer.limit();
+            for (int i = 0; i < limit; i++) {
+                byte b = buffer.get(i);
+                switch (state) {
+                case QUOTED_ESCAPE:
+                    // An escaped quote is content, anything else is handled like in a quoted field
+                    state = b == quote ? QUOTED : getQuotedState(b);
+                    continue;
+                case QUOTED:
+                    state = getQuotedState(b);
+                    continue;
+                case QUOTED_QUOTE:
+                    if (b == quote) {
+                        state = QUOTED;
+                        continue;
+                    }
+                    state = UNQUOTED;
+                    break;
+                case FIELD_START:
+                    if (b == quote) {
+                        state = QUOTED;
+                        content = true;
+                        continue;
+                    }
+                    break;
+                }
+
+                // Unquoted content
+                if (b == delimiter) {
+                    state = FIELD_START;
+                    content = true;
+                } else if (b == newline) {
+                    state = FIELD_START;
+                    if (content) {
+                        records += header ? 0 : 1;
+                        header = false;
+                        content = false;
+                    }
+                } else if ((b & 0xff) > WHITESPACE) {
+                    state = UNQUOTED;
+                    content = true;
+                }
+            }
+        }
+
+        // Last record
+        if (content && !header) {
+            records++;
+        }
+        return records;
+    }
+
+    /**
+     * Returns the state after the given byte has been read within a quoted field
+     * @param b
+     * @return
+     */
+    private int getQuotedState(byte b) {
+        if (b == escape && escape != quote) {
+            return QUOTED_ESCAPE;
+        } else if (b == quote) {
+            return quote == escape ? QUOTED_QUOTE : UNQUOTED;
+        } else {
+            return QUOTED;
+        }
+    }
+
+    /**
+     * Initializes the dictionary
+     * @param columns
+     */
+    private void init(int columns) {
+        dictionary = new Dictionary(columns, compact);
+        nulls = new int[columns];
+        Arrays.fill(nulls, -1);
+        if (!compact) {
+            index = new StringArena[columns];
+            translation = new IntArrayList[columns];
+            for (int i = 0; i < columns; i++) {
+                index[i] = new StringArena();
+                translation[i] = new IntArrayList();
+            }
+        }
+    }
+
+    /**
+     * Looks up the given field of the current record in the dictionary
+     * @param column
+     * @return
+     */
+    private int lookup(int column) {
+
+        int offset = starts[column];
+        int length = ends[column] - offset;
+
+        // Compact: the dictionary itself is indexed by bytes
+        if (compact) {
+            return dictionary.getArena(column).register(bytes, offset, length);
+        }
+
+        // Probe index and create strings for values that have not been seen before
+        StringArena arena = index[column];
+        int hash = StringArena.hashCode(bytes, offset, length);
+        int code = arena.probe(bytes, offset, length, hash);
+        if (code != -1) {
+            return translation[column].get(code);
+        }
+        arena.register(bytes, offset, length, hash);
+        int result = dictionary.register(column, new String(bytes, offset, length, StringArena.UTF8));
+        translation[column].add(result);
+        return result;
+    }
+
+    /**
+     * Looks up the null value, which is used for missing fields
+     * @param column
+     * @return
+     */
+    private int lookupNull(int column) {
+        if (nulls[column] == -1) {
+            nulls[column] = dictionary.register(column, DataType.NULL_VALUE);
+        }
+        return nulls[column];
+    }
+
+    /**
+     * Reports progress
+     * @param progress
+     */
+    private void progress(double progress) {
+        if (listener != null) {
+            listener.progress(progress);
+        }
+    }
+
+    /**
+     * Tokenizes the record starting at the given position into the internal buffers.
+     *
+     * @param buffer
+     * @param position
+     * @param last Whether the buffer ends with the file
+     * @return the position after the record, -1 if the record is not completely contained in the buffer
+     */
+    private int tokenize(MappedByteBuffer buffer, int position, boolean last) {
+
+        // Prepare
+        int limit = buffer.limit();
+        length = 0;
+        fields = 0;
+        quoted = false;
+
+        // For each field
+        while (true) {
+
+            // Grow
+            if (fields == starts.length) {
+                starts = Arrays.copyOf(starts, fields << 1);
+                ends = Arrays.copyOf(ends, fields << 1);
+            }
+            starts[fields] = length;
+
+            // Skip leading whitespace
+            byte b = 0;
+            while (position < limit) {
+                b = buffer.get(position);
+                if (b == delimiter || b == newline || b == quote || (b & 0xff) > WHITESPACE) {
+                    break;
+                }
+                position++;
+            }
+
+            // Quoted field
+            if (position < limit && b == quote) {
+                if (fields == 0) {
+                    quoted = true;
+                }
+                position++;
+                boolean closed = false;
+                while (position < limit) {
+                    b = buffer.get(position++);
+                    if (b == escape && escape != quote && position < limit && buffer.get(position) == quote) {
+                        append(quote);
+                        position++;
+                    } else if (b == quote) {
+                        if (quote == escape && position < limit && buffer.get(position) == quote) {
+                            append(quote);
+                            position++;
+                        } else if (quote == escape && position == limit && !last) {
+                            return -1;
+                        } else {
+                            closed = true;
+                            break;
+                        }
+                    } else {
+                        append(b);
+                    }
+                }
+                if (!closed && !last) {
+                    return -1;
+                }
+
+                // Content after the closing quote, except for whitespace
+                while (position < limit) {
+                    b = buffer.get(position);
+                    if (b == delimiter || b == newline) {
+                        break;
+                    } else if ((b & 0xff) > WHITESPACE) {
+                        append(b);
+                    }
+                    position++;
+                }
+                ends[fields++] = length;
+
+                // Unquoted field
+            } else {
+                while (position < limit) {
+                    b = buffer.get(position);
+                    if (b == delimiter || b == newline) {
+                        break;
+                    }
+                    append(b);
+                    position++;
+                }
+
+                // Trim trailing whitespace
+                while (length > starts[fields] && (bytes[length - 1] & 0xff) <= WHITESPACE) {
+                    length--;
+                }
+                ends[fields++] = length;
+            }
+
+            // End of segment
+            if (position == limit) {
+                return last ? limit : -1;
+            }
+
+            // End of record
+            if (buffer.get(position++) == newline) {
+                return position;
+            }
+        }
+    }
+}
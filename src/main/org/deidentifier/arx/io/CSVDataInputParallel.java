@@ -0,0 +1,632 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.deidentifier.arx.ARXListener;
+import org.deidentifier.arx.DataType;
+import org.deidentifier.arx.common.ParallelExecution;
+import org.deidentifier.arx.framework.data.DataMatrix;
+import org.deidentifier.arx.framework.data.Dictionary;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.univocity.parsers.csv.CsvParser;
+import com.univocity.parsers.csv.CsvParserSettings;
+
+/**
+ * This class implements a parallel loader for CSV files. The file is split into chunks at record
+ * boundaries, which are parsed and dictionary-encoded concurrently. The local dictionaries of the chunks
+ * are merged in file order, column by column and in parallel, while later chunks are still being parsed.
+ * As a consequence, the resulting codes are identical to the codes assigned when encoding the file sequentially.
+ * <br>
+ * The scan which locates the boundaries also counts the records of each chunk. This allows to size the
+ * data matrix in advance, into which chunks write their codes directly, and in which codes are translated
+ * in place. If the records cannot be counted, because the charset does not encode the syntax elements as
+ * single bytes, or if the parser disagrees with the scan, the file is loaded as one chunk, whose codes
+ * are buffered.
+ *
+ * @author Fabian Prasser
+ */
+public class CSVDataInputParallel implements IImportEncoded {
+
+    /**
+     * A parsed and locally encoded chunk
+     *
+     * @author Fabian Prasser
+     */
+    private static class Chunk {
+
+        /** Start offset in the file */
+        private final long    start;
+        /** End offset in the file */
+        private final long    end;
+        /** Number of records found by the scan, excluding the header, -1 if unknown */
+        private final int     records;
+        /** Local dictionary */
+        private Dictionary    dictionary;
+        /** Matrix containing the codes */
+        private DataMatrix    data;
+        /** First row in the matrix */
+        private int           offset;
+        /** Number of rows */
+        private int           rows;
+
+        /**
+         * Creates a new instance
+         * @param start
+         * @param end
+         * @param records
+         */
+        private Chunk(long start, long end, int records) {
+            this.start = start;
+            this.end = end;
+            this.records = records;
+        }
+    }
+
+    /**
+     * An input stream reading a range of a file channel with positional reads.
+     *
+     * @author Fabian Prasser
+     */
+    private static class ChannelInputStream extends InputStream {
+
+        /** Channel */
+        private final FileChannel channel;
+        /** Position */
+        private long              position;
+        /** End */
+        private final long        end;
+
+        /**
+         * Creates a new instance
+         * @param channel
+         * @param start
+         * @param end
+         */
+        private ChannelInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] buffer = new byte[1];
+            return read(buffer, 0, 1) == -1 ? -1 : buffer[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            length = (int) Math.min(length, end - position);
+            int read = channel.read(ByteBuffer.wrap(buffer, offset, length), position);
+            if (read <= 0) {
+                return -1;
+            }
+            position += read;
+            return read;
+        }
+    }
+
+    /** Minimal size of a chunk */
+    private static final long MIN_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    /** Size of the buffer used for finding record boundaries */
+    private static final int  BUFFER_SIZE    = 4 * 1024 * 1024;
+
+    /** Scanner state */
+    private static final int  FIELD_START    = 0;
+    /** Scanner state */
+    private static final int  UNQUOTED       = 1;
+    /** Scanner state */
+    private static final int  QUOTED         = 2;
+    /** Scanner state */
+    private static final int  QUOTED_QUOTE   = 3;
+    /** Scanner state */
+    private static final int  QUOTED_ESCAPE  = 4;
+
+    /**
+     * Returns whether the given character is encoded as a single identical byte
+     * @param charset
+     * @param c
+     * @return
+     */
+    private static boolean isSingleByte(Charset charset, char c) {
+        byte[] bytes = String.valueOf(c).getBytes(charset);
+        return bytes.length == 1 && bytes[0] == (byte) c;
+    }
+
+    /** The file */
+    private final File         file;
+
+    /** The charset */
+    private final Charset      charset;
+
+    /** The syntax */
+    private final CSVSyntax    syntax;
+
+    /** Number of threads */
+    private final int          threads;
+
+    /** Whether a compact dictionary should be used */
+    private boolean            compact   = false;
+
+    /** Listener */
+    private ARXListener        listener  = null;
+
+    /** Result */
+    private String[]           header;
+
+    /** Result */
+    private DataMatrix         data;
+
+    /** Result */
+    private Dictionary         dictionary;
+
+    /**
+     * Creates a new instance using the number of threads configured for {@link ParallelExecution}
+     *
+     * @param file
+     * @param charset
+     * @param syntax
+     */
+    public CSVDataInputParallel(final File file, final Charset charset, final CSVSyntax syntax) {
+        this(file, charset, syntax, ParallelExecution.getNumThreads());
+    }
+
+    /**
+     * Creates a new instance
+     *
+     * @param file
+     * @param charset
+     * @param syntax
+     * @param threads
+     */
+    public CSVDataInputParallel(final File file, final Charset charset, final CSVSyntax syntax, final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive");
+        }
+        this.file = file;
+        this.charset = charset;
+        this.syntax = syntax;
+        this.threads = threads;
+    }
+
+    @Override
+    public DataMatrix getData() {
+        return data;
+    }
+
+    @Override
+    public Dictionary getDictionary() {
+        return dictionary;
+    }
+
+    @Override
+    public String[] getHeader() {
+        return header;
+    }
+
+    /**
+     * Returns whether a compact dictionary will be used
+     * @return
+     */
+    public boolean isCompactDictionary() {
+        return compact;
+    }
+
+    @Override
+    public void load() throws IOException {
+
+        // Prepare
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        FileChannel channel = raf.getChannel();
+
+        try {
+
+            // Header
+            this.header = getHeader(channel);
+            if (this.header == null) {
+                throw new IllegalArgumentException("Data object is empty!");
+            }
+
+            // Load chunks, or the whole file as one chunk, if the scan was not correct
+            if (!load(channel, getChunks(channel))) {
+                List<Chunk> chunks = new ArrayList<Chunk>();
+                chunks.add(new Chunk(0, channel.size(), -1));
+                load(channel, chunks);
+            }
+            progress(1d);
+
+        } finally {
+            channel.close();
+            raf.close();
+        }
+    }
+
+    /**
+     * Sets whether a compact dictionary should be used
+     * @param compact
+     */
+    public void setCompactDictionary(boolean compact) {
+        this.compact = compact;
+    }
+
+    /**
+     * Sets a listener, which will be informed about the progress
+     * @param listener
+     */
+    public void setListener(ARXListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Waits for the future and unwraps exceptions
+     * @param future
+     * @return
+     * @throws IOException
+     */
+    private <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading data", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    /**
+     * Splits the file into chunks at record boundaries and counts the records of each chunk, excluding
+     * the header. Boundaries are located with a sequential, quote-aware scan over the raw bytes. As with the
+     * parser, lines which contain nothing but whitespace are not counted. If the charset does not encode the
+     * syntax elements as single bytes, the whole file is treated as one chunk, whose records are not counted.
+     *
+     * @param channel
+     * @return
+     * @throws IOException
+     */
+    private List<Chunk> getChunks(FileChannel channel) throws IOException {
+
+        // Prepare
+        long size = channel.size();
+        List<Chunk> chunks = new ArrayList<Chunk>();
+        char[] linebreak = syntax.getLinebreak();
+        int numChunks = (int) Math.min(threads * 4L, Math.max(1L, size / MIN_CHUNK_SIZE));
+        if (!isSingleByte(charset, syntax.getDelimiter()) || !isSingleByte(charset, syntax.getQuote()) ||
+            !isSingleByte(charset, syntax.getEscape()) || !isSingleByte(charset, linebreak[linebreak.length - 1]) ||
+            !isSingleByte(charset, ' ') || !isSingleByte(charset, '\t') ||
+            (charset.newEncoder().maxBytesPerChar() > 1f && !charset.name().equals("UTF-8"))) {
+            chunks.add(new Chunk(0, size, -1));
+            return chunks;
+        }
+
+        // Syntax
+        byte delimiter = (byte) syntax.getDelimiter();
+        byte quote = (byte) syntax.getQuote();
+        byte escape = (byte) syntax.getEscape();
+        byte newline = (byte) linebreak[linebreak.length - 1];
+
+        // Scan
+        long target = size / numChunks;
+        long start = 0;
+        long position = 0;
+        int state = FIELD_START;
+        boolean content = false;
+        boolean header = true;
+        int records = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        byte[] array = buffer.array();
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = array[i];
+                switch (state) {
+                case QUOTED:
+                    if (b == quote) {
+                        state = quote == escape ? QUOTED_QUOTE : UNQUOTED;
+                    } else if (b == escape) {
+                        state = QUOTED_ESCAPE;
+                    }
+                    continue;
+                case QUOTED_ESCAPE:
+                    state = QUOTED;
+                    continue;
+                case QUOTED_QUOTE:
+                    if (b == quote) {
+                        state = QUOTED;
+                        continue;
+                    }
+                    state = UNQUOTED;
+                    break;
+                case FIELD_START:
+                    if (b == quote) {
+                        state = QUOTED;
+                        content = true;
+                        continue;
+                    } else if ((b & 0xff) > ' ') {
+                        state = UNQUOTED;
+                    }
+                    break;
+                }
+
+                // Unquoted content
+                if (b == delimiter) {
+                    state = FIELD_START;
+                    content = true;
+                } else if (b == newline) {
+                    state = FIELD_START;
+                    if (content) {
+                        records += header ? 0 : 1;
+                        header = false;
+                        content = false;
+                    }
+                    long boundary = position + i + 1;
+                    if (boundary - start >= target && boundary < size && chunks.size() < numChunks - 1) {
+                        chunks.add(new Chunk(start, boundary, records));
+                        start = boundary;
+                        records = 0;
+                    }
+                } else if ((b & 0xff) > ' ') {
+                    content = true;
+                }
+            }
+            position += read;
+        }
+
+        // Last chunk
+        if (content && !header) {
+            records++;
+        }
+        chunks.add(new Chunk(start, size, records));
+        return chunks;
+    }
+
+    /**
+     * Parses the header
+     *
+     * @param channel
+     * @return
+     * @throws IOException
+     */
+    private String[] getHeader(FileChannel channel) throws IOException {
+        CsvParser parser = new CsvParser(getSettings());
+        parser.beginParsing(new InputStreamReader(new ChannelInputStream(channel, 0, channel.size()), charset));
+        String[] result = parser.parseNext();
+        parser.stopParsing();
+        return result;
+    }
+
+    /**
+     * Creates parser settings
+     * @return
+     */
+    private CsvParserSettings getSettings() {
+        return CSVDataInput.createSettings(syntax.getDelimiter(),
+                                           syntax.getQuote(),
+                                           syntax.getEscape(),
+                                           syntax.getLinebreak());
+    }
+
+    /**
+     * Loads the given chunks. Chunks are parsed ahead by up to the given number of threads, while
+     * their dictionaries are merged in file order. Returns false, if the number of records parsed from
+     * a chunk does not match the number of records found by the scan.
+     *
+     * @param channel
+     * @param chunks
+     * @return
+     * @throws IOException
+     */
+    private boolean load(final FileChannel channel, final List<Chunk> chunks) throws IOException {
+
+        // Prepare
+        this.dictionary = new Dictionary(header.length, compact);
+        this.data = null;
+
+        // Allocate the matrix, if the records have been counted
+        if (chunks.get(0).records != -1) {
+            int rows = 0;
+            for (Chunk chunk : chunks) {
+                chunk.offset = rows;
+                rows += chunk.records;
+            }
+            DataMatrix matrix = new DataMatrix(rows, header.length);
+            for (Chunk chunk : chunks) {
+                chunk.data = matrix;
+            }
+        }
+        progress(0.1d);
+
+        // Parse ahead and merge in order
+        List<Future<Chunk>> parsed = new ArrayList<Future<Chunk>>();
+        try {
+            for (int i = 0; i < chunks.size(); i++) {
+
+                // Parse
+                while (threads > 1 && parsed.size() < Math.min(chunks.size(), i + threads)) {
+                    final Chunk chunk = chunks.get(parsed.size());
+                    final boolean first = parsed.isEmpty();
+                    parsed.add(ParallelExecution.submit(new Callable<Chunk>() {
+                        @Override
+                        public Chunk call() throws Exception {
+                            return parse(channel, chunk, first);
+                        }
+                    }));
+                }
+                Chunk chunk = threads > 1 ? get(parsed.get(i)) : parse(channel, chunks.get(i), i == 0);
+
+                // Check, after parsing has completed
+                if (chunk.records != -1 && chunk.rows != chunk.records) {
+                    for (Future<Chunk> future : parsed) {
+                        get(future);
+                    }
+                    return false;
+                }
+
+                // Merge
+                merge(chunk);
+                progress(0.1d + 0.8d * (double) (i + 1) / (double) chunks.size());
+            }
+        } finally {
+            for (Future<Chunk> future : parsed) {
+                future.cancel(true);
+            }
+        }
+
+        // Done
+        this.dictionary.finalizeAll();
+        this.data = chunks.get(0).data;
+        return true;
+    }
+
+    /**
+     * Merges the local dictionary of the chunk into the global dictionary and translates the codes of
+     * the chunk in place, in parallel for all columns.
+     *
+     * @param chunk
+     */
+    private void merge(final Chunk chunk) {
+
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int column = 0; column < header.length; column++) {
+            final int _column = column;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    // Local codes are assigned in order of first appearance, which is preserved here
+                    int size = chunk.dictionary.getNumValues(_column);
+                    int[] codes = new int[size];
+                    for (int code = 0; code < size; code++) {
+                        codes[code] = dictionary.register(_column, chunk.dictionary, _column, code);
+                    }
+                    translate(chunk, _column, codes);
+                    return null;
+                }
+            });
+        }
+        ParallelExecution.execute(tasks, threads);
+        chunk.dictionary = null;
+    }
+
+    /**
+     * Parses and locally encodes the given chunk. If the records of the chunk have been counted, codes
+     * are written into the matrix directly. Otherwise, they are buffered and a matrix is created for the chunk.
+     *
+     * @param channel
+     * @param chunk
+     * @param first
+     * @return
+     * @throws IOException
+     */
+    private Chunk parse(FileChannel channel, Chunk chunk, boolean first) throws IOException {
+
+        // Prepare
+        CsvParser parser = new CsvParser(getSettings());
+        parser.beginParsing(new InputStreamReader(new ChannelInputStream(channel, chunk.start, chunk.end), charset));
+
+        // Skip header
+        String[] row = parser.parseNext();
+        if (first && row != null) {
+            row = parser.parseNext();
+        }
+
+        // Encode
+        int columns = header.length;
+        Dictionary local = new Dictionary(columns, compact);
+        DataMatrix data = chunk.data;
+        IntArrayList codes = data == null ? new IntArrayList() : null;
+        int rows = 0;
+        while (row != null) {
+            for (int i = 0; i < columns; i++) {
+                String value = (i < row.length) ? row[i] : DataType.NULL_VALUE;
+                value = (value != null) ? value : DataType.NULL_VALUE;
+                int code = local.register(i, value);
+                if (codes != null) {
+                    codes.add(code);
+                } else if (rows < chunk.records) {
+                    data.set(chunk.offset + rows, i, code);
+                }
+            }
+            rows++;
+            row = parser.parseNext();
+        }
+        parser.stopParsing();
+        local.finalizeAll();
+
+        // Store
+        if (codes != null) {
+            chunk.data = new DataMatrix(rows, columns);
+            chunk.data.copyFrom(0, codes.buffer, rows);
+        }
+        chunk.dictionary = local;
+        chunk.rows = rows;
+        return chunk;
+    }
+
+    /**
+     * Reports progress
+     * @param progress
+     */
+    private void progress(double progress) {
+        if (listener != null) {
+            listener.progress(progress);
+        }
+    }
+
+    /**
+     * Translates the local codes of the given column of the chunk into global codes
+     * @param chunk
+     * @param column
+     * @param translation
+     */
+    private void translate(Chunk chunk, int column, int[] translation) {
+        DataMatrix data = chunk.data;
+        for (int row = chunk.offset; row < chunk.offset + chunk.rows; row++) {
+            data.set(row, column, translation[data.get(row, column)]);
+        }
+    }
+}
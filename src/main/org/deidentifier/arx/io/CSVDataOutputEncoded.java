@@ -0,0 +1,322 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.deidentifier.arx.DataType;
+import org.deidentifier.arx.common.ParallelExecution;
+
+import com.univocity.parsers.csv.CsvWriter;
+import com.univocity.parsers.csv.CsvWriterSettings;
+
+/**
+ * Provides methods for writing dictionary-encoded data to CSV files. Each value in the
+ * dictionary is escaped and encoded only once. Rows are then rendered by concatenating
+ * the resulting byte sequences, optionally in parallel, and written in order. The output
+ * is equal to the output of {@link CSVDataOutput} for the given charset, except that values
+ * which would be rendered as nothing, i.e. null and empty values, are written as
+ * {@link DataType#NULL_VALUE}. This makes sure that they are neither lost nor turned into
+ * empty lines, which are skipped when the data is read.
+ *
+ * @author Fabian Prasser
+ */
+public class CSVDataOutputEncoded {
+
+    /** Number of rows rendered at once */
+    private static final int CHUNK_SIZE = 1 << 14;
+
+    /** Initial size of the buffer for a chunk */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /** The output stream */
+    private final OutputStream stream;
+
+    /** Should the stream be closed */
+    private final boolean      close;
+
+    /** The charset */
+    private final Charset      charset;
+
+    /** The syntax */
+    private final CSVSyntax    syntax;
+
+    /** The number of threads */
+    private final int          threads;
+
+    /**
+     * Creates a new instance, which uses the number of threads configured for {@link ParallelExecution}
+     *
+     * @param file
+     * @param charset
+     * @param syntax
+     * @throws IOException
+     */
+    public CSVDataOutputEncoded(final File file, final Charset charset, final CSVSyntax syntax) throws IOException {
+        this(file, charset, syntax, ParallelExecution.getNumThreads());
+    }
+
+    /**
+     * Creates a new instance
+     *
+     * @param file
+     * @param charset
+     * @param syntax
+     * @param threads
+     * @throws IOException
+     */
+    public CSVDataOutputEncoded(final File file, final Charset charset, final CSVSyntax syntax, final int threads) throws IOException {
+        this(new FileOutputStream(file), charset, syntax, threads, true);
+    }
+
+    /**
+     * Creates a new instance, which uses the number of threads configured for {@link ParallelExecution}
+     *
+     * @param stream
+     * @param charset
+     * @param syntax
+     */
+    public CSVDataOutputEncoded(final OutputStream stream, final Charset charset, final CSVSyntax syntax) {
+        this(stream, charset, syntax, ParallelExecution.getNumThreads());
+    }
+
+    /**
+     * Creates a new instance
+     *
+     * @param stream
+     * @param charset
+     * @param syntax
+     * @param threads
+     */
+    public CSVDataOutputEncoded(final OutputStream stream, final Charset charset, final CSVSyntax syntax, final int threads) {
+        this(stream, charset, syntax, threads, false);
+    }
+
+    /**
+     * Creates a new instance
+     *
+     * @param stream
+     * @param charset
+     * @param syntax
+     * @param threads
+     * @param close
+     */
+    private CSVDataOutputEncoded(final OutputStream stream, final Charset charset, final CSVSyntax syntax, final int threads, final boolean close) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive");
+        }
+        this.stream = stream;
+        this.charset = charset;
+        this.syntax = syntax;
+        this.threads = threads;
+        this.close = close;
+    }
+
+    /**
+     * Writes the given data
+     *
+     * @param data
+     * @throws IOException
+     */
+    public void write(final IExportEncoded data) throws IOException {
+
+        // Render header and dictionaries
+        final String[] header = data.getHeader();
+        final CsvWriter writer = new CsvWriter(new StringWriter(), getSettings());
+        final byte[][][] values = new byte[header.length][][];
+        for (int column = 0; column < header.length; column++) {
+            values[column] = render(writer, data.getValues(column));
+        }
+        final byte[] delimiter = String.valueOf(syntax.getDelimiter()).getBytes(charset);
+        final byte[] linebreak = new String(syntax.getLinebreak()).getBytes(charset);
+
+        WritableByteChannel channel = Channels.newChannel(stream);
+        try {
+
+            // Header
+            write(channel, render(writer, header, delimiter, linebreak));
+
+            // Render one chunk per thread at once, reusing the buffers
+            final int rows = data.getNumRows();
+            final Chunk[] chunks = new Chunk[threads];
+            for (int i = 0; i < threads; i++) {
+                chunks[i] = new Chunk();
+            }
+            for (int row = 0; row < rows; row += CHUNK_SIZE * threads) {
+                List<Callable<Chunk>> tasks = new ArrayList<Callable<Chunk>>();
+                for (int i = 0; i < threads && row + i * CHUNK_SIZE < rows; i++) {
+                    final Chunk chunk = chunks[i];
+                    final int from = row + i * CHUNK_SIZE;
+                    final int to = Math.min(from + CHUNK_SIZE, rows);
+                    tasks.add(new Callable<Chunk>() {
+                        @Override
+                        public Chunk call() throws Exception {
+                            render(data, values, delimiter, linebreak, from, to, chunk);
+                            return chunk;
+                        }
+                    });
+                }
+
+                // Write in order
+                for (Chunk chunk : ParallelExecution.execute(tasks, threads)) {
+                    write(channel, chunk);
+                }
+            }
+            stream.flush();
+
+        } finally {
+            if (close) {
+                stream.close();
+            }
+        }
+    }
+
+    /**
+     * Creates writer settings
+     * @return
+     */
+    private CsvWriterSettings getSettings() {
+        return CSVDataOutput.createSettings(syntax.getDelimiter(),
+                                            syntax.getQuote(),
+                                            syntax.getEscape(),
+                                            syntax.getLinebreak());
+    }
+
+    /**
+     * Renders the given rows into the chunk
+     * @param data
+     * @param values
+     * @param delimiter
+     * @param linebreak
+     * @param from
+     * @param to
+     * @param chunk
+     */
+    private void render(IExportEncoded data,
+                        byte[][][] values,
+                        byte[] delimiter,
+                        byte[] linebreak,
+                        int from,
+                        int to,
+                        Chunk chunk) {
+        chunk.length = 0;
+        for (int row = from; row < to; row++) {
+            for (int column = 0; column < values.length; column++) {
+                if (column > 0) {
+                    chunk.append(delimiter);
+                }
+                chunk.append(values[column][data.getCode(row, column)]);
+            }
+            chunk.append(linebreak);
+        }
+    }
+
+    /**
+     * Renders the given values, each as a field of its own. Values which are rendered as nothing
+     * are written as {@link DataType#NULL_VALUE}.
+     * @param writer
+     * @param values
+     * @return
+     */
+    private byte[][] render(CsvWriter writer, String[] values) {
+        byte[][] result = new byte[values.length][];
+        String[] field = new String[1];
+        for (int i = 0; i < values.length; i++) {
+            field[0] = values[i];
+            String rendered = writer.writeRowToString(field);
+            if (rendered == null) {
+                field[0] = DataType.NULL_VALUE;
+                rendered = writer.writeRowToString(field);
+            }
+            result[i] = rendered.getBytes(charset);
+        }
+        return result;
+    }
+
+    /**
+     * Renders the given row
+     * @param writer
+     * @param row
+     * @param delimiter
+     * @param linebreak
+     * @return
+     */
+    private Chunk render(CsvWriter writer, String[] row, byte[] delimiter, byte[] linebreak) {
+        byte[][] fields = render(writer, row);
+        Chunk chunk = new Chunk();
+        for (int column = 0; column < fields.length; column++) {
+            if (column > 0) {
+                chunk.append(delimiter);
+            }
+            chunk.append(fields[column]);
+        }
+        chunk.append(linebreak);
+        return chunk;
+    }
+
+    /**
+     * Writes the chunk to the channel
+     * @param channel
+     * @param chunk
+     * @throws IOException
+     */
+    private void write(WritableByteChannel channel, Chunk chunk) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(chunk.bytes, 0, chunk.length);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * A rendered sequence of rows
+     *
+     * @author Fabian Prasser
+     */
+    private static class Chunk {
+
+        /** Bytes */
+        private byte[] bytes  = new byte[BUFFER_SIZE];
+
+        /** Number of bytes used */
+        private int    length = 0;
+
+        /**
+         * Appends the given bytes
+         * @param value
+         */
+        private void append(byte[] value) {
+            if (length + value.length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length << 1, length + value.length));
+            }
+            System.arraycopy(value, 0, bytes, length, value.length);
+            length += value.length;
+        }
+    }
+}
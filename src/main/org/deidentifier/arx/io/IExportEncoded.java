@@ -0,0 +1,59 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.io;
+
+/**
+ * Interface to be implemented by data which can be exported in dictionary-encoded form.
+ * Each column has its own table of values, which must also contain markers,
+ * e.g. for suppressed values.
+ *
+ * @author Fabian Prasser
+ */
+public interface IExportEncoded {
+
+    /**
+     * Returns the code of the value in the given cell
+     *
+     * @param row
+     * @param column
+     * @return
+     */
+    public int getCode(int row, int column);
+
+    /**
+     * Returns the header
+     *
+     * @return
+     */
+    public String[] getHeader();
+
+    /**
+     * Returns the number of rows
+     *
+     * @return
+     */
+    public int getNumRows();
+
+    /**
+     * Returns the table of values for the given column
+     *
+     * @param column
+     * @return
+     */
+    public String[] getValues(int column);
+}
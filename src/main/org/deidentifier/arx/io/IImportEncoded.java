@@ -0,0 +1,59 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.io;
+
+import java.io.IOException;
+
+import org.deidentifier.arx.framework.data.DataMatrix;
+import org.deidentifier.arx.framework.data.Dictionary;
+
+/**
+ * Interface to be implemented by inputs which directly produce dictionary-encoded data.
+ *
+ * @author Fabian Prasser
+ */
+public interface IImportEncoded {
+
+    /**
+     * Returns the encoded data. Only available after loading.
+     *
+     * @return
+     */
+    public DataMatrix getData();
+
+    /**
+     * Returns the finalized dictionary. Only available after loading.
+     *
+     * @return
+     */
+    public Dictionary getDictionary();
+
+    /**
+     * Returns the header. Only available after loading.
+     *
+     * @return
+     */
+    public String[] getHeader();
+
+    /**
+     * Loads and encodes the data.
+     *
+     * @throws IOException
+     */
+    public void load() throws IOException;
+}
@@ -23,6 +23,7 @@ import java.util.Iterator;
 import java.util.List;
 
 import org.deidentifier.arx.DataType;
+import org.deidentifier.arx.io.ImportConfigurationExcel.ExcelFileTypes;
 
 /**
  * Base adapter for all data sources
@@ -53,7 +54,11 @@ abstract public class ImportAdapter implements Iterator<String[]> {
         if (config instanceof ImportConfigurationCSV) {
             return new ImportAdapterCSV((ImportConfigurationCSV) config);
         } else if (config instanceof ImportConfigurationExcel) {
-            return new ImportAdapterExcel((ImportConfigurationExcel) config);
+            ImportConfigurationExcel excel = (ImportConfigurationExcel) config;
+            if (excel.isStreaming() && excel.getExcelFileType() == ExcelFileTypes.XLSX) {
+                return new ImportAdapterExcelStreaming(excel);
+            }
+            return new ImportAdapterExcel(excel);
         } else if (config instanceof ImportConfigurationJDBC) {
             return new ImportAdapterJDBC((ImportConfigurationJDBC) config);
         } else {
@@ -91,6 +96,15 @@ abstract public class ImportAdapter implements Iterator<String[]> {
         }
     }
 
+    /**
+     * Releases all resources held by the adapter. Adapters release their resources
+     * after the last row has been returned, this method allows doing so when the
+     * iteration is aborted.
+     */
+    public void close() {
+        // Nothing to do by default
+    }
+
     /**
      * Returns the configuration used by the import adapter.
      *
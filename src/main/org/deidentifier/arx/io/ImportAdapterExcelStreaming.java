@@ -0,0 +1,500 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.deidentifier.arx.DataType;
+import org.deidentifier.arx.io.ImportConfigurationExcel.ExcelFileTypes;
+
+/**
+ * Streaming import adapter for XLSX files
+ *
+ * In contrast to {@link ImportAdapterExcel}, this adapter does not create an
+ * in-memory model of the workbook. The sheet is parsed with an event-based XML
+ * parser and rows are converted one at a time, when they are requested by the
+ * framework. Only the shared-strings table of the workbook is kept in memory.
+ * Values are represented as with {@link ImportAdapterExcel}, i.e. as the raw
+ * contents of the cells.
+ *
+ * @author Fabian Prasser
+ * @see <a href="https://poi.apache.org/">Aapache POI</a>
+ */
+public class ImportAdapterExcelStreaming extends ImportAdapter {
+
+    /** Namespace of relationships */
+    private static final String        RELATIONSHIPS  = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+    /** The configuration describing the Excel file. */
+    private ImportConfigurationExcel   config;
+
+    /** The package */
+    private OPCPackage                 pkg;
+
+    /** The stream of the sheet */
+    private InputStream                input;
+
+    /** Factory for XML parsers */
+    private XMLInputFactory            factory;
+
+    /** The XML parser */
+    private XMLStreamReader            reader;
+
+    /** The shared-strings table */
+    private ReadOnlySharedStringsTable strings;
+
+    /** Contains the next row to return, null if there is none */
+    private String[]                   row;
+
+    /** Indicates whether the first row has already been returned */
+    private boolean                    headerReturned = false;
+
+    /** Number of rows within the specified sheet, as declared by the sheet, 0 if unknown. */
+    private int                        totalRows      = 0;
+
+    /** Current row {@link #row} is referencing. */
+    private int                        currentRow     = 0;
+
+    /** Buffer for the values of a row */
+    private String[]                   buffer         = new String[16];
+
+    /**
+     * Creates a new instance of this object with given configuration
+     *
+     * @param config {@link #config}
+     * @throws IOException In case file doesn't contain actual data
+     */
+    protected ImportAdapterExcelStreaming(ImportConfigurationExcel config) throws IOException {
+
+        super(config);
+        this.config = config;
+
+        if (config.getExcelFileType() != ExcelFileTypes.XLSX) {
+            throw new IllegalArgumentException("Streaming is only supported for XLSX files");
+        }
+
+        /* Prepare parsing */
+        factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+
+        try {
+
+            /* Open sheet */
+            pkg = OPCPackage.open(config.getFileLocation(), PackageAccess.READ);
+            XSSFReader xssf = new XSSFReader(pkg);
+            strings = new ReadOnlySharedStringsTable(pkg);
+            input = xssf.getSheet(getSheetId(xssf));
+
+            /* Create parser */
+            reader = factory.createXMLStreamReader(input);
+
+            /* Check whether there is actual data within the file */
+            row = readRow();
+            if (row == null) {
+                throw new IOException("File contains no data");
+            }
+
+            /* Create header */
+            header = createHeader();
+            if (config.getContainsHeader() && row == null) {
+                throw new IOException("File contains nothing but header");
+            }
+
+        } catch (IOException e) {
+            closeResources();
+            throw e;
+        } catch (RuntimeException e) {
+            closeResources();
+            throw e;
+        } catch (Exception e) {
+            closeResources();
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Returns the percentage of data that has already been returned
+     *
+     * The basis for this calculation is the row currently being accessed and the
+     * dimension declared by the sheet.
+     *
+     * @return
+     */
+    @Override
+    public int getProgress() {
+        if (totalRows == 0) {
+            return 0;
+        }
+        return (int) Math.min(100d, ((double) currentRow / (double) totalRows) * 100d);
+    }
+
+    /**
+     * Indicates whether there is another element to return
+     *
+     * @return
+     */
+    @Override
+    public boolean hasNext() {
+        return row != null;
+    }
+
+    /**
+     * Returns the next row
+     *
+     * The returned element is sorted as defined by {@link ImportColumn#index}
+     * and contains as many elements as there are columns selected to import
+     * from {@link #indexes}. The first row will always contain the names of the
+     * columns.
+     *
+     * @return
+     */
+    @Override
+    public String[] next() {
+
+        /* Check whether header was already returned */
+        if (!headerReturned) {
+            headerReturned = true;
+            return header;
+        }
+
+        /* Create regular row */
+        String[] result = new String[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+
+            result[i] = IOUtil.trim(getValue(row, indexes[i]));
+
+            if (!dataTypes[i].isValid(result[i])) {
+                if (config.columns.get(i).isCleansing()) {
+                    result[i] = DataType.NULL_VALUE;
+                } else {
+                    closeResources();
+                    throw new IllegalArgumentException("Data value does not match data type");
+                }
+            }
+        }
+
+        /* Fetches the next row, which will be used in next iteration */
+        try {
+            row = readRow();
+        } catch (XMLStreamException e) {
+            closeResources();
+            throw new RuntimeException("Couldn't retrieve data from file", e);
+        }
+        if (row != null) {
+            currentRow++;
+        } else {
+            closeResources();
+        }
+
+        /* Return resulting row */
+        return result;
+    }
+
+    /**
+     * Dummy.
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Closes all resources
+     */
+    private void closeResources() {
+        try {
+            if (reader != null) {
+                reader.close();
+            }
+        } catch (Exception e) {
+            /* Die silently */
+        }
+        try {
+            if (input != null) {
+                input.close();
+            }
+        } catch (Exception e) {
+            /* Die silently */
+        }
+        try {
+            if (pkg != null) {
+                pkg.revert();
+            }
+        } catch (Exception e) {
+            /* Die silently */
+        }
+        reader = null;
+        input = null;
+        pkg = null;
+    }
+
+    /**
+     * Creates the header row
+     *
+     * This returns a string array with the names of the columns that will be
+     * returned later on by iterating over this object. Names are determined as
+     * in {@link ImportAdapterExcel}.
+     *
+     * @return
+     * @throws XMLStreamException
+     */
+    private String[] createHeader() throws XMLStreamException {
+
+        /* Preparation work */
+        if (config.getContainsHeader()) {
+            config.prepare(row);
+        }
+        indexes = getIndexesToImport();
+        dataTypes = getColumnDatatypes();
+
+        /* Initialization */
+        String[] header = new String[config.getColumns().size()];
+        List<ImportColumn> columns = config.getColumns();
+
+        /* Create header */
+        for (int i = 0, len = columns.size(); i < len; i++) {
+
+            ImportColumn column = columns.get(i);
+            int index = ((ImportColumnExcel) column).getIndex();
+            String name = IOUtil.trim(getValue(row, index));
+
+            if (config.getContainsHeader() && !name.equals("")) {
+                /* Assign name of file itself */
+                header[i] = name;
+            } else {
+                /* Nothing defined in header (or empty), build name manually */
+                header[i] = "Column #" + index;
+            }
+
+            if (column.getAliasName() != null) {
+                /* Name has been assigned explicitly */
+                header[i] = column.getAliasName();
+            }
+
+            column.setAliasName(header[i]);
+        }
+
+        /* Fetch next row in preparation for next iteration */
+        if (config.getContainsHeader()) {
+            row = readRow();
+            if (row != null) {
+                currentRow++;
+            }
+        }
+
+        /* Return header */
+        return header;
+    }
+
+    /**
+     * Returns the index of the column addressed by the given cell reference, e.g. 27 for "AB12"
+     *
+     * @param reference
+     * @return
+     */
+    private int getColumnIndex(String reference) {
+        int index = 0;
+        for (int i = 0; i < reference.length(); i++) {
+            char c = reference.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            index = index * 26 + (c - 'A' + 1);
+        }
+        return index - 1;
+    }
+
+    /**
+     * Returns the number of rows declared by the given dimension, e.g. 100 for "A1:C100"
+     *
+     * @param dimension
+     * @return
+     */
+    private int getDimension(String dimension) {
+        if (dimension == null) {
+            return 0;
+        }
+        String[] range = dimension.split(":");
+        try {
+            int first = Integer.parseInt(range[0].replaceAll("[A-Z$]", ""));
+            int last = Integer.parseInt(range[range.length - 1].replaceAll("[A-Z$]", ""));
+            return last - first + 1;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns an array with indexes of columns that should be imported
+     *
+     * @return Array containing indexes of columns that should be imported
+     */
+    private int[] getIndexesToImport() {
+        List<ImportColumn> columns = config.getColumns();
+        int[] result = new int[columns.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ((ImportColumnExcel) columns.get(i)).getIndex();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the relationship id of the configured sheet. The workbook is parsed
+     * directly, which avoids creating its object model.
+     *
+     * @param xssf
+     * @return
+     * @throws Exception
+     */
+    private String getSheetId(XSSFReader xssf) throws Exception {
+        InputStream workbook = xssf.getWorkbookData();
+        XMLStreamReader reader = factory.createXMLStreamReader(workbook);
+        try {
+            int index = 0;
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("sheet")) {
+                    if (index++ == config.getSheetIndex()) {
+                        return reader.getAttributeValue(RELATIONSHIPS, "id");
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+            workbook.close();
+        }
+        throw new IllegalArgumentException("Sheet index (" + config.getSheetIndex() + ") is out of range");
+    }
+
+    /**
+     * Returns the value of the given cell, treating missing cells as blank
+     *
+     * @param row
+     * @param index
+     * @return
+     */
+    private String getValue(String[] row, int index) {
+        if (index >= row.length || row[index] == null) {
+            return "";
+        }
+        return row[index];
+    }
+
+    /**
+     * Reads the contents of a cell
+     *
+     * @param type The type declared by the cell
+     * @return
+     * @throws XMLStreamException
+     */
+    private String readCell(String type) throws XMLStreamException {
+
+        /* Read value or inline string */
+        String value = null;
+        StringBuilder inline = null;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String element = reader.getLocalName();
+                if (element.equals("v")) {
+                    value = reader.getElementText();
+                } else if (element.equals("t")) {
+                    if (inline == null) {
+                        inline = new StringBuilder();
+                    }
+                    inline.append(reader.getElementText());
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("c")) {
+                break;
+            }
+        }
+
+        /* Convert */
+        if ("inlineStr".equals(type)) {
+            return inline == null ? "" : inline.toString();
+        } else if (value == null) {
+            return "";
+        } else if ("s".equals(type)) {
+            return strings.getEntryAt(Integer.parseInt(value.trim()));
+        } else if ("b".equals(type)) {
+            return value.trim().equals("1") ? "TRUE" : "FALSE";
+        } else {
+            return value;
+        }
+    }
+
+    /**
+     * Reads the next row from the sheet
+     *
+     * @return The values of the row indexed by column, null if there are no further rows
+     * @throws XMLStreamException
+     */
+    private String[] readRow() throws XMLStreamException {
+
+        /* Move to next row, keeping track of the declared dimension */
+        while (true) {
+            if (reader == null || !reader.hasNext()) {
+                return null;
+            }
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String element = reader.getLocalName();
+                if (element.equals("row")) {
+                    break;
+                } else if (element.equals("dimension")) {
+                    totalRows = getDimension(reader.getAttributeValue(null, "ref"));
+                }
+            }
+        }
+
+        /* Read cells */
+        int length = 0;
+        int column = -1;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("c")) {
+                String reference = reader.getAttributeValue(null, "r");
+                column = reference != null ? getColumnIndex(reference) : column + 1;
+                String value = readCell(reader.getAttributeValue(null, "t"));
+                if (column >= buffer.length) {
+                    buffer = Arrays.copyOf(buffer, Math.max(column + 1, buffer.length << 1));
+                }
+                for (int i = length; i < column; i++) {
+                    buffer[i] = null;
+                }
+                buffer[column] = value;
+                length = Math.max(length, column + 1);
+            } else if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("row")) {
+                break;
+            }
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+}
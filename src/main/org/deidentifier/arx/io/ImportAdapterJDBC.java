@@ -18,24 +18,47 @@
 package org.deidentifier.arx.io;
 
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.deidentifier.arx.DataType;
+import org.deidentifier.arx.common.ParallelExecution;
 
 /**
  * Import adapter for JDBC
  * 
  * This adapter can import data from JDBC sources. The source itself is
  * described by an appropriate {@link ImportConfigurationJDBC} object.
+ * Only the columns to be imported are queried. If the configuration defines
+ * a partitioning, ranges of the table are read and converted concurrently.
  * 
  * @author Karol Babioch
  * @author Fabian Prasser
  */
 public class ImportAdapterJDBC extends ImportAdapter {
+
+    /** Number of rows passed from the partitions at once */
+    private static final int BATCH_SIZE = 1024;
+
+    /** Marks the end of a partition */
+    private static final String[][] END = new String[0][];
+
+    /** Milliseconds after which partitions check whether reading has been aborted */
+    private static final long OFFER_TIMEOUT = 100;
     
     /** The configuration describing the CSV file being used. */
     private ImportConfigurationJDBC config;
@@ -68,6 +91,30 @@ public class ImportAdapterJDBC extends ImportAdapter {
      * @see {@link #getProgress()}
      */
     private int                     totalRows;
+
+    /** Number of rows that have been returned */
+    private int                     rows;
+
+    /** Tasks reading partitions, null if the table is not partitioned */
+    private List<Future<Void>>      partitions;
+
+    /** Batches of rows read from partitions */
+    private BlockingQueue<String[][]> queue;
+
+    /** Number of partitions which are still being read */
+    private int                     running;
+
+    /** The current batch */
+    private String[][]              batch;
+
+    /** Offset into the current batch */
+    private int                     batchOffset;
+
+    /** The first error that occurred while reading partitions */
+    private final AtomicReference<Exception> error = new AtomicReference<Exception>();
+
+    /** Whether resources have been closed */
+    private volatile boolean        closed;
     
     /**
      * Creates a new instance of this object with given configuration.
@@ -85,6 +132,7 @@ public class ImportAdapterJDBC extends ImportAdapter {
         indexes = getIndexesToImport();
         dataTypes = getColumnDatatypes();
         
+        boolean success = false;
         try {
             
             /* Used to keep track of progress */
@@ -96,47 +144,65 @@ public class ImportAdapterJDBC extends ImportAdapter {
                 
                 totalRows = resultSet.getInt(1);
                 if (totalRows == 0) {
-                    closeResources();
                     throw new IOException("Table doesn't contain any rows");
                 }
                 
             } else {
-                closeResources();
                 throw new IOException("Couldn't determine number of rows");
             }
+            resultSet.close();
+            statement.close();
             
-            /* Query for actual data */
-            statement = config.getConnection().createStatement();
-            statement.execute("SELECT * FROM " + config.getTable());
-            resultSet = statement.getResultSet();
-            hasNext = resultSet.next();
+            /* Only query the columns to be imported */
+            String[] names = getColumnNames();
+            header = createHeader(names);
+            String query = "SELECT " + getProjection(names) + " FROM " + config.getTable();
+            
+            /* Query for actual data. Connections provided by the user can't be used concurrently */
+            if (config.getPartitionColumn() == null || config.getPartitions() == 1 || !config.isManageConnection()) {
+                statement = createStatement(config.getConnection());
+                statement.execute(query);
+                resultSet = statement.getResultSet();
+                hasNext = resultSet.next();
+            } else {
+                resultSet = null;
+                statement = null;
+                startPartitions(query);
+                hasNext = advance();
+            }
+            success = true;
             
         } catch (SQLException e) {
-            closeResources();
             throw new IOException(e.getMessage());
+        } finally {
+            
+            /* Also release resources, if the configuration doesn't match the table */
+            if (!success) {
+                closeResources();
+            }
         }
-        
-        // Create header
-        header = createHeader();
+    }
+    
+    /**
+     * Closes all resources and stops reading partitions. Called automatically after the
+     * last row has been returned or an error occurred.
+     */
+    @Override
+    public void close() {
+        closeResources();
     }
     
     /**
      * Returns the percentage of data that has already been returned
      * 
      * This divides the number of rows that have already been returned by the
-     * number of total rows and casts the result into a percentage. In case of
-     * an {@link SQLException} 0 will be returned.
+     * number of total rows and casts the result into a percentage.
      *
      * @return
      */
     @Override
     public int getProgress() {
-        
-        try {
-            return (int) (((double) resultSet.getRow() / (double) totalRows) * 100d);
-        } catch (SQLException e) {
-            return 0;
-        }
+        return (int) (((double) rows / (double) totalRows) * 100d);
     }
     
     /**
@@ -164,23 +230,26 @@ public class ImportAdapterJDBC extends ImportAdapter {
             headerReturned = true;
             return header;
         }
+
+        /* Return row from partitions */
+        if (partitions != null) {
+            String[] result = batch[batchOffset++];
+            rows++;
+            hasNext = advance();
+            return result;
+        }
         
         try {
             
             /* Create regular row */
-            String[] result = new String[indexes.length];
-            for (int i = 0; i < indexes.length; i++) {
-                
-                result[i] = IOUtil.trim(resultSet.getString(indexes[i]));
-                if (!dataTypes[i].isValid(result[i])) {
-                    if (config.columns.get(i).isCleansing()) {
-                        result[i] = DataType.NULL_VALUE;
-                    } else {
-                        closeResources();
-                        throw new IllegalArgumentException("Data value does not match data type");
-                    }
-                }
+            String[] result;
+            try {
+                result = convert(resultSet, dataTypes);
+            } catch (IllegalArgumentException e) {
+                closeResources();
+                throw e;
             }
+            rows++;
             
             /* Move cursor forward and assign result to {@link #hasNext} */
             hasNext = resultSet.next();
@@ -204,11 +273,60 @@ public class ImportAdapterJDBC extends ImportAdapter {
     public void remove() {
         throw new UnsupportedOperationException();
     }
+
+    /**
+     * Moves to the next row read from the partitions
+     * 
+     * @return Whether there is another row
+     */
+    private boolean advance() {
+        while (batch == null || batchOffset == batch.length) {
+            if (running == 0) {
+                closeResources();
+                return false;
+            }
+            try {
+                batch = queue.take();
+                batchOffset = 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                closeResources();
+                throw new RuntimeException("Interrupted while retrieving data from database");
+            }
+            if (batch == END) {
+                running--;
+                Exception exception = error.get();
+                if (exception != null) {
+                    closeResources();
+                    if (exception instanceof IllegalArgumentException) {
+                        throw (IllegalArgumentException) exception;
+                    }
+                    throw new RuntimeException("Couldn't retrieve data from database");
+                }
+            }
+        }
+        return true;
+    }
     
     /**
-     * Closes the JDBC resources.
+     * Closes the JDBC resources. Partitions stop reading and close their own resources,
+     * which we wait for, as JDBC objects can't safely be closed by other threads and
+     * the first partition uses the main connection.
      */
     private void closeResources() {
+        closed = true;
+        if (partitions != null) {
+            for (Future<Void> partition : partitions) {
+                try {
+                    partition.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    partition.cancel(true);
+                } catch (Exception e) {
+                    /* Ignore silently */
+                }
+            }
+        }
         try {
             if (resultSet != null) {
                 resultSet.close();
@@ -231,6 +349,31 @@ public class ImportAdapterJDBC extends ImportAdapter {
             /* Die silently */
         }
     }
+
+    /**
+     * Converts the current row of the result set
+     * 
+     * @param resultSet
+     * @param dataTypes
+     * @return
+     * @throws SQLException
+     */
+    private String[] convert(ResultSet resultSet, DataType<?>[] dataTypes) throws SQLException {
+        String[] result = new String[dataTypes.length];
+        for (int i = 0; i < dataTypes.length; i++) {
+            
+            /* +1 offset, because counting in JDBC starts at 1 */
+            result[i] = IOUtil.trim(resultSet.getString(i + 1));
+            if (!dataTypes[i].isValid(result[i])) {
+                if (config.columns.get(i).isCleansing()) {
+                    result[i] = DataType.NULL_VALUE;
+                } else {
+                    throw new IllegalArgumentException("Data value does not match data type");
+                }
+            }
+        }
+        return result;
+    }
     
     /**
      * Creates the header row
@@ -240,9 +383,10 @@ public class ImportAdapterJDBC extends ImportAdapter {
      * or not names have been assigned explicitly either the appropriate values
      * will be returned, or names from the JDBC metadata will be used.
      *
+     * @param names Names of all columns of the table
      * @return
      */
-    private String[] createHeader() {
+    private String[] createHeader(String[] names) {
         
         /* Initialization */
         String[] header = new String[config.getColumns().size()];
@@ -262,12 +406,7 @@ public class ImportAdapterJDBC extends ImportAdapter {
             } else {
                 
                 /* Assign name from JDBC metadata */
-                try {
-                    /* +1 offset, because counting in JDBC starts at 1 */
-                    header[i] = IOUtil.trim(resultSet.getMetaData().getColumnName(((ImportColumnJDBC) column).getIndex() + 1));
-                } catch (SQLException e) {
-                    throw new IllegalArgumentException("Index for column '" + ((ImportColumnJDBC) column).getIndex() + "' couldn't be found");
-                }
+                header[i] = IOUtil.trim(names[((ImportColumnJDBC) column).getIndex()]);
             }
             column.setAliasName(header[i]);
         }
@@ -276,6 +415,258 @@ public class ImportAdapterJDBC extends ImportAdapter {
         return header;
         
     }
+
+    /**
+     * Creates a statement, which streams results with the configured fetch size
+     * 
+     * @param connection
+     * @return
+     * @throws SQLException
+     */
+    private Statement createStatement(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        if (config.getFetchSize() > 0) {
+            statement.setFetchSize(config.getFetchSize());
+        }
+        return statement;
+    }
+
+    /**
+     * Returns the names of all columns of the table
+     * 
+     * @return
+     * @throws SQLException
+     */
+    private String[] getColumnNames() throws SQLException {
+        Statement statement = config.getConnection().createStatement();
+        try {
+            ResultSet resultSet = statement.executeQuery("SELECT * FROM " + config.getTable() + " WHERE 1=0");
+            try {
+                ResultSetMetaData meta = resultSet.getMetaData();
+                String[] names = new String[meta.getColumnCount()];
+                for (int i = 0; i < names.length; i++) {
+                    names[i] = meta.getColumnName(i + 1);
+                }
+                for (int index : indexes) {
+                    if (index > names.length) {
+                        throw new IllegalArgumentException("Index for column '" + (index - 1) + "' couldn't be found");
+                    }
+                }
+                return names;
+            } finally {
+                resultSet.close();
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Returns the list of columns to be queried
+     * 
+     * @param names
+     * @return
+     * @throws SQLException
+     */
+    private String getProjection(String[] names) throws SQLException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < indexes.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(quote(names[indexes[i] - 1]));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Passes a batch of rows to the consumer. Waits until there is space in the queue,
+     * unless reading has been aborted.
+     * 
+     * @param batch
+     * @return Whether the batch has been passed on
+     * @throws InterruptedException
+     */
+    private boolean offer(String[][] batch) throws InterruptedException {
+        while (!closed) {
+            if (queue.offer(batch, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Quotes the given identifier
+     * 
+     * @param identifier
+     * @return
+     * @throws SQLException
+     */
+    private String quote(String identifier) throws SQLException {
+        String quote = config.getConnection().getMetaData().getIdentifierQuoteString();
+        if (quote == null || quote.trim().isEmpty()) {
+            return identifier;
+        }
+        return quote + identifier.replace(quote, quote + quote) + quote;
+    }
+
+    /**
+     * Reads a partition of the table. Called by worker threads.
+     * 
+     * @param query
+     * @param first Whether this is the first partition, which uses the main connection
+     */
+    private void read(String query, boolean first) {
+
+        // Each partition requires its own instances of data types, because they are not thread-safe
+        DataType<?>[] types = new DataType<?>[dataTypes.length];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = dataTypes[i].clone();
+        }
+
+        Connection connection = null;
+        Statement statement = null;
+        ResultSet resultSet = null;
+        try {
+
+            // Query, unless reading has been aborted before the partition has been started
+            if (closed) {
+                return;
+            }
+            connection = first ? config.getConnection() : config.getFurtherConnection();
+            statement = createStatement(connection);
+            resultSet = statement.executeQuery(query);
+
+            // Convert and pass on in batches
+            String[][] batch = new String[BATCH_SIZE][];
+            int size = 0;
+            while (!closed && resultSet.next()) {
+                batch[size++] = convert(resultSet, types);
+                if (size == BATCH_SIZE) {
+                    if (!offer(batch)) {
+                        return;
+                    }
+                    batch = new String[BATCH_SIZE][];
+                    size = 0;
+                }
+            }
+            if (size > 0) {
+                offer(Arrays.copyOf(batch, size));
+            }
+
+        } catch (Exception e) {
+            error.compareAndSet(null, e);
+        } finally {
+            try {
+                if (resultSet != null) {
+                    resultSet.close();
+                }
+            } catch (Exception e) {
+                /* Ignore silently */
+            }
+            try {
+                if (statement != null) {
+                    statement.close();
+                }
+            } catch (Exception e) {
+                /* Ignore silently */
+            }
+            try {
+                if (connection != null && connection != config.getConnection()) {
+                    connection.close();
+                }
+            } catch (Exception e) {
+                /* Ignore silently */
+            }
+            try {
+                offer(END);
+            } catch (InterruptedException e) {
+                /* Ignore silently */
+            }
+        }
+    }
+    
+    /**
+     * Splits the table into ranges of the partition column and starts reading them concurrently
+     * 
+     * @param query
+     * @throws SQLException
+     */
+    private void startPartitions(String query) throws SQLException {
+
+        /* Determine range */
+        String column = quote(config.getPartitionColumn());
+        BigDecimal min = null;
+        BigDecimal max = null;
+        Statement statement = config.getConnection().createStatement();
+        try {
+            ResultSet resultSet = statement.executeQuery("SELECT MIN(" + column + "), MAX(" + column + ") FROM " + config.getTable());
+            try {
+                if (resultSet.next()) {
+                    min = toBigDecimal(resultSet.getString(1));
+                    max = toBigDecimal(resultSet.getString(2));
+                }
+            } finally {
+                resultSet.close();
+            }
+        } finally {
+            statement.close();
+        }
+
+        /* Create queries */
+        List<String> queries = new ArrayList<String>();
+        int partitions = min == null ? 1 : config.getPartitions();
+        BigDecimal[] bounds = new BigDecimal[partitions + 1];
+        for (int i = 0; i <= partitions && min != null; i++) {
+            bounds[i] = min.add(max.subtract(min).multiply(BigDecimal.valueOf(i)).divide(BigDecimal.valueOf(partitions), 10, RoundingMode.DOWN));
+        }
+        for (int i = 0; i < partitions; i++) {
+            if (partitions == 1) {
+                queries.add(query);
+            } else if (i == 0) {
+                queries.add(query + " WHERE " + column + " < " + bounds[1].toPlainString() + " OR " + column + " IS NULL");
+            } else if (i == partitions - 1) {
+                queries.add(query + " WHERE " + column + " >= " + bounds[i].toPlainString());
+            } else {
+                queries.add(query + " WHERE " + column + " >= " + bounds[i].toPlainString() + " AND " + column + " < " + bounds[i + 1].toPlainString());
+            }
+        }
+
+        /* Start reading */
+        this.queue = new ArrayBlockingQueue<String[][]>(partitions * 4);
+        this.partitions = new ArrayList<Future<Void>>();
+        this.running = partitions;
+        for (int i = 0; i < partitions; i++) {
+            final String partition = queries.get(i);
+            final boolean first = i == 0;
+            this.partitions.add(ParallelExecution.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    read(partition, first);
+                    return null;
+                }
+            }));
+        }
+    }
+
+    /**
+     * Converts the given value of the partition column. Not all drivers support
+     * retrieving values as BigDecimals, so we parse the string representation.
+     * 
+     * @param value
+     * @return
+     */
+    private BigDecimal toBigDecimal(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return new BigDecimal(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Partition column must be numeric");
+        }
+    }
     
     /**
      * Returns an array with indexes of columns that should be imported
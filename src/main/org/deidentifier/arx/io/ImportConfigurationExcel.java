@@ -68,6 +68,13 @@ public class ImportConfigurationExcel extends ImportConfigurationFile implements
      */
     private boolean        containsHeader;
 
+    /**
+     * Indicates whether XLSX files should be read with a streaming parser.
+     *
+     * @see {@link ImportAdapterExcelStreaming}
+     */
+    private boolean        streaming = false;
+
     /**
      * Creates a new instance of this object.
      *
@@ -187,6 +194,13 @@ public class ImportConfigurationExcel extends ImportConfigurationFile implements
         return sheetIndex;
     }
 
+    /**
+     * @return {@link #streaming}
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
     /**
      * Sets the indexes based on the header.
      *
@@ -212,6 +226,30 @@ public class ImportConfigurationExcel extends ImportConfigurationFile implements
         }
     }
 
+    /**
+     * Sets the indexes based on the header.
+     *
+     * @param row The values of the header, indexed by column
+     */
+    public void prepare(String[] row) {
+
+        for (ImportColumn c : super.getColumns()) {
+            ImportColumnExcel column = (ImportColumnExcel) c;
+            if (!column.isIndexSpecified()) {
+                boolean found = false;
+                for (int i = 0; i < row.length; i++) {
+                    if (row[i] != null && row[i].equals(column.getName())) {
+                        found = true;
+                        column.setIndex(i);
+                    }
+                }
+                if (!found) {
+                    throw new IllegalArgumentException("Index for column '" + column.getName() + "' couldn't be found");
+                }
+            }
+        }
+    }
+
     /**
      * @param containsHeader
      *            {@link #containsHeader}
@@ -229,6 +267,16 @@ public class ImportConfigurationExcel extends ImportConfigurationFile implements
         this.excelFileType = excelFileType;
     }
 
+    /**
+     * Sets whether XLSX files should be read with a streaming parser, which
+     * does not create an in-memory model of the workbook.
+     *
+     * @param streaming
+     *            {@link #streaming}
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
 
     /**
      * @param sheetIndex
@@ -30,6 +30,9 @@ import java.util.NoSuchElementException;
  * @author Fabian Prasser
  */
 public class ImportConfigurationJDBC extends ImportConfiguration {
+
+    /** Default fetch size */
+    public static final int DEFAULT_FETCH_SIZE = 10000;
     
     /**
      * Connection to be used.
@@ -51,6 +54,24 @@ public class ImportConfigurationJDBC extends ImportConfiguration {
      * Determines whether we need to manage the JDBC connection.
      */
     private final boolean manageConnection;
+
+    /** URL, if connections are managed. Used for opening further connections. */
+    private final String  url;
+
+    /** User, if connections are managed */
+    private final String  user;
+
+    /** Password, if connections are managed */
+    private final String  password;
+
+    /** Number of rows fetched from the database at once, 0 for the driver's default */
+    private int           fetchSize       = DEFAULT_FETCH_SIZE;
+
+    /** Numeric column by which the table is partitioned, null for no partitioning */
+    private String        partitionColumn = null;
+
+    /** Number of partitions, which are read concurrently */
+    private int           partitions      = 1;
     
     /**
      * Creates a new instance of this object.
@@ -62,6 +83,9 @@ public class ImportConfigurationJDBC extends ImportConfiguration {
         this.connection = connection;
         this.table = table;
         this.manageConnection = false;
+        this.url = null;
+        this.user = null;
+        this.password = null;
     }
     
     /**
@@ -75,6 +99,9 @@ public class ImportConfigurationJDBC extends ImportConfiguration {
         this.connection = DriverManager.getConnection(url);
         this.table = table;
         this.manageConnection = true;
+        this.url = url;
+        this.user = null;
+        this.password = null;
     }
     
     /**
@@ -90,6 +117,9 @@ public class ImportConfigurationJDBC extends ImportConfiguration {
         this.connection = DriverManager.getConnection(url, user, password);
         this.table = table;
         this.manageConnection = true;
+        this.url = url;
+        this.user = user;
+        this.password = password;
     }
     
     /**
@@ -137,6 +167,65 @@ public class ImportConfigurationJDBC extends ImportConfiguration {
             // Ignore
         }
     }
+
+    /**
+     * Returns the number of rows fetched from the database at once
+     * @return
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * Returns the column by which the table is partitioned, if any
+     * @return
+     */
+    public String getPartitionColumn() {
+        return partitionColumn;
+    }
+
+    /**
+     * Returns the number of partitions
+     * @return
+     */
+    public int getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Sets the number of rows fetched from the database at once. Use 0 for the driver's default.
+     * Note that some drivers require further settings for streaming results, e.g. disabled
+     * auto-commit for PostgreSQL.
+     * 
+     * @param fetchSize
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 0) {
+            throw new IllegalArgumentException("Fetch size must not be negative");
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Splits the table into the given number of ranges of values of the given numeric column,
+     * which will be read concurrently via connections of their own. Rows with null keys are read
+     * with the first partition. Note that rows are not returned in the order of the table. As
+     * connections must not be used concurrently, the table is read sequentially, if the
+     * connection has been provided by the user.
+     * 
+     * @param column
+     * @param partitions
+     */
+    public void setPartitioning(String column, int partitions) {
+        if (column == null) {
+            throw new IllegalArgumentException("Column must not be null");
+        }
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Number of partitions must be positive");
+        }
+        this.partitionColumn = column;
+        this.partitions = partitions;
+    }
     
     /**
      * 
@@ -187,6 +276,22 @@ public class ImportConfigurationJDBC extends ImportConfiguration {
     protected Connection getConnection() {
         return this.connection;
     }
+
+    /**
+     * Opens a further connection. Only supported, if the configuration manages its connection.
+     * 
+     * @return
+     * @throws SQLException
+     */
+    protected Connection getFurtherConnection() throws SQLException {
+        if (!manageConnection) {
+            throw new IllegalStateException("Connection is not managed");
+        } else if (user == null) {
+            return DriverManager.getConnection(url);
+        } else {
+            return DriverManager.getConnection(url, user, password);
+        }
+    }
     
     /**
      * @return {@link #table}
@@ -0,0 +1,461 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.io;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.deidentifier.arx.DataType;
+import org.deidentifier.arx.common.ParallelExecution;
+
+/**
+ * Writes dictionary-encoded data into a database table via JDBC. Rows are inserted
+ * with batches of prepared statements. Values are taken from the tables of values of each
+ * column, which means that no rows need to be materialized. Missing values are written as
+ * SQL NULL. If the output manages its connections, ranges of rows can be written concurrently.
+ * <br>
+ * By default, all rows are written in a single transaction, which is rolled back if writing
+ * fails, so that no rows are added to the table. With a commit interval, or with multiple
+ * connections, each of which writes its range in its own transaction, rows which have been
+ * committed before the failure remain in the table.
+ *
+ * @author Fabian Prasser
+ */
+public class JDBCDataOutput {
+
+    /** Default batch size */
+    public static final int  DEFAULT_BATCH_SIZE      = 1000;
+
+    /** Default commit interval, which means that all rows are written in one transaction */
+    public static final int  DEFAULT_COMMIT_INTERVAL = 0;
+
+    /** Connection, if provided by the user */
+    private final Connection connection;
+
+    /** URL, if connections are managed */
+    private final String     url;
+
+    /** User, if connections are managed */
+    private final String     user;
+
+    /** Password, if connections are managed */
+    private final String     password;
+
+    /** Name of the table */
+    private final String     table;
+
+    /** Number of rows per batch */
+    private int              batchSize               = DEFAULT_BATCH_SIZE;
+
+    /** Number of rows per transaction, 0 for a single transaction per connection */
+    private int              commitInterval          = DEFAULT_COMMIT_INTERVAL;
+
+    /** Number of connections used concurrently */
+    private int              connections             = 1;
+
+    /** Whether the table should be created if it does not exist */
+    private boolean          createTable             = true;
+
+    /**
+     * Creates a new instance, which writes via the given connection
+     *
+     * @param connection
+     * @param table
+     */
+    public JDBCDataOutput(Connection connection, String table) {
+        this.connection = connection;
+        this.url = null;
+        this.user = null;
+        this.password = null;
+        this.table = table;
+    }
+
+    /**
+     * Creates a new instance, which manages its connections
+     *
+     * @param url
+     * @param table
+     */
+    public JDBCDataOutput(String url, String table) {
+        this(url, null, null, table);
+    }
+
+    /**
+     * Creates a new instance, which manages its connections
+     *
+     * @param url
+     * @param user
+     * @param password
+     * @param table
+     */
+    public JDBCDataOutput(String url, String user, String password, String table) {
+        this.connection = null;
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.table = table;
+    }
+
+    /**
+     * Returns the number of rows per batch
+     * @return
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Returns the number of rows per transaction
+     * @return
+     */
+    public int getCommitInterval() {
+        return commitInterval;
+    }
+
+    /**
+     * Returns the number of connections used concurrently
+     * @return
+     */
+    public int getConnections() {
+        return connections;
+    }
+
+    /**
+     * Returns whether the table will be created, if it does not exist
+     * @return
+     */
+    public boolean isCreateTable() {
+        return createTable;
+    }
+
+    /**
+     * Sets the number of rows per batch
+     * @param batchSize
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets the number of rows per transaction. Use 0 to write all rows of a connection in a
+     * single transaction. Rows which have been committed are not removed if writing fails.
+     * @param commitInterval
+     */
+    public void setCommitInterval(int commitInterval) {
+        if (commitInterval < 0) {
+            throw new IllegalArgumentException("Commit interval must not be negative");
+        }
+        this.commitInterval = commitInterval;
+    }
+
+    /**
+     * Sets the number of connections used concurrently, each of which writes a range of rows
+     * in its own transaction. If writing a range fails, ranges which have not been committed
+     * yet are rolled back, but ranges which have already been committed remain in the table.
+     * Only supported if the output manages its connections.
+     *
+     * @param connections
+     */
+    public void setConnections(int connections) {
+        if (connections < 1) {
+            throw new IllegalArgumentException("Number of connections must be positive");
+        }
+        if (connections > 1 && this.connection != null) {
+            throw new IllegalArgumentException("Multiple connections are only supported if connections are managed");
+        }
+        this.connections = connections;
+    }
+
+    /**
+     * Sets whether the table should be created, if it does not exist. Columns will be created with type VARCHAR,
+     * sized with the number of bytes of the longest value encoded in UTF-8. This is an upper bound of its length
+     * in characters or UTF-16 code units, regardless of how the database measures lengths.
+     * @param createTable
+     */
+    public void setCreateTable(boolean createTable) {
+        this.createTable = createTable;
+    }
+
+    /**
+     * Writes the given data
+     *
+     * @param data
+     * @throws IOException
+     */
+    public void write(final IExportEncoded data) throws IOException {
+
+        // Prepare, with missing values represented by null
+        final String[] header = data.getHeader();
+        final String[][] values = new String[header.length][];
+        for (int column = 0; column < header.length; column++) {
+            values[column] = data.getValues(column).clone();
+            for (int code = 0; code < values[column].length; code++) {
+                if (DataType.NULL_VALUE.equals(values[column][code])) {
+                    values[column][code] = null;
+                }
+            }
+        }
+        final AtomicBoolean failed = new AtomicBoolean(false);
+
+        Connection connection = null;
+        try {
+
+            // Create table
+            connection = this.connection != null ? this.connection : open();
+            if (createTable && !exists(connection)) {
+                create(connection, header, values);
+            }
+            final String insert = getInsertStatement(connection, header);
+
+            // Write sequentially
+            final int rows = data.getNumRows();
+            if (connections == 1 || rows < connections) {
+                write(connection, insert, data, values, 0, rows, failed);
+                return;
+            }
+
+            // Write ranges concurrently
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            for (int i = 0; i < connections; i++) {
+                final int from = (int) ((long) rows * i / connections);
+                final int to = (int) ((long) rows * (i + 1) / connections);
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        Connection connection;
+                        try {
+                            connection = open();
+                        } catch (SQLException e) {
+                            failed.set(true);
+                            throw e;
+                        }
+                        try {
+                            write(connection, insert, data, values, from, to, failed);
+                        } finally {
+                            connection.close();
+                        }
+                        return null;
+                    }
+                });
+            }
+            try {
+                ParallelExecution.execute(tasks, connections);
+            } catch (RuntimeException e) {
+                if (e.getCause() instanceof SQLException) {
+                    throw new IOException(e.getCause());
+                }
+                throw e;
+            }
+
+        } catch (SQLException e) {
+            throw new IOException(e);
+        } finally {
+            if (connection != null && this.connection == null) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    /* Ignore silently */
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the table
+     * @param connection
+     * @param header
+     * @param values
+     * @throws SQLException
+     */
+    private void create(Connection connection, String[] header, String[][] values) throws SQLException {
+        StringBuilder builder = new StringBuilder();
+        builder.append("CREATE TABLE ").append(table).append(" (");
+        for (int column = 0; column < header.length; column++) {
+            int length = 1;
+            for (String value : values[column]) {
+                if (value != null) {
+                    length = Math.max(length, value.getBytes(StandardCharsets.UTF_8).length);
+                }
+            }
+            if (column > 0) {
+                builder.append(", ");
+            }
+            builder.append(quote(connection, header[column])).append(" VARCHAR(").append(length).append(")");
+        }
+        builder.append(")");
+        Statement statement = connection.createStatement();
+        try {
+            statement.execute(builder.toString());
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Returns whether the table exists
+     * @param connection
+     * @return
+     * @throws SQLException
+     */
+    private boolean exists(Connection connection) throws SQLException {
+        ResultSet result = connection.getMetaData().getTables(null, null, table, null);
+        try {
+            return result.next();
+        } finally {
+            result.close();
+        }
+    }
+
+    /**
+     * Returns the insert statement
+     * @param connection
+     * @param header
+     * @return
+     * @throws SQLException
+     */
+    private String getInsertStatement(Connection connection, String[] header) throws SQLException {
+        StringBuilder columns = new StringBuilder();
+        StringBuilder parameters = new StringBuilder();
+        for (int column = 0; column < header.length; column++) {
+            if (column > 0) {
+                columns.append(", ");
+                parameters.append(", ");
+            }
+            columns.append(quote(connection, header[column]));
+            parameters.append("?");
+        }
+        return "INSERT INTO " + table + " (" + columns + ") VALUES (" + parameters + ")";
+    }
+
+    /**
+     * Opens a connection
+     * @return
+     * @throws SQLException
+     */
+    private Connection open() throws SQLException {
+        return user == null ? DriverManager.getConnection(url) : DriverManager.getConnection(url, user, password);
+    }
+
+    /**
+     * Quotes the given identifier
+     * @param connection
+     * @param identifier
+     * @return
+     * @throws SQLException
+     */
+    private String quote(Connection connection, String identifier) throws SQLException {
+        String quote = connection.getMetaData().getIdentifierQuoteString();
+        if (quote == null || quote.trim().isEmpty()) {
+            return identifier;
+        }
+        return quote + identifier.replace(quote, quote + quote) + quote;
+    }
+
+    /**
+     * Writes the given range of rows. Uncommitted rows are rolled back if writing fails
+     * or if writing another range has failed.
+     * @param connection
+     * @param insert
+     * @param data
+     * @param values
+     * @param from
+     * @param to
+     * @param failed Whether writing has failed, shared by all ranges
+     * @throws SQLException
+     */
+    private void write(Connection connection,
+                       String insert,
+                       IExportEncoded data,
+                       String[][] values,
+                       int from,
+                       int to,
+                       AtomicBoolean failed) throws SQLException {
+
+        // Prepare
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        PreparedStatement statement = connection.prepareStatement(insert);
+        boolean done = false;
+        try {
+
+            // Insert
+            int batch = 0;
+            int transaction = 0;
+            for (int row = from; row < to && !failed.get(); row++) {
+                for (int column = 0; column < values.length; column++) {
+                    String value = values[column][data.getCode(row, column)];
+                    if (value == null) {
+                        statement.setNull(column + 1, Types.VARCHAR);
+                    } else {
+                        statement.setString(column + 1, value);
+                    }
+                }
+                statement.addBatch();
+                if (++batch == batchSize) {
+                    statement.executeBatch();
+                    batch = 0;
+                }
+                if (commitInterval > 0 && ++transaction == commitInterval) {
+                    if (batch > 0) {
+                        statement.executeBatch();
+                        batch = 0;
+                    }
+                    connection.commit();
+                    transaction = 0;
+                }
+            }
+
+            // Finalize, unless writing another range has failed
+            if (failed.get()) {
+                connection.rollback();
+            } else {
+                if (batch > 0) {
+                    statement.executeBatch();
+                }
+                connection.commit();
+            }
+            done = true;
+
+        } finally {
+            if (!done) {
+                failed.set(true);
+                try {
+                    connection.rollback();
+                } catch (SQLException e) {
+                    /* Ignore silently */
+                }
+            }
+            statement.close();
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+}
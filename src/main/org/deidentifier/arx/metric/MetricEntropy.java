@@ -200,7 +200,7 @@ public class MetricEntropy extends MetricDefault {
         // Initialize counts
         cardinalities = new int[data.getNumColumns()][][];
         for (int i = 0; i < cardinalities.length; i++) {
-            cardinalities[i] = new int[dictionary.getMapping()[i].length][ahierarchies[i].getArray()[0].length];
+            cardinalities[i] = new int[dictionary.getNumValues(i)][ahierarchies[i].getArray()[0].length];
             // Column -> Id -> Level -> Count
         }
 
@@ -55,7 +55,7 @@ public class Cardinalities implements Serializable {
         // Initialize counts
         cardinalities = new int[array.getNumColumns()][][];
         for (int i = 0; i < cardinalities.length; i++) {
-            cardinalities[i] = new int[dictionary.getMapping()[i].length][hierarchies[i].getArray()[0].length];
+            cardinalities[i] = new int[dictionary.getNumValues(i)][hierarchies[i].getArray()[0].length];
         }
 
         // Compute counts
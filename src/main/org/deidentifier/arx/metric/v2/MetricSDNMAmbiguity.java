@@ -225,7 +225,7 @@ public class MetricSDNMAmbiguity extends AbstractMetricSingleDimensional {
             String attribute = input.getHeader()[i];
             String[][] hierarchy = definition.getHierarchy(attribute);
             this.shares[i] = new DomainShareMaterialized(hierarchy,
-                                                         input.getDictionary().getMapping()[i],
+                                                         input.getDictionary().getMapping(i),
                                                          hierarchies[i].getArray());
             this.max *= hierarchy.length;
         }
@@ -253,7 +253,7 @@ public class MetricSDNMKLDivergence extends AbstractMetricSingleDimensional {
             String attribute = input.getHeader()[i];
             String[][] hierarchy = definition.getHierarchy(attribute);
             this.shares[i] = new DomainShareMaterialized(hierarchy,
-                                                         input.getDictionary().getMapping()[i],
+                                                         input.getDictionary().getMapping(i),
                                                          hierarchies[i].getArray());
         }
 
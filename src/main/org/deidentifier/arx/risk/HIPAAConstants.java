@@ -34,6 +34,7 @@ import org.deidentifier.arx.risk.resources.us.HIPAAConstantsUS;
 
 /**
  * Utility class providing access to important constants for finding HIPAA identifiers.
+ * Constants are loaded lazily and may be accessed by multiple threads.
  * 
  * @author Fabian Prasser
  */
@@ -51,15 +52,15 @@ public abstract class HIPAAConstants {
     }
 
     /** Cities */
-    private Set<String>                       cities     = null;
+    private volatile Set<String>              cities     = null;
     /** First names */
-    private Set<String>                       firstnames = null;
+    private volatile Set<String>              firstnames = null;
     /** Last names */
-    private Set<String>                       lastnames  = null;
+    private volatile Set<String>              lastnames  = null;
     /** States */
-    private Set<String>                       states     = null;
+    private volatile Set<String>              states     = null;
     /** Zip codes */
-    private Set<String>                       zipcodes   = null;
+    private volatile Set<String>              zipcodes   = null;
     /** Labels */
     private Map<String, Map<String, Integer>> labels     = null;
                                                          
@@ -139,7 +140,11 @@ public abstract class HIPAAConstants {
     /** Cities */
     private Set<String> getCities() {
         if (cities == null) {
-            cities = load("cities.csv");
+            synchronized (this) {
+                if (cities == null) {
+                    cities = load("cities.csv");
+                }
+            }
         }
         return cities;
     }
@@ -147,7 +152,11 @@ public abstract class HIPAAConstants {
     /** First names */
     private Set<String> getFirstnames() {
         if (firstnames == null) {
-            firstnames = load("firstnames.csv");
+            synchronized (this) {
+                if (firstnames == null) {
+                    firstnames = load("firstnames.csv");
+                }
+            }
         }
         return firstnames;
     }
@@ -155,7 +164,11 @@ public abstract class HIPAAConstants {
     /** Last names */
     private Set<String> getLastnames() {
         if (lastnames == null) {
-            lastnames = load("lastnames.csv");
+            synchronized (this) {
+                if (lastnames == null) {
+                    lastnames = load("lastnames.csv");
+                }
+            }
         }
         return lastnames;
     }
@@ -203,7 +216,11 @@ public abstract class HIPAAConstants {
     /** States */
     private Set<String> getStates() {
         if (states == null) {
-            states = load("states.csv");
+            synchronized (this) {
+                if (states == null) {
+                    states = load("states.csv");
+                }
+            }
         }
         return states;
     }
@@ -211,7 +228,11 @@ public abstract class HIPAAConstants {
     /** Zip codes */
     private Set<String> getZipcodes() {
         if (zipcodes == null) {
-            zipcodes = load("zipcodes.csv");
+            synchronized (this) {
+                if (zipcodes == null) {
+                    zipcodes = load("zipcodes.csv");
+                }
+            }
         }
         return zipcodes;
     }
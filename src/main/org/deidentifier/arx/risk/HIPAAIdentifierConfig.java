@@ -111,4 +111,14 @@ class HIPAAIdentifierConfig {
             return null;
         }
     }
+
+    /**
+     * Returns false if values which contain only the given classes of characters can never match
+     * 
+     * @param characters
+     * @return
+     */
+    boolean isCandidate(int characters) {
+        return matcherValue != null && matcherValue.isCandidate(characters);
+    }
 }
@@ -20,7 +20,6 @@ package org.deidentifier.arx.risk;
 import java.util.Calendar;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.commons.validator.routines.CalendarValidator;
@@ -50,6 +49,11 @@ abstract class HIPAAMatcherAttributeValue {
         HIPAAMatcherAge(HIPAAConstants constants) {
             super(constants);
         }
+
+        @Override
+        public boolean isCandidate(int characters) {
+            return (characters & DIGIT) != 0 && (characters & LETTER) == 0;
+        }
         
         @Override
         public boolean matches(String value) {
@@ -100,6 +104,11 @@ abstract class HIPAAMatcherAttributeValue {
         HIPAAMatcherDate(HIPAAConstants constants) {
             super(constants);
         }
+
+        @Override
+        public boolean isCandidate(int characters) {
+            return (characters & DIGIT) != 0;
+        }
         
         @Override
         public boolean matches(String value) {
@@ -163,6 +172,11 @@ abstract class HIPAAMatcherAttributeValue {
         HIPAAMatcherEMail(HIPAAConstants constants) {
             super(constants);
         }
+
+        @Override
+        public boolean isCandidate(int characters) {
+            return (characters & AT) != 0;
+        }
         
         @Override
         public boolean matches(String value) {
@@ -226,6 +240,11 @@ abstract class HIPAAMatcherAttributeValue {
         HIPAAMatcherIP(HIPAAConstants constants) {
             super(constants);
         }
+
+        @Override
+        public boolean isCandidate(int characters) {
+            return (characters & (DOT | COLON)) != 0;
+        }
         
         @Override
         public boolean matches(String value) {
@@ -263,6 +282,11 @@ abstract class HIPAAMatcherAttributeValue {
         HIPAAMatcherSSN() {
             super("[0-9]{3}-[0-9]{2}-[0-9]{4}|[0-9]{9}");
         }
+
+        @Override
+        public boolean isCandidate(int characters) {
+            return (characters & DIGIT) != 0 && (characters & LETTER) == 0;
+        }
     }
     /**
      * Pattern which matches a state with a predefined list of states
@@ -290,17 +314,16 @@ abstract class HIPAAMatcherAttributeValue {
      * @author Florian Kohlmayer, Fabian Prasser, David Gassmann
      */
     static abstract class HIPAAMatcherString extends HIPAAMatcherAttributeValue {
-        Matcher matcher;
+        Pattern pattern;
         
         HIPAAMatcherString(String regex) {
             super(null);
-            Pattern pattern = Pattern.compile(regex);
-            matcher = pattern.matcher("");
+            pattern = Pattern.compile(regex);
         }
         
         @Override
         public boolean matches(String value) {
-            return matcher.reset(value).matches();
+            return pattern.matcher(value).matches();
         }
     }
     
@@ -317,6 +340,11 @@ abstract class HIPAAMatcherAttributeValue {
         HIPAAMatcherURL(HIPAAConstants constants) {
             super(constants);
         }
+
+        @Override
+        public boolean isCandidate(int characters) {
+            return (characters & COLON) != 0;
+        }
         
         @Override
         public boolean matches(String value) {
@@ -377,6 +405,11 @@ abstract class HIPAAMatcherAttributeValue {
             zipCodes.add("890");
             zipCodes.add("893");
         }
+
+        @Override
+        public boolean isCandidate(int characters) {
+            return (characters & DIGIT) != 0;
+        }
         
         @Override
         public boolean matches(String value) {
@@ -391,6 +424,41 @@ abstract class HIPAAMatcherAttributeValue {
         }
     }
 
+    /** Character class: digits */
+    static final int               DIGIT  = 1;
+    /** Character class: letters */
+    static final int               LETTER = 1 << 1;
+    /** Character class: at signs */
+    static final int               AT     = 1 << 2;
+    /** Character class: dots */
+    static final int               DOT    = 1 << 3;
+    /** Character class: colons */
+    static final int               COLON  = 1 << 4;
+
+    /**
+     * Returns the classes of the characters which are contained in the given value
+     * @param value
+     * @return
+     */
+    static int getCharacters(String value) {
+        int result = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (Character.isDigit(c)) {
+                result |= DIGIT;
+            } else if (Character.isLetter(c)) {
+                result |= LETTER;
+            } else if (c == '@') {
+                result |= AT;
+            } else if (c == '.') {
+                result |= DOT;
+            } else if (c == ':') {
+                result |= COLON;
+            }
+        }
+        return result;
+    }
+
     /** Constants*/
     protected final HIPAAConstants constants;
 
@@ -402,6 +470,16 @@ abstract class HIPAAMatcherAttributeValue {
         this.constants = constants;
     }
     
+    /**
+     * Returns false if values which contain only the given classes of characters can never match.
+     * This is used to skip matchers without evaluating them.
+     * @param characters
+     * @return
+     */
+    public boolean isCandidate(int characters) {
+        return true;
+    }
+
     /**
      * Returns true if the value matches the given Pattern.
      * @param value
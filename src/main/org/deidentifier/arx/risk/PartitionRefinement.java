@@ -0,0 +1,292 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.risk;
+
+import java.util.Arrays;
+
+import org.deidentifier.arx.DataHandleInternal;
+import org.deidentifier.arx.common.GroupifyEncoded;
+import org.deidentifier.arx.common.WrappedBoolean;
+import org.deidentifier.arx.exceptions.ComputationInterruptedException;
+
+import com.carrotsearch.hppc.IntIntOpenHashMap;
+import com.carrotsearch.hppc.LongIntOpenHashMap;
+
+/**
+ * Partitions the records of a handle into equivalence classes with respect to sets of attributes.
+ * The partition for a set of attributes is derived by refining the partition for a subset with
+ * the codes of the remaining attribute, which means that the values of the subset are not
+ * processed again. Suppressed records are ignored. Instances are not thread-safe, but instances
+ * for use in other threads can be obtained via {@link #fork()}.
+ *
+ * @author Fabian Prasser
+ */
+class PartitionRefinement {
+
+    /**
+     * A partition of the records into equivalence classes
+     *
+     * @author Fabian Prasser
+     */
+    static class Partition {
+
+        /** The class of each record */
+        private final int[] classes;
+
+        /** The size of each class */
+        private int[]       sizes;
+
+        /** The number of classes */
+        private int         size;
+
+        /**
+         * Creates a new instance
+         *
+         * @param records
+         */
+        private Partition(int records) {
+            this.classes = new int[records];
+            this.sizes = new int[16];
+        }
+
+        /**
+         * Returns the distribution of class sizes
+         *
+         * @return
+         */
+        IntIntOpenHashMap getDistribution() {
+            IntIntOpenHashMap result = new IntIntOpenHashMap();
+            for (int i = 0; i < size; i++) {
+                result.putOrAdd(sizes[i], 1, 1);
+            }
+            return result;
+        }
+
+        /**
+         * Returns whether each record forms a class of its own, in which case the partition cannot
+         * be refined any further
+         *
+         * @return
+         */
+        boolean isDiscrete() {
+            return size == classes.length;
+        }
+
+        /**
+         * Creates a new class
+         *
+         * @return
+         */
+        private int add() {
+            if (size == sizes.length) {
+                sizes = Arrays.copyOf(sizes, size * 2);
+            }
+            sizes[size] = 0;
+            return size++;
+        }
+    }
+
+    /** The handle */
+    private final DataHandleInternal handle;
+
+    /** The columns */
+    private final int[]              columns;
+
+    /** Canonical codes, indexed by column */
+    private final int[][]            canonical;
+
+    /** The records which are not suppressed */
+    private final int[]              records;
+
+    /** Stop flag */
+    private final WrappedBoolean     stop;
+
+    /** Lookup table from keys to classes plus one, used if the keys are small */
+    private int[]                    table;
+
+    /** Keys which have been used in the lookup table */
+    private int[]                    keys;
+
+    /** Map from keys to classes, used if the keys are large */
+    private LongIntOpenHashMap       map;
+
+    /**
+     * Creates a new instance
+     *
+     * @param handle
+     * @param columns
+     * @param stop
+     */
+    PartitionRefinement(DataHandleInternal handle, int[] columns, WrappedBoolean stop) {
+
+        // Store
+        this.handle = handle;
+        this.columns = columns;
+        this.stop = stop;
+
+        // Canonical codes, which match equality of values
+        this.canonical = new int[columns.length][];
+        for (int i = 0; i < columns.length; i++) {
+            canonical[i] = GroupifyEncoded.getCanonicalCodes(handle.getDictionary(columns[i]));
+        }
+
+        // Records which are not suppressed
+        int rows = handle.getNumRows();
+        int count = 0;
+        for (int row = 0; row < rows; row++) {
+            if (!handle.isOutlier(row)) {
+                count++;
+            }
+        }
+        this.records = new int[count];
+        count = 0;
+        for (int row = 0; row < rows; row++) {
+            if (!handle.isOutlier(row)) {
+                records[count++] = row;
+            }
+            checkInterrupt(row);
+        }
+    }
+
+    /**
+     * Creates a new instance which shares all data with the given instance
+     *
+     * @param other
+     */
+    private PartitionRefinement(PartitionRefinement other) {
+        this.handle = other.handle;
+        this.columns = other.columns;
+        this.canonical = other.canonical;
+        this.records = other.records;
+        this.stop = other.stop;
+    }
+
+    /**
+     * Returns a new partition, which can be used as a target
+     *
+     * @return
+     */
+    Partition create() {
+        return new Partition(records.length);
+    }
+
+    /**
+     * Returns an instance which can be used in another thread
+     *
+     * @return
+     */
+    PartitionRefinement fork() {
+        return new PartitionRefinement(this);
+    }
+
+    /**
+     * Stores the partition for the empty set of attributes, in which all records form one class
+     *
+     * @param target
+     */
+    void getRoot(Partition target) {
+        target.size = 0;
+        if (records.length != 0) {
+            target.add();
+            target.sizes[0] = records.length;
+        }
+        Arrays.fill(target.classes, 0);
+    }
+
+    /**
+     * Refines the given partition with the column with the given index and stores the result
+     *
+     * @param parent
+     * @param index
+     * @param target
+     */
+    void refine(Partition parent, int index, Partition target) {
+
+        // Prepare
+        int column = columns[index];
+        int[] codes = canonical[index];
+        int radix = codes.length;
+        long range = (long) parent.size * (long) radix;
+        target.size = 0;
+
+        // Small keys
+        if (range <= Math.max(2L * records.length, 1 << 16)) {
+
+            // Prepare
+            if (table == null || table.length < range) {
+                table = new int[(int) Math.max(2L * records.length, 1 << 16)];
+                keys = new int[records.length + 1];
+            }
+
+            // Refine
+            for (int i = 0; i < records.length; i++) {
+                int key = parent.classes[i] * radix + codes[handle.getEncodedValue(records[i], column)];
+                int group = table[key] - 1;
+                if (group == -1) {
+                    group = target.add();
+                    table[key] = group + 1;
+                    keys[group] = key;
+                }
+                target.sizes[group]++;
+                target.classes[i] = group;
+                checkInterrupt(i);
+            }
+
+            // Reset table
+            for (int i = 0; i < target.size; i++) {
+                table[keys[i]] = 0;
+            }
+
+        // Large keys
+        } else {
+
+            // Prepare
+            if (map == null) {
+                map = new LongIntOpenHashMap();
+            } else {
+                map.clear();
+            }
+
+            // Refine
+            for (int i = 0; i < records.length; i++) {
+                long key = (long) parent.classes[i] * radix + codes[handle.getEncodedValue(records[i], column)];
+                int group;
+                if (map.containsKey(key)) {
+                    group = map.lget();
+                } else {
+                    group = target.add();
+                    map.put(key, group);
+                }
+                target.sizes[group]++;
+                target.classes[i] = group;
+                checkInterrupt(i);
+            }
+        }
+    }
+
+    /**
+     * Checks for interrupts
+     *
+     * @param iteration
+     */
+    private void checkInterrupt(int iteration) {
+        if ((iteration & 0xFFF) == 0 && stop.value) {
+            throw new ComputationInterruptedException();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.risk;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.deidentifier.arx.ARXPopulationModel;
+import org.deidentifier.arx.risk.RiskModelPopulationUniqueness.PopulationUniquenessModel;
+
+/**
+ * A bounded cache for estimates of population uniqueness, which are identified by the population
+ * model and the histogram of class sizes. If the cache is full, the least recently used entry is
+ * evicted. As estimates only depend on the key, the results do not depend on the order in which
+ * histograms are analyzed. All estimates in a cache must have been computed with the same solver
+ * configuration. Instances are thread-safe.
+ *
+ * @author Fabian Prasser
+ */
+public class PopulationUniquenessCache {
+
+    /**
+     * An entry in the cache
+     *
+     * @author Fabian Prasser
+     */
+    static class Entry {
+
+        /** The population size */
+        private final double   populationSize;
+
+        /** The histogram */
+        private final int[]    histogram;
+
+        /** Hash code */
+        private final int      hashCode;
+
+        /** Estimate */
+        private double         numUniquesZayatz = -1d;
+
+        /** Estimate */
+        private double         numUniquesSNB    = -1d;
+
+        /** Estimate */
+        private double         numUniquesPitman = -1d;
+
+        /**
+         * Creates a new instance
+         *
+         * @param model
+         * @param histogram
+         */
+        private Entry(ARXPopulationModel model, RiskModelHistogram histogram) {
+            this.populationSize = model.getPopulationSize();
+            this.histogram = histogram.getHistogram();
+            this.hashCode = 31 * Double.valueOf(populationSize).hashCode() + Arrays.hashCode(this.histogram);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null || getClass() != obj.getClass()) return false;
+            Entry other = (Entry) obj;
+            return populationSize == other.populationSize && Arrays.equals(histogram, other.histogram);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /** Default capacity */
+    public static final int                  DEFAULT_CAPACITY = 1000;
+
+    /** The entries */
+    private final LinkedHashMap<Entry, Entry> entries;
+
+    /**
+     * Creates a new instance with the default capacity
+     */
+    public PopulationUniquenessCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new instance
+     *
+     * @param capacity The maximal number of entries
+     */
+    public PopulationUniquenessCache(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.entries = new LinkedHashMap<Entry, Entry>(16, 0.75f, true) {
+
+            /** SVUID */
+            private static final long serialVersionUID = -1290463513516236711L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Entry, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the number of entries
+     *
+     * @return
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the entry for the given population model and histogram. Creates a new entry, if there
+     * is none.
+     *
+     * @param model
+     * @param histogram
+     * @return
+     */
+    synchronized Entry getEntry(ARXPopulationModel model, RiskModelHistogram histogram) {
+        Entry entry = new Entry(model, histogram);
+        Entry result = entries.get(entry);
+        if (result == null) {
+            entries.put(entry, entry);
+            result = entry;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the cached estimate for the given model, -1 if there is none
+     *
+     * @param entry
+     * @param model
+     * @return
+     */
+    synchronized double getEstimate(Entry entry, PopulationUniquenessModel model) {
+        switch (model) {
+        case ZAYATZ:
+            return entry.numUniquesZayatz;
+        case SNB:
+            return entry.numUniquesSNB;
+        case PITMAN:
+            return entry.numUniquesPitman;
+        default:
+            return -1d;
+        }
+    }
+
+    /**
+     * Stores an estimate
+     *
+     * @param entry
+     * @param model
+     * @param estimate
+     */
+    synchronized void setEstimate(Entry entry, PopulationUniquenessModel model, double estimate) {
+        switch (model) {
+        case ZAYATZ:
+            entry.numUniquesZayatz = estimate;
+            break;
+        case SNB:
+            entry.numUniquesSNB = estimate;
+            break;
+        case PITMAN:
+            entry.numUniquesPitman = estimate;
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown model");
+        }
+    }
+}
@@ -174,7 +174,23 @@ public class RiskEstimateBuilder {
      */
     public RiskModelAttributes getAttributeRisks() {
         progress.value = 0;
-        return new RiskModelAttributes(this.population, this.handle, this.identifiers, this.stop, progress, this.solverconfig, this.arxconfig);
+        return new RiskModelAttributes(this.handle, this.identifiers, this.stop, progress);
+    }
+
+    /**
+     * Returns a class providing access to an analysis of the most identifying combinations of
+     * potential quasi-identifiers using the concepts of alpha distinction and alpha separation.
+     * This can be used to analyze large numbers of attributes.
+     *
+     * @param maxSize Maximal number of attributes in a combination
+     * @param threshold Combinations with an alpha distinction of at least this threshold are
+     *                  reported, but they are not extended with further attributes
+     * @param limit Maximal number of combinations to return
+     * @return the RiskModelAttributes data from risk analysis
+     */
+    public RiskModelAttributes getAttributeRisks(int maxSize, double threshold, int limit) {
+        progress.value = 0;
+        return new RiskModelAttributes(this.handle, this.identifiers, this.stop, progress, maxSize, threshold, limit);
     }
 
     /**
@@ -207,6 +223,19 @@ public class RiskEstimateBuilder {
         return new RiskModelHIPAASafeHarbor().getMatches(handle, threshold, stop);
     }
 
+    /**
+     * Returns the a set of potential HIPAA identifiers. Values are matched with the
+     * given confidence threshold. For columns with more distinct values than the given
+     * sample size, values are matched on an evenly spaced sample of distinct values.
+     *
+     * @param threshold Confidence threshold
+     * @param sampleSize Maximal number of distinct values per column
+     * @return
+     */
+    public HIPAAIdentifierMatch[] getHIPAAIdentifiers(double threshold, int sampleSize) {
+        return new RiskModelHIPAASafeHarbor().getMatches(handle, threshold, sampleSize, stop);
+    }
+
     /**
      * Returns an interruptible instance of this object.
      *
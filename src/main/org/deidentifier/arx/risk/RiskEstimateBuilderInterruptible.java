@@ -53,6 +53,25 @@ public class RiskEstimateBuilderInterruptible {
         }
     }
 
+    /**
+     * Returns a class providing access to an analysis of the most identifying combinations of
+     * potential quasi-identifiers using the concepts of alpha distinction and alpha separation.
+     *
+     * @param maxSize Maximal number of attributes in a combination
+     * @param threshold Combinations with an alpha distinction of at least this threshold are
+     *                  reported, but they are not extended with further attributes
+     * @param limit Maximal number of combinations to return
+     * @return the RiskModelAttributes data from risk analysis
+     * @throws InterruptedException
+     */
+    public RiskModelAttributes getAttributeRisks(int maxSize, double threshold, int limit) throws InterruptedException {
+        try {
+            return parent.getAttributeRisks(maxSize, threshold, limit);
+        } catch (ComputationInterruptedException e) {
+            throw new InterruptedException("Computation interrupted");
+        }
+    }
+
     /**
      * Returns a model of the equivalence classes in this data set
      * 
@@ -79,6 +98,23 @@ public class RiskEstimateBuilderInterruptible {
             throw new InterruptedException("Computation interrupted");
         }
     }
+
+    /**
+     * Returns a class providing access to the identifier HIPAA identifiers. Values are matched
+     * with the given confidence threshold on at most the given number of distinct values per column.
+     * 
+     * @param threshold
+     * @param sampleSize
+     * @return
+     * @throws InterruptedException
+     */
+    public HIPAAIdentifierMatch[] getHIPAAIdentifiers(double threshold, int sampleSize) throws InterruptedException {
+        try {
+            return parent.getHIPAAIdentifiers(threshold, sampleSize);
+        } catch (ComputationInterruptedException e) {
+            throw new InterruptedException("Computation interrupted");
+        }
+    }
     
     /**
      * Returns a class providing population-based uniqueness estimates
@@ -21,25 +21,29 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.deidentifier.arx.ARXConfiguration;
-import org.deidentifier.arx.ARXPopulationModel;
-import org.deidentifier.arx.ARXSolverConfiguration;
 import org.deidentifier.arx.DataHandleInternal;
+import org.deidentifier.arx.common.ParallelExecution;
 import org.deidentifier.arx.common.WrappedBoolean;
 import org.deidentifier.arx.common.WrappedInteger;
 import org.deidentifier.arx.exceptions.ComputationInterruptedException;
+import org.deidentifier.arx.risk.PartitionRefinement.Partition;
 
 /**
  * A class for analyzing attribute-related risks. Calculates alpha-distinction and
  * alpha separation as described in R. Motwani et al.
  * "Efficient algorithms for masking and finding quasi-identifiers" Proc. VLDB Conf., 2007.
- *
+ * <br>
+ * Combinations of attributes are enumerated depth-first, such that the equivalence classes of
+ * each combination are derived by refining the classes of its prefix. Only the partitions on the
+ * current path are kept in memory. Subtrees are processed in parallel. The search can be
+ * restricted to small combinations, to the most identifying combinations and it can skip
+ * extensions of combinations which are already identifying enough.
  *
  * @author Fabian Prasser
  * @author Maximilian Zitzmann
@@ -65,20 +69,13 @@ public class RiskModelAttributes {
          * Creates a new instance
          *
          * @param identifier
+         * @param histogram
          */
-        private QuasiIdentifierRisk(List<String> identifier) {
+        private QuasiIdentifierRisk(List<String> identifier, RiskModelHistogram histogram) {
 
             // Store identifier
             this.identifier = identifier;
 
-            // Calculate distribution of class sizes
-            RiskModelHistogram histogram = new RiskEstimateBuilder(population,
-                                                                   handle,
-                                                                   new HashSet<String>(identifier),
-                                                                   stop,
-                                                                   solverconfig,
-                                                                   arxconfig).getEquivalenceClassModel();
-
             // Calculate distinction and separation
             this.alphaDistinction = getAlphaDistinction(histogram);
             this.alphaSeparation = getAlphaSeparation(histogram);
@@ -136,82 +133,104 @@ public class RiskModelAttributes {
             return alphaSeparation;
         }
     }
+    /** Orders quasi-identifiers from the most to the least identifying */
+    private static final Comparator<QuasiIdentifierRisk> IDENTIFYING = new Comparator<QuasiIdentifierRisk>() {
+        @Override
+        public int compare(QuasiIdentifierRisk o1, QuasiIdentifierRisk o2) {
+            int cmp = Double.compare(o2.alphaDistinction, o1.alphaDistinction);
+            if (cmp != 0) {
+                return cmp;
+            }
+            cmp = Double.compare(o2.alphaSeparation, o1.alphaSeparation);
+            if (cmp != 0) {
+                return cmp;
+            }
+            cmp = Integer.compare(o1.identifier.size(), o2.identifier.size());
+            if (cmp != 0) {
+                return cmp;
+            }
+            return o1.identifier.toString().compareTo(o2.identifier.toString());
+        }
+    };
+
     /** Stop flag */
     private final WrappedBoolean        stop;
     /** Results */
     private final QuasiIdentifierRisk[] risks;
-    /** Just needed for creating risk models */
-    private ARXPopulationModel          population;
-    /** Data handle */
-    private DataHandleInternal          handle;
-    /** Just needed for creating risk models */
-    private ARXSolverConfiguration      solverconfig;
-    /** Just needed for creating risk models */
-    private ARXConfiguration            arxconfig;
+    /** The attributes, ordered by column index */
+    private final List<String>          attributes;
+    /** Maximal number of attributes in a combination */
+    private final int                   maxSize;
+    /** Combinations with an alpha distinction of at least this threshold are not extended */
+    private final double                threshold;
+    /** Maximal number of results */
+    private final int                   limit;
+
+    /**
+     * Creates a new instance, which analyzes all combinations of attributes
+     * @param handle
+     * @param identifiers
+     * @param stop
+     * @param percentageDone
+     */
+    RiskModelAttributes(final DataHandleInternal handle,
+                        final Set<String> identifiers,
+                        final WrappedBoolean stop,
+                        final WrappedInteger percentageDone) {
+        this(handle, identifiers, stop, percentageDone, identifiers.size(), Double.POSITIVE_INFINITY, Integer.MAX_VALUE);
+    }
 
     /**
      * Creates a new instance
-     * @param population
      * @param handle
      * @param identifiers
      * @param stop
      * @param percentageDone
-     * @param solverconfig
-     * @param arxconfig
+     * @param maxSize Maximal number of attributes in a combination
+     * @param threshold Combinations with an alpha distinction of at least this threshold are reported,
+     *                  but they are not extended with further attributes
+     * @param limit Maximal number of results. The most identifying combinations are returned.
      */
-    RiskModelAttributes(final ARXPopulationModel population,
-                        final DataHandleInternal handle,
+    RiskModelAttributes(final DataHandleInternal handle,
                         final Set<String> identifiers,
                         final WrappedBoolean stop,
                         final WrappedInteger percentageDone,
-                        final ARXSolverConfiguration solverconfig,
-                        final ARXConfiguration arxconfig) {
+                        final int maxSize,
+                        final double threshold,
+                        final int limit) {
+        
+        // Check
+        if (maxSize < 1) { throw new IllegalArgumentException("Maximal size must be at least 1"); }
+        if (limit < 1) { throw new IllegalArgumentException("Limit must be at least 1"); }
         
-        this.population = population;
-        this.handle = handle;
         this.stop = stop;
-        this.solverconfig = solverconfig;
-        this.arxconfig = arxconfig;
-
-        // Find order list of qis
-        List<List<String>> qis = new ArrayList<>();
-        Set<Set<String>> powerset = getPowerSet(identifiers);
-        for (Set<String> set : powerset) {
-            
-            // Exclude empty set
-            if (!set.isEmpty()) {
-                
-                // Create and add
-                List<String> qi = new ArrayList<String>(set);
-                qis.add(qi);
-                
-                // Sort by column index
-                Collections.sort(qi, new Comparator<String>(){
-                    @Override
-                    public int compare(String o1, String o2) {
-                        int index1 = handle.getColumnIndexOf(o1);
-                        int index2 = handle.getColumnIndexOf(o2);
-                        return new Integer(index1).compareTo(index2);
-                    }
-                });
+        this.maxSize = Math.min(maxSize, identifiers.size());
+        this.threshold = threshold;
+        this.limit = limit;
+
+        // Order attributes by column index
+        this.attributes = new ArrayList<String>(identifiers);
+        Collections.sort(attributes, new Comparator<String>(){
+            @Override
+            public int compare(String o1, String o2) {
+                int index1 = handle.getColumnIndexOf(o1);
+                int index2 = handle.getColumnIndexOf(o2);
+                return Integer.compare(index1, index2);
             }
+        });
+        int[] columns = new int[attributes.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = handle.getColumnIndexOf(attributes.get(i));
         }
         
-        // Compute risk estimates for all elements in the power set
-        Map<List<String>, QuasiIdentifierRisk> scores = new HashMap<>();
-        int done = 0;
-        for (List<String> qi : qis) {
-            checkInterrupt();
-            scores.put(qi, new QuasiIdentifierRisk(qi));
-            percentageDone.value = (int) Math.round((double) done++ / (double) (powerset.size() - 1) * 100d);
+        // Compute risk estimates for all combinations
+        List<QuasiIdentifierRisk> scores = new ArrayList<QuasiIdentifierRisk>();
+        if (!attributes.isEmpty()) {
+            scores = getRisks(new PartitionRefinement(handle, columns, stop), percentageDone);
         }
 
         // Now create sorted array
-        risks = new QuasiIdentifierRisk[scores.size()];
-        int idx = 0;
-        for (QuasiIdentifierRisk value : scores.values()) {
-            risks[idx++] = value;
-        }
+        risks = scores.toArray(new QuasiIdentifierRisk[scores.size()]);
         Arrays.sort(risks);
     }
 
@@ -309,29 +328,133 @@ public class RiskModelAttributes {
     }
 
     /**
-     * Returns the power set
+     * Returns the partition for a combination which is extended with the given attribute
      *
-     * @param originalSet
+     * @param engine
+     * @param buffers
+     * @param partition The partition for the combination
+     * @param index The attribute
+     * @param size The size of the extended combination
      * @return
      */
-    private <T> Set<Set<T>> getPowerSet(Set<T> originalSet) {
+    private Partition getPartition(PartitionRefinement engine, Partition[] buffers, Partition partition, int index, int size) {
+        
+        // Refinement does not change anything
+        if (partition.isDiscrete()) {
+            return partition;
+        }
+        
+        // Refine
+        if (buffers[size] == null) {
+            buffers[size] = engine.create();
+        }
+        engine.refine(partition, index, buffers[size]);
+        return buffers[size];
+    }
+
+    /**
+     * Evaluates the given combination and all of its extensions with attributes which follow the
+     * last attribute of the combination
+     *
+     * @param engine
+     * @param buffers Partitions which can be used for extensions, indexed by size
+     * @param partition The partition for the combination
+     * @param combination
+     * @param size
+     * @param results
+     */
+    private void getRisks(PartitionRefinement engine,
+                          Partition[] buffers,
+                          Partition partition,
+                          int[] combination,
+                          int size,
+                          PriorityQueue<QuasiIdentifierRisk> results) {
+
+        // Evaluate
         checkInterrupt();
-        Set<Set<T>> sets = new HashSet<Set<T>>();
-        if (originalSet.isEmpty()) {
-            sets.add(new HashSet<T>());
-            return sets;
+        List<String> identifier = new ArrayList<String>();
+        for (int i = 0; i < size; i++) {
+            identifier.add(attributes.get(combination[i]));
         }
-        List<T> list = new ArrayList<T>(originalSet);
-        T head = list.get(0);
-        Set<T> rest = new HashSet<T>(list.subList(1, list.size()));
-        for (Set<T> set : getPowerSet(rest)) {
-            checkInterrupt();
-            Set<T> newSet = new HashSet<T>();
-            newSet.add(head);
-            newSet.addAll(set);
-            sets.add(newSet);
-            sets.add(set);
+        QuasiIdentifierRisk risk = new QuasiIdentifierRisk(identifier, new RiskModelHistogram(partition.getDistribution()));
+        results.add(risk);
+        if (results.size() > limit) {
+            results.poll();
+        }
+
+        // Extend
+        if (size == maxSize || risk.alphaDistinction >= threshold) {
+            return;
+        }
+        for (int index = combination[size - 1] + 1; index < attributes.size(); index++) {
+            combination[size] = index;
+            getRisks(engine, buffers, getPartition(engine, buffers, partition, index, size + 1), combination, size + 1, results);
+        }
+    }
+
+    /**
+     * Evaluates the given attribute and all combinations which start with it. The partition for
+     * the attribute is computed once and refined for all of its extensions.
+     *
+     * @param engine
+     * @param first
+     * @return
+     */
+    private List<QuasiIdentifierRisk> getRisks(PartitionRefinement engine, int first) {
+
+        // Prepare
+        PriorityQueue<QuasiIdentifierRisk> results = new PriorityQueue<QuasiIdentifierRisk>(11, Collections.reverseOrder(IDENTIFYING));
+        Partition[] buffers = new Partition[maxSize + 1];
+        buffers[0] = engine.create();
+        engine.getRoot(buffers[0]);
+        int[] combination = new int[maxSize];
+        combination[0] = first;
+
+        // Evaluate
+        getRisks(engine, buffers, getPartition(engine, buffers, buffers[0], first, 1), combination, 1, results);
+        return new ArrayList<QuasiIdentifierRisk>(results);
+    }
+
+    /**
+     * Evaluates all combinations, in parallel if possible
+     *
+     * @param engine
+     * @param percentageDone
+     * @return
+     */
+    private List<QuasiIdentifierRisk> getRisks(final PartitionRefinement engine, final WrappedInteger percentageDone) {
+
+        // Progress is weighted by the number of attributes which can follow the first attribute
+        final int total = maxSize > 1 ? attributes.size() * (attributes.size() + 1) / 2 : attributes.size();
+
+        // One task per first attribute, which require engines of their own when executed in parallel
+        final boolean fork = ParallelExecution.getNumThreads() > 1;
+        final AtomicInteger done = new AtomicInteger();
+        List<Callable<List<QuasiIdentifierRisk>>> tasks = new ArrayList<Callable<List<QuasiIdentifierRisk>>>();
+        for (int index = 0; index < attributes.size(); index++) {
+            final int first = index;
+            final int weight = maxSize > 1 ? attributes.size() - first : 1;
+            tasks.add(new Callable<List<QuasiIdentifierRisk>>() {
+                @Override
+                public List<QuasiIdentifierRisk> call() throws Exception {
+                    List<QuasiIdentifierRisk> result = getRisks(fork ? engine.fork() : engine, first);
+                    percentageDone.value = (int) Math.round((double) done.addAndGet(weight) / (double) total * 100d);
+                    return result;
+                }
+            });
+        }
+
+        // Execute
+        List<QuasiIdentifierRisk> results = new ArrayList<QuasiIdentifierRisk>();
+        for (List<QuasiIdentifierRisk> result : ParallelExecution.execute(tasks)) {
+            results.addAll(result);
+        }
+
+        // Select the most identifying combinations
+        if (results.size() > limit) {
+            Collections.sort(results, IDENTIFYING);
+            results = new ArrayList<QuasiIdentifierRisk>(results.subList(0, limit));
         }
-        return sets;
+        return results;
     }
 }
\ No newline at end of file
@@ -19,8 +19,10 @@ package org.deidentifier.arx.risk;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.deidentifier.arx.DataHandleInternal;
+import org.deidentifier.arx.common.ParallelExecution;
 import org.deidentifier.arx.common.WrappedBoolean;
 import org.deidentifier.arx.exceptions.ComputationInterruptedException;
 import org.deidentifier.arx.risk.HIPAAIdentifierMatch.HIPAAIdentifier;
@@ -66,63 +68,75 @@ class RiskModelHIPAASafeHarbor {
     public HIPAAIdentifierMatch[] getMatches(DataHandleInternal handle, 
                                              double threshold,
                                              WrappedBoolean stop) {
+        return getMatches(handle, threshold, 0, stop);
+    }
+
+    /**
+     * Returns a list of matches with HIPAA identifiers. Columns are analyzed in parallel. Each
+     * distinct value is analyzed once with all matchers, which are skipped if the characters of
+     * the value rule out a match. Matchers which can no longer reach the threshold are dropped.
+     * 
+     * @param handle
+     * @param threshold
+     * @param sampleSize If positive, the matching of values is performed on at most this
+     *                   number of distinct values per column
+     * @param stop
+     * @return An array of warnings
+     */
+    public HIPAAIdentifierMatch[] getMatches(final DataHandleInternal handle, 
+                                             final double threshold,
+                                             final int sampleSize,
+                                             final WrappedBoolean stop) {
         
         // Prepare
-        List<HIPAAIdentifierMatch> results = new ArrayList<HIPAAIdentifierMatch>();
+        int columns = handle.getNumColumns();
+        List<List<HIPAAIdentifierMatch>> names = new ArrayList<List<HIPAAIdentifierMatch>>();
+        final List<String[]> values = new ArrayList<String[]>();
         
         // Check each attribute
-        for (int column = 0; column < handle.getNumColumns(); column++) {
+        for (int column = 0; column < columns; column++) {
 
             // Init
             String attribute = handle.getAttributeName(column);
-            String[] values = handle.getDistinctValues(column);
+            values.add(getSample(handle.getDistinctValues(column), sampleSize));
             
             // Match attribute name
+            List<HIPAAIdentifierMatch> matches = new ArrayList<HIPAAIdentifierMatch>();
             for (HIPAAIdentifierConfig config : configurations) {
                 if (stop.value) {
                     throw new ComputationInterruptedException();
                 }
                 String match = config.getMatchingAttributeName(attribute);
                 if (match != null) {
-                    results.add(new HIPAAIdentifierMatch(attribute, 
+                    matches.add(new HIPAAIdentifierMatch(attribute, 
                                                          config.getIdentifier(), 
                                                          config.getInstance(),
                                                          MatchType.ATTRIBUTE_NAME, 
                                                          match));
                 }
             }
-            
-            // Match attribute values
-            for (HIPAAIdentifierConfig config : configurations) {
-                int matches = 0;
-                int nonmatches = 0;
-                for (String value : values) {
-                    if (stop.value) {
-                        throw new ComputationInterruptedException();
-                    }
-                    
-                    // Count matching values
-                    if (config.getMatchingAttributeValue(value) != null) {
-                        matches++;
-                    } else {
-                        
-                        // Break if too many non-matching values
-                        nonmatches++;
-                        double nonpercentage = (double)nonmatches / (double)values.length;
-                        if (nonpercentage > 1d - threshold) {
-                            break;
-                        }
-                    }
-                }
-                double percentage = (double)matches / (double)values.length;
-                if (percentage > threshold) {
-                    results.add(new HIPAAIdentifierMatch(attribute, 
-                                                         config.getIdentifier(), 
-                                                         config.getInstance(),
-                                                         MatchType.ATTRIBUTE_VALUE, 
-                                                         String.valueOf(percentage)));
+            names.add(matches);
+        }
+        
+        // Match attribute values
+        List<Callable<List<HIPAAIdentifierMatch>>> tasks = new ArrayList<Callable<List<HIPAAIdentifierMatch>>>();
+        for (int column = 0; column < columns; column++) {
+            final String attribute = handle.getAttributeName(column);
+            final String[] _values = values.get(column);
+            tasks.add(new Callable<List<HIPAAIdentifierMatch>>() {
+                @Override
+                public List<HIPAAIdentifierMatch> call() throws Exception {
+                    return getMatches(attribute, _values, threshold, stop);
                 }
-            }
+            });
+        }
+        List<List<HIPAAIdentifierMatch>> matches = ParallelExecution.execute(tasks);
+        
+        // Collect in the order of the columns
+        List<HIPAAIdentifierMatch> results = new ArrayList<HIPAAIdentifierMatch>();
+        for (int column = 0; column < columns; column++) {
+            results.addAll(names.get(column));
+            results.addAll(matches.get(column));
         }
         
         // Return
@@ -256,5 +270,88 @@ class RiskModelHIPAASafeHarbor {
            
         return configurations;
     }
-    
+
+    /**
+     * Matches the values of an attribute with all configurations
+     * 
+     * @param attribute
+     * @param values
+     * @param threshold
+     * @param stop
+     * @return
+     */
+    private List<HIPAAIdentifierMatch> getMatches(String attribute,
+                                                  String[] values,
+                                                  double threshold,
+                                                  WrappedBoolean stop) {
+
+        // Prepare
+        int size = configurations.size();
+        int[] matches = new int[size];
+        int[] nonmatches = new int[size];
+        boolean[] rejected = new boolean[size];
+        int active = size;
+        
+        // Match each value with all configurations which are still active
+        for (int i = 0; i < values.length && active > 0; i++) {
+            if (stop.value) {
+                throw new ComputationInterruptedException();
+            }
+            String value = values[i];
+            int characters = HIPAAMatcherAttributeValue.getCharacters(value);
+            for (int j = 0; j < size; j++) {
+                if (rejected[j]) {
+                    continue;
+                }
+                
+                // Count matching values
+                HIPAAIdentifierConfig config = configurations.get(j);
+                if (config.isCandidate(characters) && config.getMatchingAttributeValue(value) != null) {
+                    matches[j]++;
+                } else {
+                    
+                    // Reject if too many non-matching values
+                    nonmatches[j]++;
+                    double nonpercentage = (double)nonmatches[j] / (double)values.length;
+                    if (nonpercentage > 1d - threshold) {
+                        rejected[j] = true;
+                        active--;
+                    }
+                }
+            }
+        }
+        
+        // Collect
+        List<HIPAAIdentifierMatch> results = new ArrayList<HIPAAIdentifierMatch>();
+        for (int j = 0; j < size; j++) {
+            HIPAAIdentifierConfig config = configurations.get(j);
+            double percentage = (double)matches[j] / (double)values.length;
+            if (percentage > threshold) {
+                results.add(new HIPAAIdentifierMatch(attribute, 
+                                                     config.getIdentifier(), 
+                                                     config.getInstance(),
+                                                     MatchType.ATTRIBUTE_VALUE, 
+                                                     String.valueOf(percentage)));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns an evenly spaced sample of the given size, or all values if there are not more
+     * 
+     * @param values
+     * @param sampleSize
+     * @return
+     */
+    private String[] getSample(String[] values, int sampleSize) {
+        if (sampleSize <= 0 || values.length <= sampleSize) {
+            return values;
+        }
+        String[] result = new String[sampleSize];
+        for (int i = 0; i < sampleSize; i++) {
+            result[i] = values[(int) ((long) i * values.length / sampleSize)];
+        }
+        return result;
+    }
 }
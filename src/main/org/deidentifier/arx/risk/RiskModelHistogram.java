@@ -17,14 +17,16 @@
 
 package org.deidentifier.arx.risk;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import org.deidentifier.arx.DataHandleInternal;
-import org.deidentifier.arx.common.Groupify;
-import org.deidentifier.arx.common.Groupify.Group;
-import org.deidentifier.arx.common.TupleWrapper;
+import org.deidentifier.arx.common.GroupifyEncoded;
+import org.deidentifier.arx.common.ParallelExecution;
 import org.deidentifier.arx.common.WrappedBoolean;
 import org.deidentifier.arx.common.WrappedInteger;
 import org.deidentifier.arx.exceptions.ComputationInterruptedException;
@@ -38,6 +40,9 @@ import com.carrotsearch.hppc.IntIntOpenHashMap;
  */
 public class RiskModelHistogram {
 
+    /** Minimal number of rows for parallel processing */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
     /** The equivalence classes */
     private int[]  equivalenceClasses;
     /** Summary */
@@ -90,38 +95,29 @@ public class RiskModelHistogram {
         }
         Arrays.sort(indices);
 
-        // Calculate equivalence classes
-        int capacity = handle.getNumRows() / 10;
-        capacity = capacity > 10 ? capacity : 10;
-        Groupify<TupleWrapper> map = new Groupify<TupleWrapper>(capacity);
+        // Calculate equivalence classes from codes. Codes which represent the same value are
+        // mapped to the same canonical code, which matches grouping by values.
+        int[][] canonical = new int[indices.length][];
+        GroupifyEncoded map = GroupifyEncoded.create(handle, indices, canonical);
         int numRows = handle.getNumRows();
-        for (int row = 0; row < numRows; row++) {
-
-            int prog = (int) Math.round((double) row / (double) numRows * factor * 80d);
-            if (prog != progress.value) {
-                progress.value = prog;
-            }
-
-            if (!handle.isOutlier(row)) {
-                TupleWrapper tuple = new TupleWrapper(handle, indices, row, false);
-                map.add(tuple);
-            }
-            if (stop.value) { throw new ComputationInterruptedException(); }
+        int threads = ParallelExecution.getNumThreads();
+        int ranges = numRows < PARALLEL_THRESHOLD || threads <= 1 ? 1 : threads;
+        if (ranges == 1) {
+            getClasses(handle, indices, canonical, map, 0, numRows, stop, progress, factor);
+        } else {
+            getClasses(handle, indices, canonical, map, ranges, stop, progress, factor);
         }
 
         // Group by size
         IntIntOpenHashMap grouped = new IntIntOpenHashMap();
 
-        int i = 0;
         int size = map.size();
-        Group<TupleWrapper> element = map.first();
-        while (element != null) {
-            int prog = (int) Math.round((80d + (double) i++ / (double) size * 20d) * factor);
+        for (int group = 0; group < size; group++) {
+            int prog = (int) Math.round((80d + (double) group / (double) size * 20d) * factor);
             if (prog != progress.value) {
                 progress.value = prog;
             }
-            grouped.putOrAdd(element.getCount(), 1, 1);
-            element = element.next();
+            grouped.putOrAdd(map.getCount(group), 1, 1);
             if (stop.value) { throw new ComputationInterruptedException(); }
         }
 
@@ -216,4 +212,113 @@ public class RiskModelHistogram {
         this.numClasses = numClasses;
         this.avgClassSize = this.numRecords / this.numClasses;
     }
+
+    /**
+     * Adds all records which are not suppressed in the given range of rows to the given classes
+     * 
+     * @param handle
+     * @param indices
+     * @param canonical
+     * @param map
+     * @param from
+     * @param to
+     * @param stop
+     * @param progress Progress is only reported if not null
+     * @param factor
+     */
+    private void getClasses(DataHandleInternal handle,
+                            int[] indices,
+                            int[][] canonical,
+                            GroupifyEncoded map,
+                            int from,
+                            int to,
+                            WrappedBoolean stop,
+                            WrappedInteger progress,
+                            double factor) {
+
+        int numRows = handle.getNumRows();
+        int[] codes = new int[indices.length];
+        for (int row = from; row < to; row++) {
+
+            if (progress != null) {
+                int prog = (int) Math.round((double) row / (double) numRows * factor * 80d);
+                if (prog != progress.value) {
+                    progress.value = prog;
+                }
+            }
+
+            if (!handle.isOutlier(row)) {
+                for (int i = 0; i < indices.length; i++) {
+                    codes[i] = canonical[i][handle.getEncodedValue(row, indices[i])];
+                }
+                map.add(codes, row);
+            }
+            if (((row - from) & 0xFFF) == 0 && stop.value) { throw new ComputationInterruptedException(); }
+        }
+    }
+
+    /**
+     * Adds all records which are not suppressed to the given classes. Ranges of rows are grouped
+     * in parallel and the partial classes are merged afterwards.
+     * 
+     * @param handle
+     * @param indices
+     * @param canonical
+     * @param map
+     * @param ranges
+     * @param stop
+     * @param progress
+     * @param factor
+     */
+    private void getClasses(final DataHandleInternal handle,
+                            final int[] indices,
+                            final int[][] canonical,
+                            GroupifyEncoded map,
+                            int ranges,
+                            final WrappedBoolean stop,
+                            WrappedInteger progress,
+                            final double factor) {
+
+        // Prepare
+        int numRows = handle.getNumRows();
+        final int[] radixes = new int[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            radixes[i] = canonical[i].length;
+        }
+
+        // Partial classes
+        List<Callable<GroupifyEncoded>> tasks = new ArrayList<Callable<GroupifyEncoded>>();
+        for (int i = 0; i < ranges; i++) {
+            final int from = (int) ((long) numRows * i / ranges);
+            final int to = (int) ((long) numRows * (i + 1) / ranges);
+            tasks.add(new Callable<GroupifyEncoded>() {
+                @Override
+                public GroupifyEncoded call() throws Exception {
+                    GroupifyEncoded result = new GroupifyEncoded(radixes, to - from);
+                    getClasses(handle, indices, canonical, result, from, to, stop, null, factor);
+                    return result;
+                }
+            });
+        }
+        List<GroupifyEncoded> partials = ParallelExecution.execute(tasks);
+
+        // Merge in the order of the ranges
+        int[] codes = new int[indices.length];
+        for (int i = 0; i < partials.size(); i++) {
+            GroupifyEncoded partial = partials.get(i);
+            for (int group = 0; group < partial.size(); group++) {
+                int row = partial.getRepresentative(group);
+                for (int j = 0; j < indices.length; j++) {
+                    codes[j] = canonical[j][handle.getEncodedValue(row, indices[j])];
+                }
+                map.add(codes, row, partial.getCount(group));
+            }
+            partials.set(i, null);
+            int prog = (int) Math.round((double) (i + 1) / (double) ranges * factor * 80d);
+            if (prog != progress.value) {
+                progress.value = prog;
+            }
+            if (stop.value) { throw new ComputationInterruptedException(); }
+        }
+    }
 }
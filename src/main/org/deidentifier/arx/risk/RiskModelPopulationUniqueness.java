@@ -18,15 +18,22 @@
 package org.deidentifier.arx.risk;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.deidentifier.arx.ARXPopulationModel;
 import org.deidentifier.arx.ARXSolverConfiguration;
+import org.deidentifier.arx.common.ParallelExecution;
 import org.deidentifier.arx.common.WrappedBoolean;
 import org.deidentifier.arx.common.WrappedInteger;
+import org.deidentifier.arx.risk.PopulationUniquenessCache.Entry;
 
 /**
  * Class for risks based on population uniqueness. It implements Dankar et al.'s
- * decision rule.
+ * decision rule. Estimates which are needed at the same time are computed in parallel,
+ * if more than one thread has been configured for {@link ParallelExecution}.
+ * If a cache is provided, estimates are reused for equal histograms.
  * 
  * @author Fabian Prasser
  */
@@ -66,6 +73,10 @@ public class RiskModelPopulationUniqueness extends RiskModelPopulation {
     private ARXSolverConfiguration    config;
     /** Parameter */
     private WrappedBoolean            stop;
+    /** Cache, may be null */
+    private PopulationUniquenessCache cache;
+    /** Cache entry, may be null */
+    private Entry                     entry;
 
     /**
      * Creates a new instance
@@ -82,6 +93,29 @@ public class RiskModelPopulationUniqueness extends RiskModelPopulation {
              new WrappedBoolean(),
              new WrappedInteger(),
              config,
+             null,
+             false);
+    }
+
+    /**
+     * Creates a new instance, which uses the given cache. The cache must only be used with
+     * the given solver configuration.
+     * 
+     * @param model
+     * @param classes
+     * @param config
+     * @param cache
+     */
+    public RiskModelPopulationUniqueness(ARXPopulationModel model,
+                                         RiskModelHistogram classes,
+                                         ARXSolverConfiguration config,
+                                         PopulationUniquenessCache cache) {
+        this(model,
+             classes,
+             new WrappedBoolean(),
+             new WrappedInteger(),
+             config,
+             cache,
              false);
     }
 
@@ -101,6 +135,27 @@ public class RiskModelPopulationUniqueness extends RiskModelPopulation {
                                   WrappedInteger progress,
                                   ARXSolverConfiguration config,
                                   boolean precompute) {
+        this(model, histogram, stop, progress, config, null, precompute);
+    }
+
+    /**
+     * Creates a new instance
+     * 
+     * @param model
+     * @param histogram
+     * @param stop
+     * @param progress
+     * @param config
+     * @param cache
+     * @param precompute
+     */
+    RiskModelPopulationUniqueness(ARXPopulationModel model,
+                                  RiskModelHistogram histogram,
+                                  WrappedBoolean stop,
+                                  WrappedInteger progress,
+                                  ARXSolverConfiguration config,
+                                  PopulationUniquenessCache cache,
+                                  boolean precompute) {
         super(histogram, model, stop, progress);
 
         // Init
@@ -110,6 +165,7 @@ public class RiskModelPopulationUniqueness extends RiskModelPopulation {
         this.histogram = histogram;
         this.config = config;
         this.stop = stop;
+        this.cache = cache;
 
         // Handle cases where there are no sample uniques
         if (numClassesOfSize1 == 0) {
@@ -122,19 +178,33 @@ public class RiskModelPopulationUniqueness extends RiskModelPopulation {
             return;
         }
 
+        // Retrieve cached estimates
+        if (cache != null) {
+            this.entry = cache.getEntry(model, histogram);
+            this.numUniquesZayatz = cache.getEstimate(entry, PopulationUniquenessModel.ZAYATZ);
+            this.numUniquesSNB = cache.getEstimate(entry, PopulationUniquenessModel.SNB);
+            this.numUniquesPitman = cache.getEstimate(entry, PopulationUniquenessModel.PITMAN);
+        }
+
         // If precomputation (for interruptible builders)
         if (precompute) {
 
-            // Estimate with Zayatz's model
-            getNumUniqueTuplesZayatz();
-            progress.value = 50;
+            // Estimate with all models in parallel, if possible
+            if (!estimateInParallel(PopulationUniquenessModel.ZAYATZ,
+                                    PopulationUniquenessModel.PITMAN,
+                                    PopulationUniquenessModel.SNB)) {
+
+                // Estimate with Zayatz's model
+                getNumUniqueTuplesZayatz();
+                progress.value = 50;
 
-            // Estimate with Pitman's model
-            getNumUniqueTuplesPitman();
-            progress.value = 75;
+                // Estimate with Pitman's model
+                getNumUniqueTuplesPitman();
+                progress.value = 75;
 
-            // Estimate with SNB model
-            getNumUniqueTuplesSNB();
+                // Estimate with SNB model
+                getNumUniqueTuplesSNB();
+            }
 
             // Decision rule by Dankar et al.
             getNumUniqueTuplesDankar();
@@ -216,7 +286,7 @@ public class RiskModelPopulationUniqueness extends RiskModelPopulation {
     public double getNumUniqueTuplesDankar() {
         return getNumUniqueTuplesDankar(true);
     }
-    
+
     /**
      * Estimated number of unique tuples in the population according to Dankar's
      * decision rule
@@ -241,6 +311,7 @@ public class RiskModelPopulationUniqueness extends RiskModelPopulation {
                         dankarModel = PopulationUniquenessModel.ZAYATZ;
                     } 
                 } else {
+                    estimateInParallel(PopulationUniquenessModel.SNB, PopulationUniquenessModel.ZAYATZ);
                     getNumUniqueTuplesSNB();
                     getNumUniqueTuplesZayatz();
                     if (isValid(numUniquesSNB)) {
@@ -274,6 +345,7 @@ public class RiskModelPopulationUniqueness extends RiskModelPopulation {
                                                    histogram,
                                                    config,
                                                    stop).getNumUniques();
+                setEstimate(PopulationUniquenessModel.PITMAN, numUniquesPitman);
             }
         }
         return isValid(numUniquesPitman) ? numUniquesPitman : 0d;
@@ -292,6 +364,7 @@ public class RiskModelPopulationUniqueness extends RiskModelPopulation {
                                              histogram,
                                              config,
                                              stop).getNumUniques();
+                setEstimate(PopulationUniquenessModel.SNB, numUniquesSNB);
             }
         }
         return isValid(numUniquesSNB) ? numUniquesSNB : 0d;
@@ -309,6 +382,7 @@ public class RiskModelPopulationUniqueness extends RiskModelPopulation {
                 numUniquesZayatz = new ModelZayatz(model,
                                                    histogram,
                                                    stop).getNumUniques();
+                setEstimate(PopulationUniquenessModel.ZAYATZ, numUniquesZayatz);
             }
         }
         return isValid(numUniquesZayatz) ? numUniquesZayatz : 0d;
@@ -368,6 +442,56 @@ public class RiskModelPopulationUniqueness extends RiskModelPopulation {
         return getNumUniqueTuplesZayatz() != 0d || numClassesOfSize1 == 0;
     }
 
+    /**
+     * Computes the estimates for the given models in parallel, if there is more than
+     * one estimate missing and more than one thread configured.
+     * 
+     * @param models
+     * @return Whether the estimates have been computed in parallel
+     */
+    private boolean estimateInParallel(PopulationUniquenessModel... models) {
+
+        // Determine missing estimates
+        List<Callable<Double>> tasks = new ArrayList<Callable<Double>>();
+        for (final PopulationUniquenessModel model : models) {
+            if (getEstimate(model) == -1d) {
+                tasks.add(new Callable<Double>() {
+                    @Override
+                    public Double call() throws Exception {
+                        return getNumUniqueTuples(model);
+                    }
+                });
+            }
+        }
+        if (numClassesOfSize1 == 0 || tasks.size() <= 1 || ParallelExecution.getNumThreads() <= 1) {
+            return false;
+        }
+
+        // Estimate
+        ParallelExecution.execute(tasks);
+        return true;
+    }
+
+    /**
+     * Returns the current estimate for the given model, -1 if it has not been computed
+     * 
+     * @param model
+     * @return
+     */
+    private double getEstimate(PopulationUniquenessModel model) {
+        switch (model) {
+        case ZAYATZ:
+            return numUniquesZayatz;
+        case SNB:
+            return numUniquesSNB;
+        case PITMAN:
+            return numUniquesPitman;
+        case DANKAR:
+            return numUniquesDankar;
+        }
+        throw new IllegalArgumentException("Unknown model");
+    }
+
     /**
      * Is an estimate valid?
      * 
@@ -377,4 +501,16 @@ public class RiskModelPopulationUniqueness extends RiskModelPopulation {
     private boolean isValid(double value) {
         return !Double.isNaN(value) && value != 0d;
     }
+
+    /**
+     * Stores an estimate in the cache, if any
+     * 
+     * @param model
+     * @param estimate
+     */
+    private void setEstimate(PopulationUniquenessModel model, double estimate) {
+        if (cache != null) {
+            cache.setEstimate(entry, model, estimate);
+        }
+    }
 }
@@ -18,6 +18,7 @@
 package org.deidentifier.arx.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -29,15 +30,31 @@ import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.mahout.classifier.sgd.L1;
+import org.apache.mahout.classifier.sgd.OnlineLogisticRegression;
+import org.apache.mahout.math.DenseVector;
+import org.apache.mahout.math.Vector;
+import org.apache.mahout.vectorizer.encoders.ConstantValueEncoder;
+import org.apache.mahout.vectorizer.encoders.StaticWordValueEncoder;
 import org.deidentifier.arx.ARXAnonymizer;
 import org.deidentifier.arx.ARXConfiguration;
 import org.deidentifier.arx.ARXLogisticRegressionConfiguration;
+import org.deidentifier.arx.ARXNaiveBayesConfiguration;
 import org.deidentifier.arx.ARXResult;
 import org.deidentifier.arx.AttributeType;
 import org.deidentifier.arx.AttributeType.Hierarchy;
 import org.deidentifier.arx.Data;
+import org.deidentifier.arx.Data.DefaultData;
+import org.deidentifier.arx.DataHandle;
+import org.deidentifier.arx.DataHandleInternal;
 import org.deidentifier.arx.DataType;
 import org.deidentifier.arx.aggregates.StatisticsClassification;
+import org.deidentifier.arx.aggregates.classification.ClassificationDataSpecification;
+import org.deidentifier.arx.aggregates.classification.ClassificationResult;
+import org.deidentifier.arx.aggregates.classification.MultiClassLogisticRegression;
+import org.deidentifier.arx.aggregates.classification.MultiClassLogisticRegressionEncoder;
+import org.deidentifier.arx.aggregates.classification.MultiClassNaiveBayes;
+import org.deidentifier.arx.common.WrappedBoolean;
 import org.deidentifier.arx.criteria.KAnonymity;
 import org.deidentifier.arx.io.CSVHierarchyInput;
 import org.junit.Test;
@@ -52,6 +69,108 @@ public class TestClassification {
     /** Result */
     private ARXResult result;
 
+    /**
+     * Asserts that both results contain the same probabilities for all classes
+     * 
+     * @param specification
+     * @param expected
+     * @param actual
+     */
+    private void assertEqualResults(ClassificationDataSpecification specification,
+                                    ClassificationResult expected,
+                                    ClassificationResult actual) {
+        assertEquals(expected.index(), actual.index());
+        assertEquals(expected.confidence(), actual.confidence(), 0d);
+        for (String clazz : specification.classMap.keySet()) {
+            assertEquals(expected.error(clazz), actual.error(clazz), 0d);
+        }
+    }
+
+    /**
+     * Trains logistic regression on every second record of the given handle with features
+     * encoded by dense vectors, as implemented originally, and with the given classifier.
+     * Asserts that both yield the same probabilities for all records.
+     * 
+     * @param handle
+     * @param specification
+     * @param config
+     * @param classifier
+     */
+    private void assertEqualLogisticRegression(DataHandleInternal handle,
+                                               ClassificationDataSpecification specification,
+                                               ARXLogisticRegressionConfiguration config,
+                                               MultiClassLogisticRegression classifier) {
+        
+        // Reference
+        OnlineLogisticRegression lr = new OnlineLogisticRegression(specification.classMap.size(), config.getVectorLength(), new L1());
+        lr.learningRate(1);
+        lr.alpha(1);
+        lr.lambda(0.000001);
+        lr.stepOffset(10000);
+        lr.decayExponent(0.2);
+        
+        // Train
+        for (int row = 0; row < handle.getNumRows(); row += 2) {
+            int clazz = specification.classMap.get(handle.getValue(row, specification.classIndex, true));
+            lr.train(clazz, getDenseFeatures(handle, specification, config, row));
+            classifier.train(handle, handle, row);
+        }
+        lr.close();
+        classifier.close();
+        
+        // Compare
+        for (int row = 0; row < handle.getNumRows(); row++) {
+            Vector expected = lr.classifyFull(getDenseFeatures(handle, specification, config, row));
+            ClassificationResult actual = classifier.classify(handle, row);
+            for (String clazz : specification.classMap.keySet()) {
+                assertEquals(1d - expected.get(specification.classMap.get(clazz)), actual.error(clazz), 0d);
+            }
+        }
+    }
+
+    /**
+     * Encodes the features of a record with a dense vector, as implemented originally
+     * 
+     * @param handle
+     * @param specification
+     * @param config
+     * @param row
+     * @return
+     */
+    private Vector getDenseFeatures(DataHandleInternal handle,
+                                    ClassificationDataSpecification specification,
+                                    ARXLogisticRegressionConfiguration config,
+                                    int row) {
+        
+        // Prepare
+        DenseVector vector = new DenseVector(config.getVectorLength());
+        new ConstantValueEncoder("intercept").addToVector("1", vector);
+        StaticWordValueEncoder wordEncoder = new StaticWordValueEncoder("feature");
+        
+        // Special case where there are no features
+        if (specification.featureIndices.length == 0) {
+            wordEncoder.addToVector("Feature:1", 1, vector);
+            return vector;
+        }
+        
+        // For each attribute
+        for (int index : specification.featureIndices) {
+            String value = handle.getValue(row, index, true);
+            wordEncoder.addToVector("Attribute-" + index + ":" + value, 1, vector);
+        }
+        return vector;
+    }
+
+    /**
+     * Returns an internal handle for the given handle
+     * 
+     * @param handle
+     * @return
+     */
+    private DataHandleInternal getInternalHandle(DataHandle handle) {
+        return new DataHandleInternal(handle) {};
+    }
+
     /**
      * @return the class
      */
@@ -176,4 +295,114 @@ public class TestClassification {
         assertEquals(7, classResult.getNumClasses(), 0d);
         assertEquals(30162, classResult.getNumMeasurements(), 0d);
     }
+
+    @Test
+    public void testLogisticRegressionEncoder() throws IOException {
+
+        // Data
+        DataHandleInternal handle = getInternalHandle(getResult().getOutput());
+        ClassificationDataSpecification specification = new ClassificationDataSpecification(handle, handle, getFeatures(), getClazz(), new WrappedBoolean());
+        ClassificationDataSpecification empty = new ClassificationDataSpecification(handle, handle, new String[0], getClazz(), new WrappedBoolean());
+        ARXLogisticRegressionConfiguration config = ARXLogisticRegressionConfiguration.create().setVectorLength(100);
+
+        // Shared encoder, encoder created by the classifier and special case without features
+        MultiClassLogisticRegressionEncoder encoder = new MultiClassLogisticRegressionEncoder(specification, config, handle);
+        assertEqualLogisticRegression(handle, specification, config, new MultiClassLogisticRegression(specification, config, encoder));
+        assertEqualLogisticRegression(handle, specification, config, new MultiClassLogisticRegression(specification, config));
+        assertEqualLogisticRegression(handle, empty, config, new MultiClassLogisticRegression(empty, config));
+    }
+
+    @Test
+    public void testNaiveBayes() throws IOException, ParseException {
+        // Config
+        ARXNaiveBayesConfiguration config = ARXNaiveBayesConfiguration.create();
+
+        // Classify
+        StatisticsClassification classResult = getResult().getOutput().getStatistics().getClassificationPerformance(getFeatures(), getClazz(), config);
+
+        // Accuracy
+        assertEquals(0.679265300709502, classResult.getOriginalAccuracy(), 0d);
+        assertEquals(0.4663152310854718, classResult.getZeroRAccuracy(), 0d);
+        assertEquals(0.661328824348518, classResult.getAccuracy(), 0d);
+
+        // Average error
+        assertEquals(0.41405160648858186, classResult.getOriginalAverageError(), 0d);
+        assertEquals(0.5336847689145282, classResult.getZeroRAverageError(), 0d);
+        assertEquals(0.44750776849256, classResult.getAverageError(), 0d);
+
+        // Other properties
+        assertEquals(7, classResult.getNumClasses(), 0d);
+        assertEquals(30162, classResult.getNumMeasurements(), 0d);
+    }
+
+    @Test
+    public void testNaiveBayesForeignHandle() {
+
+        // Training data, the last record is not used for training
+        DefaultData training = Data.create();
+        training.add("f1", "f2", "class");
+        training.add("a", "x", "yes");
+        training.add("a", "y", "no");
+        training.add("b", "x", "yes");
+        training.add("b", "y", "no");
+        training.add("c", "z", "yes");
+        DataHandleInternal features = getInternalHandle(training.getHandle());
+
+        // Foreign data with different codes and values which have not been seen
+        DefaultData foreign = Data.create();
+        foreign.add("f1", "f2", "class");
+        foreign.add("d", "w", "yes");
+        foreign.add("b", "y", "no");
+        foreign.add("a", "x", "yes");
+        DataHandleInternal other = getInternalHandle(foreign.getHandle());
+
+        // Train
+        ClassificationDataSpecification specification = new ClassificationDataSpecification(features, features, new String[] { "f1", "f2" }, "class", new WrappedBoolean());
+        MultiClassNaiveBayes model = new MultiClassNaiveBayes(specification, ARXNaiveBayesConfiguration.create());
+        assertFalse(model.isTrained());
+        for (int row = 0; row < 4; row++) {
+            model.train(features, features, row);
+        }
+        assertTrue(model.isTrained());
+
+        // Unseen values are treated like values which have been counted zero times
+        assertEqualResults(specification, model.classify(features, 4), model.classify(other, 0));
+
+        // Seen values are mapped by value
+        assertEqualResults(specification, model.classify(features, 3), model.classify(other, 1));
+        assertEqualResults(specification, model.classify(features, 0), model.classify(other, 2));
+        assertEquals(specification.classMap.get("yes").intValue(), model.classify(other, 2).index());
+    }
+
+    @Test
+    public void testNaiveBayesMerge() throws IOException {
+
+        // Data
+        DataHandleInternal handle = getInternalHandle(getData("adult").getHandle());
+        ClassificationDataSpecification specification = new ClassificationDataSpecification(handle, handle, getFeatures(), getClazz(), new WrappedBoolean());
+        ARXNaiveBayesConfiguration config = ARXNaiveBayesConfiguration.create();
+
+        // Train on all records and on two disjoint halves
+        MultiClassNaiveBayes all = new MultiClassNaiveBayes(specification, config);
+        MultiClassNaiveBayes first = new MultiClassNaiveBayes(specification, config);
+        MultiClassNaiveBayes second = new MultiClassNaiveBayes(specification, config);
+        for (int row = 0; row < handle.getNumRows(); row++) {
+            all.train(handle, handle, row);
+            if (row % 2 == 0) {
+                first.train(handle, handle, row);
+            } else {
+                second.train(handle, handle, row);
+            }
+        }
+
+        // Merge
+        MultiClassNaiveBayes merged = new MultiClassNaiveBayes(specification, config);
+        merged.merge(first);
+        merged.merge(second);
+
+        // The probabilities of all classes are derived from the counts, which must be equal
+        for (int row = 0; row < handle.getNumRows(); row++) {
+            assertEqualResults(specification, all.classify(handle, row), merged.classify(handle, row));
+        }
+    }
 }
@@ -19,10 +19,21 @@ package org.deidentifier.arx.test;
 
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
 
+import org.apache.commons.math3.util.Pair;
 import org.deidentifier.arx.ARXAnonymizer;
 import org.deidentifier.arx.ARXConfiguration;
 import org.deidentifier.arx.ARXLattice;
@@ -31,12 +42,25 @@ import org.deidentifier.arx.ARXResult;
 import org.deidentifier.arx.AttributeType;
 import org.deidentifier.arx.AttributeType.Hierarchy;
 import org.deidentifier.arx.Data;
+import org.deidentifier.arx.Data.DefaultData;
 import org.deidentifier.arx.DataHandle;
+import org.deidentifier.arx.DataHandleOutput;
 import org.deidentifier.arx.DataSelector;
 import org.deidentifier.arx.DataSubset;
+import org.deidentifier.arx.DataType;
+import org.deidentifier.arx.DataType.DataTypeDescription;
+import org.deidentifier.arx.DataTypeDetector;
+import org.deidentifier.arx.common.ParallelExecution;
 import org.deidentifier.arx.criteria.DPresence;
+import org.deidentifier.arx.criteria.DistinctLDiversity;
 import org.deidentifier.arx.criteria.Inclusion;
 import org.deidentifier.arx.criteria.KAnonymity;
+import org.deidentifier.arx.io.ArrowDataInput;
+import org.deidentifier.arx.io.ArrowDataOutput;
+import org.deidentifier.arx.io.CSVDataOutputEncoded;
+import org.deidentifier.arx.io.CSVSyntax;
+import org.deidentifier.arx.io.IExportEncoded;
+import org.deidentifier.arx.io.JDBCDataOutput;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -47,6 +71,155 @@ import org.junit.Test;
  */
 public class TestDataHandle extends AbstractTest {
     
+    /**
+     * Test case
+     *
+     * @throws IllegalArgumentException
+     * @throws IOException
+     */
+    @Test
+    public void testArrowExport() throws IllegalArgumentException, IOException {
+
+        provider.createDataDefinition();
+        final ARXConfiguration config = ARXConfiguration.create();
+        config.addPrivacyModel(new KAnonymity(2));
+        config.setMaxOutliers(0.2d);
+        final ARXResult result = new ARXAnonymizer().anonymize(provider.getData(), config);
+        final DataHandle output = result.getOutput(false);
+        final String[][] expected = iteratorToArray(output.iterator());
+
+        for (ArrowDataOutput.Format format : ArrowDataOutput.Format.values()) {
+            for (boolean compact : new boolean[] { false, true }) {
+
+                // Export
+                File file = File.createTempFile("arx", ".arrow");
+                file.deleteOnExit();
+                ArrowDataOutput arrow = new ArrowDataOutput(file, format);
+                arrow.setBatchSize(3);
+                ((DataHandleOutput) output).save(arrow);
+
+                // Import
+                ArrowDataInput input = new ArrowDataInput(file);
+                input.setCompactDictionary(compact);
+                final String[][] actual = iteratorToArray(Data.create(input).getHandle().iterator());
+
+                // Compare
+                Assert.assertEquals(expected.length, actual.length);
+                for (int row = 0; row < expected.length; row++) {
+                    Assert.assertArrayEquals(expected[row], actual[row]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Test case
+     *
+     * @throws IllegalArgumentException
+     * @throws IOException
+     */
+    @Test
+    public void testCompactDictionary() throws IllegalArgumentException, IOException {
+
+        provider.createDataDefinition();
+        provider.getData().getDefinition().setAttributeType("zipcode", AttributeType.INSENSITIVE_ATTRIBUTE);
+        provider.getData().setCompactDictionary(true);
+        final ARXAnonymizer anonymizer = new ARXAnonymizer();
+        final DataHandle inHandle = provider.getData().getHandle();
+
+        final String[][] expectedIn = { { "age", "gender", "zipcode" }, { "34", "male", "81667" }, { "45", "female", "81675" }, { "66", "male", "81925" }, { "70", "female", "81931" }, { "34", "female", "81931" }, { "70", "male", "81931" }, { "45", "male", "81931" } };
+        assertTrue(Arrays.deepEquals(iteratorToArray(inHandle.iterator()), expectedIn));
+        assertTrue(Arrays.deepEquals(inHandle.getDistinctValues(2), new String[] { "81667", "81675", "81925", "81931" }));
+        assertTrue(inHandle.replace(2, "81931", "8193X"));
+        assertTrue(Arrays.deepEquals(inHandle.getDistinctValues(2), new String[] { "81667", "81675", "81925", "8193X" }));
+
+        final ARXConfiguration config = ARXConfiguration.create();
+        config.addPrivacyModel(new KAnonymity(2));
+        config.setMaxOutliers(0d);
+
+        final ARXResult result = anonymizer.anonymize(provider.getData(), config);
+        final DataHandle outHandle = result.getOutput(false);
+
+        final String[][] expected = { { "age", "gender", "zipcode" }, { "*", "male", "81667" }, { "*", "female", "81675" }, { "*", "male", "81925" }, { "*", "female", "8193X" }, { "*", "female", "8193X" }, { "*", "male", "8193X" }, { "*", "male", "8193X" } };
+        assertTrue(Arrays.deepEquals(iteratorToArray(outHandle.iterator()), expected));
+    }
+
+    /**
+     * Test case
+     *
+     * @throws IllegalArgumentException
+     * @throws IOException
+     */
+    @Test
+    public void testEncodedExport() throws IllegalArgumentException, IOException {
+
+        Data data = Data.create("data/adult.csv", StandardCharsets.UTF_8, ';');
+        data.getDefinition().setAttributeType("age", Hierarchy.create("data/adult_hierarchy_age.csv", StandardCharsets.UTF_8, ';'));
+        data.getDefinition().setAttributeType("sex", Hierarchy.create("data/adult_hierarchy_sex.csv", StandardCharsets.UTF_8, ';'));
+        data.getDefinition().setAttributeType("race", Hierarchy.create("data/adult_hierarchy_race.csv", StandardCharsets.UTF_8, ';'));
+        data.getDefinition().setAttributeType("education", AttributeType.IDENTIFYING_ATTRIBUTE);
+        data.getDefinition().setAttributeType("salary-class", AttributeType.SENSITIVE_ATTRIBUTE);
+
+        final ARXConfiguration config = ARXConfiguration.create();
+        config.addPrivacyModel(new KAnonymity(20));
+        config.addPrivacyModel(new DistinctLDiversity("salary-class", 2));
+        config.setMaxOutliers(0.05d);
+        final ARXResult result = new ARXAnonymizer().anonymize(data, config);
+        final DataHandle output = result.getOutput(false);
+        output.sort(true, 0);
+
+        // Reference
+        CSVSyntax syntax = new CSVSyntax(';');
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        output.save(expected, syntax);
+
+        // Compare
+        for (int threads : new int[] { 1, 4 }) {
+            ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            ((DataHandleOutput) output).save(actual, StandardCharsets.UTF_8, syntax, threads);
+            Assert.assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+        }
+    }
+
+    /**
+     * Tests that null and empty values are not lost when exporting encoded data
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testEncodedExportNull() throws IOException {
+
+        // Two columns and a single column, in which empty values would result in empty lines
+        final String[][] values = new String[][] { { "a", null, "" }, { "x" } };
+        final int[][] codes = new int[][] { { 0, 0 }, { 1, 0 }, { 2, 0 } };
+        for (final int columns : new int[] { 2, 1 }) {
+            IExportEncoded data = new IExportEncoded() {
+                @Override
+                public int getCode(int row, int column) {
+                    return codes[row][column];
+                }
+                @Override
+                public String[] getHeader() {
+                    return Arrays.copyOf(new String[] { "c0", "c1" }, columns);
+                }
+                @Override
+                public int getNumRows() {
+                    return codes.length;
+                }
+                @Override
+                public String[] getValues(int column) {
+                    return values[column];
+                }
+            };
+            for (int threads : new int[] { 1, 4 }) {
+                ByteArrayOutputStream actual = new ByteArrayOutputStream();
+                new CSVDataOutputEncoded(actual, StandardCharsets.UTF_8, new CSVSyntax(';'), threads).write(data);
+                String expected = columns == 2 ? "c0;c1\na;x\nNULL;x\nNULL;x\n" : "c0\na\nNULL\nNULL\n";
+                Assert.assertEquals(expected, new String(actual.toByteArray(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
     /**
      * Test case
      *
@@ -66,6 +239,190 @@ public class TestDataHandle extends AbstractTest {
         
     }
     
+    /**
+     * Test case
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testJDBCExport() throws Exception {
+
+        provider.createDataDefinition();
+        final ARXConfiguration config = ARXConfiguration.create();
+        config.addPrivacyModel(new KAnonymity(2));
+        config.setMaxOutliers(0.2d);
+        final ARXResult result = new ARXAnonymizer().anonymize(provider.getData(), config);
+        final DataHandle output = result.getOutput(false);
+        final String[][] expected = iteratorToArray(output.iterator());
+
+        Class.forName("org.sqlite.JDBC");
+        for (int connections : new int[] { 1, 2 }) {
+
+            // Export
+            File file = File.createTempFile("arx", ".db");
+            file.deleteOnExit();
+            String url = "jdbc:sqlite:" + file.getAbsolutePath();
+            JDBCDataOutput jdbc = new JDBCDataOutput(url, "test");
+            jdbc.setBatchSize(2);
+            jdbc.setCommitInterval(3);
+            jdbc.setConnections(connections);
+            ((DataHandleOutput) output).save(jdbc);
+
+            // Compare as multisets, as ranges may be inserted in any order
+            Connection connection = DriverManager.getConnection(url);
+            ResultSet rs = connection.createStatement().executeQuery("SELECT * FROM test");
+            Assert.assertEquals(expected[0].length, rs.getMetaData().getColumnCount());
+            for (int column = 0; column < expected[0].length; column++) {
+                Assert.assertEquals(expected[0][column], rs.getMetaData().getColumnName(column + 1));
+            }
+            List<String> actualRows = new ArrayList<String>();
+            while (rs.next()) {
+                String[] row = new String[expected[0].length];
+                for (int column = 0; column < row.length; column++) {
+                    row[column] = rs.getString(column + 1);
+                }
+                actualRows.add(Arrays.toString(row));
+            }
+            connection.close();
+            List<String> expectedRows = new ArrayList<String>();
+            for (int row = 1; row < expected.length; row++) {
+                expectedRows.add(Arrays.toString(expected[row]));
+            }
+            Collections.sort(actualRows);
+            Collections.sort(expectedRows);
+            Assert.assertEquals(expectedRows, actualRows);
+        }
+    }
+
+    /**
+     * Tests that a failed JDBC export is rolled back, except for committed transactions
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testJDBCExportFailure() throws Exception {
+
+        // The eighth row violates a constraint
+        final int[] codes = new int[] { 0, 1, 2, 3, 4, 5, 6, 2, 7, 8 };
+        IExportEncoded data = getEncoded(new String[] { "0", "1", "2", "3", "4", "5", "6", "7", "8" }, codes);
+
+        Class.forName("org.sqlite.JDBC");
+        for (int commitInterval : new int[] { 0, 3 }) {
+
+            // Prepare
+            File file = File.createTempFile("arx", ".db");
+            file.deleteOnExit();
+            String url = "jdbc:sqlite:" + file.getAbsolutePath();
+            Connection connection = DriverManager.getConnection(url);
+            connection.createStatement().execute("CREATE TABLE test (c0 VARCHAR(1) UNIQUE)");
+
+            // Export
+            JDBCDataOutput jdbc = new JDBCDataOutput(url, "test");
+            jdbc.setCommitInterval(commitInterval);
+            try {
+                jdbc.write(data);
+                Assert.fail("Expected export to fail");
+            } catch (IOException e) {
+                // Expected
+            }
+
+            // Only committed transactions remain
+            ResultSet rs = connection.createStatement().executeQuery("SELECT COUNT(*) FROM test");
+            Assert.assertTrue(rs.next());
+            Assert.assertEquals(commitInterval == 0 ? 0 : 6, rs.getInt(1));
+            connection.close();
+        }
+    }
+
+    /**
+     * Tests that the JDBC export writes missing values as SQL NULL and sizes columns in bytes
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testJDBCExportValues() throws Exception {
+
+        IExportEncoded data = getEncoded(new String[] { "a", DataType.NULL_VALUE, "w\u00f6rld" }, new int[] { 0, 1, 2 });
+
+        // Export
+        Class.forName("org.sqlite.JDBC");
+        File file = File.createTempFile("arx", ".db");
+        file.deleteOnExit();
+        String url = "jdbc:sqlite:" + file.getAbsolutePath();
+        new JDBCDataOutput(url, "test").write(data);
+
+        // Compare
+        Connection connection = DriverManager.getConnection(url);
+        ResultSet rs = connection.createStatement().executeQuery("SELECT sql FROM sqlite_master WHERE name = 'test'");
+        Assert.assertTrue(rs.next());
+        Assert.assertTrue(rs.getString(1), rs.getString(1).contains("VARCHAR(6)"));
+        rs = connection.createStatement().executeQuery("SELECT c0 FROM test");
+        List<String> actual = new ArrayList<String>();
+        while (rs.next()) {
+            actual.add(rs.getString(1));
+        }
+        connection.close();
+        Assert.assertEquals(Arrays.asList("a", null, "w\u00f6rld"), actual);
+    }
+
+    /**
+     * Tests the single-pass data type detection against evaluating each type separately
+     *
+     * @throws IllegalArgumentException
+     * @throws IOException
+     */
+    @Test
+    public void testMatchingDataTypes() throws IllegalArgumentException, IOException {
+
+        DataHandle handle = Data.create(new File("data/adult.csv"), StandardCharsets.UTF_8, ';').getHandle();
+        int[] columns = new int[handle.getNumColumns()];
+        for (int column = 0; column < columns.length; column++) {
+            columns[column] = column;
+        }
+
+        // Compare with separate evaluation of each type
+        for (double threshold : new double[] { 0d, 0.8d }) {
+            DataTypeDetector detector = new DataTypeDetector(Locale.ENGLISH, threshold).setNumThreads(4);
+            List<List<Pair<DataType<?>, Double>>> result = handle.getMatchingDataTypes(columns, detector);
+            for (int column : columns) {
+                List<Pair<DataType<?>, Double>> matches = result.get(column);
+                double distinct = handle.getDistinctValues(column).length;
+                int count = 0;
+                for (Pair<DataType<?>, Double> match : matches) {
+                    double expected = handle.getNumConformingValues(column, match.getFirst()) / distinct;
+                    Assert.assertEquals(expected, match.getSecond(), 0d);
+                    Assert.assertTrue(match.getSecond() >= threshold);
+                    count += match.getFirst() instanceof DataType.ARXString ? 0 : 1;
+                }
+                int expected = 0;
+                for (Class<?> clazz : new Class<?>[] { Long.class, Date.class, Double.class }) {
+                    DataTypeDescription<?> description = DataType.list(clazz);
+                    List<String> formats = description.hasFormat() ? description.getExampleFormats() : Arrays.asList((String) null);
+                    for (String format : formats) {
+                        DataType<?> type = format == null ? description.newInstance() : description.newInstance(format, Locale.ENGLISH);
+                        expected += handle.getNumConformingValues(column, type) / distinct >= threshold ? 1 : 0;
+                    }
+                }
+                Assert.assertEquals(expected, count);
+                Assert.assertEquals(matches.toString(), handle.getMatchingDataTypes(column, Locale.ENGLISH, threshold).toString());
+            }
+        }
+
+        // Sampling
+        int age = handle.getColumnIndexOf("age");
+        String[] values = handle.getDistinctValues(age);
+        DataTypeDetector.Match match = new DataTypeDetector(Locale.ENGLISH, 0d).setSampleSize(values.length / 2).detect(values).get(0);
+        Assert.assertEquals(1d, match.getMatching(), 0d);
+        Assert.assertTrue(match.getLower() < 1d);
+        Assert.assertEquals(1d, match.getUpper(), 0d);
+
+        // Cache is cleared when values are replaced
+        DataHandle input = provider.getData().getHandle();
+        Assert.assertEquals(1d, input.getMatchingDataTypes(0).get(0).getSecond(), 0d);
+        input.replace(0, "34", "x");
+        Assert.assertTrue(input.getMatchingDataTypes(0).get(0).getFirst() instanceof DataType.ARXString);
+    }
+
     /**
      * Test case
      *
@@ -274,6 +631,55 @@ public class TestDataHandle extends AbstractTest {
         
     }
     
+    /**
+     * Tests sorting a handle large enough to be sorted in parallel
+     *
+     * @throws IllegalArgumentException
+     * @throws IOException
+     */
+    @Test
+    public void testSortingLarge() throws IllegalArgumentException, IOException {
+
+        // Prepare
+        DataHandle adult = Data.create(new File("data/adult.csv"), StandardCharsets.UTF_8, ';').getHandle();
+        int age = adult.getColumnIndexOf("age");
+        int workclass = adult.getColumnIndexOf("workclass");
+        DefaultData data = Data.create();
+        data.add("id", "age", "workclass");
+        int rows = 0;
+        while (rows < 100000) {
+            for (int row = 0; row < adult.getNumRows(); row++) {
+                data.add(String.valueOf(rows++), adult.getValue(row, age), adult.getValue(row, workclass));
+            }
+        }
+        data.getDefinition().setDataType("age", DataType.INTEGER);
+        DataHandle handle = data.getHandle();
+
+        // Sort
+        ParallelExecution.setNumThreads(4);
+        try {
+            handle.sort(false, 1, 2);
+        } finally {
+            ParallelExecution.setNumThreads(1);
+        }
+
+        // Check order and stability
+        boolean[] seen = new boolean[rows];
+        for (int row = 0; row < rows; row++) {
+            seen[Integer.parseInt(handle.getValue(row, 0))] = true;
+            if (row > 0) {
+                int cmp = Long.compare(Long.parseLong(handle.getValue(row - 1, 1)), Long.parseLong(handle.getValue(row, 1)));
+                if (cmp == 0) {
+                    cmp = handle.getValue(row - 1, 2).compareTo(handle.getValue(row, 2));
+                }
+                assertTrue(cmp > 0 || (cmp == 0 && Integer.parseInt(handle.getValue(row - 1, 0)) < Integer.parseInt(handle.getValue(row, 0))));
+            }
+        }
+        for (boolean value : seen) {
+            assertTrue(value);
+        }
+    }
+
     /**
      * Test case
      *
@@ -483,4 +889,32 @@ public class TestDataHandle extends AbstractTest {
         
         assertTrue(Arrays.deepEquals(given, expected));
     }
+
+    /**
+     * Returns encoded data with a single column "c0"
+     *
+     * @param values
+     * @param codes
+     * @return
+     */
+    private IExportEncoded getEncoded(final String[] values, final int[] codes) {
+        return new IExportEncoded() {
+            @Override
+            public int getCode(int row, int column) {
+                return codes[row];
+            }
+            @Override
+            public String[] getHeader() {
+                return new String[] { "c0" };
+            }
+            @Override
+            public int getNumRows() {
+                return codes.length;
+            }
+            @Override
+            public String[] getValues(int column) {
+                return values;
+            }
+        };
+    }
 }
@@ -18,13 +18,40 @@
 package org.deidentifier.arx.test;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 
+import org.deidentifier.arx.AttributeType;
+import org.deidentifier.arx.AttributeType.Hierarchy;
 import org.deidentifier.arx.Data;
+import org.deidentifier.arx.DataDefinition;
+import org.deidentifier.arx.DataHandle;
+import org.deidentifier.arx.DataSource;
+import org.deidentifier.arx.DataType;
+import org.deidentifier.arx.framework.data.DataMatrix;
+import org.deidentifier.arx.framework.data.Dictionary;
+import org.deidentifier.arx.io.ArrowDataInput;
+import org.deidentifier.arx.io.BinaryDataInput;
+import org.deidentifier.arx.io.BinaryDataOutput;
+import org.deidentifier.arx.io.CSVDataInputMapped;
+import org.deidentifier.arx.io.CSVDataInputParallel;
+import org.deidentifier.arx.io.CSVSyntax;
+import org.deidentifier.arx.io.ImportAdapter;
+import org.deidentifier.arx.io.ImportAdapterJDBC;
+import org.deidentifier.arx.io.ImportColumnJDBC;
+import org.deidentifier.arx.io.ImportConfigurationJDBC;
+import org.junit.Assert;
 import org.junit.Test;
 
 import cern.colt.Arrays;
@@ -52,4 +79,452 @@ public class TestDataImport extends AbstractTest {
             System.out.println(Arrays.toString(result.get(result.size() - 1)));
         }
     }
+
+    /**
+     * Tests loading Arrow data in the file and in the stream format. The files have been
+     * encoded independently of ArrowDataOutput. They contain dictionary batches and a delta
+     * dictionary batch, signed and unsigned indices of different widths, as well as nulls
+     * in dictionaries, indices and plain columns.
+     * @throws IllegalArgumentException
+     * @throws IOException
+     */
+    @Test
+    public void testArrow() throws IllegalArgumentException, IOException {
+
+        // Expected
+        String[] header = new String[] { "a", "b", "c", "d", "g", "e", "f" };
+        String[][] expected = new String[][] {
+            { "red", "b199", "z", "q", "only", "-5", "hello" },
+            { "green", "b150", DataType.NULL_VALUE, "p", "only", DataType.NULL_VALUE, "w\u00f6rld" },
+            { DataType.NULL_VALUE, "b0", "x", "q", "only", "2147483647", DataType.NULL_VALUE },
+            { "blue", "b128", "x", "p", "only", "0", "hello" },
+            { "red", "b127", "z", "q", "only", "-1", "x" } };
+
+        for (String file : new String[] { "data/test.arrow", "data/test.arrows" }) {
+            for (boolean compact : new boolean[] { false, true }) {
+
+                // Load
+                ArrowDataInput input = new ArrowDataInput(file);
+                input.setCompactDictionary(compact);
+                DataHandle handle = Data.create(input).getHandle();
+
+                // Compare
+                Assert.assertEquals(expected.length, handle.getNumRows());
+                Assert.assertEquals(header.length, handle.getNumColumns());
+                for (int column = 0; column < header.length; column++) {
+                    Assert.assertEquals(header[column], handle.getAttributeName(column));
+                    for (int row = 0; row < expected.length; row++) {
+                        Assert.assertEquals(expected[row][column], handle.getValue(row, column));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests writing and loading the binary format
+     * @throws IllegalArgumentException
+     * @throws IOException
+     */
+    @Test
+    public void testBinary() throws IllegalArgumentException, IOException {
+
+        // Prepare
+        Data data = Data.create(new File("data/adult.csv"), StandardCharsets.UTF_8, ';');
+        data.getDefinition().setAttributeType("age", Hierarchy.create("data/adult_hierarchy_age.csv", StandardCharsets.UTF_8, ';'));
+        data.getDefinition().setDataType("age", DataType.INTEGER);
+        data.getDefinition().setMaximumGeneralization("age", 2);
+        data.getDefinition().setAttributeType("race", AttributeType.SENSITIVE_ATTRIBUTE);
+        DataHandle handle = data.getHandle();
+        File file = File.createTempFile("arx", ".bin");
+        file.deleteOnExit();
+        handle.save(new BinaryDataOutput(file));
+
+        for (boolean compact : new boolean[] { false, true }) {
+
+            // Load
+            BinaryDataInput input = new BinaryDataInput(file);
+            input.setCompactDictionary(compact);
+            Data loaded = Data.create(input);
+            DataHandle other = loaded.getHandle();
+
+            // Compare data
+            Assert.assertEquals(handle.getNumRows(), other.getNumRows());
+            Assert.assertEquals(handle.getNumColumns(), other.getNumColumns());
+            for (int column = 0; column < handle.getNumColumns(); column++) {
+                Assert.assertEquals(handle.getAttributeName(column), other.getAttributeName(column));
+                Assert.assertArrayEquals(handle.getDistinctValues(column), other.getDistinctValues(column));
+                for (int row = 0; row < handle.getNumRows(); row++) {
+                    Assert.assertEquals(handle.getValue(row, column), other.getValue(row, column));
+                }
+            }
+
+            // Compare definition
+            DataDefinition definition = loaded.getDefinition();
+            Assert.assertEquals(data.getDefinition().getQuasiIdentifyingAttributes(), definition.getQuasiIdentifyingAttributes());
+            Assert.assertEquals(data.getDefinition().getSensitiveAttributes(), definition.getSensitiveAttributes());
+            Assert.assertEquals(DataType.INTEGER, definition.getDataType("age"));
+            Assert.assertEquals(2, definition.getMaximumGeneralization("age"));
+            Assert.assertArrayEquals(data.getDefinition().getHierarchy("age"), definition.getHierarchy("age"));
+        }
+    }
+
+    /**
+     * Tests writing and loading the binary format with a dictionary containing
+     * duplicate values, which have been introduced by replacing values
+     * @throws IllegalArgumentException
+     * @throws IOException
+     */
+    @Test
+    public void testBinaryReplaced() throws IllegalArgumentException, IOException {
+
+        for (boolean compactBefore : new boolean[] { false, true }) {
+
+            // Prepare
+            String[] header = new String[] { "a", "b" };
+            Dictionary dictionary = new Dictionary(2, compactBefore);
+            DataMatrix data = new DataMatrix(6, 2);
+            String[] values = new String[] { "x", "y", "z" };
+            for (int row = 0; row < 6; row++) {
+                data.set(row, 0, dictionary.register(0, values[row % 3]));
+                data.set(row, 1, dictionary.register(1, values[row % 2]));
+            }
+            dictionary.finalizeAll();
+            Assert.assertTrue(dictionary.replace(0, "y", "x"));
+            DataDefinition definition = new DataDefinition();
+            definition.setDataType("a", DataType.STRING);
+            definition.setDataType("b", DataType.STRING);
+
+            // Save
+            File file = File.createTempFile("arx", ".bin");
+            file.deleteOnExit();
+            new BinaryDataOutput(file).write(header, data, dictionary, definition);
+
+            for (boolean compact : new boolean[] { false, true }) {
+
+                // Load
+                BinaryDataInput input = new BinaryDataInput(file);
+                input.setCompactDictionary(compact);
+                DataHandle handle = Data.create(input).getHandle();
+
+                // Compare
+                Assert.assertArrayEquals(new String[] { "x", "z" }, handle.getDistinctValues(0));
+                Assert.assertArrayEquals(new String[] { "x", "y" }, handle.getDistinctValues(1));
+                for (int row = 0; row < 6; row++) {
+                    Assert.assertEquals(dictionary.getValue(0, data.get(row, 0)), handle.getValue(row, 0));
+                    Assert.assertEquals(dictionary.getValue(1, data.get(row, 1)), handle.getValue(row, 1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests the streaming Excel import against the CSV import of the same data
+     * @throws IllegalArgumentException
+     * @throws IOException
+     */
+    @Test
+    public void testExcelStreaming() throws IllegalArgumentException, IOException {
+
+        // Import
+        DataHandle expected = Data.create(new File("data/test.csv"), StandardCharsets.UTF_8, ';').getHandle();
+        DataSource source = DataSource.createExcelSource("data/test.xlsx", 0, true);
+        source.setStreaming(true);
+        source.addColumn("zipcode", DataType.STRING);
+        source.addColumn(0, DataType.INTEGER);
+        DataHandle handle = Data.create(source).getHandle();
+
+        // Compare
+        Assert.assertEquals(expected.getNumRows(), handle.getNumRows());
+        Assert.assertEquals("zipcode", handle.getAttributeName(0));
+        Assert.assertEquals("age", handle.getAttributeName(1));
+        for (int row = 0; row < expected.getNumRows(); row++) {
+            Assert.assertEquals(expected.getValue(row, 2), handle.getValue(row, 0));
+            Assert.assertEquals(expected.getValue(row, 0), handle.getValue(row, 1));
+        }
+    }
+
+    /**
+     * Tests the partitioned JDBC import against the default JDBC import
+     * @throws Exception
+     */
+    @Test
+    public void testJDBCPartitioned() throws Exception {
+
+        Class.forName("org.sqlite.JDBC");
+        String url = "jdbc:sqlite:data/test.db";
+
+        // Default
+        DataSource source = DataSource.createJDBCSource(url, "test");
+        source.addColumn("zipcode", DataType.STRING);
+        source.addColumn("age", DataType.INTEGER);
+        List<String[]> expected = getSortedRows(Data.create(source).getHandle());
+        Assert.assertEquals(7, expected.size());
+        Assert.assertArrayEquals(new String[] { "81667", "32" }, expected.get(0));
+
+        // Partitioned
+        for (int partitions : new int[] { 1, 2, 3, 10 }) {
+            source = DataSource.createJDBCSource(url, "test");
+            source.addColumn("zipcode", DataType.STRING);
+            source.addColumn("age", DataType.INTEGER);
+            source.setFetchSize(2);
+            source.setPartitioning("age", partitions);
+            DataHandle handle = Data.create(source).getHandle();
+            Assert.assertEquals("zipcode", handle.getAttributeName(0));
+            Assert.assertEquals("age", handle.getAttributeName(1));
+            List<String[]> actual = getSortedRows(handle);
+            Assert.assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                Assert.assertArrayEquals(expected.get(i), actual.get(i));
+            }
+        }
+    }
+
+    /**
+     * Tests that partitions stop reading when the import is aborted while they are waiting
+     * for the consumer
+     * @throws Exception
+     */
+    @Test
+    public void testJDBCPartitionedAborted() throws Exception {
+
+        // Create a table which doesn't fit into the queue
+        Class.forName("org.sqlite.JDBC");
+        File file = File.createTempFile("arx", ".db");
+        file.deleteOnExit();
+        String url = "jdbc:sqlite:" + file.getAbsolutePath();
+        Connection connection = DriverManager.getConnection(url);
+        try {
+            connection.createStatement().execute("CREATE TABLE test (id INTEGER, value TEXT)");
+            connection.setAutoCommit(false);
+            PreparedStatement statement = connection.prepareStatement("INSERT INTO test VALUES (?, ?)");
+            for (int row = 0; row < 40000; row++) {
+                statement.setInt(1, row);
+                statement.setString(2, "value" + row);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+
+        // Read a few rows and abort
+        ImportConfigurationJDBC config = new ImportConfigurationJDBC(url, "test");
+        config.addColumn(new ImportColumnJDBC("id", DataType.INTEGER));
+        config.addColumn(new ImportColumnJDBC("value", DataType.STRING));
+        config.setPartitioning("id", 2);
+        ImportAdapter adapter = ImportAdapter.create(config);
+        Assert.assertArrayEquals(new String[] { "id", "value" }, adapter.next());
+        for (int row = 0; row < 10; row++) {
+            Assert.assertTrue(adapter.hasNext());
+            Assert.assertEquals(2, adapter.next().length);
+        }
+        adapter.close();
+
+        // Partitions must terminate
+        long timeout = System.currentTimeMillis() + 10000;
+        while (isReadingPartitions()) {
+            Assert.assertTrue("Partitions are still being read", System.currentTimeMillis() < timeout);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Tests the partitioned JDBC import with a connection provided by the user, which must
+     * be read sequentially
+     * @throws Exception
+     */
+    @Test
+    public void testJDBCPartitionedUnmanaged() throws Exception {
+
+        Class.forName("org.sqlite.JDBC");
+        String url = "jdbc:sqlite:data/test.db";
+
+        // Default
+        DataSource source = DataSource.createJDBCSource(url, "test");
+        source.addColumn("zipcode", DataType.STRING);
+        source.addColumn("age", DataType.INTEGER);
+        DataHandle expected = Data.create(source).getHandle();
+
+        // Partitioned
+        Connection connection = DriverManager.getConnection(url);
+        try {
+            ImportConfigurationJDBC config = new ImportConfigurationJDBC(connection, "test");
+            config.addColumn(new ImportColumnJDBC("zipcode", DataType.STRING));
+            config.addColumn(new ImportColumnJDBC("age", DataType.INTEGER));
+            config.setFetchSize(2);
+            config.setPartitioning("age", 3);
+            ImportAdapter adapter = ImportAdapter.create(config);
+            Assert.assertArrayEquals(new String[] { "zipcode", "age" }, adapter.next());
+
+            // Rows are returned in the order of the table
+            for (int row = 0; row < expected.getNumRows(); row++) {
+                Assert.assertTrue(adapter.hasNext());
+                String[] actual = adapter.next();
+                Assert.assertEquals(expected.getValue(row, 0), actual[0]);
+                Assert.assertEquals(expected.getValue(row, 1), actual[1]);
+            }
+            Assert.assertFalse(adapter.hasNext());
+            Assert.assertFalse(connection.isClosed());
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Tests the memory-mapped import against the default import
+     * @throws IllegalArgumentException
+     * @throws IOException
+     */
+    @Test
+    public void testMapped() throws IllegalArgumentException, IOException {
+        for (String file : new String[] { "data/test-import.csv", "data/adult.csv" }) {
+            for (boolean compact : new boolean[] { false, true }) {
+                
+                // Import
+                DataHandle sequential = Data.create(new File(file), StandardCharsets.UTF_8, ';', '\"').getHandle();
+                CSVDataInputMapped input = new CSVDataInputMapped(new File(file), StandardCharsets.UTF_8, new CSVSyntax(';', '\"'));
+                input.setCompactDictionary(compact);
+                DataHandle mapped = Data.create(input).getHandle();
+                
+                // Compare
+                Assert.assertEquals(sequential.getNumRows(), mapped.getNumRows());
+                Assert.assertEquals(sequential.getNumColumns(), mapped.getNumColumns());
+                for (int column = 0; column < sequential.getNumColumns(); column++) {
+                    Assert.assertEquals(sequential.getAttributeName(column), mapped.getAttributeName(column));
+                    Assert.assertArrayEquals(sequential.getDistinctValues(column), mapped.getDistinctValues(column));
+                    for (int row = 0; row < sequential.getNumRows(); row++) {
+                        Assert.assertEquals(sequential.getValue(row, column), mapped.getValue(row, column));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Test
+     *
+     * @throws IllegalArgumentException
+     * @throws IOException
+     */
+    @Test
+    public void testParallel() throws IllegalArgumentException, IOException {
+        for (String file : new String[] { "data/test-import.csv", "data/adult.csv" }) {
+            for (boolean compact : new boolean[] { false, true }) {
+                
+                // Import
+                DataHandle sequential = Data.create(new File(file), StandardCharsets.UTF_8, ';', '\"').getHandle();
+                CSVDataInputParallel input = new CSVDataInputParallel(new File(file), StandardCharsets.UTF_8, new CSVSyntax(';', '\"'), 4);
+                input.setCompactDictionary(compact);
+                DataHandle parallel = Data.create(input).getHandle();
+                
+                // Compare
+                Assert.assertEquals(sequential.getNumRows(), parallel.getNumRows());
+                Assert.assertEquals(sequential.getNumColumns(), parallel.getNumColumns());
+                for (int column = 0; column < sequential.getNumColumns(); column++) {
+                    Assert.assertEquals(sequential.getAttributeName(column), parallel.getAttributeName(column));
+                    Assert.assertArrayEquals(sequential.getDistinctValues(column), parallel.getDistinctValues(column));
+                    for (int row = 0; row < sequential.getNumRows(); row++) {
+                        Assert.assertEquals(sequential.getValue(row, column), parallel.getValue(row, column));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests the parallel and the memory-mapped import of a file which is split into several chunks
+     * and which contains quoted linebreaks, empty lines, lines consisting of whitespace and short records
+     *
+     * @throws IllegalArgumentException
+     * @throws IOException
+     */
+    @Test
+    public void testParallelChunks() throws IllegalArgumentException, IOException {
+
+        // Create file of more than two chunks
+        File file = File.createTempFile("arx", ".csv");
+        file.deleteOnExit();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+        try {
+            writer.write("a;b;c\n");
+            for (int i = 0; file.length() < 20 * 1024 * 1024; i++) {
+                writer.write(i + ";\"x\ny" + (i % 1000) + "\";z\n");
+                writer.write("\n");
+                writer.write("   \t \r\n");
+                writer.write("\"\";;\n");
+                writer.write(";\n");
+                writer.write((i % 77) + ";\"he said \"\"hi\"\"\";w\n");
+                writer.write("  \"q;" + (i % 13) + "\" ; v ;u\n");
+                if (i % 1000 == 0) {
+                    writer.flush();
+                }
+            }
+            writer.write("last;\"line\";without linebreak");
+        } finally {
+            writer.close();
+        }
+
+        // Compare
+        DataHandle sequential = Data.create(file, StandardCharsets.UTF_8, ';', '\"').getHandle();
+        for (boolean compact : new boolean[] { false, true }) {
+            CSVDataInputParallel sequentialChunks = new CSVDataInputParallel(file, StandardCharsets.UTF_8, new CSVSyntax(';', '\"'), 1);
+            sequentialChunks.setCompactDictionary(compact);
+            CSVDataInputParallel parallel = new CSVDataInputParallel(file, StandardCharsets.UTF_8, new CSVSyntax(';', '\"'), 4);
+            parallel.setCompactDictionary(compact);
+            CSVDataInputMapped mapped = new CSVDataInputMapped(file, StandardCharsets.UTF_8, new CSVSyntax(';', '\"'));
+            mapped.setCompactDictionary(compact);
+            for (DataHandle handle : new DataHandle[] { Data.create(sequentialChunks).getHandle(),
+                                                        Data.create(parallel).getHandle(),
+                                                        Data.create(mapped).getHandle() }) {
+                Assert.assertEquals(sequential.getNumRows(), handle.getNumRows());
+                for (int column = 0; column < sequential.getNumColumns(); column++) {
+                    Assert.assertArrayEquals(sequential.getDistinctValues(column), handle.getDistinctValues(column));
+                    for (int row = 0; row < sequential.getNumRows(); row++) {
+                        Assert.assertEquals(sequential.getValue(row, column), handle.getValue(row, column));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the rows of the handle in lexicographical order
+     * @param handle
+     * @return
+     */
+    private List<String[]> getSortedRows(DataHandle handle) {
+        List<String[]> rows = new ArrayList<String[]>();
+        for (int row = 0; row < handle.getNumRows(); row++) {
+            String[] values = new String[handle.getNumColumns()];
+            for (int column = 0; column < values.length; column++) {
+                values[column] = handle.getValue(row, column);
+            }
+            rows.add(values);
+        }
+        Collections.sort(rows, new Comparator<String[]>() {
+            @Override
+            public int compare(String[] o1, String[] o2) {
+                return java.util.Arrays.toString(o1).compareTo(java.util.Arrays.toString(o2));
+            }
+        });
+        return rows;
+    }
+
+    /**
+     * Returns whether any thread is reading a partition of a JDBC import
+     * @return
+     */
+    private boolean isReadingPartitions() {
+        for (StackTraceElement[] trace : Thread.getAllStackTraces().values()) {
+            for (StackTraceElement element : trace) {
+                if (element.getClassName().equals(ImportAdapterJDBC.class.getName()) &&
+                    element.getMethodName().equals("read")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
 }
@@ -17,25 +17,50 @@
 
 package org.deidentifier.arx.test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.deidentifier.arx.ARXAnonymizer;
 import org.deidentifier.arx.ARXConfiguration;
+import org.deidentifier.arx.ARXLattice.ARXNode;
 import org.deidentifier.arx.ARXResult;
+import org.deidentifier.arx.AttributeType;
+import org.deidentifier.arx.AttributeType.Hierarchy;
+import org.deidentifier.arx.Data;
+import org.deidentifier.arx.DataHandle;
+import org.deidentifier.arx.DataHandleInternal;
+import org.deidentifier.arx.DataHandleInternal.InterruptHandler;
+import org.deidentifier.arx.DataHandleOutput;
+import org.deidentifier.arx.DataSelector;
 import org.deidentifier.arx.DataSubset;
 import org.deidentifier.arx.DataType;
 import org.deidentifier.arx.aggregates.StatisticsContingencyTable;
 import org.deidentifier.arx.aggregates.StatisticsContingencyTable.Entry;
+import org.deidentifier.arx.aggregates.StatisticsEquivalenceClasses;
 import org.deidentifier.arx.aggregates.StatisticsFrequencyDistribution;
+import org.deidentifier.arx.aggregates.StatisticsQuality;
+import org.deidentifier.arx.aggregates.StatisticsSummary;
+import org.deidentifier.arx.aggregates.quality.QualityModelType;
+import org.deidentifier.arx.common.GroupifyIncremental;
+import org.deidentifier.arx.common.ParallelExecution;
 import org.deidentifier.arx.criteria.DPresence;
+import org.deidentifier.arx.criteria.Inclusion;
 import org.deidentifier.arx.criteria.KAnonymity;
+import org.deidentifier.arx.exceptions.RollbackRequiredException;
 import org.junit.Test;
 
 /**
@@ -218,6 +243,44 @@ public class TestDataStatistics extends AbstractTest {
         assertTrue("Unexpected result", deepEquals(toArray(contingency), frequencies));
     }
     
+    /**
+     * Performs a test.
+     *
+     * @throws IllegalArgumentException
+     * @throws IOException
+     */
+    @Test
+    public void testContingency3() throws IllegalArgumentException, IOException {
+        
+        this.provider.createDataDefinition();
+        this.provider.getData().getDefinition().setDataType("age", DataType.INTEGER);
+        
+        // Define
+        StatisticsContingencyTable contingency;
+        double[][] frequencies;
+        
+        // Check most frequent cells
+        contingency = this.provider.getData().getHandle().getStatistics().getContingencyTable(0, null, 2, null, 1);
+        assertEquals(4, contingency.values1.length);
+        assertEquals(4, contingency.values2.length);
+        assertEquals(0.2857142857142857, contingency.maxFrequency, 0d);
+        
+        frequencies = new double[][] { { 3, 3, 0.2857142857142857 } };
+        assertTrue("Unexpected result", deepEquals(toArray(contingency), frequencies));
+        
+        // Check downsampled grid
+        contingency = this.provider.getData().getHandle().getStatistics().getContingencyTable(0, 2, 2, 2);
+        assertEquals(2, contingency.values1.length);
+        assertEquals(2, contingency.values2.length);
+        
+        double sum = 0d;
+        for (double[] entry : toArray(contingency)) {
+            assertTrue(entry[0] < 2 && entry[1] < 2);
+            sum += entry[2];
+        }
+        assertEquals(1d, sum, 1e-9);
+    }
+    
     /**
      * Performs a test.
      *
@@ -296,6 +359,401 @@ public class TestDataStatistics extends AbstractTest {
         assertTrue(Arrays.equals(frequency, distribution.frequency));
     }
     
+    /**
+     * Performs a test.
+     *
+     * @throws IllegalArgumentException
+     * @throws IOException
+     */
+    @Test
+    public void testDistribution3() throws IllegalArgumentException, IOException {
+        
+        this.provider.createDataDefinition();
+        this.provider.getData().getDefinition().setDataType("age", DataType.INTEGER);
+        DataHandle handle = this.provider.getData().getHandle();
+        
+        // Define
+        StatisticsFrequencyDistribution distribution;
+        String[] values;
+        double[] frequency;
+        
+        // Check cached result
+        handle.getStatistics().getFrequencyDistribution(0, true);
+        distribution = handle.getStatistics().getFrequencyDistribution(0, true);
+        values = new String[] { "34", "45", "66", "70" };
+        frequency = new double[] { 0.2857142857142857, 0.2857142857142857, 0.14285714285714285, 0.2857142857142857 };
+        assertTrue(Arrays.equals(values, distribution.values));
+        assertTrue(Arrays.equals(frequency, distribution.frequency));
+        
+        // Check after replacing a value
+        handle.replace(0, "66", "50");
+        distribution = handle.getStatistics().getFrequencyDistribution(0, true);
+        values = new String[] { "34", "45", "50", "70" };
+        assertTrue(Arrays.equals(values, distribution.values));
+        assertTrue(Arrays.equals(frequency, distribution.frequency));
+    }
+    
+    /**
+     * Performs a test.
+     *
+     * @throws IllegalArgumentException
+     * @throws IOException
+     */
+    @Test
+    public void testEquivalenceClasses() throws IllegalArgumentException, IOException {
+        
+        this.provider.createDataDefinition();
+        
+        final ARXConfiguration config = ARXConfiguration.create();
+        config.addPrivacyModel(new KAnonymity(3));
+        config.setSuppressionLimit(0.5d);
+        
+        ARXAnonymizer anonymizer = new ARXAnonymizer();
+        ARXResult result = anonymizer.anonymize(this.provider.getData(), config);
+        
+        // Check every transformation
+        for (ARXNode[] level : result.getLattice().getLevels()) {
+            for (ARXNode node : level) {
+                
+                DataHandle handle = result.getOutput(node, false);
+                
+                // Reference
+                Map<List<String>, Integer> classes = new HashMap<List<String>, Integer>();
+                int outliers = 0;
+                for (int row = 0; row < handle.getNumRows(); row++) {
+                    List<String> tuple = new ArrayList<String>();
+                    for (int column = 0; column < handle.getNumColumns(); column++) {
+                        tuple.add(handle.getValue(row, column));
+                    }
+                    Integer count = classes.get(tuple);
+                    classes.put(tuple, count == null ? 1 : count + 1);
+                    outliers += handle.isOutlier(row) ? 1 : 0;
+                }
+                
+                // Check
+                StatisticsEquivalenceClasses statistics = handle.getStatistics().getEquivalenceClassStatistics();
+                assertEquals(classes.size(), statistics.getNumberOfEquivalenceClassesIncludingOutliers());
+                assertEquals(outliers, statistics.getNumberOfOutlyingTuples());
+                assertEquals(Collections.max(classes.values()).intValue(), statistics.getMaximalEquivalenceClassSizeIncludingOutliers());
+                assertEquals(Collections.min(classes.values()).intValue(), statistics.getMinimalEquivalenceClassSizeIncludingOutliers());
+                handle.release();
+            }
+        }
+    }
+    
+    /**
+     * Changes a record until more distinct keys have been added to the groups than there are
+     * records. With 30 columns of 16 values each, keys must be compressed into multiple segments.
+     */
+    @Test
+    public void testGroupifyIncremental() {
+
+        // Data: 16 records, the codes of record i are all i
+        final int rows = 16;
+        final int columns = 30;
+        final String[] dictionary = new String[rows];
+        final int[][] data = new int[rows][columns];
+        for (int row = 0; row < rows; row++) {
+            dictionary[row] = String.valueOf(row);
+            Arrays.fill(data[row], row);
+        }
+        DataHandleInternal handle = new DataHandleInternal((DataHandle) null) {
+            @Override
+            public String[] getDictionary(int column) {
+                return dictionary;
+            }
+            @Override
+            public int getEncodedValue(int row, int column) {
+                return data[row][column];
+            }
+            @Override
+            public int getNumRows() {
+                return rows;
+            }
+            @Override
+            public boolean isOutlier(int row) {
+                return false;
+            }
+        };
+        InterruptHandler stop = new InterruptHandler() {
+            @Override
+            public void checkInterrupt() {
+                // Empty by design
+            }
+        };
+        int[] indices = new int[columns];
+        for (int i = 0; i < columns; i++) {
+            indices[i] = i;
+        }
+        GroupifyIncremental groupify = new GroupifyIncremental(handle, indices, 0, stop);
+
+        // Give the first record a new prefix in each step, while its other codes equal the second record
+        Arrays.fill(data[0], 1);
+        data[0][14] = 0;
+        for (int step = 0; step < 1000; step++) {
+            data[0][0] = step & 0xF;
+            data[0][1] = (step >> 4) & 0xF;
+            data[0][2] = (step >> 8) & 0xF;
+            assertTrue(groupify.update(handle, new int[] { 0 }, step + 1, stop));
+
+            // All records must be in their own group
+            assertEquals(rows, groupify.getNumberOfClasses());
+            for (int row = 0; row < rows; row++) {
+                int group = groupify.getGroup(row);
+                assertEquals(1, groupify.getCount(group));
+                for (int i = 0; i < columns; i++) {
+                    assertEquals(data[row][i], groupify.getCode(group, i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Performs a test.
+     *
+     * @throws IllegalArgumentException
+     * @throws IOException
+     */
+    @Test
+    public void testQuality() throws IllegalArgumentException, IOException {
+        
+        this.provider.createDataDefinition();
+        
+        final ARXConfiguration config = ARXConfiguration.create();
+        config.addPrivacyModel(new KAnonymity(3));
+        config.setSuppressionLimit(0.5d);
+        
+        ARXAnonymizer anonymizer = new ARXAnonymizer();
+        ARXResult result = anonymizer.anonymize(this.provider.getData(), config);
+        DataHandle input = this.provider.getData().getHandle();
+        int[] indices = new int[] { 0, 1, 2 };
+        
+        // Check every transformation
+        for (ARXNode[] level : result.getLattice().getLevels()) {
+            for (ARXNode node : level) {
+                
+                DataHandle handle = result.getOutput(node, false);
+                
+                // Reference
+                double rows = handle.getNumRows();
+                double min = rows / getNumberOfClasses(input, indices);
+                double value = (rows / getNumberOfClasses(handle, indices) - min) / (rows - min);
+                double reference = 1d - Math.max(0d, Math.min(1d, value));
+                
+                // Check all models
+                StatisticsQuality quality = handle.getStatistics().getQualityStatistics();
+                assertEquals(reference, quality.getAverageClassSize().getValue(), 1e-9);
+                
+                // Check selected models
+                StatisticsQuality selected = handle.getStatistics().getQualityStatistics(EnumSet.of(QualityModelType.AECS, QualityModelType.LOSS));
+                assertEquals(reference, selected.getAverageClassSize().getValue(), 1e-9);
+                assertEquals(quality.getGranularity().getArithmeticMean(false), selected.getGranularity().getArithmeticMean(false), 1e-9);
+                assertFalse(selected.getDiscernibility().isAvailable());
+                assertTrue(Double.isNaN(selected.getNonUniformEntropy().getArithmeticMean(false)));
+                handle.release();
+            }
+        }
+    }
+    
+    /**
+     * Performs a test.
+     *
+     * @throws IllegalArgumentException
+     * @throws IOException
+     * @throws RollbackRequiredException
+     */
+    @Test
+    public void testQualityIncremental() throws IllegalArgumentException, IOException, RollbackRequiredException {
+        
+        // Anonymize the same data twice
+        DataHandleOutput[] outputs = new DataHandleOutput[2];
+        for (int i = 0; i < outputs.length; i++) {
+            DataProvider provider = new DataProvider();
+            provider.createDataDefinition();
+            final ARXConfiguration config = ARXConfiguration.create();
+            config.addPrivacyModel(new KAnonymity(2));
+            config.setSuppressionLimit(1d);
+            ARXResult result = new ARXAnonymizer().anonymize(provider.getData(), config);
+            outputs[i] = (DataHandleOutput) result.getOutput(result.getLattice().getBottom(), false);
+            
+            // Warm up the first output, before it is optimized
+            StatisticsQuality quality = null;
+            int version = outputs[i].getVersion();
+            List<Integer> outliers = new ArrayList<Integer>();
+            if (i == 0) {
+                quality = outputs[i].getStatistics().getQualityStatistics();
+                outputs[i].getStatistics().getEquivalenceClassStatistics();
+                for (int row = 0; row < outputs[i].getNumRows(); row++) {
+                    if (outputs[i].isOutlier(row)) {
+                        outliers.add(row);
+                    }
+                }
+            }
+            
+            // Optimize
+            result.optimize(outputs[i]);
+            
+            // Check changed rows
+            if (i == 0) {
+                assertTrue(outputs[i].getVersion() > version);
+                int[] changed = outputs[i].getChangedRows(version);
+                assertEquals(outliers.size(), changed.length);
+                for (int j = 0; j < changed.length; j++) {
+                    assertEquals(outliers.get(j).intValue(), changed[j]);
+                }
+                assertEquals(0, outputs[i].getChangedRows(outputs[i].getVersion()).length);
+                assertTrue(quality.getGranularity().getArithmeticMean(false) != outputs[i].getStatistics().getQualityStatistics().getGranularity().getArithmeticMean(false));
+            }
+        }
+        
+        // Statistics maintained incrementally must match statistics of data which has not been analyzed before
+        StatisticsQuality incremental = outputs[0].getStatistics().getQualityStatistics();
+        StatisticsQuality reference = outputs[1].getStatistics().getQualityStatistics();
+        assertEquals(reference.getGranularity().getArithmeticMean(false), incremental.getGranularity().getArithmeticMean(false), 1e-9);
+        assertEquals(reference.getAttributeLevelSquaredError().getArithmeticMean(false), incremental.getAttributeLevelSquaredError().getArithmeticMean(false), 1e-9);
+        assertEquals(reference.getMissings().getArithmeticMean(false), incremental.getMissings().getArithmeticMean(false), 1e-9);
+        assertEquals(reference.getAverageClassSize().getValue(), incremental.getAverageClassSize().getValue(), 1e-9);
+        assertEquals(reference.getGeneralizationIntensity().getArithmeticMean(false), incremental.getGeneralizationIntensity().getArithmeticMean(false), 1e-9);
+        assertEquals(reference.getAmbiguity().getValue(), incremental.getAmbiguity().getValue(), 1e-9);
+        assertEquals(reference.getDiscernibility().getValue(), incremental.getDiscernibility().getValue(), 1e-9);
+        assertEquals(reference.getKullbackLeiblerDivergence().getValue(), incremental.getKullbackLeiblerDivergence().getValue(), 1e-9);
+        StatisticsEquivalenceClasses classes = outputs[0].getStatistics().getEquivalenceClassStatistics();
+        assertEquals(outputs[1].getStatistics().getEquivalenceClassStatistics().getNumberOfEquivalenceClassesIncludingOutliers(), classes.getNumberOfEquivalenceClassesIncludingOutliers());
+        assertEquals(getNumberOfClasses(outputs[0], new int[] { 0, 1, 2 }), classes.getNumberOfEquivalenceClassesIncludingOutliers());
+        assertEquals(outputs[1].getStatistics().getEquivalenceClassStatistics().getNumberOfOutlyingTuples(), classes.getNumberOfOutlyingTuples());
+    }
+    
+    /**
+     * Tests the quality models which are evaluated in a single pass against reference values of
+     * Loss, Precision, AECS, Ambiguity, Discernibility and KL-Divergence, which have been computed
+     * with the previous implementation that evaluated each model separately.
+     *
+     * @throws IllegalArgumentException
+     * @throws IOException
+     */
+    @Test
+    public void testQualityModels() throws IllegalArgumentException, IOException {
+
+        // Transformations with different numbers of suppressed records
+        int[][] transformations = new int[][] { { 1, 4, 1, 1, 0 }, { 0, 2, 1, 2, 1 }, { 0, 1, 1, 1, 0 }, { 1, 2, 0, 0, 0 } };
+        double[][] expected = new double[][] {
+            { 0.3484667102968767, 0.30000000000000004, 0.9689095700873003, 0.9678750204391424, 0.9033580694724122, 0.9995924206038317 },
+            { 0.5283835044541197, 0.4330890966558334, 0.9862735408773953, 0.9874257233364437, 0.9582822848966925, 0.999592695730925 },
+            { 0.6915904965681656, 0.6390524501027783, 0.9980896869752193, 0.9823764707600123, 0.9763733754227439, 0.9997355490390144 },
+            { 0.8185680743298184, 0.6697367548571049, 0.9980367074722171, 0.9566044825514847, 0.9438044744967046, 0.9999301746310489 } };
+        ARXResult result = getAdultResult(false);
+        for (int i = 0; i < transformations.length; i++) {
+            DataHandle handle = result.getOutput(getNode(result, transformations[i]), false);
+            assertQuality(expected[i], handle.getStatistics().getQualityStatistics());
+            handle.release();
+        }
+
+        // Research subset, where all other records are suppressed, and its view
+        transformations = new int[][] { { 0, 1, 1, 1, 0 }, { 1, 2, 0, 0, 0 } };
+        expected = new double[][] {
+            { 0.08562027706675379, 0.08503746435912729, 0.9927008017071618, 0.1306820229188499, 0.13066984086613298, 0.9994367010910201 },
+            { 0.6128331269310046, 0.6086616041765543, 0.9933834663002125, 0.9353657274035004, 0.9228657407705397, 0.9992889619965849 },
+            { 0.11374516522495992, 0.09306412041641787, 0.9890517762038105, 0.1329261894459579, 0.1322358790782736, 0.9994489315346256 },
+            { 0.814138982799183, 0.6661129568106312, 0.989731931419911, 0.9514285064235839, 0.9094472819967666, 0.999929905730345 } };
+        result = getAdultResult(true);
+        for (int i = 0; i < transformations.length; i++) {
+            DataHandle handle = result.getOutput(getNode(result, transformations[i]), false);
+            assertQuality(expected[i * 2], handle.getStatistics().getQualityStatistics());
+            assertQuality(expected[i * 2 + 1], handle.getView().getStatistics().getQualityStatistics());
+            handle.release();
+        }
+    }
+
+    /**
+     * Performs a test.
+     *
+     * @throws IllegalArgumentException
+     * @throws IOException
+     */
+    @Test
+    public void testSummary() throws IllegalArgumentException, IOException {
+        
+        this.provider.createDataDefinition();
+        this.provider.getData().getDefinition().setDataType("age", DataType.INTEGER);
+        DataHandle handle = this.provider.getData().getHandle();
+        
+        // Reference
+        DescriptiveStatistics reference = new DescriptiveStatistics();
+        for (int row = 0; row < handle.getNumRows(); row++) {
+            reference.addValue(Double.valueOf(handle.getValue(row, 0)));
+        }
+        
+        // Check numeric attribute
+        StatisticsSummary<?> summary = handle.getStatistics().getSummaryStatistics(false).get("age");
+        assertEquals(7, summary.getNumberOfMeasuresAsString());
+        assertEquals(4, summary.getNumberOfDistinctValuesAsInt());
+        assertEquals("34", summary.getMinAsString());
+        assertEquals("70", summary.getMaxAsString());
+        assertEquals("45", summary.getMedianAsString());
+        assertEquals("34", summary.getModeAsString());
+        assertEquals(reference.getMean(), summary.getArithmeticMeanAsDouble(), 1e-9);
+        assertEquals(reference.getVariance(), summary.getSampleVarianceAsDouble(), 1e-9);
+        assertEquals(reference.getPopulationVariance(), summary.getPopulationVarianceAsDouble(), 1e-9);
+        assertEquals(reference.getGeometricMean(), summary.getGeometricMeanAsDouble(), 1e-9);
+        assertEquals(reference.getMax() - reference.getMin(), summary.getRangeAsDouble(), 1e-9);
+        
+        // Check nominal attribute
+        summary = handle.getStatistics().getSummaryStatistics(true).get("gender");
+        assertEquals(7, summary.getNumberOfMeasuresAsString());
+        assertEquals(2, summary.getNumberOfDistinctValuesAsInt());
+        assertEquals("male", summary.getModeAsString());
+    }
+    
+    /**
+     * Compares summary statistics computed sequentially and in parallel.
+     *
+     * @throws IllegalArgumentException
+     * @throws IOException
+     */
+    @Test
+    public void testSummaryParallel() throws IllegalArgumentException, IOException {
+        
+        Data data = Data.create("data/adult.csv", StandardCharsets.UTF_8, ';');
+        data.getDefinition().setDataType("age", DataType.INTEGER);
+        DataHandle handle = data.getHandle();
+        
+        for (boolean listwiseDeletion : new boolean[] { false, true }) {
+            
+            // Sequential
+            Map<String, StatisticsSummary<?>> expected = handle.getStatistics().getSummaryStatistics(listwiseDeletion);
+            
+            // Parallel
+            Map<String, StatisticsSummary<?>> actual;
+            ParallelExecution.setNumThreads(4);
+            try {
+                actual = handle.getStatistics().getSummaryStatistics(listwiseDeletion);
+            } finally {
+                ParallelExecution.setNumThreads(1);
+            }
+            
+            // Compare
+            assertEquals(expected.keySet(), actual.keySet());
+            for (String attribute : expected.keySet()) {
+                assertEquals(expected.get(attribute).toString(), actual.get(attribute).toString());
+            }
+        }
+    }
+    
+    /**
+     * Checks Loss, Precision, AECS, Ambiguity, Discernibility and KL-Divergence
+     * 
+     * @param expected
+     * @param quality
+     */
+    private void assertQuality(double[] expected, StatisticsQuality quality) {
+        assertEquals(expected[0], quality.getGranularity().getArithmeticMean(false), 1e-9);
+        assertEquals(expected[1], quality.getGeneralizationIntensity().getArithmeticMean(false), 1e-9);
+        assertEquals(expected[2], quality.getAverageClassSize().getValue(), 1e-9);
+        assertEquals(expected[3], quality.getAmbiguity().getValue(), 1e-9);
+        assertEquals(expected[4], quality.getDiscernibility().getValue(), 1e-9);
+        assertEquals(expected[5], quality.getKullbackLeiblerDivergence().getValue(), 1e-9);
+    }
+
     /**
      * Checks the two arrays regarding equality, treating a double[][]
      * as a set of comparable double[]'s
@@ -325,6 +783,67 @@ public class TestDataStatistics extends AbstractTest {
         return true;
     }
     
+    /**
+     * Anonymizes the adult dataset with five quasi-identifiers
+     * 
+     * @param subset Whether to use the research subset of divorced individuals
+     * @return
+     * @throws IOException
+     */
+    private ARXResult getAdultResult(boolean subset) throws IOException {
+        Data data = Data.create("data/adult.csv", StandardCharsets.UTF_8, ';');
+        for (String attribute : new String[] { "sex", "age", "race", "marital-status", "education" }) {
+            data.getDefinition().setAttributeType(attribute, Hierarchy.create("data/adult_hierarchy_" + attribute + ".csv", StandardCharsets.UTF_8, ';'));
+        }
+        for (String attribute : new String[] { "native-country", "workclass", "occupation", "salary-class" }) {
+            data.getDefinition().setAttributeType(attribute, AttributeType.INSENSITIVE_ATTRIBUTE);
+        }
+        ARXConfiguration config = ARXConfiguration.create();
+        config.addPrivacyModel(new KAnonymity(5));
+        config.setSuppressionLimit(0.05d);
+        if (subset) {
+            config.addPrivacyModel(new Inclusion(DataSubset.create(data, DataSelector.create(data).field("marital-status").equals("Divorced"))));
+        }
+        return new ARXAnonymizer().anonymize(data, config);
+    }
+
+    /**
+     * Returns the node with the given transformation
+     * 
+     * @param result
+     * @param transformation
+     * @return
+     */
+    private ARXNode getNode(ARXResult result, int[] transformation) {
+        for (ARXNode[] level : result.getLattice().getLevels()) {
+            for (ARXNode node : level) {
+                if (Arrays.equals(transformation, node.getTransformation())) {
+                    return node;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Unknown transformation");
+    }
+
+    /**
+     * Returns the number of distinct combinations of values in the given columns
+     * 
+     * @param handle
+     * @param columns
+     * @return
+     */
+    private int getNumberOfClasses(DataHandle handle, int[] columns) {
+        Set<List<String>> classes = new HashSet<List<String>>();
+        for (int row = 0; row < handle.getNumRows(); row++) {
+            List<String> tuple = new ArrayList<String>();
+            for (int column : columns) {
+                tuple.add(handle.getValue(row, column));
+            }
+            classes.add(tuple);
+        }
+        return classes.size();
+    }
+    
     /**
      * Converts a contigency table to an array
      * 
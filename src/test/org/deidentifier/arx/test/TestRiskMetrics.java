@@ -17,6 +17,7 @@
 
 package org.deidentifier.arx.test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -24,6 +25,7 @@ import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -31,13 +33,21 @@ import org.deidentifier.arx.ARXAnonymizer;
 import org.deidentifier.arx.ARXConfiguration;
 import org.deidentifier.arx.ARXPopulationModel;
 import org.deidentifier.arx.ARXResult;
+import org.deidentifier.arx.ARXSolverConfiguration;
+import org.deidentifier.arx.AttributeType;
 import org.deidentifier.arx.AttributeType.Hierarchy;
 import org.deidentifier.arx.Data;
+import org.deidentifier.arx.Data.DefaultData;
 import org.deidentifier.arx.DataHandle;
+import org.deidentifier.arx.common.ParallelExecution;
 import org.deidentifier.arx.criteria.KAnonymity;
 import org.deidentifier.arx.io.CSVHierarchyInput;
 import org.deidentifier.arx.metric.Metric;
 import org.deidentifier.arx.metric.Metric.AggregateFunction;
+import org.deidentifier.arx.risk.HIPAAIdentifierMatch;
+import org.deidentifier.arx.risk.HIPAAIdentifierMatch.MatchType;
+import org.deidentifier.arx.risk.PopulationUniquenessCache;
+import org.deidentifier.arx.risk.RiskModelHistogram;
 import org.deidentifier.arx.risk.RiskModelPopulationUniqueness;
 import org.deidentifier.arx.risk.RiskModelPopulationUniqueness.PopulationUniquenessModel;
 import org.junit.Test;
@@ -210,6 +220,41 @@ public class TestRiskMetrics {
         return Integer.compare((int) (val1 * 10000d), (int) (val2 * 10000d));
     }
     
+    /**
+     * Test the equivalence class model of a dataset which is large enough to be analyzed in parallel.
+     *
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    @Test
+    public void testEquivalenceClassModel() throws IOException {
+        
+        // Each record of the adult dataset three times
+        Data data = getDataObject("./data/adult.csv");
+        DataHandle handle = data.getHandle();
+        DefaultData copy = Data.create();
+        Iterator<String[]> iterator = handle.iterator();
+        copy.add(iterator.next());
+        while (iterator.hasNext()) {
+            String[] row = iterator.next();
+            for (int i = 0; i < 3; i++) {
+                copy.add(row);
+            }
+        }
+        for (String attribute : data.getDefinition().getQuasiIdentifyingAttributes()) {
+            copy.getDefinition().setAttributeType(attribute, AttributeType.QUASI_IDENTIFYING_ATTRIBUTE);
+        }
+        
+        // Each class must be three times as large
+        ARXPopulationModel population = ARXPopulationModel.create(handle.getNumRows(), 0.1d);
+        int[] expected = handle.getRiskEstimator(population).getEquivalenceClassModel().getHistogram();
+        int[] histogram = copy.getHandle().getRiskEstimator(population).getEquivalenceClassModel().getHistogram();
+        assertEquals(expected.length, histogram.length);
+        for (int i = 0; i < expected.length; i += 2) {
+            assertEquals(expected[i] * 3, histogram[i]);
+            assertEquals(expected[i + 1], histogram[i + 1]);
+        }
+    }
+    
     /**
      * Test highest individual risk using the test dataset.
      */
@@ -239,6 +284,83 @@ public class TestRiskMetrics {
         assertTrue(getAnonymizedData(data).getRiskEstimator(ARXPopulationModel.create(data.getHandle().getNumRows(), 0.1d)).getSampleBasedReidentificationRisk().getHighestRisk() == 0.5d);
     }
     
+    /**
+     * Test HIPAA identifiers found with and without sampling using the adult dataset.
+     *
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    @Test
+    public void testHIPAAIdentifiers() throws IOException {
+        
+        Data data = getDataObject("./data/adult.csv");
+        ARXPopulationModel population = ARXPopulationModel.create(data.getHandle().getNumRows(), 0.1d);
+        HIPAAIdentifierMatch[] expected = data.getHandle().getRiskEstimator(population).getHIPAAIdentifiers(0.5d);
+        
+        // Sample larger than the number of distinct values
+        HIPAAIdentifierMatch[] matches = data.getHandle().getRiskEstimator(population).getHIPAAIdentifiers(0.5d, Integer.MAX_VALUE);
+        assertEquals(expected.length, matches.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].toString(), matches[i].toString());
+        }
+        
+        // Small sample, all ages are matched
+        boolean found = false;
+        for (HIPAAIdentifierMatch match : data.getHandle().getRiskEstimator(population).getHIPAAIdentifiers(0.5d, 10)) {
+            if (match.getColumn().equals("age") && match.getMatchType() == MatchType.ATTRIBUTE_VALUE) {
+                assertEquals(1d, match.getConfidence(), 0d);
+                found = true;
+            }
+        }
+        assertTrue(found);
+    }
+    
+    /**
+     * Test that estimates obtained with a cache are identical to the estimates obtained without a cache,
+     * independently of the order in which histograms are analyzed and of the number of threads.
+     *
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    @Test
+    public void testPopulationUniquenessCache() throws IOException {
+        
+        // Two different histograms
+        Data data = getDataObject("./data/adult.csv");
+        Data reduced = getDataObject("./data/adult.csv");
+        reduced.getDefinition().setAttributeType("native-country", AttributeType.INSENSITIVE_ATTRIBUTE);
+        ARXSolverConfiguration config = ARXSolverConfiguration.create();
+        
+        for (int threads : new int[] { 1, 4 }) {
+            ParallelExecution.setNumThreads(threads);
+            try {
+                for (Data[] order : new Data[][] { { data, reduced }, { reduced, data } }) {
+                    PopulationUniquenessCache cache = new PopulationUniquenessCache(3);
+                    for (double fraction : new double[] { 0.1d, 0.2d }) {
+                        ARXPopulationModel population = ARXPopulationModel.create((long) (data.getHandle().getNumRows() / fraction));
+                        for (Data current : order) {
+                            RiskModelHistogram histogram = current.getHandle().getRiskEstimator(population).getEquivalenceClassModel();
+                            RiskModelPopulationUniqueness expected = new RiskModelPopulationUniqueness(population, histogram, config);
+                            
+                            // Compute and retrieve from the cache
+                            for (int i = 0; i < 2; i++) {
+                                RiskModelPopulationUniqueness model = new RiskModelPopulationUniqueness(population, histogram, config, cache);
+                                for (PopulationUniquenessModel statisticalModel : PopulationUniquenessModel.values()) {
+                                    double value1 = expected.getFractionOfUniqueTuples(statisticalModel);
+                                    double value2 = model.getFractionOfUniqueTuples(statisticalModel);
+                                    assertEquals(statisticalModel.toString(), value1, value2, 0d);
+                                }
+                            }
+                        }
+                    }
+                    
+                    // Bounded size
+                    assertEquals(3, cache.size());
+                }
+            } finally {
+                ParallelExecution.setNumThreads(1);
+            }
+        }
+    }
+    
     /**
      * 2-Anonymizes the given data. No suppression allowed.
      *
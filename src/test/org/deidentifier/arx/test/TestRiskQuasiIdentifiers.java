@@ -17,8 +17,17 @@
 
 package org.deidentifier.arx.test;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import org.deidentifier.arx.AttributeType;
 import org.deidentifier.arx.Data;
+import org.deidentifier.arx.common.ParallelExecution;
 import org.deidentifier.arx.risk.RiskEstimateBuilder;
 import org.deidentifier.arx.risk.RiskModelAttributes;
 import org.junit.Test;
@@ -61,6 +70,69 @@ public class TestRiskQuasiIdentifiers {
         }
     }
 
+    /**
+     * Compares a restricted search with the analysis of all combinations
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testRestrictedSearch() throws IOException {
+        
+        // Flag every attribute as quasi identifier
+        Data data = Data.create("./data/adult.csv", StandardCharsets.UTF_8, ';');
+        for (int i = 0; i < data.getHandle().getNumColumns(); i++) {
+            data.getDefinition().setAttributeType(data.getHandle().getAttributeName(i), AttributeType.QUASI_IDENTIFYING_ATTRIBUTE);
+        }
+        
+        // Perform calculation
+        RiskEstimateBuilder builder = data.getHandle().getRiskEstimator(null);
+        RiskModelAttributes.QuasiIdentifierRisk[] all = builder.getAttributeRisks().getAttributeRisks();
+        RiskModelAttributes.QuasiIdentifierRisk[] restricted = builder.getAttributeRisks(3, 0.5d, 20).getAttributeRisks();
+        assertTrue(all.length == (1 << data.getHandle().getNumColumns()) - 1);
+        assertTrue(restricted.length == 20);
+        
+        // Index
+        Map<List<String>, RiskModelAttributes.QuasiIdentifierRisk> index = new HashMap<List<String>, RiskModelAttributes.QuasiIdentifierRisk>();
+        for (RiskModelAttributes.QuasiIdentifierRisk risk : all) {
+            index.put(risk.getIdentifier(), risk);
+        }
+        
+        // Each result must match the analysis of all combinations
+        double minimum = Double.MAX_VALUE;
+        for (RiskModelAttributes.QuasiIdentifierRisk risk : restricted) {
+            RiskModelAttributes.QuasiIdentifierRisk expected = index.get(risk.getIdentifier());
+            assertTrue(risk.getIdentifier().size() <= 3);
+            assertTrue(expected.getDistinction() == risk.getDistinction());
+            assertTrue(expected.getSeparation() == risk.getSeparation());
+            minimum = Math.min(minimum, risk.getDistinction());
+        }
+        
+        // Single attributes are always evaluated and may not be more identifying than the results
+        Set<List<String>> selected = new HashSet<List<String>>();
+        for (RiskModelAttributes.QuasiIdentifierRisk risk : restricted) {
+            selected.add(risk.getIdentifier());
+        }
+        for (RiskModelAttributes.QuasiIdentifierRisk risk : all) {
+            if (risk.getIdentifier().size() == 1 && !selected.contains(risk.getIdentifier())) {
+                assertTrue(risk.getDistinction() <= minimum);
+            }
+        }
+        
+        // Parallel execution must not change the results
+        ParallelExecution.setNumThreads(4);
+        try {
+            RiskModelAttributes.QuasiIdentifierRisk[] parallel = builder.getAttributeRisks(3, 0.5d, 20).getAttributeRisks();
+            assertTrue(parallel.length == restricted.length);
+            for (int i = 0; i < parallel.length; i++) {
+                assertTrue(parallel[i].getIdentifier().equals(restricted[i].getIdentifier()));
+                assertTrue(parallel[i].getDistinction() == restricted[i].getDistinction());
+                assertTrue(parallel[i].getSeparation() == restricted[i].getSeparation());
+            }
+        } finally {
+            ParallelExecution.setNumThreads(1);
+        }
+    }
+    
     @Test
     public void testWithDefinedDataSet() {
         